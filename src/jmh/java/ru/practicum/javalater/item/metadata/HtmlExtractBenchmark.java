@@ -0,0 +1,67 @@
+package ru.practicum.javalater.item.metadata;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares building a Jsoup DOM with {@link HtmlMetadataScanner} on the same HTML prefix, without any I/O. The
+ * signals sit either near the top of the page or at its end, which is where the scanner cannot stop early.
+ * Run with the default {@code -prof gc} to compare the allocation per operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HtmlExtractBenchmark {
+
+    private static final String PARAGRAPH = "<p class=\"text\">Lorem ipsum <a href=\"/x?a=1&amp;b=2\">dolor</a> sit"
+            + " amet, <span>consectetur</span> adipiscing elit.</p>\n<script>var x = '<div>';</script>\n";
+
+    @Param({"16384", "262144", "1048576"})
+    private int pageChars;
+
+    @Param({"true", "false"})
+    private boolean signalsFirst;
+
+    private String html;
+
+    @Setup
+    public void setUp() {
+        StringBuilder page = new StringBuilder("<!DOCTYPE html><html><head><meta charset=\"utf-8\">")
+                .append("<meta property=\"og:title\" content=\"Fixture page\">")
+                .append("<title>Fixture page &mdash; benchmark</title></head><body>");
+        if (signalsFirst) {
+            page.append("<img src=\"hero.png\"><video src=\"clip.mp4\"></video>");
+        }
+        while (page.length() < pageChars) {
+            page.append(PARAGRAPH);
+        }
+        if (!signalsFirst) {
+            page.append("<img src=\"hero.png\"><video src=\"clip.mp4\"></video>");
+        }
+        html = page.append("</body></html>").toString();
+    }
+
+    @Benchmark
+    public UrlMetadataRetrieverImpl.UrlMetadataImpl jsoup() {
+        return UrlMetadataRetrieverImpl.parseWithJsoup(html);
+    }
+
+    @Benchmark
+    public UrlMetadataRetrieverImpl.UrlMetadataImpl scanner() {
+        return HtmlMetadataScanner.scan(html);
+    }
+}
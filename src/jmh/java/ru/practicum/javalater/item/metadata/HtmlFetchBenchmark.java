@@ -0,0 +1,90 @@
+package ru.practicum.javalater.item.metadata;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares reading the whole HTML body and parsing it with Jsoup against {@link HtmlPrefixSubscriber}, which
+ * stops once the metadata signals are found or the byte cap is reached. Run with the default {@code -prof gc}
+ * to see the allocation rate next to the latency.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HtmlFetchBenchmark {
+
+    private static final int MAX_BODY_BYTES = 1 << 20;
+
+    @Param({"262144", "4194304"})
+    private int pageBytes;
+
+    @Param({"true", "false"})
+    private boolean withVideo;
+
+    private StubHttpServer server;
+
+    private HttpClient client;
+
+    private HttpRequest request;
+
+    @Setup
+    public void setUp() throws Exception {
+        StringBuilder page = new StringBuilder("<html><head><title>Fixture page</title></head><body>")
+                .append("<p>intro</p><img src=\"hero.png\">");
+        if (withVideo) {
+            page.append("<video src=\"clip.mp4\"></video>");
+        }
+        while (page.length() < pageBytes) {
+            page.append("<p>Lorem ipsum dolor sit amet, consectetur adipiscing elit.</p>\n");
+        }
+        page.append("</body></html>");
+        server = new StubHttpServer().html("/page", page.toString(), 0);
+        client = HttpClient.newHttpClient();
+        request = HttpRequest.newBuilder(URI.create(server.url("/page"))).build();
+    }
+
+    @TearDown
+    public void tearDown() {
+        server.close();
+    }
+
+    @Benchmark
+    public void fullBody(Blackhole blackhole) throws Exception {
+        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        consume(Jsoup.parse(response.body()), blackhole);
+    }
+
+    @Benchmark
+    public void streamingPrefix(Blackhole blackhole) throws Exception {
+        HttpResponse<String> response = client.send(request, HtmlPrefixSubscriber.handler(MAX_BODY_BYTES));
+        consume(Jsoup.parse(response.body()), blackhole);
+    }
+
+    private static void consume(Document doc, Blackhole blackhole) {
+        blackhole.consume(doc.title());
+        blackhole.consume(doc.getElementsByTag("img").isEmpty());
+        blackhole.consume(doc.getElementsByTag("video").isEmpty());
+    }
+}
@@ -0,0 +1,118 @@
+package ru.practicum.javalater.item.metadata;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end cost of {@link UrlMetadataRetrieverImpl#retrieve(String)} against an in-process stub server, for
+ * a single caller and for many concurrent ones. Throughput and sampled latency percentiles are reported for each
+ * fixture; the default {@code -prof gc} adds the allocation rate per operation. The politeness limits of the
+ * scheduler are lifted so that the numbers reflect the retriever rather than the configured spacing.
+ * <p>
+ * Example: {@code mvn -Pbenchmark test-compile exec:exec -Djmh.args="RetrieveBenchmark -p latencyMillis=20"}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RetrieveBenchmark {
+
+    private static final int MAX_BODY_BYTES = 1 << 20;
+
+    @Param({"html", "image", "video"})
+    private String fixture;
+
+    @Param({"65536", "1048576"})
+    private int bodyBytes;
+
+    @Param({"0", "5"})
+    private long latencyMillis;
+
+    private StubHttpServer server;
+
+    private UrlMetadataRetriever retriever;
+
+    private String url;
+
+    @Setup
+    public void setUp() throws Exception {
+        server = new StubHttpServer();
+        byte[] binary = binary(bodyBytes);
+        switch (fixture) {
+            case "html":
+                server.html("/fixture", htmlPage(bodyBytes), latencyMillis);
+                break;
+            case "image":
+                server.handle("/fixture", exchange -> StubHttpServer.respond(exchange, "image/jpeg", binary,
+                        latencyMillis));
+                break;
+            case "video":
+                server.handle("/fixture", exchange -> StubHttpServer.respond(exchange, "video/mp4", binary,
+                        latencyMillis));
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown fixture: " + fixture);
+        }
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        retriever = new UrlMetadataRetrieverImpl(10, MAX_BODY_BYTES, true, false,
+                new HostRequestScheduler(meterRegistry, 1024, 1024, 0, 100_000),
+                new HostCircuitBreaker(meterRegistry, Integer.MAX_VALUE, 1, 10_000, 600_000),
+                new RetrieverMetrics(meterRegistry, 1000, 10),
+                new RetrievalPolicy(meterRegistry, 30_000, 0, false, 200),
+                new UrlMediaClassifier(meterRegistry, false, false, 10_000, 20, 50));
+        url = server.url("/fixture");
+    }
+
+    @TearDown
+    public void tearDown() {
+        server.close();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public UrlMetadataRetriever.UrlMetadata singleCaller() {
+        return retriever.retrieve(url);
+    }
+
+    @Benchmark
+    @Threads(32)
+    public UrlMetadataRetriever.UrlMetadata concurrentCallers() {
+        return retriever.retrieve(url);
+    }
+
+    private static String htmlPage(int bytes) {
+        StringBuilder page = new StringBuilder("<html><head><title>Fixture page</title>")
+                .append("<meta property=\"og:title\" content=\"Fixture page\"></head><body>");
+        while (page.length() < bytes / 2) {
+            page.append("<p>Lorem ipsum dolor sit amet, consectetur adipiscing elit.</p>\n");
+        }
+        page.append("<img src=\"hero.png\"><video src=\"clip.mp4\"></video>");
+        while (page.length() < bytes) {
+            page.append("<p>Lorem ipsum dolor sit amet, consectetur adipiscing elit.</p>\n");
+        }
+        return page.append("</body></html>").toString();
+    }
+
+    private static byte[] binary(int bytes) {
+        byte[] body = new byte[bytes];
+        Arrays.fill(body, (byte) 0x5A);
+        return body;
+    }
+}
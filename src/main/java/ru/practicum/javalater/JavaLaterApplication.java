@@ -2,8 +2,10 @@ package ru.practicum.javalater;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class JavaLaterApplication {
 
 	public static void main(String[] args) {
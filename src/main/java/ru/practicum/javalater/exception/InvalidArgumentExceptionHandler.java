@@ -16,4 +16,9 @@ public class InvalidArgumentExceptionHandler extends ResponseEntityExceptionHand
         String bodyOfResponse = "Invalid argument";
         return handleExceptionInternal(ex, bodyOfResponse, new HttpHeaders(), HttpStatus.INTERNAL_SERVER_ERROR, request);
     }
+
+    @ExceptionHandler(value = {InvalidCursorException.class})
+    protected ResponseEntity<Object> handleInvalidCursor(RuntimeException ex, WebRequest request) {
+        return handleExceptionInternal(ex, ex.getMessage(), new HttpHeaders(), HttpStatus.BAD_REQUEST, request);
+    }
 }
@@ -0,0 +1,16 @@
+package ru.practicum.javalater.exception;
+
+/**
+ * A list cursor the client sent that cannot be continued from: it is malformed, belongs to another sort, or
+ * was issued by a read path that no longer holds the list. The client has to request the list from the start.
+ */
+public class InvalidCursorException extends IllegalArgumentException {
+
+    public InvalidCursorException(String message) {
+        super(message);
+    }
+
+    public InvalidCursorException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
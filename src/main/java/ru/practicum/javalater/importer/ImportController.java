@@ -0,0 +1,30 @@
+package ru.practicum.javalater.importer;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+import ru.practicum.javalater.importer.dto.ImportJobDto;
+import ru.practicum.javalater.importer.service.BookmarkImportService;
+
+@RestController
+@RequestMapping("/imports")
+@RequiredArgsConstructor
+public class ImportController {
+
+    private final BookmarkImportService bookmarkImportService;
+
+    @PostMapping(consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    @ResponseStatus(HttpStatus.ACCEPTED)
+    public ImportJobDto startImport(@RequestHeader("X-Later-User-Id") long userId,
+                                    @RequestParam MultipartFile file,
+                                    @RequestParam(required = false) String format) {
+        return bookmarkImportService.startImport(userId, file, format);
+    }
+
+    @GetMapping("/{importId}")
+    public ImportJobDto getImport(@RequestHeader("X-Later-User-Id") long userId, @PathVariable long importId) {
+        return bookmarkImportService.getImport(userId, importId);
+    }
+}
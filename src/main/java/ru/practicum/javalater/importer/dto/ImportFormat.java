@@ -0,0 +1,33 @@
+package ru.practicum.javalater.importer.dto;
+
+import java.util.Locale;
+
+public enum ImportFormat {
+    NETSCAPE_HTML,
+    CSV;
+
+    /**
+     * Takes the format from the explicit parameter if given, otherwise from the file extension.
+     */
+    public static ImportFormat of(String format, String fileName) {
+        if (format != null && !format.isBlank()) {
+            switch (format.trim().toLowerCase(Locale.ROOT)) {
+                case "html":
+                case "netscape":
+                    return NETSCAPE_HTML;
+                case "csv":
+                    return CSV;
+                default:
+                    throw new IllegalArgumentException("Неизвестный формат импорта: " + format);
+            }
+        }
+        String name = fileName == null ? "" : fileName.toLowerCase(Locale.ROOT);
+        if (name.endsWith(".csv")) {
+            return CSV;
+        }
+        if (name.endsWith(".html") || name.endsWith(".htm")) {
+            return NETSCAPE_HTML;
+        }
+        throw new IllegalArgumentException("Не удалось определить формат файла: " + fileName);
+    }
+}
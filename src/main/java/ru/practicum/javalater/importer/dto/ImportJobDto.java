@@ -0,0 +1,45 @@
+package ru.practicum.javalater.importer.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class ImportJobDto {
+
+    private Long id;
+
+    private Long userId;
+
+    private ImportFormat format;
+
+    private ImportState state;
+
+    private long parsed;
+
+    private long skipped;
+
+    private long duplicates;
+
+    private long inserted;
+
+    private long resolved;
+
+    private long resolutionFailed;
+
+    private double parsedPerSecond;
+
+    private double resolvedPerSecond;
+
+    private Instant startedAt;
+
+    private Instant finishedAt;
+
+    private String error;
+}
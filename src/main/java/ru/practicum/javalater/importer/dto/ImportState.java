@@ -0,0 +1,9 @@
+package ru.practicum.javalater.importer.dto;
+
+public enum ImportState {
+    QUEUED,
+    PARSING,
+    RESOLVING,
+    DONE,
+    FAILED
+}
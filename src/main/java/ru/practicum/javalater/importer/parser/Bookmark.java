@@ -0,0 +1,15 @@
+package ru.practicum.javalater.importer.parser;
+
+import lombok.Value;
+
+import java.util.Set;
+
+@Value
+public class Bookmark {
+
+    String url;
+
+    String title;
+
+    Set<String> tags;
+}
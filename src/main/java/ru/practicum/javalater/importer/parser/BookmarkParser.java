@@ -0,0 +1,31 @@
+package ru.practicum.javalater.importer.parser;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Reads a bookmark export entry by entry. Implementations hand each bookmark to the consumer as soon as it
+ * has been read and keep no more than the current entry in memory.
+ */
+public interface BookmarkParser {
+
+    int MAX_TAG_LENGTH = 50;
+
+    void parse(Reader reader, Consumer<Bookmark> consumer) throws IOException;
+
+    /**
+     * Trims the tag and cuts it to the length of the {@code tag_names.name} column; blank tags are dropped.
+     */
+    static void addTag(Set<String> tags, String tag) {
+        if (tag == null) {
+            return;
+        }
+        String trimmed = tag.trim();
+        if (trimmed.isEmpty()) {
+            return;
+        }
+        tags.add(trimmed.length() > MAX_TAG_LENGTH ? trimmed.substring(0, MAX_TAG_LENGTH) : trimmed);
+    }
+}
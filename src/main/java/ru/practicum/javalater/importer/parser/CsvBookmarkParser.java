@@ -0,0 +1,126 @@
+package ru.practicum.javalater.importer.parser;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Parser for CSV exports of read-later and bookmark services. The first record is the header; the link is
+ * taken from a {@code url}, {@code href} or {@code link} column, tags from a {@code tags} column (separated
+ * by commas, semicolons or pipes) and the folder path from a {@code folder} column, each segment of which
+ * becomes a tag. Records are read one at a time following RFC 4180 quoting.
+ */
+public class CsvBookmarkParser implements BookmarkParser {
+
+    private static final int MAX_FIELD_LENGTH = 65536;
+
+    private static final List<String> URL_COLUMNS = List.of("url", "href", "link", "address");
+
+    private static final List<String> TITLE_COLUMNS = List.of("title", "name");
+
+    private static final List<String> TAG_COLUMNS = List.of("tags", "tag", "labels");
+
+    private static final List<String> FOLDER_COLUMNS = List.of("folder", "collection", "path");
+
+    @Override
+    public void parse(Reader reader, Consumer<Bookmark> consumer) throws IOException {
+        Reader in = reader instanceof BufferedReader ? reader : new BufferedReader(reader);
+        List<String> header = readRecord(in);
+        if (header == null) {
+            return;
+        }
+        int url = indexOf(header, URL_COLUMNS);
+        if (url < 0) {
+            throw new IllegalArgumentException("В файле CSV нет колонки с адресом ссылки.");
+        }
+        int title = indexOf(header, TITLE_COLUMNS);
+        int tags = indexOf(header, TAG_COLUMNS);
+        int folder = indexOf(header, FOLDER_COLUMNS);
+
+        List<String> record;
+        while ((record = readRecord(in)) != null) {
+            String link = field(record, url).trim();
+            if (link.isEmpty()) {
+                continue;
+            }
+            Set<String> bookmarkTags = new LinkedHashSet<>();
+            for (String segment : field(record, folder).split("/")) {
+                BookmarkParser.addTag(bookmarkTags, segment);
+            }
+            for (String tag : field(record, tags).split("[,;|]")) {
+                BookmarkParser.addTag(bookmarkTags, tag);
+            }
+            String bookmarkTitle = field(record, title).trim();
+            consumer.accept(new Bookmark(link, bookmarkTitle.isEmpty() ? null : bookmarkTitle, bookmarkTags));
+        }
+    }
+
+    private static int indexOf(List<String> header, List<String> names) {
+        for (int i = 0; i < header.size(); i++) {
+            if (names.contains(header.get(i).trim().toLowerCase(Locale.ROOT))) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static String field(List<String> record, int index) {
+        return index >= 0 && index < record.size() ? record.get(index) : "";
+    }
+
+    /**
+     * Reads one record, or returns {@code null} at the end of input. Fields longer than the limit are cut.
+     */
+    static List<String> readRecord(Reader in) throws IOException {
+        List<String> record = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        boolean any = false;
+        int c;
+        while ((c = in.read()) != -1) {
+            any = true;
+            if (quoted) {
+                if (c == '"') {
+                    in.mark(1);
+                    int next = in.read();
+                    if (next == '"') {
+                        append(field, '"');
+                    } else {
+                        quoted = false;
+                        if (next != -1) {
+                            in.reset();
+                        }
+                    }
+                } else {
+                    append(field, (char) c);
+                }
+            } else if (c == '"' && field.length() == 0) {
+                quoted = true;
+            } else if (c == ',') {
+                record.add(field.toString());
+                field.setLength(0);
+            } else if (c == '\n') {
+                break;
+            } else if (c != '\r') {
+                append(field, (char) c);
+            }
+        }
+        if (!any) {
+            return null;
+        }
+        record.add(field.toString());
+        return record;
+    }
+
+    private static void append(StringBuilder field, char c) {
+        if (field.length() < MAX_FIELD_LENGTH) {
+            field.append(c);
+        }
+    }
+}
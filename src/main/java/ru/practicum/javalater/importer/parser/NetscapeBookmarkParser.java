@@ -0,0 +1,234 @@
+package ru.practicum.javalater.importer.parser;
+
+import org.jsoup.parser.Parser;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Parser for the Netscape bookmark file format that all major browsers export. The file is scanned tag by
+ * tag instead of being loaded into a DOM: only the folder path, the current link and its title are kept, and
+ * attributes other than the ones needed here (icons are often inlined as large data URIs) are skipped
+ * without being buffered. Every enclosing folder becomes a tag of the link, except the browsers' own
+ * toolbar and "unfiled" folders.
+ */
+public class NetscapeBookmarkParser implements BookmarkParser {
+
+    private static final int MAX_TEXT_LENGTH = 1000;
+
+    private static final int MAX_ATTRIBUTE_LENGTH = 8192;
+
+    private static final int MAX_TAG_NAME_LENGTH = 16;
+
+    private static final Set<String> ATTRIBUTES = Set.of(
+            "href", "tags", "personal_toolbar_folder", "unfiled_bookmarks_folder");
+
+    @Override
+    public void parse(Reader reader, Consumer<Bookmark> consumer) throws IOException {
+        new Scanner(reader instanceof BufferedReader ? reader : new BufferedReader(reader), consumer).run();
+    }
+
+    private static final class Scanner {
+        private final Reader in;
+        private final Consumer<Bookmark> consumer;
+        private final Deque<String> folders = new ArrayDeque<>();
+        private final StringBuilder text = new StringBuilder();
+        private final Map<String, String> attributes = new HashMap<>();
+        private int pushedBack = -2;
+        private boolean capturing;
+        private boolean specialFolder;
+        private String pendingFolder;
+        private String href;
+        private String tagsAttribute;
+
+        private Scanner(Reader in, Consumer<Bookmark> consumer) {
+            this.in = in;
+            this.consumer = consumer;
+        }
+
+        private void run() throws IOException {
+            int c;
+            while ((c = read()) != -1) {
+                if (c == '<') {
+                    readTag();
+                } else if (capturing && text.length() < MAX_TEXT_LENGTH) {
+                    text.append((char) c);
+                }
+            }
+        }
+
+        private void readTag() throws IOException {
+            int c = read();
+            if (c == '!' || c == '?') {
+                skipTo('>');
+                return;
+            }
+            boolean closing = c == '/';
+            if (closing) {
+                c = read();
+            }
+            StringBuilder name = new StringBuilder();
+            while (Character.isLetterOrDigit(c) && name.length() < MAX_TAG_NAME_LENGTH) {
+                name.append(Character.toLowerCase((char) c));
+                c = read();
+            }
+            unread(c);
+            attributes.clear();
+            readAttributes();
+            onTag(name.toString(), closing);
+        }
+
+        private void readAttributes() throws IOException {
+            while (true) {
+                int c = skipWhitespace();
+                if (c == -1 || c == '>') {
+                    return;
+                }
+                StringBuilder name = new StringBuilder();
+                while (c != -1 && c != '=' && c != '>' && !Character.isWhitespace(c)) {
+                    if (name.length() < MAX_TAG_NAME_LENGTH * 2) {
+                        name.append(Character.toLowerCase((char) c));
+                    }
+                    c = read();
+                }
+                if (Character.isWhitespace(c)) {
+                    c = skipWhitespace();
+                }
+                if (c != '=') {
+                    unread(c);
+                    attributes.put(name.toString(), "");
+                    continue;
+                }
+                String attribute = name.toString();
+                String value = readValue(ATTRIBUTES.contains(attribute));
+                if (value != null) {
+                    attributes.put(attribute, value);
+                }
+            }
+        }
+
+        /**
+         * Reads a quoted or bare attribute value; the value is only buffered when it is needed.
+         */
+        private String readValue(boolean keep) throws IOException {
+            StringBuilder value = keep ? new StringBuilder() : null;
+            int c = skipWhitespace();
+            int quote = c == '"' || c == '\'' ? c : -1;
+            if (quote == -1) {
+                unread(c);
+            }
+            while ((c = read()) != -1) {
+                if (quote == -1 ? Character.isWhitespace(c) || c == '>' : c == quote) {
+                    if (quote == -1) {
+                        unread(c);
+                    }
+                    break;
+                }
+                if (value != null && value.length() < MAX_ATTRIBUTE_LENGTH) {
+                    value.append((char) c);
+                }
+            }
+            return value == null ? null : Parser.unescapeEntities(value.toString(), true);
+        }
+
+        private void onTag(String name, boolean closing) {
+            switch (name) {
+                case "h3":
+                    if (closing) {
+                        pendingFolder = specialFolder ? "" : collectText();
+                    } else {
+                        specialFolder = attributes.containsKey("personal_toolbar_folder")
+                                || attributes.containsKey("unfiled_bookmarks_folder");
+                        startText();
+                    }
+                    break;
+                case "dl":
+                    if (closing) {
+                        folders.pollLast();
+                    } else {
+                        folders.addLast(pendingFolder == null ? "" : pendingFolder);
+                        pendingFolder = null;
+                    }
+                    break;
+                case "a":
+                    if (closing) {
+                        String title = collectText();
+                        if (href != null) {
+                            emit(title);
+                        }
+                        href = null;
+                    } else {
+                        href = attributes.get("href");
+                        tagsAttribute = attributes.get("tags");
+                        startText();
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        private void emit(String title) {
+            String url = href.trim();
+            if (url.isEmpty()) {
+                return;
+            }
+            Set<String> tags = new LinkedHashSet<>();
+            folders.forEach(folder -> BookmarkParser.addTag(tags, folder));
+            if (tagsAttribute != null) {
+                for (String tag : tagsAttribute.split(",")) {
+                    BookmarkParser.addTag(tags, tag);
+                }
+            }
+            consumer.accept(new Bookmark(url, title.isEmpty() ? null : title, tags));
+        }
+
+        private void startText() {
+            text.setLength(0);
+            capturing = true;
+        }
+
+        private String collectText() {
+            capturing = false;
+            String collected = Parser.unescapeEntities(text.toString(), false).replaceAll("\\s+", " ").trim();
+            text.setLength(0);
+            return collected;
+        }
+
+        private int skipWhitespace() throws IOException {
+            int c = read();
+            while (c != -1 && Character.isWhitespace(c)) {
+                c = read();
+            }
+            return c;
+        }
+
+        private void skipTo(int end) throws IOException {
+            int c = read();
+            while (c != -1 && c != end) {
+                c = read();
+            }
+        }
+
+        private int read() throws IOException {
+            if (pushedBack != -2) {
+                int c = pushedBack;
+                pushedBack = -2;
+                return c;
+            }
+            return in.read();
+        }
+
+        private void unread(int c) {
+            pushedBack = c;
+        }
+    }
+}
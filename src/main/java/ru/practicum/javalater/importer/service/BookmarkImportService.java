@@ -0,0 +1,11 @@
+package ru.practicum.javalater.importer.service;
+
+import org.springframework.web.multipart.MultipartFile;
+import ru.practicum.javalater.importer.dto.ImportJobDto;
+
+public interface BookmarkImportService {
+
+    ImportJobDto startImport(long userId, MultipartFile file, String format);
+
+    ImportJobDto getImport(long userId, long importId);
+}
@@ -0,0 +1,292 @@
+package ru.practicum.javalater.importer.service;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+import ru.practicum.javalater.importer.dto.ImportFormat;
+import ru.practicum.javalater.importer.dto.ImportJobDto;
+import ru.practicum.javalater.importer.parser.Bookmark;
+import ru.practicum.javalater.importer.parser.BookmarkParser;
+import ru.practicum.javalater.importer.parser.CsvBookmarkParser;
+import ru.practicum.javalater.importer.parser.NetscapeBookmarkParser;
+import ru.practicum.javalater.item.dto.ResolutionState;
+import ru.practicum.javalater.item.entity.Item;
+import ru.practicum.javalater.item.metadata.UrlMetadataRetriever;
+import ru.practicum.javalater.item.metadata.UrlNormalizer;
+import ru.practicum.javalater.item.repository.ItemJdbcRepository;
+import ru.practicum.javalater.item.service.ItemIndex;
+import ru.practicum.javalater.item.service.ItemMetadataUpdater;
+import ru.practicum.javalater.user.repository.UserRepository;
+
+import javax.annotation.PreDestroy;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Imports bookmark exports in two stages. The first stage streams the uploaded file through a
+ * {@link BookmarkParser}, folds duplicates of a chunk together, checks the chunk against the user's saved
+ * and resolved URLs with one query and writes it with JDBC batches as {@link ResolutionState#PENDING}
+ * items, so memory use does not depend on the size of the file. The second stage walks the inserted items
+ * by id and resolves their metadata with at most {@code importer.resolution.parallelism} fetches in flight.
+ */
+@Service
+@Slf4j
+public class BookmarkImportServiceImpl implements BookmarkImportService {
+
+    private static final int MAX_URL_LENGTH = 1000;
+
+    private static final int MAX_TITLE_LENGTH = 1000;
+
+    private final UserRepository userRepository;
+    private final ItemJdbcRepository itemJdbcRepository;
+    private final UrlMetadataRetriever urlMetadataRetriever;
+    private final ItemMetadataUpdater itemMetadataUpdater;
+    private final ItemIndex itemIndex;
+    private final int chunkSize;
+    private final int resolutionParallelism;
+    private final ExecutorService executor;
+    private final Cache<Long, ImportJob> jobs;
+    private final AtomicLong ids = new AtomicLong();
+
+    public BookmarkImportServiceImpl(UserRepository userRepository,
+                                     ItemJdbcRepository itemJdbcRepository,
+                                     UrlMetadataRetriever urlMetadataRetriever,
+                                     ItemMetadataUpdater itemMetadataUpdater,
+                                     ItemIndex itemIndex,
+                                     @Value("${importer.chunk-size:500}") int chunkSize,
+                                     @Value("${importer.resolution.parallelism:8}") int resolutionParallelism,
+                                     @Value("${importer.threads:2}") int threads,
+                                     @Value("${importer.retention-hours:24}") long retentionHours) {
+        this.userRepository = userRepository;
+        this.itemJdbcRepository = itemJdbcRepository;
+        this.urlMetadataRetriever = urlMetadataRetriever;
+        this.itemMetadataUpdater = itemMetadataUpdater;
+        this.itemIndex = itemIndex;
+        this.chunkSize = chunkSize;
+        this.resolutionParallelism = resolutionParallelism;
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "bookmark-import-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.jobs = CacheBuilder.newBuilder()
+                .expireAfterWrite(Duration.ofHours(retentionHours))
+                .build();
+    }
+
+    @Override
+    public ImportJobDto startImport(long userId, MultipartFile file, String format) {
+        userRepository.findById(userId)
+                .orElseThrow(() -> new NoSuchElementException("Пользователь с id '" + userId + "' не найден."));
+        ImportFormat importFormat = ImportFormat.of(format, file.getOriginalFilename());
+        Path upload;
+        try {
+            upload = Files.createTempFile("bookmarks-", ".import");
+            file.transferTo(upload);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось сохранить загруженный файл.", e);
+        }
+        ImportJob job = new ImportJob(ids.incrementAndGet(), userId, importFormat);
+        jobs.put(job.id, job);
+        log.info("Пользователь с id '{}' начал импорт закладок с id '{}' в формате {}.", userId, job.id, importFormat);
+        executor.execute(() -> run(job, upload));
+        return job.toDto();
+    }
+
+    @Override
+    public ImportJobDto getImport(long userId, long importId) {
+        ImportJob job = jobs.getIfPresent(importId);
+        if (job == null || job.userId != userId) {
+            throw new NoSuchElementException("Импорт с id '" + importId + "' не найден.");
+        }
+        return job.toDto();
+    }
+
+    /**
+     * Parses and writes the file, then resolves whatever it inserted. The items written before a failure are
+     * resolved as well, so an import that stops partway does not leave them {@link ResolutionState#PENDING}.
+     */
+    private void run(ImportJob job, Path upload) {
+        String error = null;
+        try {
+            job.startParsing();
+            ChunkWriter writer = new ChunkWriter(job);
+            try (Reader reader = new BufferedReader(
+                    new InputStreamReader(Files.newInputStream(upload), StandardCharsets.UTF_8))) {
+                parserFor(job.format).parse(reader, writer::add);
+            }
+            writer.flush();
+        } catch (Exception e) {
+            log.warn("Импорт с id '{}' прерван: {}", job.id, e.getMessage());
+            error = messageOf(e);
+        } finally {
+            try {
+                Files.deleteIfExists(upload);
+            } catch (IOException e) {
+                log.warn("Не удалось удалить временный файл {}", upload);
+            }
+        }
+        try {
+            job.startResolving();
+            resolvePending(job);
+        } catch (RuntimeException e) {
+            log.warn("Импорт с id '{}': не удалось получить метаданные ссылок: {}", job.id, e.getMessage());
+            error = error == null ? messageOf(e) : error;
+        }
+        job.finish(error);
+        log.info("Импорт с id '{}' завершен: {}", job.id, job.toDto());
+    }
+
+    private static String messageOf(Exception e) {
+        return e.getMessage() == null ? e.getClass().getSimpleName() : e.getMessage();
+    }
+
+    private static BookmarkParser parserFor(ImportFormat format) {
+        switch (format) {
+            case NETSCAPE_HTML:
+                return new NetscapeBookmarkParser();
+            case CSV:
+                return new CsvBookmarkParser();
+            default:
+                throw new UnsupportedOperationException("Неизвестный формат импорта");
+        }
+    }
+
+    /**
+     * Walks the items inserted by the import in id order. The number of fetches in flight is bounded, so the
+     * walk advances only as fast as pages are resolved and no more than one page of ids is held at a time.
+     */
+    private void resolvePending(ImportJob job) {
+        if (job.lastItemId == 0) {
+            return;
+        }
+        Semaphore permits = new Semaphore(resolutionParallelism);
+        long afterId = job.firstItemId - 1;
+        List<ItemJdbcRepository.PendingItem> page;
+        do {
+            page = itemJdbcRepository.findPending(job.userId, afterId, job.lastItemId, chunkSize);
+            for (ItemJdbcRepository.PendingItem item : page) {
+                permits.acquireUninterruptibly();
+                resolve(job, item).whenComplete((ignored, e) -> permits.release());
+                afterId = item.getId();
+            }
+        } while (!page.isEmpty());
+        permits.acquireUninterruptibly(resolutionParallelism);
+    }
+
+    private CompletableFuture<Void> resolve(ImportJob job, ItemJdbcRepository.PendingItem item) {
+        CompletableFuture<UrlMetadataRetriever.UrlMetadata> metadata;
+        try {
+            metadata = urlMetadataRetriever.retrieveAsync(item.getUrl());
+        } catch (RuntimeException e) {
+            metadata = CompletableFuture.failedFuture(e);
+        }
+        return metadata.handle((result, e) -> {
+            try {
+                if (e == null) {
+                    itemMetadataUpdater.applyMetadata(item.getId(), result);
+                    job.resolved.incrementAndGet();
+                } else {
+                    itemMetadataUpdater.markFailed(item.getId(), e);
+                    job.resolutionFailed.incrementAndGet();
+                }
+            } catch (RuntimeException updateError) {
+                log.warn("Не удалось сохранить метаданные ссылки с id '{}': {}", item.getId(),
+                        updateError.getMessage());
+                job.resolutionFailed.incrementAndGet();
+            }
+            return null;
+        });
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Collects parsed bookmarks into chunks keyed by canonical URL and writes each full chunk. The items keep
+     * the normalized URL, with its path as the bookmark has it, which is what is fetched.
+     */
+    private class ChunkWriter {
+        private final ImportJob job;
+        private final Map<String, Item> chunk = new LinkedHashMap<>();
+
+        ChunkWriter(ImportJob job) {
+            this.job = job;
+        }
+
+        void add(Bookmark bookmark) {
+            job.parsed.incrementAndGet();
+            String url = UrlNormalizer.normalize(bookmark.getUrl());
+            if (!isWebUrl(url)) {
+                job.skipped.incrementAndGet();
+                return;
+            }
+            String key = UrlNormalizer.canonicalize(url);
+            Item item = chunk.get(key);
+            if (item != null) {
+                item.getTags().addAll(bookmark.getTags());
+                job.duplicates.incrementAndGet();
+                return;
+            }
+            item = new Item();
+            item.setUrl(url);
+            item.setTitle(bookmark.getTitle() == null || bookmark.getTitle().length() <= MAX_TITLE_LENGTH
+                    ? bookmark.getTitle() : bookmark.getTitle().substring(0, MAX_TITLE_LENGTH));
+            item.setTags(new LinkedHashSet<>(bookmark.getTags()));
+            item.setUnread(true);
+            item.setResolutionState(ResolutionState.PENDING);
+            chunk.put(key, item);
+            if (chunk.size() >= chunkSize) {
+                flush();
+            }
+        }
+
+        void flush() {
+            if (chunk.isEmpty()) {
+                return;
+            }
+            itemJdbcRepository.savePending(job.userId, chunk.values()).values().forEach(saved -> {
+                if (saved.isCreated()) {
+                    job.itemInserted(saved.getId());
+                } else {
+                    job.duplicates.incrementAndGet();
+                }
+            });
+            itemIndex.evict(job.userId);
+            chunk.clear();
+        }
+
+        private boolean isWebUrl(String url) {
+            if (url == null || url.length() > MAX_URL_LENGTH) {
+                return false;
+            }
+            String lowerCase = url.toLowerCase(Locale.ROOT);
+            return lowerCase.startsWith("http://") || lowerCase.startsWith("https://");
+        }
+    }
+}
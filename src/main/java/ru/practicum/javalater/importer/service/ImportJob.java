@@ -0,0 +1,95 @@
+package ru.practicum.javalater.importer.service;
+
+import ru.practicum.javalater.importer.dto.ImportFormat;
+import ru.practicum.javalater.importer.dto.ImportJobDto;
+import ru.practicum.javalater.importer.dto.ImportState;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Progress of one import. Counters are updated by the import worker and the resolution callbacks and may be
+ * read at any time.
+ */
+class ImportJob {
+
+    final long id;
+    final long userId;
+    final ImportFormat format;
+    final Instant startedAt = Instant.now();
+    final AtomicLong parsed = new AtomicLong();
+    final AtomicLong skipped = new AtomicLong();
+    final AtomicLong duplicates = new AtomicLong();
+    final AtomicLong inserted = new AtomicLong();
+    final AtomicLong resolved = new AtomicLong();
+    final AtomicLong resolutionFailed = new AtomicLong();
+
+    private volatile ImportState state = ImportState.QUEUED;
+    private volatile Instant resolvingSince;
+    private volatile Instant finishedAt;
+    private volatile String error;
+
+    /**
+     * Range of the item ids inserted by this import; only touched by the import worker.
+     */
+    long firstItemId = Long.MAX_VALUE;
+    long lastItemId;
+
+    ImportJob(long id, long userId, ImportFormat format) {
+        this.id = id;
+        this.userId = userId;
+        this.format = format;
+    }
+
+    void startParsing() {
+        state = ImportState.PARSING;
+    }
+
+    void startResolving() {
+        resolvingSince = Instant.now();
+        state = ImportState.RESOLVING;
+    }
+
+    void finish(String error) {
+        this.error = error;
+        finishedAt = Instant.now();
+        state = error == null ? ImportState.DONE : ImportState.FAILED;
+    }
+
+    void itemInserted(long itemId) {
+        inserted.incrementAndGet();
+        firstItemId = Math.min(firstItemId, itemId);
+        lastItemId = Math.max(lastItemId, itemId);
+    }
+
+    ImportJobDto toDto() {
+        Instant now = Instant.now();
+        Instant parsingEnd = resolvingSince != null ? resolvingSince : finishedAt != null ? finishedAt : now;
+        double resolvedPerSecond = resolvingSince == null ? 0
+                : perSecond(resolved.get() + resolutionFailed.get(), resolvingSince,
+                finishedAt != null ? finishedAt : now);
+        return ImportJobDto.builder()
+                .id(id)
+                .userId(userId)
+                .format(format)
+                .state(state)
+                .parsed(parsed.get())
+                .skipped(skipped.get())
+                .duplicates(duplicates.get())
+                .inserted(inserted.get())
+                .resolved(resolved.get())
+                .resolutionFailed(resolutionFailed.get())
+                .parsedPerSecond(perSecond(parsed.get(), startedAt, parsingEnd))
+                .resolvedPerSecond(resolvedPerSecond)
+                .startedAt(startedAt)
+                .finishedAt(finishedAt)
+                .error(error)
+                .build();
+    }
+
+    private static double perSecond(long count, Instant from, Instant to) {
+        long millis = Math.max(Duration.between(from, to).toMillis(), 1);
+        return count * 1000.0 / millis;
+    }
+}
@@ -1,11 +1,17 @@
 package ru.practicum.javalater.item;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import ru.practicum.javalater.item.dto.BatchItemResult;
 import ru.practicum.javalater.item.dto.GetItemRequest;
 import ru.practicum.javalater.item.dto.ItemDto;
+import ru.practicum.javalater.item.dto.ItemFacets;
+import ru.practicum.javalater.item.dto.ItemPage;
 import ru.practicum.javalater.item.dto.ModifyItemRequest;
 import ru.practicum.javalater.item.dto.PostItemDto;
+import ru.practicum.javalater.item.service.ItemBatchService;
 import ru.practicum.javalater.item.service.ItemService;
 
 import java.util.List;
@@ -16,32 +22,66 @@ import java.util.Set;
 @RequiredArgsConstructor
 public class ItemController {
 
+    public static final String NEXT_CURSOR_HEADER = "X-Later-Next-Cursor";
+
     private final ItemService itemService;
 
+    private final ItemBatchService itemBatchService;
+
     @PostMapping
     public ItemDto add(@RequestHeader("X-Later-User-Id") Long userId, @RequestBody PostItemDto itemDto) {
         return itemService.addNewItem(userId, itemDto);
     }
 
+    @PostMapping(params = "async=true")
+    @ResponseStatus(HttpStatus.ACCEPTED)
+    public ItemDto addAsync(@RequestHeader("X-Later-User-Id") Long userId, @RequestBody PostItemDto itemDto) {
+        return itemService.addNewItemAsync(userId, itemDto);
+    }
+
+    @PostMapping("/batch")
+    public List<BatchItemResult> addBatch(@RequestHeader("X-Later-User-Id") Long userId,
+                                          @RequestBody List<PostItemDto> items) {
+        return itemBatchService.addNewItems(userId, items);
+    }
+
     @DeleteMapping("/{itemId}")
     public void deleteItem(@RequestHeader("X-Later-User-Id") long userId, @PathVariable long itemId) {
         itemService.deleteItem(userId, itemId);
     }
 
     @GetMapping("/find")
-    public List<ItemDto> findByUserIdAndTags(@RequestHeader("X-Later-User-Id") long userId, @RequestParam Set<String> tags) {
-        return itemService.findByUserIdAndTags(userId, tags);
+    public ResponseEntity<List<ItemDto>> findByUserIdAndTags(@RequestHeader("X-Later-User-Id") long userId,
+                                                             @RequestParam Set<String> tags,
+                                                             @RequestParam(defaultValue = "any") String tagMode,
+                                                             @RequestParam(defaultValue = "100") int limit,
+                                                             @RequestParam(required = false) String cursor) {
+        return toResponse(itemService.findByUserIdAndTags(userId, tags, tagMode, limit, cursor));
     }
 
     @GetMapping
-    public List<ItemDto> get(@RequestHeader("X-Later-User-Id") long userId,
-                             @RequestParam(defaultValue = "unread") String state,
-                             @RequestParam(defaultValue = "all") String contentType,
-                             @RequestParam(defaultValue = "newest") String sort,
-                             @RequestParam(defaultValue = "10") int limit,
-                             @RequestParam(required = false) List<String> tags) {
+    public ResponseEntity<List<ItemDto>> get(@RequestHeader("X-Later-User-Id") long userId,
+                                             @RequestParam(defaultValue = "unread") String state,
+                                             @RequestParam(defaultValue = "all") String contentType,
+                                             @RequestParam(defaultValue = "newest") String sort,
+                                             @RequestParam(defaultValue = "10") int limit,
+                                             @RequestParam(required = false) List<String> tags,
+                                             @RequestParam(defaultValue = "any") String tagMode,
+                                             @RequestParam(required = false) String cursor) {
+
+        return toResponse(itemService.searchItems(
+                GetItemRequest.of(userId, state, contentType, sort, limit, tags, tagMode, cursor)));
+    }
 
-        return itemService.searchItems(GetItemRequest.of(userId, state, contentType, sort, limit, tags));
+    @GetMapping("/facets")
+    public ItemFacets getFacets(@RequestHeader("X-Later-User-Id") long userId,
+                                @RequestParam(defaultValue = "unread") String state,
+                                @RequestParam(defaultValue = "all") String contentType,
+                                @RequestParam(defaultValue = "10") int limit,
+                                @RequestParam(required = false) List<String> tags,
+                                @RequestParam(defaultValue = "any") String tagMode) {
+        return itemService.getFacets(
+                GetItemRequest.of(userId, state, contentType, "newest", limit, tags, tagMode, null));
     }
 
     @PatchMapping
@@ -49,4 +89,16 @@ public class ItemController {
                               @RequestBody ModifyItemRequest request) {
         return itemService.modifyItem(userId, request);
     }
+
+    /**
+     * The page goes in the body as a plain list; the cursor of the next page, if any, in the
+     * {@value #NEXT_CURSOR_HEADER} header.
+     */
+    private static ResponseEntity<List<ItemDto>> toResponse(ItemPage page) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.getNextCursor() != null) {
+            response.header(NEXT_CURSOR_HEADER, page.getNextCursor());
+        }
+        return response.body(page.getItems());
+    }
 }
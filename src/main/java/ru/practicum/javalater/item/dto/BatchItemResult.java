@@ -0,0 +1,27 @@
+package ru.practicum.javalater.item.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class BatchItemResult {
+
+    private String url;
+
+    private Status status;
+
+    private Long itemId;
+
+    private String error;
+
+    public static BatchItemResult failed(String url, String error) {
+        return new BatchItemResult(url, Status.FAILED, null, error);
+    }
+
+    public enum Status {
+        CREATED, MERGED, FAILED
+    }
+}
@@ -0,0 +1,15 @@
+package ru.practicum.javalater.item.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class FacetCount {
+
+    private String value;
+
+    private long count;
+}
@@ -21,16 +21,41 @@ public class GetItemRequest {
 
     private List<String> tags;
 
+    private TagMode tagMode;
+
     private Sort sort;
 
     private Integer limit;
 
+    private String cursor;
+
     public static GetItemRequest of(long userId,
                                     String state,
                                     String contentType,
                                     String sort,
                                     int limit,
                                     List<String> tags) {
+        return of(userId, state, contentType, sort, limit, tags, null);
+    }
+
+    public static GetItemRequest of(long userId,
+                                    String state,
+                                    String contentType,
+                                    String sort,
+                                    int limit,
+                                    List<String> tags,
+                                    String cursor) {
+        return of(userId, state, contentType, sort, limit, tags, "any", cursor);
+    }
+
+    public static GetItemRequest of(long userId,
+                                    String state,
+                                    String contentType,
+                                    String sort,
+                                    int limit,
+                                    List<String> tags,
+                                    String tagMode,
+                                    String cursor) {
         GetItemRequest request = new GetItemRequest();
         request.setUserId(userId);
         request.setLimit(limit);
@@ -40,6 +65,8 @@ public class GetItemRequest {
         if(tags != null) {
             request.setTags(tags);
         }
+        request.setTagMode(TagMode.valueOf(tagMode.toUpperCase()));
+        request.setCursor(cursor);
         return request;
     }
 
@@ -47,6 +74,10 @@ public class GetItemRequest {
         return tags != null && !tags.isEmpty();
     }
 
+    public boolean matchesAllTags() {
+        return tagMode == TagMode.ALL;
+    }
+
     public enum State {
         ALL, UNREAD, READ
     }
@@ -55,6 +86,10 @@ public class GetItemRequest {
         ALL, ARTICLE, IMAGE, VIDEO
     }
 
+    public enum TagMode {
+        ANY, ALL
+    }
+
     public enum Sort {
         NEWEST, OLDEST, TITLE
     }
@@ -33,4 +33,6 @@ public class ItemDto {
     private Instant dateResolved;
 
     private boolean unread;
+
+    private ResolutionState resolutionState;
 }
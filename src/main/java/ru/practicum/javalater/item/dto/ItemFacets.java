@@ -0,0 +1,27 @@
+package ru.practicum.javalater.item.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Item counts per filter value for the filters of a list request. A state is counted over the items passing
+ * every other filter, so that the counts tell what choosing another state would list; likewise for the content
+ * type. Tags and domains are counted over the items the request lists, most frequent first, at most
+ * {@code limit} of each.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ItemFacets {
+
+    private List<FacetCount> states;
+
+    private List<FacetCount> contentTypes;
+
+    private List<FacetCount> tags;
+
+    private List<FacetCount> domains;
+}
@@ -0,0 +1,21 @@
+package ru.practicum.javalater.item.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * One page of items in the requested order. {@code nextCursor} is the opaque position after the last item, or
+ * {@code null} when there are no more items.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ItemPage {
+
+    private List<ItemDto> items;
+
+    private String nextCursor;
+}
@@ -0,0 +1,7 @@
+package ru.practicum.javalater.item.dto;
+
+public enum ResolutionState {
+    PENDING,
+    RESOLVED,
+    FAILED
+}
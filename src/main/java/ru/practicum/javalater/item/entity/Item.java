@@ -1,6 +1,8 @@
 package ru.practicum.javalater.item.entity;
 
 import lombok.*;
+import ru.practicum.javalater.item.dto.ResolutionState;
+import ru.practicum.javalater.item.metadata.UrlNormalizer;
 import ru.practicum.javalater.user.entity.User;
 
 import javax.persistence.*;
@@ -23,8 +25,9 @@ public class Item {
     private Long id;
 
     @ElementCollection
-    @CollectionTable(name = "tags", joinColumns = @JoinColumn(name = "item_id"))
-    @Column(name = "name")
+    @CollectionTable(name = "item_tags", joinColumns = @JoinColumn(name = "item_id"))
+    @Column(name = "tag_id")
+    @Convert(converter = TagConverter.class)
     private Set<String> tags = new HashSet<>();
 
     @ManyToOne(fetch = FetchType.LAZY)
@@ -52,4 +55,50 @@ public class Item {
     private Instant dateResolved;
 
     private boolean unread = true;
+
+    private String etag;
+
+    @Column(name = "last_modified")
+    private String lastModified;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "resolution_state")
+    private ResolutionState resolutionState;
+
+    /**
+     * Dedupe key: the hash of the resolved URL, or of the saved URL while the item is not resolved yet.
+     */
+    @Column(name = "url_hash")
+    private Long urlHash;
+
+    /**
+     * Conflict key of resolved items: the canonical form of the resolved URL, unique per user.
+     */
+    @Column(name = "canonical_url")
+    private String canonicalUrl;
+
+    /**
+     * Host the item comes from, counted by the domain facet; taken from the same URL as the hash.
+     */
+    private String domain;
+
+    public static Long urlHash(String url, String resolvedUrl) {
+        return UrlNormalizer.hash(resolvedUrl != null ? resolvedUrl : url);
+    }
+
+    public static String canonicalUrl(String resolvedUrl) {
+        return UrlNormalizer.canonicalize(resolvedUrl);
+    }
+
+    public static String domain(String url, String resolvedUrl) {
+        return UrlNormalizer.domain(resolvedUrl != null ? resolvedUrl : url);
+    }
+
+    @PrePersist
+    @PreUpdate
+    void updateUrlKeys() {
+        urlHash = urlHash(url, resolvedUrl);
+        canonicalUrl = canonicalUrl(resolvedUrl);
+        domain = domain(url, resolvedUrl);
+    }
 }
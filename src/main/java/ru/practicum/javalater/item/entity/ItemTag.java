@@ -0,0 +1,39 @@
+package ru.practicum.javalater.item.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Immutable;
+
+import javax.persistence.*;
+import java.io.Serializable;
+
+/**
+ * Read-only view of the links between items and tag ids, for queries that filter or count by tag without
+ * going through tag names. Links are written through {@link Item#getTags()}.
+ */
+@Entity
+@Immutable
+@Table(name = "item_tags")
+@IdClass(ItemTag.Key.class)
+@Getter
+@NoArgsConstructor
+public class ItemTag {
+
+    @Id
+    @Column(name = "item_id")
+    private Long itemId;
+
+    @Id
+    @Column(name = "tag_id")
+    private Integer tagId;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private Long itemId;
+        private Integer tagId;
+    }
+}
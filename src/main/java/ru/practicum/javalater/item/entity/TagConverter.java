@@ -0,0 +1,30 @@
+package ru.practicum.javalater.item.entity;
+
+import ru.practicum.javalater.item.repository.TagDictionary;
+
+import javax.persistence.AttributeConverter;
+import javax.persistence.Converter;
+
+/**
+ * Stores tag names as their {@link TagDictionary} ids. Hibernate creates it through the Spring bean container,
+ * which injects the dictionary.
+ */
+@Converter
+public class TagConverter implements AttributeConverter<String, Integer> {
+
+    private final TagDictionary tagDictionary;
+
+    public TagConverter(TagDictionary tagDictionary) {
+        this.tagDictionary = tagDictionary;
+    }
+
+    @Override
+    public Integer convertToDatabaseColumn(String name) {
+        return name == null ? null : tagDictionary.idOf(name);
+    }
+
+    @Override
+    public String convertToEntityAttribute(Integer id) {
+        return id == null ? null : tagDictionary.nameOf(id);
+    }
+}
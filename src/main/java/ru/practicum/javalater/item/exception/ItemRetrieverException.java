@@ -1,11 +1,28 @@
 package ru.practicum.javalater.item.exception;
 
 public class ItemRetrieverException extends RuntimeException {
+
+    private final int status;
+
     public ItemRetrieverException(String message, Throwable cause) {
         super(message, cause);
+        this.status = 0;
     }
 
     public ItemRetrieverException(String message) {
         super(message);
+        this.status = 0;
+    }
+
+    public ItemRetrieverException(String message, int status) {
+        super(message);
+        this.status = status;
+    }
+
+    /**
+     * The HTTP status that caused the failure, or {@code 0} if the failure did not come from a response.
+     */
+    public int getStatus() {
+        return status;
     }
 }
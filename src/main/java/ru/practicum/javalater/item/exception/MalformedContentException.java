@@ -0,0 +1,15 @@
+package ru.practicum.javalater.item.exception;
+
+/**
+ * A response body that cannot be decoded, such as a corrupt gzip or deflate stream. The host answered, so the
+ * failure does not count against its circuit breaker and is not retried.
+ */
+public class MalformedContentException extends ItemRetrieverException {
+    public MalformedContentException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+    public MalformedContentException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,20 @@
+package ru.practicum.javalater.item.exception;
+
+/**
+ * A failure caused by the state of the host or of this service rather than by the URL itself: connection
+ * errors, timeouts, 5xx responses, an open circuit breaker or a full request queue. Such failures are not
+ * remembered per URL.
+ */
+public class TransientRetrieverException extends ItemRetrieverException {
+    public TransientRetrieverException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+    public TransientRetrieverException(String message) {
+        super(message);
+    }
+
+    public TransientRetrieverException(String message, int status) {
+        super(message, status);
+    }
+}
@@ -0,0 +1,11 @@
+package ru.practicum.javalater.item.exception;
+
+public class UnsupportedContentTypeException extends ItemRetrieverException {
+    public UnsupportedContentTypeException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+    public UnsupportedContentTypeException(String message) {
+        super(message);
+    }
+}
@@ -14,8 +14,29 @@ public interface ItemMapper {
     @Mapping(source = "user.id", target = "userId")
     ItemDto toDto(Item item);
 
+    @Mapping(target = "user", ignore = true)
+    @Mapping(target = "etag", ignore = true)
+    @Mapping(target = "lastModified", ignore = true)
+    @Mapping(target = "urlHash", ignore = true)
+    @Mapping(target = "canonicalUrl", ignore = true)
+    @Mapping(target = "domain", ignore = true)
     Item toModel(ItemDto itemDto);
 
+    @Mapping(target = "id", ignore = true)
+    @Mapping(target = "user", ignore = true)
+    @Mapping(target = "resolvedUrl", ignore = true)
+    @Mapping(target = "mimeType", ignore = true)
+    @Mapping(target = "title", ignore = true)
+    @Mapping(target = "hasImage", ignore = true)
+    @Mapping(target = "hasVideo", ignore = true)
+    @Mapping(target = "dateResolved", ignore = true)
+    @Mapping(target = "unread", ignore = true)
+    @Mapping(target = "etag", ignore = true)
+    @Mapping(target = "lastModified", ignore = true)
+    @Mapping(target = "resolutionState", ignore = true)
+    @Mapping(target = "urlHash", ignore = true)
+    @Mapping(target = "canonicalUrl", ignore = true)
+    @Mapping(target = "domain", ignore = true)
     Item toModel(PostItemDto itemDto);
 
     List<ItemDto> toDtoList(List<Item> items);
@@ -0,0 +1,79 @@
+package ru.practicum.javalater.item.metadata;
+
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Lets a body transfer be aborted from outside the HTTP client: {@link #abort()} cancels the subscription, which
+ * makes the client drop the connection, and fails the body with a {@link CancellationException}. Cancelling the
+ * future of {@code HttpClient.sendAsync} does the same only from Java 16 on. An abort that comes before the body
+ * starts takes effect as soon as it does; one that comes after the body is complete has no effect.
+ */
+class AbortableSubscriber<T> implements HttpResponse.BodySubscriber<T> {
+
+    private final HttpResponse.BodySubscriber<T> delegate;
+
+    private final AtomicBoolean finished = new AtomicBoolean();
+
+    private volatile Flow.Subscription subscription;
+
+    private volatile boolean aborted;
+
+    AbortableSubscriber(HttpResponse.BodySubscriber<T> delegate) {
+        this.delegate = delegate;
+    }
+
+    void abort() {
+        aborted = true;
+        if (subscription != null) {
+            cancel();
+        }
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        delegate.onSubscribe(subscription);
+        this.subscription = subscription;
+        if (aborted) {
+            cancel();
+        }
+    }
+
+    @Override
+    public void onNext(List<ByteBuffer> item) {
+        if (!finished.get()) {
+            delegate.onNext(item);
+        }
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        if (finished.compareAndSet(false, true)) {
+            delegate.onError(throwable);
+        }
+    }
+
+    @Override
+    public void onComplete() {
+        if (finished.compareAndSet(false, true)) {
+            delegate.onComplete();
+        }
+    }
+
+    @Override
+    public CompletionStage<T> getBody() {
+        return delegate.getBody();
+    }
+
+    private void cancel() {
+        if (finished.compareAndSet(false, true)) {
+            subscription.cancel();
+            delegate.onError(new CancellationException("The body transfer was aborted"));
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package ru.practicum.javalater.item.metadata;
+
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+
+/**
+ * Cancels the body transfer as soon as it starts; used when the response headers alone are enough.
+ */
+class AbortingSubscriber<T> implements HttpResponse.BodySubscriber<T> {
+
+    private final CompletableFuture<T> result = new CompletableFuture<>();
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        subscription.cancel();
+        result.complete(null);
+    }
+
+    @Override
+    public void onNext(List<ByteBuffer> item) {
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        result.complete(null);
+    }
+
+    @Override
+    public void onComplete() {
+        result.complete(null);
+    }
+
+    @Override
+    public CompletionStage<T> getBody() {
+        return result;
+    }
+}
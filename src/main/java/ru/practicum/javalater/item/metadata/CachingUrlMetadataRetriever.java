@@ -0,0 +1,138 @@
+package ru.practicum.javalater.item.metadata;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.GuavaCacheMetrics;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Component;
+import ru.practicum.javalater.item.exception.ItemRetrieverException;
+import ru.practicum.javalater.item.exception.TransientRetrieverException;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Shared in-memory cache in front of {@link UrlMetadataRetrieverImpl}. Successful lookups are stored under
+ * both the normalized requested URL and the normalized resolved URL; failures of the URL itself, such as 4xx
+ * responses or unsupported content, are remembered for a shorter period so that dead links are not re-fetched
+ * on every save. {@link TransientRetrieverException}s are left to the host circuit breaker. Concurrent misses
+ * for the same normalized URL share one upstream fetch.
+ */
+@Component
+@Primary
+public class CachingUrlMetadataRetriever implements UrlMetadataRetriever {
+
+    private final UrlMetadataRetriever delegate;
+
+    private final Cache<String, UrlMetadata> metadataCache;
+
+    private final Cache<String, ItemRetrieverException> failureCache;
+
+    private final InFlightRequestCoalescer<UrlMetadata> coalescer;
+
+    CachingUrlMetadataRetriever(@Qualifier("urlMetadataRetrieverImpl") UrlMetadataRetriever delegate,
+                                MeterRegistry meterRegistry,
+                                @Value("${url-metadata-retriever.cache.ttl-sec:3600}") long ttl,
+                                @Value("${url-metadata-retriever.cache.max-weight:16777216}") long maxWeight,
+                                @Value("${url-metadata-retriever.cache.negative-ttl-sec:60}") long negativeTtl,
+                                @Value("${url-metadata-retriever.cache.negative-max-size:10000}") long negativeMaxSize,
+                                @Value("${url-metadata-retriever.coalescing.max-in-flight:10000}") int maxInFlight) {
+        this.delegate = delegate;
+        this.coalescer = new InFlightRequestCoalescer<>(maxInFlight);
+        this.metadataCache = CacheBuilder.newBuilder()
+                .expireAfterWrite(Duration.ofSeconds(ttl))
+                .maximumWeight(maxWeight)
+                .weigher(CachingUrlMetadataRetriever::weigh)
+                .recordStats()
+                .build();
+        this.failureCache = CacheBuilder.newBuilder()
+                .expireAfterWrite(Duration.ofSeconds(negativeTtl))
+                .maximumSize(negativeMaxSize)
+                .recordStats()
+                .build();
+        GuavaCacheMetrics.monitor(meterRegistry, metadataCache, "url.metadata");
+        GuavaCacheMetrics.monitor(meterRegistry, failureCache, "url.metadata.failures");
+    }
+
+    @Override
+    public UrlMetadata retrieve(String urlString) {
+        return RetrieverFutures.await(retrieveAsync(urlString), urlString);
+    }
+
+    @Override
+    public CompletableFuture<UrlMetadata> retrieveAsync(String urlString) {
+        String key = UrlNormalizer.normalize(urlString);
+        try {
+            UrlMetadata cached = lookup(key);
+            if (cached != null) {
+                return CompletableFuture.completedFuture(cached);
+            }
+        } catch (ItemRetrieverException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return coalescer.execute(key, () -> delegate.retrieveAsync(urlString)
+                .whenComplete((metadata, e) -> {
+                    if (e == null) {
+                        store(key, metadata);
+                    } else if (RetrieverFutures.unwrap(e) instanceof ItemRetrieverException
+                            && !(RetrieverFutures.unwrap(e) instanceof TransientRetrieverException)) {
+                        failureCache.put(key, (ItemRetrieverException) RetrieverFutures.unwrap(e));
+                    }
+                }));
+    }
+
+    /**
+     * Always goes to the origin; metadata that turned out to have changed replaces the cached entry.
+     */
+    @Override
+    public CompletableFuture<Optional<UrlMetadata>> revalidateAsync(String urlString, String etag,
+                                                                    String lastModified) {
+        return delegate.revalidateAsync(urlString, etag, lastModified)
+                .whenComplete((metadata, e) -> {
+                    if (e == null && metadata.isPresent()) {
+                        store(UrlNormalizer.normalize(urlString), metadata.get());
+                    }
+                });
+    }
+
+    /**
+     * Returns the cached metadata for the key, {@code null} on a miss, or rethrows a remembered failure.
+     */
+    private UrlMetadata lookup(String key) {
+        UrlMetadata cached = metadataCache.getIfPresent(key);
+        if (cached != null) {
+            return cached;
+        }
+        ItemRetrieverException failure = failureCache.getIfPresent(key);
+        if (failure != null) {
+            throw failure;
+        }
+        return null;
+    }
+
+    private void store(String key, UrlMetadata metadata) {
+        metadataCache.put(key, metadata);
+        String resolvedKey = UrlNormalizer.normalize(metadata.getResolvedUrl());
+        if (resolvedKey != null && !resolvedKey.equals(key)) {
+            metadataCache.put(resolvedKey, metadata);
+        }
+    }
+
+    private static int weigh(String key, UrlMetadata metadata) {
+        return 64 + 2 * (key.length()
+                + length(metadata.getNormalUrl())
+                + length(metadata.getResolvedUrl())
+                + length(metadata.getMimeType())
+                + length(metadata.getTitle())
+                + length(metadata.getEtag())
+                + length(metadata.getLastModified()));
+    }
+
+    private static int length(String value) {
+        return value == null ? 0 : value.length();
+    }
+}
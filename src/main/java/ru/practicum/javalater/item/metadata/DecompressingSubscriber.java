@@ -0,0 +1,282 @@
+package ru.practicum.javalater.item.metadata;
+
+import org.springframework.http.HttpHeaders;
+import ru.practicum.javalater.item.exception.ItemRetrieverException;
+import ru.practicum.javalater.item.exception.MalformedContentException;
+
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Inflates a gzip or deflate encoded body chunk by chunk and hands the plain bytes to the wrapped subscriber.
+ * Every compressed chunk is passed on as one (possibly empty) list of at most {@code 64 KiB}, so the wrapped
+ * subscriber keeps control of demand and can still cancel the transfer early. No more than {@code maxBytes} are
+ * inflated, whatever the compression ratio; once they are, the transfer is cancelled and the wrapped subscriber
+ * is completed. A corrupt body fails with a {@link MalformedContentException}.
+ */
+class DecompressingSubscriber<T> implements HttpResponse.BodySubscriber<T> {
+
+    static final String ACCEPT_ENCODING = "gzip, deflate";
+
+    private static final int CHUNK_BYTES = 16 * 1024;
+    private static final int STEP_BYTES = 4 * CHUNK_BYTES;
+    private static final int GZIP_MAGIC = 0x8b1f;
+    private static final int FHCRC = 2;
+    private static final int FEXTRA = 4;
+    private static final int FNAME = 8;
+    private static final int FCOMMENT = 16;
+
+    private final HttpResponse.BodySubscriber<T> delegate;
+    private final String encoding;
+    private final int maxBytes;
+    private final RetrieverMetrics metrics;
+    private final CompletableFuture<T> body = new CompletableFuture<>();
+
+    private Flow.Subscription subscription;
+    private Inflater inflater;
+    private byte[] pending = new byte[0];
+    private long compressedBytes;
+    private long decompressedBytes;
+    private boolean closed;
+
+    private DecompressingSubscriber(HttpResponse.BodySubscriber<T> delegate, String encoding, int maxBytes,
+                                    RetrieverMetrics metrics) {
+        this.delegate = delegate;
+        this.encoding = encoding;
+        this.maxBytes = maxBytes;
+        this.metrics = metrics;
+        delegate.getBody().whenComplete((value, e) -> {
+            close();
+            if (e == null) {
+                body.complete(value);
+            } else {
+                body.completeExceptionally(e);
+            }
+        });
+    }
+
+    /**
+     * Wraps the subscriber when the response has a content encoding, failing the body for encodings other
+     * than gzip and deflate.
+     */
+    static <T> HttpResponse.BodySubscriber<T> wrap(HttpResponse.ResponseInfo responseInfo,
+                                                   HttpResponse.BodySubscriber<T> subscriber,
+                                                   int maxBytes,
+                                                   RetrieverMetrics metrics) {
+        String encoding = responseInfo.headers()
+                .firstValue(HttpHeaders.CONTENT_ENCODING)
+                .map(value -> value.trim().toLowerCase(Locale.ROOT))
+                .orElse("identity");
+        if (encoding.isEmpty() || "identity".equals(encoding)) {
+            return subscriber;
+        }
+        return new DecompressingSubscriber<>(subscriber, "x-gzip".equals(encoding) ? "gzip" : encoding, maxBytes,
+                metrics);
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        this.subscription = subscription;
+        if (!supported()) {
+            subscription.cancel();
+            close();
+            body.completeExceptionally(new ItemRetrieverException("The content encoding [" + encoding
+                    + "] at the specified URL is not supported."));
+            return;
+        }
+        delegate.onSubscribe(subscription);
+    }
+
+    @Override
+    public void onNext(List<ByteBuffer> items) {
+        List<ByteBuffer> output;
+        boolean capReached;
+        try {
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                append(items);
+                output = inflate(STEP_BYTES);
+                capReached = decompressedBytes >= maxBytes || (inflater != null && inflater.finished());
+            }
+        } catch (MalformedContentException e) {
+            subscription.cancel();
+            delegate.onError(e);
+            return;
+        }
+        delegate.onNext(output);
+        if (capReached) {
+            subscription.cancel();
+            delegate.onComplete();
+        }
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        delegate.onError(throwable);
+    }
+
+    @Override
+    public void onComplete() {
+        List<ByteBuffer> output;
+        try {
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                output = inflate(Integer.MAX_VALUE);
+            }
+        } catch (MalformedContentException e) {
+            delegate.onError(e);
+            return;
+        }
+        if (!output.isEmpty()) {
+            delegate.onNext(output);
+        }
+        delegate.onComplete();
+    }
+
+    @Override
+    public CompletionStage<T> getBody() {
+        return body;
+    }
+
+    /**
+     * Adds the received bytes to the compressed input that the inflater has not consumed yet. Until the
+     * inflater exists the input is the header, which may arrive split across chunks: the gzip member header,
+     * or the first two bytes of a deflate body that tell a zlib stream from the raw deflate some servers send.
+     */
+    private void append(List<ByteBuffer> items) {
+        int received = 0;
+        for (ByteBuffer item : items) {
+            received += item.remaining();
+        }
+        compressedBytes += received;
+        int kept = inflater == null ? pending.length : inflater.getRemaining();
+        byte[] joined = new byte[kept + received];
+        System.arraycopy(pending, pending.length - kept, joined, 0, kept);
+        int position = kept;
+        for (ByteBuffer item : items) {
+            int length = item.remaining();
+            item.get(joined, position, length);
+            position += length;
+        }
+        pending = joined;
+        if (inflater == null) {
+            int headerLength = "gzip".equals(encoding) ? gzipHeaderLength(pending) : deflateHeaderLength(pending);
+            if (headerLength >= 0) {
+                inflater.setInput(pending, headerLength, pending.length - headerLength);
+            }
+        } else {
+            inflater.setInput(pending);
+        }
+    }
+
+    /**
+     * Inflates up to {@code limit} bytes (and never past {@code maxBytes} in total) from the pending input.
+     * Producing a bounded amount per chunk keeps a highly compressed body from being inflated far beyond
+     * what the wrapped subscriber reads before it cancels.
+     */
+    private List<ByteBuffer> inflate(int limit) {
+        List<ByteBuffer> output = new ArrayList<>();
+        if (inflater == null) {
+            return output;
+        }
+        int produced = 0;
+        try {
+            while (produced < limit && decompressedBytes < maxBytes && !inflater.finished()) {
+                ByteBuffer chunk = ByteBuffer.allocate((int) Math.min(CHUNK_BYTES, maxBytes - decompressedBytes));
+                int inflated = inflater.inflate(chunk);
+                if (inflated == 0) {
+                    if (inflater.needsDictionary()) {
+                        throw new MalformedContentException("A preset dictionary is not supported in a "
+                                + encoding + " body");
+                    }
+                    break;
+                }
+                produced += inflated;
+                decompressedBytes += inflated;
+                output.add(chunk.flip());
+            }
+        } catch (DataFormatException e) {
+            throw new MalformedContentException("The " + encoding + " body is malformed", e);
+        }
+        return output;
+    }
+
+    private int gzipHeaderLength(byte[] bytes) {
+        if (bytes.length < 10) {
+            return -1;
+        }
+        if ((bytes[0] & 0xff | (bytes[1] & 0xff) << 8) != GZIP_MAGIC || bytes[2] != 8) {
+            throw new MalformedContentException("The gzip body has an invalid header");
+        }
+        int flags = bytes[3] & 0xff;
+        int position = 10;
+        if ((flags & FEXTRA) != 0) {
+            if (bytes.length < position + 2) {
+                return -1;
+            }
+            position += 2 + (bytes[position] & 0xff | (bytes[position + 1] & 0xff) << 8);
+        }
+        if ((flags & FNAME) != 0) {
+            position = skipZeroTerminated(bytes, position);
+        }
+        if ((flags & FCOMMENT) != 0 && position >= 0) {
+            position = skipZeroTerminated(bytes, position);
+        }
+        if ((flags & FHCRC) != 0 && position >= 0) {
+            position += 2;
+        }
+        if (position < 0 || position > bytes.length) {
+            return -1;
+        }
+        inflater = new Inflater(true);
+        return position;
+    }
+
+    private int deflateHeaderLength(byte[] bytes) {
+        if (bytes.length < 2) {
+            return -1;
+        }
+        int cmf = bytes[0] & 0xff;
+        boolean zlib = (cmf & 0x0f) == 8 && ((cmf << 8) | (bytes[1] & 0xff)) % 31 == 0;
+        inflater = new Inflater(!zlib);
+        return 0;
+    }
+
+    private static int skipZeroTerminated(byte[] bytes, int from) {
+        for (int i = from; i < bytes.length; i++) {
+            if (bytes[i] == 0) {
+                return i + 1;
+            }
+        }
+        return -1;
+    }
+
+    private boolean supported() {
+        return "gzip".equals(encoding) || "deflate".equals(encoding);
+    }
+
+    private synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (inflater != null) {
+            inflater.end();
+        }
+        if (supported()) {
+            metrics.recordDecompression(encoding, compressedBytes, decompressedBytes);
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package ru.practicum.javalater.item.metadata;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-host circuit breaker for outbound fetches. A host opens after {@code failure-threshold} consecutive
+ * failures (connection errors, timeouts or 5xx responses); while it is open requests fail at once. After
+ * {@code open-duration-ms} a single probe is let through: its success closes the breaker, its failure opens
+ * it again. Only hosts with failures are tracked, so healthy hosts cost nothing; at most {@code tracked-hosts}
+ * of them are kept, and a host not seen for {@code idle-expiry-ms} is forgotten, which closes its breaker.
+ */
+@Component
+public class HostCircuitBreaker {
+
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    private final int failureThreshold;
+
+    private final long openNanos;
+
+    private final ConcurrentMap<String, HostState> hosts;
+
+    private final Map<State, Counter> transitions = new EnumMap<>(State.class);
+
+    HostCircuitBreaker(MeterRegistry meterRegistry,
+                       @Value("${url-metadata-retriever.breaker.failure-threshold:5}") int failureThreshold,
+                       @Value("${url-metadata-retriever.breaker.open-duration-ms:30000}") long openDurationMillis,
+                       @Value("${url-metadata-retriever.breaker.tracked-hosts:10000}") long trackedHosts,
+                       @Value("${url-metadata-retriever.breaker.idle-expiry-ms:600000}") long idleExpiryMillis) {
+        this.failureThreshold = failureThreshold;
+        this.openNanos = TimeUnit.MILLISECONDS.toNanos(openDurationMillis);
+        Cache<String, HostState> cache = CacheBuilder.newBuilder()
+                .maximumSize(trackedHosts)
+                .expireAfterAccess(idleExpiryMillis, TimeUnit.MILLISECONDS)
+                .build();
+        this.hosts = cache.asMap();
+        for (State state : State.values()) {
+            String name = state.name().toLowerCase(Locale.ROOT);
+            transitions.put(state, Counter.builder("url.metadata.breaker.transitions")
+                    .description("Circuit breaker transitions by target state")
+                    .tag("state", name)
+                    .register(meterRegistry));
+            Gauge.builder("url.metadata.breaker.hosts", this, breaker -> breaker.count(state))
+                    .description("Tracked hosts by circuit breaker state")
+                    .tag("state", name)
+                    .register(meterRegistry);
+        }
+    }
+
+    /**
+     * Returns whether a request to the host may be sent now. In the half-open state only the first caller
+     * gets a permit; it must report the outcome with {@link #onSuccess}, {@link #onFailure} or {@link #release}.
+     */
+    public boolean tryAcquire(String host) {
+        boolean[] permitted = {true};
+        hosts.computeIfPresent(host, (key, state) -> {
+            if (state.state == State.OPEN) {
+                if (System.nanoTime() - state.openedAt >= openNanos) {
+                    transition(state, State.HALF_OPEN);
+                    state.probeInFlight = true;
+                } else {
+                    permitted[0] = false;
+                }
+            } else if (state.state == State.HALF_OPEN) {
+                if (state.probeInFlight) {
+                    permitted[0] = false;
+                } else {
+                    state.probeInFlight = true;
+                }
+            }
+            return state;
+        });
+        return permitted[0];
+    }
+
+    public void onSuccess(String host) {
+        hosts.computeIfPresent(host, (key, state) -> {
+            if (state.state == State.OPEN) {
+                return state;
+            }
+            if (state.state == State.HALF_OPEN) {
+                transition(state, State.CLOSED);
+            }
+            return null;
+        });
+    }
+
+    public void onFailure(String host) {
+        hosts.compute(host, (key, state) -> {
+            HostState current = state == null ? new HostState() : state;
+            if (current.state == State.HALF_OPEN) {
+                open(current);
+            } else if (current.state == State.CLOSED && ++current.consecutiveFailures >= failureThreshold) {
+                open(current);
+            }
+            return current;
+        });
+    }
+
+    /**
+     * Gives back a permit for a request that never reached the host.
+     */
+    public void release(String host) {
+        hosts.computeIfPresent(host, (key, state) -> {
+            if (state.state == State.HALF_OPEN) {
+                state.probeInFlight = false;
+            }
+            return state;
+        });
+    }
+
+    public State state(String host) {
+        HostState state = hosts.get(host);
+        return state == null ? State.CLOSED : state.state;
+    }
+
+    /**
+     * Hosts that are currently open or half-open, for the monitoring endpoint.
+     */
+    public Map<String, State> trippedHosts() {
+        Map<String, State> tripped = new TreeMap<>();
+        hosts.forEach((host, state) -> {
+            if (state.state != State.CLOSED) {
+                tripped.put(host, state.state);
+            }
+        });
+        return tripped;
+    }
+
+    private int count(State state) {
+        return (int) hosts.values().stream().filter(hostState -> hostState.state == state).count();
+    }
+
+    private void open(HostState state) {
+        transition(state, State.OPEN);
+        state.openedAt = System.nanoTime();
+        state.probeInFlight = false;
+        state.consecutiveFailures = 0;
+    }
+
+    private void transition(HostState state, State target) {
+        state.state = target;
+        transitions.get(target).increment();
+    }
+
+    private static final class HostState {
+        private volatile State state = State.CLOSED;
+        private int consecutiveFailures;
+        private long openedAt;
+        private boolean probeInFlight;
+    }
+}
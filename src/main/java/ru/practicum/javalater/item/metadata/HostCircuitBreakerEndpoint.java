@@ -0,0 +1,24 @@
+package ru.practicum.javalater.item.metadata;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * Lists the hosts whose circuit breaker is not closed, at {@code /actuator/hostbreakers}.
+ */
+@Component
+@Endpoint(id = "hostbreakers")
+@RequiredArgsConstructor
+public class HostCircuitBreakerEndpoint {
+
+    private final HostCircuitBreaker hostCircuitBreaker;
+
+    @ReadOperation
+    public Map<String, HostCircuitBreaker.State> trippedHosts() {
+        return hostCircuitBreaker.trippedHosts();
+    }
+}
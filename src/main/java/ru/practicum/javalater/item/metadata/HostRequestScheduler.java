@@ -0,0 +1,232 @@
+package ru.practicum.javalater.item.metadata;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.practicum.javalater.item.exception.TransientRetrieverException;
+
+import javax.annotation.PreDestroy;
+import java.net.URI;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Politeness scheduler for outbound fetches. Requests are queued per host and started round-robin across
+ * hosts, so a bulk save of links from one domain does not starve the others. At most {@code max-per-host}
+ * requests run against one host, consecutive starts against a host are at least {@code min-delay-ms} apart,
+ * and no more than {@code max-in-flight} requests run in total.
+ */
+@Component
+public class HostRequestScheduler {
+
+    private final int maxInFlight;
+
+    private final int maxPerHost;
+
+    private final long minDelayNanos;
+
+    private final int maxQueued;
+
+    private final Map<String, HostQueue> hosts = new HashMap<>();
+
+    private final Deque<HostQueue> rotation = new ArrayDeque<>();
+
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "host-request-scheduler");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Counter rejected;
+
+    private final AtomicInteger dispatchRequests = new AtomicInteger();
+
+    private int inFlight;
+
+    private int queued;
+
+    private long wakeUpAt = Long.MAX_VALUE;
+
+    HostRequestScheduler(MeterRegistry meterRegistry,
+                         @Value("${url-metadata-retriever.scheduler.max-in-flight:64}") int maxInFlight,
+                         @Value("${url-metadata-retriever.scheduler.max-per-host:4}") int maxPerHost,
+                         @Value("${url-metadata-retriever.scheduler.min-delay-ms:100}") long minDelayMillis,
+                         @Value("${url-metadata-retriever.scheduler.max-queued:10000}") int maxQueued) {
+        this.maxInFlight = maxInFlight;
+        this.maxPerHost = maxPerHost;
+        this.minDelayNanos = TimeUnit.MILLISECONDS.toNanos(minDelayMillis);
+        this.maxQueued = maxQueued;
+        Gauge.builder("url.metadata.scheduler.queued", this, HostRequestScheduler::queued)
+                .description("Requests waiting for a free slot")
+                .register(meterRegistry);
+        Gauge.builder("url.metadata.scheduler.in-flight", this, HostRequestScheduler::inFlight)
+                .description("Requests currently running")
+                .register(meterRegistry);
+        Gauge.builder("url.metadata.scheduler.hosts", this, HostRequestScheduler::hosts)
+                .description("Hosts with running or waiting requests")
+                .register(meterRegistry);
+        this.rejected = Counter.builder("url.metadata.scheduler.rejected")
+                .description("Requests rejected because the queue was full")
+                .register(meterRegistry);
+    }
+
+    public <T> CompletableFuture<T> submit(URI uri, Supplier<CompletableFuture<T>> request) {
+        return submit(hostKey(uri), request);
+    }
+
+    <T> CompletableFuture<T> submit(String host, Supplier<CompletableFuture<T>> request) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        synchronized (this) {
+            if (queued >= maxQueued) {
+                rejected.increment();
+                return CompletableFuture.failedFuture(new TransientRetrieverException(
+                        "Too many pending requests, the request to " + host + " was rejected."));
+            }
+            HostQueue queue = hosts.computeIfAbsent(host, key -> {
+                HostQueue created = new HostQueue(key);
+                rotation.add(created);
+                return created;
+            });
+            queue.pending.add(() -> start(queue, request, result));
+            queued++;
+        }
+        dispatch();
+        return result;
+    }
+
+    private <T> void start(HostQueue queue, Supplier<CompletableFuture<T>> request, CompletableFuture<T> result) {
+        CompletableFuture<T> call;
+        try {
+            call = request.get();
+        } catch (RuntimeException e) {
+            call = CompletableFuture.failedFuture(e);
+        }
+        call.whenComplete((value, e) -> {
+            release(queue);
+            if (e == null) {
+                result.complete(value);
+            } else {
+                result.completeExceptionally(RetrieverFutures.unwrap(e));
+            }
+        });
+    }
+
+    private void release(HostQueue queue) {
+        synchronized (this) {
+            queue.running--;
+            inFlight--;
+        }
+        dispatch();
+    }
+
+    /**
+     * Runs {@link #dispatchOnce()} until no further dispatch was requested. Requests that complete while they are
+     * being started (or calls from other threads) only bump the counter, so completions never recurse.
+     */
+    private void dispatch() {
+        if (dispatchRequests.getAndIncrement() != 0) {
+            return;
+        }
+        int missed = 1;
+        do {
+            dispatchOnce();
+            missed = dispatchRequests.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    /**
+     * Starts as many queued requests as the limits allow, taking one request per host per pass. A host is
+     * forgotten once it is idle and its delay has passed, so its spacing survives short idle periods.
+     */
+    private void dispatchOnce() {
+        List<Runnable> toStart = new ArrayList<>();
+        synchronized (this) {
+            long now = System.nanoTime();
+            long nextWakeUp = Long.MAX_VALUE;
+            boolean progress = true;
+            while (progress && inFlight < maxInFlight) {
+                progress = false;
+                for (int i = rotation.size(); i > 0 && inFlight < maxInFlight; i--) {
+                    HostQueue queue = rotation.poll();
+                    if (queue.pending.isEmpty() && queue.running == 0 && now - queue.nextStartAt >= 0) {
+                        hosts.remove(queue.host);
+                        continue;
+                    }
+                    rotation.add(queue);
+                    if (queue.pending.isEmpty() || queue.running >= maxPerHost) {
+                        continue;
+                    }
+                    if (now - queue.nextStartAt < 0) {
+                        nextWakeUp = Math.min(nextWakeUp, queue.nextStartAt);
+                        continue;
+                    }
+                    toStart.add(queue.pending.poll());
+                    queue.running++;
+                    queue.nextStartAt = now + minDelayNanos;
+                    queued--;
+                    inFlight++;
+                    progress = true;
+                }
+            }
+            if (nextWakeUp != Long.MAX_VALUE && nextWakeUp < wakeUpAt) {
+                wakeUpAt = nextWakeUp;
+                timer.schedule(this::wakeUp, nextWakeUp - now, TimeUnit.NANOSECONDS);
+            }
+        }
+        toStart.forEach(Runnable::run);
+    }
+
+    private void wakeUp() {
+        synchronized (this) {
+            wakeUpAt = Long.MAX_VALUE;
+        }
+        dispatch();
+    }
+
+    synchronized int queued() {
+        return queued;
+    }
+
+    synchronized int inFlight() {
+        return inFlight;
+    }
+
+    synchronized int hosts() {
+        return hosts.size();
+    }
+
+    static String hostKey(URI uri) {
+        String host = uri.getHost() == null ? String.valueOf(uri.getAuthority()) : uri.getHost();
+        return host.toLowerCase(Locale.ROOT) + (uri.getPort() == -1 ? "" : ":" + uri.getPort());
+    }
+
+    @PreDestroy
+    void shutdown() {
+        timer.shutdownNow();
+    }
+
+    private static final class HostQueue {
+        private final String host;
+        private final Deque<Runnable> pending = new ArrayDeque<>();
+        private int running;
+        private long nextStartAt;
+
+        private HostQueue(String host) {
+            this.host = host;
+            this.nextStartAt = System.nanoTime();
+        }
+    }
+}
@@ -0,0 +1,362 @@
+package ru.practicum.javalater.item.metadata;
+
+import org.jsoup.internal.StringUtil;
+import org.jsoup.parser.Parser;
+
+/**
+ * Single-pass tokenizer that answers the same questions as the Jsoup path of {@link UrlMetadataRetrieverImpl}
+ * without building a DOM: the title of the document head (or the {@code og:title} meta tag when it is empty),
+ * whether there is an {@code img} tag and whether there is a {@code video} tag. Only the title and the meta
+ * values are copied out of the input, so a page costs a handful of small allocations.
+ * <p>
+ * The scanner follows the tokenizer rules that matter for those answers: comments, raw text elements such as
+ * {@code script} and {@code style}, quoted attribute values, {@code noscript} in the head and the point where the
+ * tree builder leaves the head. Inputs whose handling depends on rules it does not model make {@link #scan(String)}
+ * return {@code null}, and the caller parses them with Jsoup instead.
+ */
+final class HtmlMetadataScanner {
+
+    private static final String[] HEAD_TAGS = {"html", "head", "base", "basefont", "bgsound", "command", "link",
+            "meta", "title", "noframes", "style", "noscript", "script", "template"};
+    private static final String[] AFTER_HEAD_TAGS = {"html", "head", "base", "basefont", "bgsound", "link",
+            "meta", "title", "noframes", "style", "script", "template"};
+    private static final String[] HEAD_NOSCRIPT_TAGS = {"basefont", "bgsound", "link", "meta", "noframes",
+            "style", "html", "head", "noscript"};
+    private static final String[] RAW_TEXT_TAGS = {"script", "style", "xmp", "iframe", "noembed", "noframes"};
+
+    private static final int IN_HEAD = 0;
+    private static final int IN_HEAD_NOSCRIPT = 1;
+    private static final int AFTER_HEAD = 2;
+    private static final int IN_BODY = 3;
+
+    private final String html;
+    private final int length;
+    private int pos;
+    private int mode = IN_HEAD;
+
+    private String title;
+    private String ogTitle;
+    private boolean hasImage;
+    private boolean hasVideo;
+
+    private String property;
+    private String content;
+    private boolean needsParser;
+
+    private HtmlMetadataScanner(String html) {
+        this.html = html;
+        this.length = html.length();
+    }
+
+    /**
+     * Extracts the metadata, or returns {@code null} when the input needs the full parser.
+     */
+    static UrlMetadataRetrieverImpl.UrlMetadataImpl scan(String html) {
+        if (html.indexOf('\0') >= 0) {
+            return null;
+        }
+        HtmlMetadataScanner scanner = new HtmlMetadataScanner(html);
+        if (!scanner.run()) {
+            return null;
+        }
+        String title = scanner.title == null ? "" : scanner.title;
+        if (title.isEmpty() && scanner.ogTitle != null) {
+            title = scanner.ogTitle;
+        }
+        return UrlMetadataRetrieverImpl.UrlMetadataImpl.builder()
+                .title(title)
+                .hasImage(scanner.hasImage)
+                .hasVideo(scanner.hasVideo)
+                .build();
+    }
+
+    private boolean run() {
+        while (pos < length && !done()) {
+            int lt = html.indexOf('<', pos);
+            int textEnd = lt < 0 ? length : lt;
+            if (mode != IN_BODY && mode != IN_HEAD_NOSCRIPT && !whitespaceText(pos, textEnd)) {
+                if (html.lastIndexOf('&', textEnd - 1) >= pos) {
+                    return false;
+                }
+                mode = IN_BODY;
+            }
+            if (lt < 0 || lt + 1 >= length) {
+                return true;
+            }
+            pos = lt + 1;
+            char c = html.charAt(pos);
+            if (isAsciiLetter(c)) {
+                startTag();
+            } else if (c == '/') {
+                endTag();
+            } else if (c == '!') {
+                markupDeclaration();
+            } else if (c == '?') {
+                skipPast('>');
+            } else if (mode != IN_BODY && mode != IN_HEAD_NOSCRIPT) {
+                mode = IN_BODY;
+            }
+            if (needsParser) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean done() {
+        return mode == IN_BODY && hasImage && hasVideo && title != null && !title.isEmpty();
+    }
+
+    /**
+     * Handles a start tag; {@link #pos} points at the first letter of the name.
+     */
+    private void startTag() {
+        int nameStart = tagName();
+        int nameEnd = pos;
+        boolean meta = nameIs(nameStart, nameEnd, "meta");
+        property = null;
+        content = null;
+        if (!attributes(meta)) {
+            return;
+        }
+        if (nameIs(nameStart, nameEnd, "image") || nameIs(nameStart, nameEnd, "frameset")
+                || (mode != IN_BODY && nameIs(nameStart, nameEnd, "template"))) {
+            needsParser = true;
+            return;
+        }
+        if (mode == IN_HEAD_NOSCRIPT) {
+            if (!nameIn(nameStart, nameEnd, HEAD_NOSCRIPT_TAGS)) {
+                return;
+            }
+        } else if (mode != IN_BODY && !nameIn(nameStart, nameEnd, mode == IN_HEAD ? HEAD_TAGS : AFTER_HEAD_TAGS)) {
+            mode = IN_BODY;
+        } else if (mode == IN_HEAD && nameIs(nameStart, nameEnd, "noscript")) {
+            mode = IN_HEAD_NOSCRIPT;
+        }
+        if (nameIs(nameStart, nameEnd, "img")) {
+            hasImage = true;
+        } else if (nameIs(nameStart, nameEnd, "video")) {
+            hasVideo = true;
+        } else if (meta) {
+            if (ogTitle == null && property != null && content != null
+                    && property.trim().equalsIgnoreCase("og:title")) {
+                ogTitle = text(content, true);
+            }
+        } else if (nameIs(nameStart, nameEnd, "title") || nameIs(nameStart, nameEnd, "textarea")) {
+            int end = closingTag(nameStart, nameEnd);
+            if (end < 0 && html.indexOf('<', pos) >= 0) {
+                needsParser = true;
+                return;
+            }
+            if (mode != IN_BODY && title == null && nameIs(nameStart, nameEnd, "title")) {
+                String text = html.substring(pos, end < 0 ? length : end);
+                title = text(text, false);
+            }
+            pos = end < 0 ? length : end;
+        } else if (nameIs(nameStart, nameEnd, "plaintext")) {
+            pos = length;
+        } else if (nameIn(nameStart, nameEnd, RAW_TEXT_TAGS)) {
+            int end = closingTag(nameStart, nameEnd);
+            if (end < 0) {
+                pos = length;
+            } else if (nameIs(nameStart, nameEnd, "script") && containsCommentStart(pos, end)) {
+                needsParser = true;
+            } else {
+                pos = end;
+            }
+        }
+    }
+
+    private int tagName() {
+        int nameStart = pos;
+        while (pos < length && !isTagNameEnd(html.charAt(pos))) {
+            pos++;
+        }
+        return nameStart;
+    }
+
+    /**
+     * Skips the attributes up to the closing {@code >}, honouring quoted values; for a meta tag the first
+     * {@code property} and {@code content} values are kept. Returns {@code false} when the input ends inside
+     * the tag, which drops the tag as Jsoup does (except right after {@code =}, where Jsoup still emits it),
+     * or when a {@code <} appears outside a quoted value, where Jsoup deviates from the standard tokenizer.
+     */
+    private boolean attributes(boolean meta) {
+        while (pos < length) {
+            char c = html.charAt(pos);
+            if (c == '>') {
+                pos++;
+                return true;
+            }
+            if (isWhitespace(c) || c == '/') {
+                pos++;
+                continue;
+            }
+            if (c == '<') {
+                needsParser = true;
+                return false;
+            }
+            int nameStart = pos;
+            pos++;
+            while (pos < length && !isTagNameEnd(html.charAt(pos)) && html.charAt(pos) != '=') {
+                pos++;
+            }
+            int nameEnd = pos;
+            while (pos < length && isWhitespace(html.charAt(pos))) {
+                pos++;
+            }
+            if (pos >= length || html.charAt(pos) != '=') {
+                continue;
+            }
+            pos++;
+            while (pos < length && isWhitespace(html.charAt(pos))) {
+                pos++;
+            }
+            if (pos >= length) {
+                return true;
+            }
+            int valueStart;
+            int valueEnd;
+            char quote = html.charAt(pos);
+            if (quote == '"' || quote == '\'') {
+                valueStart = pos + 1;
+                valueEnd = html.indexOf(quote, valueStart);
+                if (valueEnd < 0) {
+                    pos = length;
+                    return false;
+                }
+                pos = valueEnd + 1;
+            } else {
+                valueStart = pos;
+                while (pos < length && !isWhitespace(html.charAt(pos)) && html.charAt(pos) != '>') {
+                    pos++;
+                }
+                valueEnd = pos;
+            }
+            if (meta) {
+                if (property == null && nameIs(nameStart, nameEnd, "property")) {
+                    property = html.substring(valueStart, valueEnd);
+                } else if (content == null && nameIs(nameStart, nameEnd, "content")) {
+                    content = html.substring(valueStart, valueEnd);
+                }
+            }
+        }
+        return false;
+    }
+
+    private void endTag() {
+        pos++;
+        if (pos >= length) {
+            return;
+        }
+        if (!isAsciiLetter(html.charAt(pos))) {
+            skipPast('>');
+            return;
+        }
+        int nameStart = tagName();
+        int nameEnd = pos;
+        if (!attributes(false)) {
+            return;
+        }
+        if (mode == IN_HEAD_NOSCRIPT) {
+            if (nameIs(nameStart, nameEnd, "noscript")) {
+                mode = IN_HEAD;
+            }
+        } else if (mode != IN_BODY) {
+            if (nameIs(nameStart, nameEnd, "head")) {
+                mode = AFTER_HEAD;
+            } else if (nameIs(nameStart, nameEnd, "body") || nameIs(nameStart, nameEnd, "html")
+                    || nameIs(nameStart, nameEnd, "br")) {
+                mode = IN_BODY;
+            }
+        }
+    }
+
+    /**
+     * Skips comments, doctypes and other {@code <!} declarations. CDATA sections are left to Jsoup.
+     */
+    private void markupDeclaration() {
+        if (html.startsWith("!--", pos)) {
+            int start = pos + 3;
+            if (html.startsWith(">", start) || html.startsWith("->", start)) {
+                pos = html.indexOf('>', start) + 1;
+                return;
+            }
+            int end = html.indexOf("-->", start);
+            pos = end < 0 ? length : end + 3;
+        } else if (html.startsWith("![CDATA[", pos)) {
+            needsParser = true;
+        } else {
+            skipPast('>');
+        }
+    }
+
+    /**
+     * Position of the end tag closing a raw text element, or -1 when the element runs to the end of the input.
+     * An end tag cut off right after its name does not count, it is text for the HTML tokenizer.
+     */
+    private int closingTag(int nameStart, int nameEnd) {
+        int nameLength = nameEnd - nameStart;
+        for (int i = html.indexOf("</", pos); i >= 0; i = html.indexOf("</", i + 2)) {
+            int after = i + 2 + nameLength;
+            if (html.regionMatches(true, i + 2, html, nameStart, nameLength)
+                    && after < length && isTagNameEnd(html.charAt(after))) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static String text(String raw, boolean inAttribute) {
+        String decoded = raw.indexOf('&') < 0 ? raw : Parser.unescapeEntities(raw, inAttribute);
+        return StringUtil.normaliseWhitespace(decoded).trim();
+    }
+
+    private void skipPast(char c) {
+        int end = html.indexOf(c, pos);
+        pos = end < 0 ? length : end + 1;
+    }
+
+    private boolean containsCommentStart(int from, int to) {
+        for (int i = html.indexOf('<', from); i >= 0 && i < to; i = html.indexOf('<', i + 1)) {
+            if (html.startsWith("<!--", i)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean whitespaceText(int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (!isWhitespace(html.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean nameIs(int start, int end, String name) {
+        return end - start == name.length() && html.regionMatches(true, start, name, 0, name.length());
+    }
+
+    private boolean nameIn(int start, int end, String[] names) {
+        for (String name : names) {
+            if (nameIs(start, end, name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isTagNameEnd(char c) {
+        return isWhitespace(c) || c == '/' || c == '>' || c == '<';
+    }
+
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\f' || c == '\r';
+    }
+
+    private static boolean isAsciiLetter(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+}
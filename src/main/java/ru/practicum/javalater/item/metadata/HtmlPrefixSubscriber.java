@@ -0,0 +1,149 @@
+package ru.practicum.javalater.item.metadata;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+
+import java.io.ByteArrayOutputStream;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+
+/**
+ * Reads an HTML body only as far as needed to answer the metadata questions: the title, whether the page
+ * has an image and whether it has a video. The transfer is cancelled as soon as all three signals have been
+ * seen or {@code maxBytes} have been read, and the body handed on is the prefix read so far. Images and
+ * videos placed after the cap are not detected.
+ */
+class HtmlPrefixSubscriber implements HttpResponse.BodySubscriber<String> {
+
+    private static final byte[] TITLE_END = "</title".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] HEAD_END = "</head".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] BODY_START = "<body".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] IMG = "<img".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] VIDEO = "<video".getBytes(StandardCharsets.US_ASCII);
+    private static final int LONGEST_MARKER = 7;
+
+    private final CompletableFuture<String> result = new CompletableFuture<>();
+    private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    private final Charset charset;
+    private final int maxBytes;
+
+    private Flow.Subscription subscription;
+    private byte[] tail = new byte[0];
+    private boolean titleDetermined;
+    private boolean imageFound;
+    private boolean videoFound;
+
+    HtmlPrefixSubscriber(Charset charset, int maxBytes) {
+        this.charset = charset;
+        this.maxBytes = maxBytes;
+    }
+
+    static HttpResponse.BodyHandler<String> handler(int maxBytes) {
+        return responseInfo -> new HtmlPrefixSubscriber(charsetOf(responseInfo), maxBytes);
+    }
+
+    static Charset charsetOf(HttpResponse.ResponseInfo responseInfo) {
+        try {
+            return responseInfo.headers()
+                    .firstValue(HttpHeaders.CONTENT_TYPE)
+                    .map(MediaType::parseMediaType)
+                    .map(MediaType::getCharset)
+                    .orElse(StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            return StandardCharsets.UTF_8;
+        }
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        this.subscription = subscription;
+        subscription.request(1);
+    }
+
+    @Override
+    public void onNext(List<ByteBuffer> items) {
+        if (result.isDone()) {
+            return;
+        }
+        for (ByteBuffer item : items) {
+            int length = Math.min(item.remaining(), maxBytes - buffer.size());
+            byte[] window = new byte[tail.length + length];
+            System.arraycopy(tail, 0, window, 0, tail.length);
+            item.get(window, tail.length, length);
+            buffer.write(window, tail.length, length);
+            scan(window);
+            int tailLength = Math.min(window.length, LONGEST_MARKER - 1);
+            tail = new byte[tailLength];
+            System.arraycopy(window, window.length - tailLength, tail, 0, tailLength);
+        }
+        if ((titleDetermined && imageFound && videoFound) || buffer.size() >= maxBytes) {
+            subscription.cancel();
+            finish();
+        } else {
+            subscription.request(1);
+        }
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        result.completeExceptionally(throwable);
+    }
+
+    @Override
+    public void onComplete() {
+        finish();
+    }
+
+    @Override
+    public CompletionStage<String> getBody() {
+        return result;
+    }
+
+    private void finish() {
+        result.complete(new String(buffer.toByteArray(), charset));
+    }
+
+    /**
+     * Looks for the markers in the new bytes; the window starts with the last few bytes of the previous
+     * chunk so that a marker split across chunks is still found.
+     */
+    private void scan(byte[] window) {
+        if (!titleDetermined) {
+            titleDetermined = indexOf(window, 0, TITLE_END) >= 0
+                    || indexOf(window, 0, HEAD_END) >= 0
+                    || indexOf(window, 0, BODY_START) >= 0;
+        }
+        if (!imageFound) {
+            imageFound = indexOf(window, 0, IMG) >= 0;
+        }
+        if (!videoFound) {
+            videoFound = indexOf(window, 0, VIDEO) >= 0;
+        }
+    }
+
+    /**
+     * ASCII case-insensitive search; the markers are lower case.
+     */
+    static int indexOf(byte[] bytes, int from, byte[] marker) {
+        outer:
+        for (int i = from; i <= bytes.length - marker.length; i++) {
+            for (int j = 0; j < marker.length; j++) {
+                byte b = bytes[i + j];
+                if (b >= 'A' && b <= 'Z') {
+                    b = (byte) (b + ('a' - 'A'));
+                }
+                if (b != marker[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,55 @@
+package ru.practicum.javalater.item.metadata;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+/**
+ * Lets concurrent callers asking for the same key share a single in-flight call. An entry lives only
+ * while its call is running; once the number of distinct in-flight keys reaches {@code maxInFlight},
+ * new keys bypass coalescing instead of growing the map further.
+ */
+class InFlightRequestCoalescer<V> {
+
+    private final ConcurrentMap<String, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+    private final int maxInFlight;
+
+    InFlightRequestCoalescer(int maxInFlight) {
+        this.maxInFlight = maxInFlight;
+    }
+
+    CompletableFuture<V> execute(String key, Supplier<CompletableFuture<V>> call) {
+        CompletableFuture<V> existing = inFlight.get(key);
+        if (existing != null) {
+            return existing.thenApply(v -> v);
+        }
+        if (inFlight.size() >= maxInFlight) {
+            return call.get();
+        }
+        CompletableFuture<V> promise = new CompletableFuture<>();
+        existing = inFlight.putIfAbsent(key, promise);
+        if (existing != null) {
+            return existing.thenApply(v -> v);
+        }
+        try {
+            call.get().whenComplete((value, e) -> {
+                inFlight.remove(key, promise);
+                if (e == null) {
+                    promise.complete(value);
+                } else {
+                    promise.completeExceptionally(RetrieverFutures.unwrap(e));
+                }
+            });
+        } catch (RuntimeException e) {
+            inFlight.remove(key, promise);
+            promise.completeExceptionally(e);
+        }
+        return promise.thenApply(v -> v);
+    }
+
+    int size() {
+        return inFlight.size();
+    }
+}
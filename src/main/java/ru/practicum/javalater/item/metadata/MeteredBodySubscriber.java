@@ -0,0 +1,57 @@
+package ru.practicum.javalater.item.metadata;
+
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+
+/**
+ * Counts the bytes handed to the wrapped subscriber and records the body phase once its body completes,
+ * including when the wrapped subscriber cancels the transfer early.
+ */
+class MeteredBodySubscriber<T> implements HttpResponse.BodySubscriber<T> {
+
+    private final HttpResponse.BodySubscriber<T> delegate;
+    private final CompletionStage<T> body;
+    private volatile long bytes;
+
+    MeteredBodySubscriber(HttpResponse.BodySubscriber<T> delegate, RetrieverMetrics metrics, String family) {
+        this.delegate = delegate;
+        long startedAt = System.nanoTime();
+        this.body = delegate.getBody().whenComplete((value, e) -> {
+            metrics.recordPhase("body", family, RetrieverMetrics.outcome(e), System.nanoTime() - startedAt);
+            metrics.recordBytes(family, bytes);
+        });
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        delegate.onSubscribe(subscription);
+    }
+
+    @Override
+    public void onNext(List<ByteBuffer> items) {
+        long received = 0;
+        for (ByteBuffer item : items) {
+            received += item.remaining();
+        }
+        bytes += received;
+        delegate.onNext(items);
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        delegate.onError(throwable);
+    }
+
+    @Override
+    public void onComplete() {
+        delegate.onComplete();
+    }
+
+    @Override
+    public CompletionStage<T> getBody() {
+        return body;
+    }
+}
@@ -0,0 +1,314 @@
+package ru.practicum.javalater.item.metadata;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.practicum.javalater.item.exception.TransientRetrieverException;
+
+import javax.annotation.PreDestroy;
+import java.net.http.HttpTimeoutException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Time budget of a retrieval. Every {@code retrieve} call gets one deadline, {@code deadline-ms} from its start,
+ * shared by the HEAD, GET and redirect hops, by retries and by hedged attempts; when it passes the retrieval
+ * fails with a {@link TransientRetrieverException} caused by an {@link HttpTimeoutException}. Once a retrieval is
+ * decided, whether by a result, a failure or the deadline, the exchanges of its attempts that are still running
+ * are aborted through the {@link Retrieval} they registered with.
+ * <p>
+ * A transient failure is retried up to {@code max-retries} times, but only while the remaining budget exceeds
+ * the usual latency of an attempt. With {@code hedge.enabled} on, an attempt that has not finished after the
+ * 95th percentile of recent attempt latencies (at least {@code hedge.min-delay-ms}) gets a second, hedged
+ * attempt and the first successful one wins; the other one is aborted with the rest of the retrieval.
+ * <p>
+ * The timer thread only schedules: deadlines and hedges fire on the completion executor, so callers' callbacks
+ * never run on it.
+ */
+@Component
+public class RetrievalPolicy {
+
+    private static final int WINDOW = 512;
+
+    private static final int MIN_SAMPLES = 32;
+
+    private static final int RECOMPUTE_EVERY = 32;
+
+    private final long deadlineNanos;
+
+    private final int maxRetries;
+
+    private final boolean hedging;
+
+    private final long minHedgeDelayNanos;
+
+    private final long[] latencies = new long[WINDOW];
+
+    private long samples;
+
+    private long p95Nanos;
+
+    private final ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1, r -> {
+        Thread thread = new Thread(r, "retrieval-deadlines");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final ExecutorService completions = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "retrieval-completions");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Counter hedges;
+
+    private final Counter hedgeWins;
+
+    private final Counter retries;
+
+    RetrievalPolicy(MeterRegistry meterRegistry,
+                    @Value("${url-metadata-retriever.deadline-ms:30000}") long deadlineMillis,
+                    @Value("${url-metadata-retriever.max-retries:1}") int maxRetries,
+                    @Value("${url-metadata-retriever.hedge.enabled:false}") boolean hedging,
+                    @Value("${url-metadata-retriever.hedge.min-delay-ms:200}") long minHedgeDelayMillis) {
+        this.deadlineNanos = TimeUnit.MILLISECONDS.toNanos(deadlineMillis);
+        this.maxRetries = maxRetries;
+        this.hedging = hedging;
+        this.minHedgeDelayNanos = TimeUnit.MILLISECONDS.toNanos(minHedgeDelayMillis);
+        this.timer.setRemoveOnCancelPolicy(true);
+        this.hedges = Counter.builder("url.metadata.hedges")
+                .description("Hedged attempts started because the first attempt was slow")
+                .register(meterRegistry);
+        this.hedgeWins = Counter.builder("url.metadata.hedges.won")
+                .description("Hedged attempts that finished before the attempt they hedged")
+                .register(meterRegistry);
+        this.retries = Counter.builder("url.metadata.retries")
+                .description("Attempts repeated after a transient failure")
+                .register(meterRegistry);
+    }
+
+    /**
+     * The deadline, in {@link System#nanoTime()} terms, of a retrieval starting now.
+     */
+    long deadline() {
+        return System.nanoTime() + deadlineNanos;
+    }
+
+    static long remaining(long deadline) {
+        return deadline - System.nanoTime();
+    }
+
+    /**
+     * Runs the attempts of one retrieval, which is given up on at the deadline. The attempt is called again for
+     * every retry and hedge, with the retrieval whose deadline it passes on to each exchange it sends and with
+     * which it registers the exchanges to abort once the retrieval is decided.
+     */
+    <T> CompletableFuture<T> run(Function<Retrieval, CompletableFuture<T>> attempt, String urlString) {
+        Retrieval retrieval = new Retrieval(deadline());
+        CompletableFuture<T> result = withDeadline(
+                retrying(() -> attempt.apply(retrieval), retrieval.deadline(), maxRetries), retrieval.deadline(),
+                () -> new TransientRetrieverException("Cannot retrieve data from the URL within "
+                        + TimeUnit.NANOSECONDS.toMillis(deadlineNanos) + " ms: " + urlString,
+                        new HttpTimeoutException("The retrieval deadline was exceeded")));
+        result.whenComplete((value, e) -> retrieval.abort());
+        return result;
+    }
+
+    /**
+     * Completes like {@code call} unless the deadline comes first, in which case the result fails with the
+     * supplied exception, on the completion executor, and {@code call} is cancelled. Cancelling a future of
+     * {@code HttpClient.sendAsync} only aborts the exchange from Java 16 on, so exchanges are also aborted
+     * through the {@link Retrieval} they registered with.
+     */
+    <T> CompletableFuture<T> withDeadline(CompletableFuture<T> call, long deadline,
+                                          Supplier<? extends Throwable> expired) {
+        if (call.isDone()) {
+            return call;
+        }
+        CompletableFuture<T> result = new CompletableFuture<>();
+        ScheduledFuture<?> timeout = timer.schedule(() -> completions.execute(() -> {
+            if (result.completeExceptionally(expired.get())) {
+                call.cancel(true);
+            }
+        }), Math.max(remaining(deadline), 0), TimeUnit.NANOSECONDS);
+        call.whenComplete((value, e) -> {
+            timeout.cancel(false);
+            if (e == null) {
+                result.complete(value);
+            } else {
+                result.completeExceptionally(RetrieverFutures.unwrap(e));
+            }
+        });
+        return result;
+    }
+
+    private <T> CompletableFuture<T> retrying(Supplier<CompletableFuture<T>> attempt, long deadline, int retriesLeft) {
+        return hedged(attempt, deadline)
+                .handle((value, e) -> {
+                    if (e == null) {
+                        return CompletableFuture.completedFuture(value);
+                    }
+                    Throwable cause = RetrieverFutures.unwrap(e);
+                    if (retriesLeft > 0 && cause instanceof TransientRetrieverException
+                            && remaining(deadline) > expectedLatencyNanos()) {
+                        retries.increment();
+                        return retrying(attempt, deadline, retriesLeft - 1);
+                    }
+                    return CompletableFuture.<T>failedFuture(cause);
+                })
+                .thenCompose(Function.identity());
+    }
+
+    private <T> CompletableFuture<T> hedged(Supplier<CompletableFuture<T>> attempt, long deadline) {
+        CompletableFuture<T> first = timed(attempt);
+        long delay = hedging ? hedgeDelayNanos() : Long.MAX_VALUE;
+        if (first.isDone() || delay >= remaining(deadline)) {
+            return first;
+        }
+        CompletableFuture<T> result = new CompletableFuture<>();
+        AtomicInteger running = new AtomicInteger(1);
+        AtomicReference<CompletableFuture<T>> second = new AtomicReference<>();
+        first.whenComplete((value, e) -> settle(result, running, value, e, false));
+        ScheduledFuture<?> hedge = timer.schedule(() -> completions.execute(() -> {
+            if (result.isDone()) {
+                return;
+            }
+            running.incrementAndGet();
+            hedges.increment();
+            CompletableFuture<T> hedged = timed(attempt);
+            second.set(hedged);
+            hedged.whenComplete((value, e) -> settle(result, running, value, e, true));
+            if (result.isDone()) {
+                hedged.cancel(true);
+            }
+        }), delay, TimeUnit.NANOSECONDS);
+        result.whenComplete((value, e) -> {
+            hedge.cancel(false);
+            first.cancel(true);
+            CompletableFuture<T> hedged = second.get();
+            if (hedged != null) {
+                hedged.cancel(true);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * The first success completes the hedged result; a failure only does once no other attempt is running.
+     */
+    private <T> void settle(CompletableFuture<T> result, AtomicInteger running, T value, Throwable e,
+                            boolean hedge) {
+        if (e == null) {
+            if (hedge && !result.isDone()) {
+                hedgeWins.increment();
+            }
+            result.complete(value);
+        } else if (running.decrementAndGet() == 0) {
+            result.completeExceptionally(RetrieverFutures.unwrap(e));
+        }
+    }
+
+    private <T> CompletableFuture<T> timed(Supplier<CompletableFuture<T>> attempt) {
+        long startedAt = System.nanoTime();
+        CompletableFuture<T> call;
+        try {
+            call = attempt.get();
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        call.whenComplete((value, e) -> {
+            if (e == null) {
+                recordLatency(System.nanoTime() - startedAt);
+            }
+        });
+        return call;
+    }
+
+    private synchronized void recordLatency(long nanos) {
+        latencies[(int) (samples % WINDOW)] = nanos;
+        samples++;
+        if (samples % RECOMPUTE_EVERY == 0) {
+            long[] window = Arrays.copyOf(latencies, (int) Math.min(samples, WINDOW));
+            Arrays.sort(window);
+            p95Nanos = window[(int) Math.ceil(window.length * 0.95) - 1];
+        }
+    }
+
+    /**
+     * The 95th percentile of recent successful attempts, or {@code hedge.min-delay-ms} while there are too few
+     * of them to tell, and never less than that.
+     */
+    synchronized long hedgeDelayNanos() {
+        return samples < MIN_SAMPLES ? minHedgeDelayNanos : Math.max(minHedgeDelayNanos, p95Nanos);
+    }
+
+    private synchronized long expectedLatencyNanos() {
+        return samples < MIN_SAMPLES ? 0 : p95Nanos;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        timer.shutdownNow();
+        completions.shutdownNow();
+    }
+
+    /**
+     * One retrieval as its attempts see it: the deadline to send exchanges with, and the aborts of the exchanges
+     * they have started, which run once the retrieval is decided. An abort registered after that runs at once.
+     */
+    static final class Retrieval {
+
+        private final long deadline;
+
+        private final List<Runnable> aborts = new ArrayList<>();
+
+        private boolean aborted;
+
+        Retrieval(long deadline) {
+            this.deadline = deadline;
+        }
+
+        long deadline() {
+            return deadline;
+        }
+
+        synchronized boolean isAborted() {
+            return aborted;
+        }
+
+        void onAbort(Runnable abort) {
+            synchronized (this) {
+                if (!aborted) {
+                    aborts.add(abort);
+                    return;
+                }
+            }
+            abort.run();
+        }
+
+        void abort() {
+            List<Runnable> pending;
+            synchronized (this) {
+                if (aborted) {
+                    return;
+                }
+                aborted = true;
+                pending = new ArrayList<>(aborts);
+                aborts.clear();
+            }
+            pending.forEach(Runnable::run);
+        }
+    }
+}
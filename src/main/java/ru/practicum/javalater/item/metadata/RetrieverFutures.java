@@ -0,0 +1,37 @@
+package ru.practicum.javalater.item.metadata;
+
+import ru.practicum.javalater.item.exception.ItemRetrieverException;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+
+final class RetrieverFutures {
+
+    private RetrieverFutures() {
+    }
+
+    /**
+     * Blocks on a retrieval started with {@code retrieveAsync} and rethrows its failure the way the
+     * blocking {@code retrieve} is expected to.
+     */
+    static <T> T await(CompletableFuture<T> future, String urlString) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Cannot get the metadata for url: " + urlString
+                    + " because the thread was interrupted.", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new ItemRetrieverException("Cannot retrieve data from the URL: " + urlString, e.getCause());
+        }
+    }
+
+    static Throwable unwrap(Throwable e) {
+        return e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+    }
+}
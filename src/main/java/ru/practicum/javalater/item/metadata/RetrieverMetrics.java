@@ -0,0 +1,189 @@
+package ru.practicum.javalater.item.metadata;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import ru.practicum.javalater.item.exception.ItemRetrieverException;
+import ru.practicum.javalater.item.exception.UnsupportedContentTypeException;
+
+import java.net.http.HttpTimeoutException;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Timers and counters of the retrieval pipeline. Every phase is recorded in the {@code url.metadata.phase}
+ * timer with percentiles, tagged by phase, content-type family and outcome:
+ * <ul>
+ *     <li>{@code queue} - waiting in the {@link HostRequestScheduler};</li>
+ *     <li>{@code connect} and {@code head} - from sending a GET or HEAD until the response headers arrive;</li>
+ *     <li>{@code body} - reading the response body;</li>
+ *     <li>{@code parse} - parsing the HTML prefix with Jsoup;</li>
+ *     <li>{@code total} - the whole retrieval, including fallbacks.</li>
+ * </ul>
+ * Downloaded body bytes are counted per family, compressed bodies also by their size before and after
+ * decoding, and the total latency is also tracked per host so that the
+ * slowest hosts can be listed at {@code /actuator/slowhosts}.
+ */
+@Component
+public class RetrieverMetrics {
+
+    public static final String UNKNOWN = "unknown";
+
+    public static final String SUCCESS = "success";
+
+    public static final String HTTP_ERROR = "http_error";
+
+    public static final String TIMEOUT = "timeout";
+
+    public static final String UNSUPPORTED = "unsupported";
+
+    public static final String ERROR = "error";
+
+    private final MeterRegistry meterRegistry;
+
+    private final Cache<String, HostLatency> hosts;
+
+    private final int topHosts;
+
+    RetrieverMetrics(MeterRegistry meterRegistry,
+                     @Value("${url-metadata-retriever.metrics.tracked-hosts:1000}") long trackedHosts,
+                     @Value("${url-metadata-retriever.metrics.top-hosts:10}") int topHosts) {
+        this.meterRegistry = meterRegistry;
+        this.topHosts = topHosts;
+        this.hosts = CacheBuilder.newBuilder()
+                .maximumSize(trackedHosts)
+                .build();
+    }
+
+    public void recordPhase(String phase, String family, String outcome, long nanos) {
+        Timer.builder("url.metadata.phase")
+                .description("Duration of a phase of URL metadata retrieval")
+                .tag("phase", phase)
+                .tag("content.type", family)
+                .tag("outcome", outcome)
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordBytes(String family, long bytes) {
+        Counter.builder("url.metadata.body.bytes")
+                .description("Response body bytes downloaded while retrieving metadata")
+                .baseUnit("bytes")
+                .tag("content.type", family)
+                .register(meterRegistry)
+                .increment(bytes);
+    }
+
+    /**
+     * Records the bytes received and produced while decoding a compressed body, to show the bandwidth saving.
+     */
+    public void recordDecompression(String encoding, long compressedBytes, long decompressedBytes) {
+        Counter.builder("url.metadata.body.compressed.bytes")
+                .description("Compressed response body bytes received")
+                .baseUnit("bytes")
+                .tag("encoding", encoding)
+                .register(meterRegistry)
+                .increment(compressedBytes);
+        Counter.builder("url.metadata.body.decompressed.bytes")
+                .description("Response body bytes produced by decompression")
+                .baseUnit("bytes")
+                .tag("encoding", encoding)
+                .register(meterRegistry)
+                .increment(decompressedBytes);
+    }
+
+    /**
+     * Records a finished retrieval in the {@code total} phase and in the per-host latency table.
+     */
+    public void recordRetrieval(String host, String family, String outcome, long nanos) {
+        recordPhase("total", family, outcome, nanos);
+        try {
+            hosts.get(host, () -> new HostLatency(host)).record(nanos);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * The hosts with the highest mean retrieval latency, slowest first.
+     */
+    public List<HostLatencySnapshot> slowestHosts() {
+        return hosts.asMap().values().stream()
+                .map(HostLatency::snapshot)
+                .sorted(Comparator.comparingDouble(HostLatencySnapshot::getMeanMillis).reversed())
+                .limit(topHosts)
+                .collect(Collectors.toList());
+    }
+
+    public static String family(MediaType mediaType) {
+        if (mediaType == null) {
+            return UNKNOWN;
+        }
+        String type = mediaType.getType();
+        return "text".equals(type) || "image".equals(type) || "video".equals(type) ? type : "other";
+    }
+
+    public static String family(String mimeType) {
+        return mimeType == null ? UNKNOWN : family(new MediaType(mimeType));
+    }
+
+    public static String outcome(Throwable e) {
+        if (e == null) {
+            return SUCCESS;
+        }
+        Throwable cause = RetrieverFutures.unwrap(e);
+        if (cause instanceof UnsupportedContentTypeException) {
+            return UNSUPPORTED;
+        }
+        if (cause instanceof ItemRetrieverException && ((ItemRetrieverException) cause).getStatus() > 0) {
+            return HTTP_ERROR;
+        }
+        for (Throwable t = cause; t != null; t = t.getCause()) {
+            if (t instanceof HttpTimeoutException) {
+                return TIMEOUT;
+            }
+        }
+        return ERROR;
+    }
+
+    private static final class HostLatency {
+        private final String host;
+        private long count;
+        private long totalNanos;
+        private long maxNanos;
+
+        private HostLatency(String host) {
+            this.host = host;
+        }
+
+        private synchronized void record(long nanos) {
+            count++;
+            totalNanos += nanos;
+            maxNanos = Math.max(maxNanos, nanos);
+        }
+
+        private synchronized HostLatencySnapshot snapshot() {
+            return new HostLatencySnapshot(host, count,
+                    TimeUnit.NANOSECONDS.toMicros(totalNanos / Math.max(count, 1)) / 1000.0,
+                    TimeUnit.NANOSECONDS.toMicros(maxNanos) / 1000.0);
+        }
+    }
+
+    @lombok.Value
+    public static class HostLatencySnapshot {
+        String host;
+        long count;
+        double meanMillis;
+        double maxMillis;
+    }
+}
@@ -0,0 +1,24 @@
+package ru.practicum.javalater.item.metadata;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Lists the hosts with the highest mean retrieval latency, at {@code /actuator/slowhosts}.
+ */
+@Component
+@Endpoint(id = "slowhosts")
+@RequiredArgsConstructor
+public class SlowHostsEndpoint {
+
+    private final RetrieverMetrics retrieverMetrics;
+
+    @ReadOperation
+    public List<RetrieverMetrics.HostLatencySnapshot> slowestHosts() {
+        return retrieverMetrics.slowestHosts();
+    }
+}
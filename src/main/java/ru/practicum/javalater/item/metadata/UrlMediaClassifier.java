@@ -0,0 +1,218 @@
+package ru.practicum.javalater.item.metadata;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.net.URI;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tells image and video URLs apart from the URL alone, so that their metadata, which is only the file name,
+ * can be produced without a network round trip. A URL is guessed from the extension of its path, or, when the
+ * path has no extension, from a short list of hosts that only serve media. The guess is trusted as long as the
+ * host never served something else for a guessed URL. Hosts whose URLs cannot be guessed are classified once at
+ * least {@code min-history} retrievals from them all returned the same media family; that only applies to paths
+ * without an extension, since a path with any other extension is never taken for media.
+ * <p>
+ * The content-type history is learned from real retrievals and kept for at most {@code tracked-hosts} hosts.
+ * Classified URLs are still fetched in the background, every one of them with {@code verify} on and one in
+ * every {@code sample-every} otherwise, which keeps the history honest: a host that turns out to serve
+ * something else for a classified URL is no longer classified.
+ * <p>
+ * Off unless {@code enabled} is set: an extension is only a hint, so pages such as {@code /wiki/File:X.jpg} are
+ * taken for media, and with sampling only one wrong guess in {@code sample-every} is ever noticed.
+ */
+@Component
+public class UrlMediaClassifier {
+
+    public static final String IMAGE = "image";
+
+    public static final String VIDEO = "video";
+
+    private static final Map<String, String> EXTENSIONS = Map.ofEntries(
+            Map.entry("jpg", IMAGE), Map.entry("jpeg", IMAGE), Map.entry("png", IMAGE), Map.entry("gif", IMAGE),
+            Map.entry("webp", IMAGE), Map.entry("avif", IMAGE), Map.entry("bmp", IMAGE), Map.entry("svg", IMAGE),
+            Map.entry("ico", IMAGE), Map.entry("tif", IMAGE), Map.entry("tiff", IMAGE), Map.entry("heic", IMAGE),
+            Map.entry("mp4", VIDEO), Map.entry("m4v", VIDEO), Map.entry("webm", VIDEO), Map.entry("mov", VIDEO),
+            Map.entry("mkv", VIDEO), Map.entry("avi", VIDEO), Map.entry("ogv", VIDEO), Map.entry("mpeg", VIDEO),
+            Map.entry("mpg", VIDEO));
+
+    private static final Map<String, String> MEDIA_HOSTS = Map.of(
+            "i.imgur.com", IMAGE,
+            "pbs.twimg.com", IMAGE,
+            "images.unsplash.com", IMAGE,
+            "i.ytimg.com", IMAGE,
+            "i.redd.it", IMAGE,
+            "lh3.googleusercontent.com", IMAGE,
+            "video.twimg.com", VIDEO);
+
+    private final boolean enabled;
+
+    private final boolean verify;
+
+    private final int minHistory;
+
+    private final int sampleEvery;
+
+    private final AtomicLong classified = new AtomicLong();
+
+    private final Cache<String, HostHistory> hosts;
+
+    private final Counter hits;
+
+    private final Counter misses;
+
+    private final Counter mismatches;
+
+    UrlMediaClassifier(MeterRegistry meterRegistry,
+                       @Value("${url-metadata-retriever.classifier.enabled:false}") boolean enabled,
+                       @Value("${url-metadata-retriever.classifier.verify:false}") boolean verify,
+                       @Value("${url-metadata-retriever.classifier.tracked-hosts:10000}") long trackedHosts,
+                       @Value("${url-metadata-retriever.classifier.min-history:20}") int minHistory,
+                       @Value("${url-metadata-retriever.classifier.sample-every:50}") int sampleEvery) {
+        this.enabled = enabled;
+        this.verify = verify;
+        this.minHistory = minHistory;
+        this.sampleEvery = sampleEvery;
+        this.hosts = CacheBuilder.newBuilder()
+                .maximumSize(trackedHosts)
+                .build();
+        this.hits = Counter.builder("url.metadata.classifier")
+                .description("URLs looked up by the media classifier")
+                .tag("result", "hit")
+                .register(meterRegistry);
+        this.misses = Counter.builder("url.metadata.classifier")
+                .description("URLs looked up by the media classifier")
+                .tag("result", "miss")
+                .register(meterRegistry);
+        this.mismatches = Counter.builder("url.metadata.classifier.mismatches")
+                .description("Retrievals that contradicted the classification of their URL")
+                .register(meterRegistry);
+        Gauge.builder("url.metadata.classifier.hit.ratio", this, UrlMediaClassifier::hitRatio)
+                .description("Share of URLs classified without a network call")
+                .register(meterRegistry);
+    }
+
+    /**
+     * The media family of the URL, {@link #IMAGE} or {@link #VIDEO}, when it can be told confidently without
+     * fetching it, and {@code null} otherwise.
+     */
+    public String classify(URI uri) {
+        if (!enabled) {
+            return null;
+        }
+        HostHistory history = hosts.getIfPresent(HostRequestScheduler.hostKey(uri));
+        String family = predict(uri, history);
+        (family == null ? misses : hits).increment();
+        return family;
+    }
+
+    /**
+     * Whether the URL just classified should still be fetched in the background to check the guess: always with
+     * {@code verify} on, and for one in every {@code sample-every} classified URLs otherwise.
+     */
+    public boolean verifies() {
+        if (!enabled) {
+            return false;
+        }
+        if (verify) {
+            return true;
+        }
+        return sampleEvery > 0 && classified.incrementAndGet() % sampleEvery == 0;
+    }
+
+    /**
+     * Records the content-type family a retrieval of the URL actually returned.
+     */
+    public void learn(URI uri, String family) {
+        if (!enabled || RetrieverMetrics.UNKNOWN.equals(family)) {
+            return;
+        }
+        HostHistory history;
+        try {
+            history = hosts.get(HostRequestScheduler.hostKey(uri), HostHistory::new);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e);
+        }
+        String predicted = predict(uri, history);
+        if (predicted != null && !predicted.equals(family)) {
+            mismatches.increment();
+        }
+        String guessed = guess(uri);
+        history.record(family, guessed != null && !guessed.equals(family));
+    }
+
+    private String predict(URI uri, HostHistory history) {
+        String guessed = guess(uri);
+        if (guessed != null) {
+            return history == null || !history.contradicted() ? guessed : null;
+        }
+        return history == null || hasExtension(uri) ? null : history.uniformMedia(minHistory);
+    }
+
+    /**
+     * Guesses the media family from the extension of the path or, for paths without one, from the host.
+     * A path with any other extension is not guessed.
+     */
+    static String guess(URI uri) {
+        String name = fileName(uri);
+        int dot = name.lastIndexOf('.');
+        if (dot >= 0) {
+            return EXTENSIONS.get(name.substring(dot + 1).toLowerCase(Locale.ROOT));
+        }
+        return uri.getHost() == null ? null : MEDIA_HOSTS.get(uri.getHost().toLowerCase(Locale.ROOT));
+    }
+
+    private static boolean hasExtension(URI uri) {
+        return fileName(uri).lastIndexOf('.') >= 0;
+    }
+
+    private static String fileName(URI uri) {
+        String path = uri.getPath();
+        return path == null ? "" : path.substring(path.lastIndexOf('/') + 1);
+    }
+
+    private double hitRatio() {
+        double total = hits.count() + misses.count();
+        return total == 0 ? 0 : hits.count() / total;
+    }
+
+    private static final class HostHistory {
+        private int images;
+        private int videos;
+        private int total;
+        private boolean contradicted;
+
+        private synchronized void record(String family, boolean contradictsGuess) {
+            total++;
+            if (IMAGE.equals(family)) {
+                images++;
+            } else if (VIDEO.equals(family)) {
+                videos++;
+            }
+            contradicted |= contradictsGuess;
+        }
+
+        private synchronized boolean contradicted() {
+            return contradicted;
+        }
+
+        private synchronized String uniformMedia(int minHistory) {
+            if (total < minHistory) {
+                return null;
+            }
+            if (images == total) {
+                return IMAGE;
+            }
+            return videos == total ? VIDEO : null;
+        }
+    }
+}
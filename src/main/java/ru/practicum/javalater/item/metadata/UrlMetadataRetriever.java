@@ -1,11 +1,27 @@
 package ru.practicum.javalater.item.metadata;
 
 import java.time.Instant;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 public interface UrlMetadataRetriever {
 
     UrlMetadata retrieve(String urlString);
 
+    /**
+     * Non-blocking variant of {@link #retrieve(String)}. The returned future completes exceptionally
+     * with {@link ru.practicum.javalater.item.exception.ItemRetrieverException} on the same failures
+     * that make {@code retrieve} throw.
+     */
+    CompletableFuture<UrlMetadata> retrieveAsync(String urlString);
+
+    /**
+     * Fetches the URL again with a conditional GET built from the validators of an earlier response. The future
+     * completes with an empty optional when the server answers 304 Not Modified, and with the fresh metadata
+     * otherwise. Either validator may be {@code null}.
+     */
+    CompletableFuture<Optional<UrlMetadata>> revalidateAsync(String urlString, String etag, String lastModified);
+
     interface UrlMetadata {
         String getNormalUrl();
         String getResolvedUrl();
@@ -14,5 +30,7 @@ public interface UrlMetadataRetriever {
         boolean isHasImage();
         boolean isHasVideo();
         Instant getDateResolved();
+        String getEtag();
+        String getLastModified();
     }
 }
@@ -2,33 +2,90 @@ package ru.practicum.javalater.item.metadata;
 
 import lombok.Builder;
 import org.jsoup.Jsoup;
+import org.jsoup.internal.StringUtil;
 import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
 import org.jsoup.select.Elements;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.InvalidMediaTypeException;
 import org.springframework.http.MediaType;
 import org.springframework.stereotype.Component;
 import org.springframework.util.MimeType;
 import ru.practicum.javalater.item.exception.ItemRetrieverException;
+import ru.practicum.javalater.item.exception.TransientRetrieverException;
+import ru.practicum.javalater.item.exception.UnsupportedContentTypeException;
 
-import java.io.File;
 import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
 
+/**
+ * Resolves a URL with a single GET by default: the handler is chosen from the response headers, HTML bodies
+ * are read through {@link HtmlPrefixSubscriber} and image or video bodies are aborted right away. The older
+ * HEAD-then-GET sequence is used when {@code url-metadata-retriever.single-request} is off or when the server
+ * rejects GET with 405 or 501. Every exchange is started through the {@link HostRequestScheduler} and is
+ * refused up front while the {@link HostCircuitBreaker} of its host is open. With
+ * {@code url-metadata-retriever.html-scanner} on, HTML is read by {@link HtmlMetadataScanner} instead of Jsoup,
+ * falling back to Jsoup for input the scanner does not handle. GET requests accept gzip and deflate, and
+ * compressed HTML is inflated on the fly by {@link DecompressingSubscriber}. Each retrieval runs within the
+ * deadline of the {@link RetrievalPolicy}, which also retries and hedges it; every exchange is sent with the
+ * remaining budget as its timeout, covering redirects, and its body transfer is aborted through an
+ * {@link AbortableSubscriber} if it is still being read when the retrieval is decided or the budget runs out.
+ * URLs the {@link UrlMediaClassifier} confidently recognises as images or videos are answered without any
+ * request, and every real retrieval teaches the classifier the content type of its host.
+ */
 @Component
 public class UrlMetadataRetrieverImpl implements UrlMetadataRetriever {
 
     private final HttpClient client;
 
+    private final int maxBodyBytes;
 
-    UrlMetadataRetrieverImpl(@Value("${url-metadata-retriever.read_timeout-sec:120}") int readTimeout) {
+    private final boolean singleRequest;
+
+    private final boolean htmlScanner;
+
+    private final HostRequestScheduler scheduler;
+
+    private final HostCircuitBreaker breaker;
+
+    private final RetrieverMetrics metrics;
+
+    private final RetrievalPolicy policy;
+
+    private final UrlMediaClassifier classifier;
+
+
+    UrlMetadataRetrieverImpl(@Value("${url-metadata-retriever.read_timeout-sec:120}") int readTimeout,
+                             @Value("${url-metadata-retriever.max-body-bytes:1048576}") int maxBodyBytes,
+                             @Value("${url-metadata-retriever.single-request:true}") boolean singleRequest,
+                             @Value("${url-metadata-retriever.html-scanner:false}") boolean htmlScanner,
+                             HostRequestScheduler scheduler,
+                             HostCircuitBreaker breaker,
+                             RetrieverMetrics metrics,
+                             RetrievalPolicy policy,
+                             UrlMediaClassifier classifier) {
+        this.maxBodyBytes = maxBodyBytes;
+        this.singleRequest = singleRequest;
+        this.htmlScanner = htmlScanner;
+        this.scheduler = scheduler;
+        this.breaker = breaker;
+        this.metrics = metrics;
+        this.policy = policy;
+        this.classifier = classifier;
 
         this.client =  HttpClient.newBuilder()
                 .followRedirects(HttpClient.Redirect.ALWAYS)
@@ -39,108 +96,365 @@ public class UrlMetadataRetrieverImpl implements UrlMetadataRetriever {
 
     @Override
     public UrlMetadata retrieve(String urlString) {
+        return RetrieverFutures.await(retrieveAsync(urlString), urlString);
+    }
+
+    @Override
+    public CompletableFuture<UrlMetadata> retrieveAsync(String urlString) {
         final URI uri;
         try {
-            uri = new URI(urlString);
+            uri = new URI(UrlNormalizer.normalize(urlString));
         } catch (URISyntaxException e) {
-            throw new ItemRetrieverException("The URL is malformed: " + urlString, e);
+            return CompletableFuture.failedFuture(
+                    new ItemRetrieverException("The URL is malformed: " + urlString, e));
         }
 
-        HttpResponse<Void> resp = connect(uri, "HEAD", HttpResponse.BodyHandlers.discarding());
+        String family = classifier.classify(uri);
+        if (family != null) {
+            if (classifier.verifies()) {
+                fetch(uri, urlString);
+            }
+            return CompletableFuture.completedFuture(complete(classified(uri, family), urlString));
+        }
+        return fetch(uri, urlString)
+                .thenApply(result -> complete(result, urlString));
+    }
 
-        String contentType = resp.headers()
-                .firstValue(HttpHeaders.CONTENT_TYPE)
-                .orElse("*");
+    private CompletableFuture<UrlMetadataImpl> fetch(URI uri, String urlString) {
+        long startedAt = System.nanoTime();
+        return policy.run(retrieval -> singleRequest
+                        ? getAndHandle(uri, Map.of(), retrieval) : headThenGet(uri, retrieval), urlString)
+                .whenComplete((result, e) -> recordRetrieval(uri, result, e, startedAt));
+    }
 
-        MediaType mediaType = MediaType.parseMediaType(contentType);
+    @Override
+    public CompletableFuture<Optional<UrlMetadata>> revalidateAsync(String urlString, String etag,
+                                                                    String lastModified) {
+        final URI uri;
+        try {
+            uri = new URI(UrlNormalizer.normalize(urlString));
+        } catch (URISyntaxException e) {
+            return CompletableFuture.failedFuture(
+                    new ItemRetrieverException("The URL is malformed: " + urlString, e));
+        }
+        Map<String, String> conditions = new HashMap<>();
+        if (etag != null) {
+            conditions.put(HttpHeaders.IF_NONE_MATCH, etag);
+        }
+        if (lastModified != null) {
+            conditions.put(HttpHeaders.IF_MODIFIED_SINCE, lastModified);
+        }
+        long startedAt = System.nanoTime();
+        return policy.run(retrieval -> getAndHandle(uri, conditions, retrieval), urlString)
+                .whenComplete((result, e) -> recordRetrieval(uri, result, e, startedAt))
+                .thenApply(result -> Optional.ofNullable(result).map(changed -> complete(changed, urlString)));
+    }
 
-        final UrlMetadataImpl result;
+    private void recordRetrieval(URI uri, UrlMetadataImpl result, Throwable e, long startedAt) {
+        String family = result == null ? RetrieverMetrics.UNKNOWN : RetrieverMetrics.family(result.getMimeType());
+        metrics.recordRetrieval(HostRequestScheduler.hostKey(uri), family, RetrieverMetrics.outcome(e),
+                System.nanoTime() - startedAt);
+        classifier.learn(uri, family);
+    }
 
-        if (mediaType.isCompatibleWith(MimeType.valueOf("text/*"))) {
-            result = handleText(resp.uri());
-        } else if (mediaType.isCompatibleWith(MimeType.valueOf("image/*"))) {
-            result = handleImage(resp.uri());
-        } else if (mediaType.isCompatibleWith(MimeType.valueOf("video/*"))) {
-            result = handleVideo(resp.uri());
-        } else {
-            throw new ItemRetrieverException("The content type [" + mediaType
-                    + "] at the specified URL is not supported.");
-        }
+    private UrlMetadataImpl classified(URI uri, String family) {
+        UrlMetadataImpl result = UrlMediaClassifier.VIDEO.equals(family) ? handleVideo(uri) : handleImage(uri);
+        return result.toBuilder()
+                .resolvedUrl(uri.toString())
+                .mimeType(family)
+                .build();
+    }
 
+    private static UrlMetadata complete(UrlMetadataImpl result, String urlString) {
         return result.toBuilder()
                 .normalUrl(urlString)
-                .resolvedUrl(resp.uri().toString())
-                .mimeType(mediaType.getType())
+                .resolvedUrl(UrlNormalizer.normalize(result.getResolvedUrl()))
                 .dateResolved(Instant.now())
                 .build();
     }
 
-    private <T> HttpResponse<T> connect(URI url,
-                                        String method,
-                                        HttpResponse.BodyHandler<T> responseBodyHandler) {
-        HttpRequest request = HttpRequest.newBuilder()
-                .uri(url)
-                .method(method, HttpRequest.BodyPublishers.noBody())
-                .build();
+    /**
+     * Sends one GET with the given extra headers. Completes with {@code null} when the server answers
+     * 304 Not Modified, which only happens for conditional requests.
+     */
+    private CompletableFuture<UrlMetadataImpl> getAndHandle(URI uri, Map<String, String> headers,
+                                                            RetrievalPolicy.Retrieval retrieval) {
+        return send(uri, "GET", this::probeSubscriber, headers, retrieval)
+                .thenCompose(resp -> {
+                    if (resp.statusCode() == HttpStatus.NOT_MODIFIED.value() && !headers.isEmpty()) {
+                        return CompletableFuture.completedFuture(null);
+                    }
+                    if (resp.statusCode() == HttpStatus.METHOD_NOT_ALLOWED.value()
+                            || resp.statusCode() == HttpStatus.NOT_IMPLEMENTED.value()) {
+                        return headThenGet(uri, retrieval);
+                    }
+                    checkStatus(resp, uri);
+                    MediaType mediaType = mediaTypeOf(resp.headers());
+                    final UrlMetadataImpl result;
+                    if (isText(mediaType)) {
+                        result = parseHtml(resp.body());
+                    } else if (isImage(mediaType)) {
+                        result = handleImage(resp.uri());
+                    } else if (isVideo(mediaType)) {
+                        result = handleVideo(resp.uri());
+                    } else {
+                        throw unsupported(mediaType);
+                    }
+                    return CompletableFuture.completedFuture(result.toBuilder()
+                            .resolvedUrl(resp.uri().toString())
+                            .mimeType(mediaType.getType())
+                            .etag(resp.headers().firstValue(HttpHeaders.ETAG).orElse(null))
+                            .lastModified(resp.headers().firstValue(HttpHeaders.LAST_MODIFIED).orElse(null))
+                            .build());
+                });
+    }
+
+    /**
+     * Reads the body of a successful text response and aborts every other body after the headers.
+     */
+    private HttpResponse.BodySubscriber<String> probeSubscriber(HttpResponse.ResponseInfo responseInfo) {
+        boolean successful = responseInfo.statusCode() >= 200 && responseInfo.statusCode() < 300;
+        if (successful && isText(mediaTypeOf(responseInfo.headers()))) {
+            return DecompressingSubscriber.wrap(responseInfo,
+                    new HtmlPrefixSubscriber(HtmlPrefixSubscriber.charsetOf(responseInfo), maxBodyBytes),
+                    maxBodyBytes, metrics);
+        }
+        return new AbortingSubscriber<>();
+    }
+
+    private CompletableFuture<UrlMetadataImpl> headThenGet(URI uri, RetrievalPolicy.Retrieval retrieval) {
+        return connect(uri, "HEAD", HttpResponse.BodyHandlers.discarding(), retrieval)
+                .thenCompose(resp -> {
+                    MediaType mediaType = mediaTypeOf(resp.headers());
+
+                    return handle(mediaType, resp.uri(), retrieval)
+                            .thenApply(result -> result.toBuilder()
+                                    .resolvedUrl(resp.uri().toString())
+                                    .mimeType(mediaType.getType())
+                                    .etag(resp.headers().firstValue(HttpHeaders.ETAG).orElse(null))
+                                    .lastModified(resp.headers().firstValue(HttpHeaders.LAST_MODIFIED)
+                                            .orElse(null))
+                                    .build());
+                });
+    }
+
+    private CompletableFuture<UrlMetadataImpl> handle(MediaType mediaType, URI url,
+                                                      RetrievalPolicy.Retrieval retrieval) {
+        if (isText(mediaType)) {
+            return handleText(url, retrieval);
+        } else if (isImage(mediaType)) {
+            return CompletableFuture.completedFuture(handleImage(url));
+        } else if (isVideo(mediaType)) {
+            return CompletableFuture.completedFuture(handleVideo(url));
+        } else {
+            return CompletableFuture.failedFuture(unsupported(mediaType));
+        }
+    }
 
-        final HttpResponse<T> response;
+    private static MediaType mediaTypeOf(java.net.http.HttpHeaders headers) {
+        String contentType = headers
+                .firstValue(HttpHeaders.CONTENT_TYPE)
+                .orElse("*");
         try {
-            response = client.send(request, responseBodyHandler);
-        } catch (IOException e) {
-            throw new ItemRetrieverException("Cannot retrieve data from the URL: " + url, e);
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            throw new RuntimeException("Cannot get the metadata for url: " + url
-                    + " because the thread was interrupted.", e);
+            return MediaType.parseMediaType(contentType);
+        } catch (InvalidMediaTypeException e) {
+            throw new UnsupportedContentTypeException("The content type [" + contentType
+                    + "] at the specified URL is not supported.", e);
+        }
+    }
+
+    private static MediaType mediaTypeOrNull(java.net.http.HttpHeaders headers) {
+        try {
+            return mediaTypeOf(headers);
+        } catch (ItemRetrieverException e) {
+            return null;
+        }
+    }
+
+    private static boolean isText(MediaType mediaType) {
+        return mediaType.isCompatibleWith(MimeType.valueOf("text/*"));
+    }
+
+    private static boolean isImage(MediaType mediaType) {
+        return mediaType.isCompatibleWith(MimeType.valueOf("image/*"));
+    }
+
+    private static boolean isVideo(MediaType mediaType) {
+        return mediaType.isCompatibleWith(MimeType.valueOf("video/*"));
+    }
+
+    private static ItemRetrieverException unsupported(MediaType mediaType) {
+        return new UnsupportedContentTypeException("The content type [" + mediaType
+                + "] at the specified URL is not supported.");
+    }
+
+    private <T> CompletableFuture<HttpResponse<T>> connect(URI url,
+                                                           String method,
+                                                           HttpResponse.BodyHandler<T> responseBodyHandler,
+                                                           RetrievalPolicy.Retrieval retrieval) {
+        return send(url, method, responseBodyHandler, Map.of(), retrieval)
+                .thenApply(response -> checkStatus(response, url));
+    }
+
+    private <T> CompletableFuture<HttpResponse<T>> send(URI url,
+                                                        String method,
+                                                        HttpResponse.BodyHandler<T> responseBodyHandler,
+                                                        Map<String, String> headers,
+                                                        RetrievalPolicy.Retrieval retrieval) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder()
+                .uri(url)
+                .method(method, HttpRequest.BodyPublishers.noBody());
+        if ("GET".equals(method)) {
+            builder.header(HttpHeaders.ACCEPT_ENCODING, DecompressingSubscriber.ACCEPT_ENCODING);
         }
+        headers.forEach(builder::header);
 
+        String host = HostRequestScheduler.hostKey(url);
+        if (!breaker.tryAcquire(host)) {
+            return CompletableFuture.failedFuture(new TransientRetrieverException(
+                    "The host " + host + " is temporarily unavailable, the request was not sent: " + url));
+        }
+        String phase = "HEAD".equals(method) ? "head" : "connect";
+        long submittedAt = System.nanoTime();
+        long[] startedAt = new long[1];
+        HttpResponse.BodyHandler<T> meteredHandler = responseInfo -> {
+            String family = RetrieverMetrics.family(mediaTypeOrNull(responseInfo.headers()));
+            metrics.recordPhase(phase, family, responseInfo.statusCode() < 400
+                    ? RetrieverMetrics.SUCCESS : RetrieverMetrics.HTTP_ERROR, System.nanoTime() - startedAt[0]);
+            HttpResponse.BodySubscriber<T> subscriber = responseBodyHandler.apply(responseInfo);
+            if (subscriber instanceof AbortingSubscriber) {
+                return subscriber;
+            }
+            AbortableSubscriber<T> abortable = new AbortableSubscriber<>("HEAD".equals(method)
+                    ? subscriber : new MeteredBodySubscriber<>(subscriber, metrics, family));
+            retrieval.onAbort(abortable::abort);
+            return abortable;
+        };
+        return scheduler.submit(url, () -> {
+                    startedAt[0] = System.nanoTime();
+                    metrics.recordPhase("queue", RetrieverMetrics.UNKNOWN, RetrieverMetrics.SUCCESS,
+                            startedAt[0] - submittedAt);
+                    if (retrieval.isAborted()) {
+                        return CompletableFuture.failedFuture(new CancellationException(
+                                "The retrieval was decided before the request was sent: " + url));
+                    }
+                    long remaining = RetrievalPolicy.remaining(retrieval.deadline());
+                    if (remaining <= 0) {
+                        return CompletableFuture.failedFuture(new TransientRetrieverException(
+                                "The deadline passed before the request was sent: " + url));
+                    }
+                    HttpRequest request = builder.timeout(Duration.ofNanos(remaining)).build();
+                    return policy.withDeadline(client.sendAsync(request, meteredHandler), retrieval.deadline(),
+                            () -> new HttpTimeoutException("The deadline passed while reading the response from "
+                                    + url));
+                })
+                .handle((response, e) -> {
+                    if (e != null) {
+                        Throwable cause = RetrieverFutures.unwrap(e);
+                        if (cause instanceof IOException) {
+                            metrics.recordPhase(phase, RetrieverMetrics.UNKNOWN, RetrieverMetrics.outcome(cause),
+                                    System.nanoTime() - startedAt[0]);
+                            breaker.onFailure(host);
+                            throw new TransientRetrieverException("Cannot retrieve data from the URL: " + url, cause);
+                        }
+                        breaker.release(host);
+                        if (cause instanceof ItemRetrieverException) {
+                            throw (ItemRetrieverException) cause;
+                        }
+                        throw new ItemRetrieverException("Cannot retrieve data from the URL: " + url, cause);
+                    }
+                    if (response.statusCode() >= HttpStatus.INTERNAL_SERVER_ERROR.value()) {
+                        breaker.onFailure(host);
+                    } else {
+                        breaker.onSuccess(host);
+                    }
+                    return response;
+                });
+    }
+
+    private <T> HttpResponse<T> checkStatus(HttpResponse<T> response, URI url) {
         HttpStatus status = HttpStatus.resolve(response.statusCode());
         if(status == null) {
-            throw new ItemRetrieverException("The server returned an unknown status code: " + response.statusCode());
+            throw new ItemRetrieverException("The server returned an unknown status code: " + response.statusCode(),
+                    response.statusCode());
         }
 
         if(status.equals(HttpStatus.UNAUTHORIZED) || status.equals(HttpStatus.FORBIDDEN)) {
-            throw new ItemRetrieverException("There is no access to the resource at the specified URL: " + url);
+            throw new ItemRetrieverException("There is no access to the resource at the specified URL: " + url,
+                    status.value());
+        }
+        if(status.is5xxServerError()) {
+            throw new TransientRetrieverException("Cannot get the data on the item because the server returned an error."
+                    + "Response status: " + status, status.value());
         }
         if(status.isError()) {
             throw new ItemRetrieverException("Cannot get the data on the item because the server returned an error."
-                    + "Response status: " + status);
+                    + "Response status: " + status, status.value());
         }
 
         return response;
     }
 
-    private UrlMetadataImpl handleText(URI url) {
-        HttpResponse<String> resp = connect(url, "GET", HttpResponse.BodyHandlers.ofString());
+    private CompletableFuture<UrlMetadataImpl> handleText(URI url, RetrievalPolicy.Retrieval retrieval) {
+        HttpResponse.BodyHandler<String> htmlHandler = HtmlPrefixSubscriber.handler(maxBodyBytes);
+        return connect(url, "GET", responseInfo -> DecompressingSubscriber.wrap(responseInfo,
+                htmlHandler.apply(responseInfo), maxBodyBytes, metrics), retrieval)
+                .thenApply(resp -> parseHtml(resp.body()));
+    }
 
-        Document doc = Jsoup.parse(resp.body());
+    private UrlMetadataImpl parseHtml(String html) {
+        long startedAt = System.nanoTime();
+        UrlMetadataImpl result = htmlScanner ? HtmlMetadataScanner.scan(html) : null;
+        if (result == null) {
+            result = parseWithJsoup(html);
+        }
+        metrics.recordPhase("parse", "text", RetrieverMetrics.SUCCESS, System.nanoTime() - startedAt);
+        return result;
+    }
+
+    static UrlMetadataImpl parseWithJsoup(String html) {
+        Document doc = Jsoup.parse(html);
 
         Elements imgElements = doc.getElementsByTag("img");
         Elements videoElements = doc.getElementsByTag("video");
 
+        String title = doc.title();
+        if (title.isEmpty()) {
+            Element ogTitle = doc.selectFirst("meta[property=og:title]");
+            if (ogTitle != null) {
+                title = StringUtil.normaliseWhitespace(ogTitle.attr("content")).trim();
+            }
+        }
+
         return UrlMetadataImpl.builder()
-                .title(doc.title())
+                .title(title)
                 .hasImage(!imgElements.isEmpty())
                 .hasVideo(!videoElements.isEmpty())
                 .build();
     }
 
     private UrlMetadataImpl handleVideo(URI url) {
-        String name = new File(url).getName();
         return UrlMetadataImpl.builder()
-                .title(name)
+                .title(fileName(url))
                 .hasVideo(true)
                 .build();
     }
 
     private UrlMetadataImpl handleImage(URI url) {
-        String name = new File(url).getName();
         return UrlMetadataImpl.builder()
-                .title(name)
+                .title(fileName(url))
                 .hasImage(true)
                 .build();
     }
 
+    private static String fileName(URI url) {
+        String path = url.getPath();
+        if (path == null) {
+            return "";
+        }
+        return path.substring(path.lastIndexOf('/') + 1);
+    }
+
     @lombok.Value
     @Builder(toBuilder = true)
     public static class UrlMetadataImpl implements UrlMetadata {
@@ -151,5 +465,7 @@ public class UrlMetadataRetrieverImpl implements UrlMetadataRetriever {
         boolean hasImage;
         boolean hasVideo;
         Instant dateResolved;
+        String etag;
+        String lastModified;
     }
 }
@@ -0,0 +1,116 @@
+package ru.practicum.javalater.item.metadata;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.StringJoiner;
+
+/**
+ * Brings equivalent spellings of a URL to a single form. {@link #normalize} is the form that is fetched and
+ * stored: the scheme and host are lower-cased, default ports, the fragment and {@code utm_*} tracking parameters
+ * are dropped, and the path is left as it is. {@link #canonicalize} also drops a trailing slash of the path,
+ * which servers may or may not treat as the same page, so it is never fetched: it is the key a user's resolved
+ * items are unique by, stored as {@code items.canonical_url} and matched by every save.
+ */
+public final class UrlNormalizer {
+
+    private static final HashFunction URL_HASH = Hashing.farmHashFingerprint64();
+
+    private UrlNormalizer() {
+    }
+
+    public static String normalize(String urlString) {
+        return normalize(urlString, false);
+    }
+
+    public static String canonicalize(String urlString) {
+        return normalize(urlString, true);
+    }
+
+    private static String normalize(String urlString, boolean foldTrailingSlash) {
+        if (urlString == null) {
+            return null;
+        }
+        String trimmed = urlString.trim();
+        try {
+            URI uri = new URI(trimmed).normalize();
+            if (uri.getScheme() == null || uri.getRawAuthority() == null) {
+                return trimmed;
+            }
+            String scheme = uri.getScheme().toLowerCase(Locale.ROOT);
+            String authority = uri.getHost() == null ? uri.getRawAuthority().toLowerCase(Locale.ROOT)
+                    : (uri.getRawUserInfo() == null ? "" : uri.getRawUserInfo() + "@")
+                    + uri.getHost().toLowerCase(Locale.ROOT)
+                    + (uri.getPort() == -1 || uri.getPort() == defaultPort(scheme) ? "" : ":" + uri.getPort());
+            return scheme + "://" + authority + path(uri.getRawPath(), foldTrailingSlash)
+                    + query(uri.getRawQuery());
+        } catch (URISyntaxException e) {
+            return trimmed;
+        }
+    }
+
+    /**
+     * A 64-bit fingerprint of the canonical form, used as the dedupe key of stored items. Different URLs may
+     * share a hash, so a match has to be confirmed by comparing the URLs.
+     */
+    public static Long hash(String urlString) {
+        if (urlString == null) {
+            return null;
+        }
+        return URL_HASH.hashString(canonicalize(urlString), StandardCharsets.UTF_8).asLong();
+    }
+
+    /**
+     * The host of the URL, lower-cased and without a leading {@code www.}, or null when it has none.
+     */
+    public static String domain(String urlString) {
+        if (urlString == null) {
+            return null;
+        }
+        try {
+            String host = new URI(urlString.trim()).getHost();
+            if (host == null) {
+                return null;
+            }
+            host = host.toLowerCase(Locale.ROOT);
+            return host.startsWith("www.") ? host.substring(4) : host;
+        } catch (URISyntaxException e) {
+            return null;
+        }
+    }
+
+    private static int defaultPort(String scheme) {
+        switch (scheme) {
+            case "http":
+                return 80;
+            case "https":
+                return 443;
+            default:
+                return -1;
+        }
+    }
+
+    private static String path(String rawPath, boolean foldTrailingSlash) {
+        if (rawPath == null || rawPath.isEmpty() || rawPath.equals("/")) {
+            return "/";
+        }
+        return foldTrailingSlash && rawPath.endsWith("/") ? rawPath.substring(0, rawPath.length() - 1) : rawPath;
+    }
+
+    private static String query(String rawQuery) {
+        if (rawQuery == null) {
+            return "";
+        }
+        StringJoiner kept = new StringJoiner("&", "?", "").setEmptyValue("");
+        for (String parameter : rawQuery.split("&")) {
+            if (!parameter.isEmpty() && !parameter.toLowerCase(Locale.ROOT).startsWith("utm_")) {
+                kept.add(parameter);
+            }
+        }
+        return kept.toString();
+    }
+}
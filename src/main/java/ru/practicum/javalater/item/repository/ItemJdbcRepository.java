@@ -0,0 +1,539 @@
+package ru.practicum.javalater.item.repository;
+
+import lombok.RequiredArgsConstructor;
+import lombok.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Repository;
+import ru.practicum.javalater.item.dto.ResolutionState;
+import ru.practicum.javalater.item.entity.Item;
+import ru.practicum.javalater.item.metadata.UrlMetadataRetriever;
+import ru.practicum.javalater.item.metadata.UrlNormalizer;
+
+import javax.transaction.Transactional;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Set-based writes that would cost one round trip per row through JPA. Items use an identity key, which
+ * disables Hibernate's insert batching, so bulk inserts go through plain JDBC batches instead.
+ */
+@Repository
+@RequiredArgsConstructor
+public class ItemJdbcRepository {
+
+    static final int BATCH_SIZE = 100;
+
+    private static final String INSERT_ITEM = "INSERT INTO items (user_id, url, resolved_url, mime_type, title, "
+            + "has_image, has_video, date_resolved, unread, resolution_state, etag, last_modified, url_hash, domain, "
+            + "canonical_url) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    /**
+     * Parameters bound by {@link #bindItem}; statements built on {@link #INSERT_ITEM} number theirs after these.
+     */
+    private static final int ITEM_PARAMETERS = 15;
+
+    /**
+     * Inserts the item or finds the one the user saved under the same resolved URL, in any spelling, and adds
+     * the tags in the same statement. The no-op update locks the existing row so that it is returned, and keeps
+     * its resolved URL; {@code xmax = 0} tells a fresh row from a conflicting one.
+     */
+    static final String UPSERT_ITEM_WITH_TAGS = "WITH saved AS (" + INSERT_ITEM
+            + " ON CONFLICT (user_id, canonical_url) DO UPDATE SET canonical_url = EXCLUDED.canonical_url"
+            + " RETURNING id, xmax = 0 AS created), "
+            + "added_tags AS (INSERT INTO item_tags (item_id, tag_id) SELECT saved.id, tag.id"
+            + " FROM saved CROSS JOIN unnest(CAST(? AS INTEGER[])) AS tag(id)"
+            + " ON CONFLICT (item_id, tag_id) DO NOTHING) "
+            + "SELECT id, created FROM saved";
+
+    /**
+     * Inserts the item unless the user got the same resolved URL from a concurrent save in the meantime.
+     */
+    private static final String INSERT_NEW_ITEM = INSERT_ITEM
+            + " ON CONFLICT (user_id, canonical_url) DO NOTHING";
+
+    private static final String INSERT_MISSING_TAG = "INSERT INTO item_tags (item_id, tag_id) SELECT ?, ? "
+            + "WHERE NOT EXISTS (SELECT 1 FROM item_tags WHERE item_id = ? AND tag_id = ?)";
+
+    private static final String INSERT_NEW_TAG = INSERT_MISSING_TAG + " ON CONFLICT (item_id, tag_id) DO NOTHING";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+
+    private final TagDictionary tagDictionary;
+
+    private volatile Boolean postgres;
+
+    /**
+     * Saves a resolved item of the user atomically: either it is inserted, or its tags are merged into the item
+     * the user already has under the same resolved URL, in any spelling. On PostgreSQL this is one
+     * {@code INSERT ... ON CONFLICT} statement; other databases insert and fall back to the existing row when
+     * the {@code (user_id, canonical_url)} key is taken.
+     */
+    @Transactional
+    public SavedItem upsert(long userId, Item item) {
+        Collection<Integer> tagIds = tagDictionary.idsOf(tagsOf(item)).values();
+        if (isPostgres()) {
+            return jdbcTemplate.execute((Connection connection) -> {
+                try (PreparedStatement statement = connection.prepareStatement(UPSERT_ITEM_WITH_TAGS)) {
+                    bindItem(statement, userId, item);
+                    statement.setArray(ITEM_PARAMETERS + 1, connection.createArrayOf("integer", tagIds.toArray()));
+                    try (ResultSet rs = statement.executeQuery()) {
+                        rs.next();
+                        return new SavedItem(rs.getLong("id"), rs.getBoolean("created"));
+                    }
+                }
+            });
+        }
+        SavedItem saved;
+        try {
+            KeyHolder keyHolder = new GeneratedKeyHolder();
+            jdbcTemplate.update(connection -> {
+                PreparedStatement statement = connection.prepareStatement(INSERT_ITEM, new String[]{"id"});
+                bindItem(statement, userId, item);
+                return statement;
+            }, keyHolder);
+            saved = new SavedItem(keyHolder.getKey().longValue(), true);
+        } catch (DuplicateKeyException e) {
+            saved = new SavedItem(findIdsByResolvedUrls(userId, List.of(item.getResolvedUrl()))
+                    .get(item.getResolvedUrl()), false);
+        }
+        for (Integer tagId : tagIds) {
+            try {
+                jdbcTemplate.update(INSERT_MISSING_TAG, saved.getId(), tagId, saved.getId(), tagId);
+            } catch (DuplicateKeyException e) {
+                // added by a concurrent save of the same item
+            }
+        }
+        return saved;
+    }
+
+    /**
+     * Saves resolved items of one user: items whose resolved URL the user already has, including from a save
+     * running at the same time, get the new tags merged in, the rest are inserted. Returns the outcome per
+     * resolved URL.
+     */
+    @Transactional
+    public Map<String, SavedItem> saveAll(long userId, Collection<Item> items) {
+        return save(userId, items, Item::getResolvedUrl, "resolved_url", urls -> findIdsByResolvedUrls(userId, urls));
+    }
+
+    /**
+     * Saves items that have not been resolved yet, keyed by their URL. An item is merged into an existing one
+     * when the user already has that URL either as a saved or as a resolved URL.
+     */
+    @Transactional
+    public Map<String, SavedItem> savePending(long userId, Collection<Item> items) {
+        return save(userId, items, Item::getUrl, "url", urls -> findIdsByUrls(userId, urls));
+    }
+
+    private Map<String, SavedItem> save(long userId, Collection<Item> items, Function<Item, String> key,
+                                        String keyColumn,
+                                        Function<Collection<String>, Map<String, Long>> findExisting) {
+        Map<String, Item> byKey = new LinkedHashMap<>();
+        items.forEach(item -> byKey.put(key.apply(item), item));
+        Map<String, Long> existing = findExisting.apply(byKey.keySet());
+
+        List<Item> toInsert = new ArrayList<>();
+        Map<String, SavedItem> saved = new LinkedHashMap<>();
+        byKey.forEach((url, item) -> {
+            Long id = existing.get(url);
+            if (id == null) {
+                toInsert.add(item);
+            } else {
+                saved.put(url, new SavedItem(id, false));
+            }
+        });
+        Map<String, Long> insertedIds = insertNew(userId, toInsert, keyColumn);
+        List<String> taken = new ArrayList<>();
+        for (Item item : toInsert) {
+            Long id = insertedIds.get(key.apply(item));
+            if (id == null) {
+                taken.add(key.apply(item));
+            } else {
+                saved.put(key.apply(item), new SavedItem(id, true));
+            }
+        }
+        if (!taken.isEmpty()) {
+            findExisting.apply(taken).forEach((url, id) -> saved.put(url, new SavedItem(id, false)));
+        }
+
+        Map<Long, Set<String>> tags = new HashMap<>();
+        byKey.forEach((url, item) -> {
+            if (item.getTags() != null && !item.getTags().isEmpty()) {
+                tags.put(saved.get(url).getId(), item.getTags());
+            }
+        });
+        addMissingTags(tags);
+        return saved;
+    }
+
+    /**
+     * Looks the resolved URLs up through the {@code (user_id, url_hash)} index, so a URL also finds the item
+     * saved under another spelling of it; rows that only share the hash are skipped.
+     */
+    public Map<String, Long> findIdsByResolvedUrls(long userId, Collection<String> resolvedUrls) {
+        Map<String, Long> ids = new HashMap<>();
+        List<String> urls = new ArrayList<>(resolvedUrls);
+        for (int from = 0; from < urls.size(); from += BATCH_SIZE) {
+            List<String> chunk = urls.subList(from, Math.min(from + BATCH_SIZE, urls.size()));
+            Map<String, List<String>> wanted = new HashMap<>();
+            List<Long> hashes = new ArrayList<>();
+            chunk.forEach(url -> {
+                wanted.computeIfAbsent(UrlNormalizer.canonicalize(url), k -> new ArrayList<>()).add(url);
+                hashes.add(Item.urlHash(null, url));
+            });
+            MapSqlParameterSource params = new MapSqlParameterSource()
+                    .addValue("userId", userId)
+                    .addValue("hashes", hashes);
+            namedJdbcTemplate.query("SELECT id, resolved_url FROM items WHERE user_id = :userId "
+                            + "AND url_hash IN (:hashes)", params,
+                    (ResultSet rs) -> {
+                        long id = rs.getLong("id");
+                        wanted.getOrDefault(UrlNormalizer.canonicalize(rs.getString("resolved_url")), List.of())
+                                .forEach(url -> ids.putIfAbsent(url, id));
+                    });
+        }
+        return ids;
+    }
+
+    /**
+     * Looks the URLs up in both the saved and the resolved URL columns of the user's items, in any spelling.
+     * Items are found through the {@code (user_id, url_hash)} index, which holds the hash of the resolved URL or,
+     * before resolution, of the saved one; items whose saved URL redirected elsewhere are found by that URL as
+     * it was stored. Rows that only share the hash are skipped.
+     */
+    public Map<String, Long> findIdsByUrls(long userId, Collection<String> urls) {
+        Map<String, Long> ids = new HashMap<>();
+        List<String> values = new ArrayList<>(urls);
+        for (int from = 0; from < values.size(); from += BATCH_SIZE) {
+            List<String> chunk = values.subList(from, Math.min(from + BATCH_SIZE, values.size()));
+            Map<String, List<String>> wanted = new HashMap<>();
+            List<Long> hashes = new ArrayList<>();
+            chunk.forEach(url -> {
+                wanted.computeIfAbsent(UrlNormalizer.canonicalize(url), k -> new ArrayList<>()).add(url);
+                hashes.add(Item.urlHash(url, null));
+            });
+            MapSqlParameterSource params = new MapSqlParameterSource()
+                    .addValue("userId", userId)
+                    .addValue("urls", chunk)
+                    .addValue("hashes", hashes);
+            namedJdbcTemplate.query("SELECT id, url, resolved_url FROM items WHERE user_id = :userId "
+                            + "AND (url_hash IN (:hashes) OR url IN (:urls))", params,
+                    (ResultSet rs) -> {
+                        long id = rs.getLong("id");
+                        for (String stored : new String[]{rs.getString("url"), rs.getString("resolved_url")}) {
+                            wanted.getOrDefault(UrlNormalizer.canonicalize(stored), List.of())
+                                    .forEach(url -> ids.putIfAbsent(url, id));
+                        }
+                    });
+        }
+        return ids;
+    }
+
+    /**
+     * Returns the next page of the user's items that are waiting for metadata, ordered by id.
+     */
+    public List<PendingItem> findPending(long userId, long afterId, long maxId, int limit) {
+        return jdbcTemplate.query("SELECT id, url FROM items WHERE user_id = ? AND resolution_state = ? "
+                        + "AND id > ? AND id <= ? ORDER BY id LIMIT ?",
+                (rs, rowNum) -> new PendingItem(rs.getLong("id"), rs.getString("url")),
+                userId, ResolutionState.PENDING.name(), afterId, maxId, limit);
+    }
+
+    /**
+     * Returns the next page, ordered by id, of items last checked before the given time, or resolved before it
+     * when they have not been checked yet. Items whose last resolution failed are included so that links which
+     * come back are picked up again, and so are items still waiting for metadata since before
+     * {@code pendingBefore}, whose resolution was lost, for example to a restart.
+     */
+    public List<StaleItem> findStale(Instant checkedBefore, Instant pendingBefore, long afterId, int limit) {
+        return jdbcTemplate.query("SELECT id, url, resolved_url, title, has_image, has_video, etag, last_modified, "
+                        + "resolution_state FROM items WHERE id > ? "
+                        + "AND (COALESCE(last_checked_at, date_resolved, date_added) < ? "
+                        + "AND (resolution_state IS NULL OR resolution_state IN (?, ?)) "
+                        + "OR resolution_state = ? AND date_added < ?) ORDER BY id LIMIT ?",
+                (rs, rowNum) -> new StaleItem(rs.getLong("id"), rs.getString("url"), rs.getString("resolved_url"),
+                        rs.getString("title"), rs.getBoolean("has_image"), rs.getBoolean("has_video"),
+                        rs.getString("etag"), rs.getString("last_modified"),
+                        rs.getString("resolution_state") == null ? null
+                                : ResolutionState.valueOf(rs.getString("resolution_state"))),
+                afterId, Timestamp.from(checkedBefore), ResolutionState.RESOLVED.name(),
+                ResolutionState.FAILED.name(), ResolutionState.PENDING.name(), Timestamp.from(pendingBefore), limit);
+    }
+
+    public void updateRefreshed(long itemId, UrlMetadataRetriever.UrlMetadata metadata) {
+        Timestamp dateResolved = Timestamp.from(metadata.getDateResolved());
+        jdbcTemplate.update("UPDATE items SET title = ?, has_image = ?, has_video = ?, date_resolved = ?, "
+                        + "etag = ?, last_modified = ?, resolution_state = ?, last_checked_at = ? WHERE id = ?",
+                metadata.getTitle(), metadata.isHasImage(), metadata.isHasVideo(), dateResolved,
+                metadata.getEtag(), metadata.getLastModified(), ResolutionState.RESOLVED.name(), dateResolved,
+                itemId);
+    }
+
+    public void updateValidators(long itemId, String etag, String lastModified, Instant checkedAt) {
+        jdbcTemplate.update("UPDATE items SET etag = ?, last_modified = ?, resolution_state = ?, last_checked_at = ? "
+                        + "WHERE id = ?",
+                etag, lastModified, ResolutionState.RESOLVED.name(), Timestamp.from(checkedAt), itemId);
+    }
+
+    public void updateResolutionState(long itemId, ResolutionState state, Instant checkedAt) {
+        jdbcTemplate.update("UPDATE items SET resolution_state = ?, last_checked_at = ? WHERE id = ?",
+                state.name(), Timestamp.from(checkedAt), itemId);
+    }
+
+    public void updateCheckedAt(long itemId, Instant checkedAt) {
+        jdbcTemplate.update("UPDATE items SET last_checked_at = ? WHERE id = ?", Timestamp.from(checkedAt), itemId);
+    }
+
+    /**
+     * Returns the list columns of at most {@code limit} of the user's items, for the in-memory item index.
+     */
+    public List<IndexedItem> findIndexed(long userId, int limit) {
+        return jdbcTemplate.query("SELECT id, unread, mime_type, date_resolved, title, domain FROM items "
+                        + "WHERE user_id = ? LIMIT ?",
+                (rs, rowNum) -> {
+                    Timestamp dateResolved = rs.getTimestamp("date_resolved");
+                    return new IndexedItem(rs.getLong("id"), rs.getBoolean("unread"), rs.getString("mime_type"),
+                            dateResolved == null ? null : dateResolved.toInstant(), rs.getString("title"),
+                            rs.getString("domain"));
+                },
+                userId, limit);
+    }
+
+    /**
+     * Returns the tag ids of all the user's items, keyed by item id.
+     */
+    public Map<Long, List<Integer>> findTagIdsByUserId(long userId) {
+        Map<Long, List<Integer>> tagIds = new HashMap<>();
+        jdbcTemplate.query("SELECT t.item_id, t.tag_id FROM item_tags t JOIN items i ON i.id = t.item_id "
+                        + "WHERE i.user_id = ?",
+                (ResultSet rs) -> {
+                    tagIds.computeIfAbsent(rs.getLong("item_id"), id -> new ArrayList<>()).add(rs.getInt("tag_id"));
+                },
+                userId);
+        return tagIds;
+    }
+
+    /**
+     * Returns the next page, ordered by id, of items saved before the URL hash was introduced, or before the
+     * canonical URL was, whose resolved URL may still need folding.
+     */
+    public List<UnhashedItem> findUnhashed(long afterId, int limit) {
+        return jdbcTemplate.query("SELECT id, user_id, url, resolved_url FROM items WHERE (url_hash IS NULL "
+                        + "OR canonical_url IS NULL AND resolved_url IS NOT NULL "
+                        + "OR canonical_url = resolved_url AND (resolved_url LIKE '%/' OR resolved_url LIKE '%/?%')) "
+                        + "AND id > ? ORDER BY id LIMIT ?",
+                (rs, rowNum) -> new UnhashedItem(rs.getLong("id"), rs.getLong("user_id"), rs.getString("url"),
+                        rs.getString("resolved_url")),
+                afterId, limit);
+    }
+
+    /**
+     * Returns the other item the user saved under the same resolved URL, in any spelling, if there is one.
+     */
+    public Optional<Long> findDuplicate(long itemId, long userId, String resolvedUrl) {
+        String canonical = UrlNormalizer.canonicalize(resolvedUrl);
+        return jdbcTemplate.query("SELECT id, resolved_url FROM items "
+                                + "WHERE user_id = ? AND (url_hash = ? OR canonical_url = ?) AND id <> ?",
+                        (rs, rowNum) -> canonical.equals(UrlNormalizer.canonicalize(rs.getString("resolved_url")))
+                                ? rs.getLong("id") : null,
+                        userId, Item.urlHash(null, resolvedUrl), canonical, itemId)
+                .stream()
+                .filter(Objects::nonNull)
+                .findFirst();
+    }
+
+    public void updateUrlHash(long itemId, String resolvedUrl, Long urlHash, String domain) {
+        jdbcTemplate.update("UPDATE items SET resolved_url = ?, canonical_url = ?, url_hash = ?, domain = ? "
+                + "WHERE id = ?", resolvedUrl, Item.canonicalUrl(resolvedUrl), urlHash, domain, itemId);
+    }
+
+    /**
+     * Moves the tags and notes of the duplicate to the kept item and deletes the duplicate.
+     */
+    @Transactional
+    public void merge(long keptId, long duplicateId) {
+        jdbcTemplate.update("INSERT INTO item_tags (item_id, tag_id) SELECT ?, tag_id FROM item_tags d "
+                + "WHERE d.item_id = ? AND NOT EXISTS (SELECT 1 FROM item_tags k WHERE k.item_id = ? "
+                + "AND k.tag_id = d.tag_id)",
+                keptId, duplicateId, keptId);
+        jdbcTemplate.update("DELETE FROM item_tags WHERE item_id = ?", duplicateId);
+        jdbcTemplate.update("UPDATE item_notes SET item_id = ? WHERE item_id = ?", keptId, duplicateId);
+        jdbcTemplate.update("DELETE FROM items WHERE id = ?", duplicateId);
+    }
+
+    /**
+     * Inserts the items in JDBC batches and returns their generated ids by the value of {@code keyColumn}. An
+     * item whose resolved URL the user got from a concurrent save since it was looked up is left out instead of
+     * failing the whole batch: PostgreSQL skips it with {@code ON CONFLICT DO NOTHING}, other databases retry
+     * the batch that hit the taken key row by row.
+     */
+    private Map<String, Long> insertNew(long userId, List<Item> items, String keyColumn) {
+        Map<String, Long> ids = new HashMap<>();
+        for (int from = 0; from < items.size(); from += BATCH_SIZE) {
+            List<Item> chunk = items.subList(from, Math.min(from + BATCH_SIZE, items.size()));
+            if (isPostgres()) {
+                insertBatch(INSERT_NEW_ITEM, userId, chunk, keyColumn, ids);
+                continue;
+            }
+            try {
+                insertBatch(INSERT_ITEM, userId, chunk, keyColumn, ids);
+            } catch (DuplicateKeyException e) {
+                for (Item item : chunk) {
+                    try {
+                        insertBatch(INSERT_ITEM, userId, List.of(item), keyColumn, ids);
+                    } catch (DuplicateKeyException taken) {
+                        // saved concurrently, or by the failed batch
+                    }
+                }
+            }
+        }
+        return ids;
+    }
+
+    private void insertBatch(String sql, long userId, List<Item> items, String keyColumn, Map<String, Long> ids) {
+        jdbcTemplate.execute((Connection connection) -> {
+            try (PreparedStatement statement = connection.prepareStatement(sql, new String[]{"id", keyColumn})) {
+                for (Item item : items) {
+                    bindItem(statement, userId, item);
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+                try (ResultSet keys = statement.getGeneratedKeys()) {
+                    while (keys.next()) {
+                        ids.put(keys.getString(2), keys.getLong(1));
+                    }
+                }
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Adds the tags the items do not have yet. A tag added by a concurrent save is skipped like the item rows
+     * in {@link #insertNew}.
+     */
+    public void addMissingTags(Map<Long, Set<String>> tagsByItemId) {
+        Set<String> names = new HashSet<>();
+        tagsByItemId.values().forEach(names::addAll);
+        Map<String, Integer> tagIds = tagDictionary.idsOf(names);
+        List<Object[]> rows = new ArrayList<>();
+        tagsByItemId.forEach((itemId, tags) -> tags.forEach(tag -> {
+            Integer tagId = tagIds.get(tag);
+            rows.add(new Object[]{itemId, tagId, itemId, tagId});
+        }));
+        for (int from = 0; from < rows.size(); from += BATCH_SIZE) {
+            List<Object[]> chunk = rows.subList(from, Math.min(from + BATCH_SIZE, rows.size()));
+            if (isPostgres()) {
+                jdbcTemplate.batchUpdate(INSERT_NEW_TAG, chunk);
+                continue;
+            }
+            try {
+                jdbcTemplate.batchUpdate(INSERT_MISSING_TAG, chunk);
+            } catch (DuplicateKeyException e) {
+                for (Object[] row : chunk) {
+                    try {
+                        jdbcTemplate.update(INSERT_MISSING_TAG, row);
+                    } catch (DuplicateKeyException taken) {
+                        // added concurrently, or by the failed batch
+                    }
+                }
+            }
+        }
+    }
+
+    private boolean isPostgres() {
+        if (postgres == null) {
+            postgres = jdbcTemplate.execute((Connection connection) ->
+                    "PostgreSQL".equals(connection.getMetaData().getDatabaseProductName()));
+        }
+        return postgres;
+    }
+
+    private static Set<String> tagsOf(Item item) {
+        return item.getTags() == null ? Set.of() : item.getTags();
+    }
+
+    private static void bindItem(PreparedStatement statement, long userId, Item item) throws SQLException {
+        statement.setLong(1, userId);
+        statement.setString(2, item.getUrl());
+        statement.setString(3, item.getResolvedUrl());
+        statement.setString(4, item.getMimeType());
+        statement.setString(5, item.getTitle());
+        statement.setObject(6, item.getHasImage(), Types.BOOLEAN);
+        statement.setObject(7, item.getHasVideo(), Types.BOOLEAN);
+        statement.setTimestamp(8, item.getDateResolved() == null ? null : Timestamp.from(item.getDateResolved()));
+        statement.setBoolean(9, item.isUnread());
+        statement.setString(10, item.getResolutionState() == null ? null : item.getResolutionState().name());
+        statement.setString(11, item.getEtag());
+        statement.setString(12, item.getLastModified());
+        statement.setObject(13, Item.urlHash(item.getUrl(), item.getResolvedUrl()), Types.BIGINT);
+        statement.setString(14, Item.domain(item.getUrl(), item.getResolvedUrl()));
+        statement.setString(15, Item.canonicalUrl(item.getResolvedUrl()));
+    }
+
+    @Value
+    public static class SavedItem {
+        long id;
+        boolean created;
+    }
+
+    @Value
+    public static class PendingItem {
+        long id;
+        String url;
+    }
+
+    @Value
+    public static class IndexedItem {
+        long id;
+        boolean unread;
+        String mimeType;
+        Instant dateResolved;
+        String title;
+        String domain;
+    }
+
+    @Value
+    public static class UnhashedItem {
+        long id;
+        long userId;
+        String url;
+        String resolvedUrl;
+    }
+
+    @Value
+    public static class StaleItem {
+        long id;
+        String url;
+        String resolvedUrl;
+        String title;
+        boolean hasImage;
+        boolean hasVideo;
+        String etag;
+        String lastModified;
+        ResolutionState resolutionState;
+    }
+}
@@ -0,0 +1,159 @@
+package ru.practicum.javalater.item.repository;
+
+import com.querydsl.core.Tuple;
+import com.querydsl.core.types.Predicate;
+import com.querydsl.core.types.dsl.Wildcard;
+import com.querydsl.core.types.dsl.PathBuilder;
+import com.querydsl.jpa.impl.JPAQuery;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import lombok.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.support.Querydsl;
+import org.springframework.stereotype.Repository;
+import ru.practicum.javalater.item.dto.ItemDto;
+import ru.practicum.javalater.item.entity.Item;
+import ru.practicum.javalater.item.entity.QItemTag;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static ru.practicum.javalater.item.entity.QItem.item;
+import static ru.practicum.javalater.item.entity.QItemTag.itemTag;
+
+/**
+ * Read path for item lists and their facet counts. A page is loaded in two statements, whatever its size: the
+ * item columns, then the tag ids of all items on the page, which are named through the {@link TagDictionary}.
+ * A keyset page that runs past the last sort key into the items without one reads their columns separately.
+ * {@link ItemDto}s are built from the rows directly, so no entity is managed and the lazy tag collection is
+ * never initialised item by item.
+ */
+@Repository
+public class ItemQueryRepository {
+
+    private final JPAQueryFactory queryFactory;
+
+    private final Querydsl querydsl;
+
+    private final TagDictionary tagDictionary;
+
+    ItemQueryRepository(EntityManager entityManager, TagDictionary tagDictionary) {
+        this.tagDictionary = tagDictionary;
+        this.queryFactory = new JPAQueryFactory(entityManager);
+        this.querydsl = new Querydsl(entityManager, new PathBuilder<>(Item.class, item.getMetadata()));
+    }
+
+    /**
+     * Items matching the condition, sorted and limited as the page request says.
+     */
+    public List<ItemDto> findPage(Predicate condition, Pageable pageable) {
+        return findPage(List.of(condition), pageable);
+    }
+
+    /**
+     * Items matching the condition, followed, while the page is not full, by those matching the continuation.
+     * Each is read by a statement of its own, sorted as the page request says, so that both stay a single index
+     * range; the tags of the whole page are still loaded in one statement.
+     */
+    public List<ItemDto> findPage(Predicate condition, Predicate continuation, Pageable pageable) {
+        return findPage(List.of(condition, continuation), pageable);
+    }
+
+    private List<ItemDto> findPage(List<Predicate> conditions, Pageable pageable) {
+        Map<Long, ItemDto> items = new LinkedHashMap<>();
+        for (Predicate condition : conditions) {
+            int remaining = pageable.getPageSize() - items.size();
+            if (remaining <= 0) {
+                break;
+            }
+            JPAQuery<Tuple> query = queryFactory
+                    .select(item.id, item.user.id, item.url, item.resolvedUrl, item.mimeType, item.title,
+                            item.hasImage, item.hasVideo, item.dateResolved, item.unread, item.resolutionState)
+                    .from(item)
+                    .where(condition);
+            List<Tuple> rows = querydsl.applyPagination(PageRequest.of(0, remaining, pageable.getSort()), query)
+                    .fetch();
+            for (Tuple row : rows) {
+                ItemDto dto = new ItemDto();
+                dto.setId(row.get(item.id));
+                dto.setUserId(row.get(item.user.id));
+                dto.setUrl(row.get(item.url));
+                dto.setTags(new HashSet<>());
+                dto.setResolvedUrl(row.get(item.resolvedUrl));
+                dto.setMimeType(row.get(item.mimeType));
+                dto.setTitle(row.get(item.title));
+                dto.setHasImage(Boolean.TRUE.equals(row.get(item.hasImage)));
+                dto.setHasVideo(Boolean.TRUE.equals(row.get(item.hasVideo)));
+                dto.setDateResolved(row.get(item.dateResolved));
+                dto.setUnread(Boolean.TRUE.equals(row.get(item.unread)));
+                dto.setResolutionState(row.get(item.resolutionState));
+                items.put(dto.getId(), dto);
+            }
+        }
+        if (!items.isEmpty()) {
+            List<Tuple> tags = findTags(items.keySet());
+            Set<Integer> tagIds = new HashSet<>();
+            tags.forEach(row -> tagIds.add(row.get(itemTag.tagId)));
+            Map<Integer, String> names = tagDictionary.namesOf(tagIds);
+            tags.forEach(row -> items.get(row.get(itemTag.itemId)).getTags().add(names.get(row.get(itemTag.tagId))));
+        }
+        return new ArrayList<>(items.values());
+    }
+
+    /**
+     * Number of items matching the condition for each combination of read state, mime type and domain.
+     */
+    public List<FacetGroup> countGroups(Predicate condition) {
+        return queryFactory
+                .select(item.unread, item.mimeType, item.domain, Wildcard.count)
+                .from(item)
+                .where(condition)
+                .groupBy(item.unread, item.mimeType, item.domain)
+                .fetch()
+                .stream()
+                .map(row -> new FacetGroup(Boolean.TRUE.equals(row.get(item.unread)), row.get(item.mimeType),
+                        row.get(item.domain), row.get(Wildcard.count)))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Number of items matching the condition that carry each tag, keyed by tag id.
+     */
+    public Map<Integer, Long> countTags(Predicate condition) {
+        // the condition may filter by tag itself, through its own itemTag subquery
+        QItemTag counted = new QItemTag("counted");
+        Map<Integer, Long> counts = new HashMap<>();
+        queryFactory
+                .select(counted.tagId, Wildcard.count)
+                .from(counted)
+                .innerJoin(item).on(item.id.eq(counted.itemId))
+                .where(condition)
+                .groupBy(counted.tagId)
+                .fetch()
+                .forEach(row -> counts.put(row.get(counted.tagId), row.get(Wildcard.count)));
+        return counts;
+    }
+
+    private List<Tuple> findTags(Set<Long> itemIds) {
+        return queryFactory
+                .select(itemTag.itemId, itemTag.tagId)
+                .from(itemTag)
+                .where(itemTag.itemId.in(itemIds))
+                .fetch();
+    }
+
+    @Value
+    public static class FacetGroup {
+        boolean unread;
+        String mimeType;
+        String domain;
+        long count;
+    }
+}
@@ -1,13 +1,12 @@
 package ru.practicum.javalater.item.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
-import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.querydsl.QuerydslPredicateExecutor;
 import ru.practicum.javalater.item.entity.Item;
+import ru.practicum.javalater.item.metadata.UrlNormalizer;
 
 import java.util.List;
 import java.util.Optional;
-import java.util.Set;
 
 public interface ItemRepository extends JpaRepository<Item, Long>, QuerydslPredicateExecutor<Item> {
 
@@ -15,8 +14,19 @@ public interface ItemRepository extends JpaRepository<Item, Long>, QuerydslPredi
 
     void deleteByUserIdAndId(Long userId, Long itemId);
 
-    @Query("select item from Item item JOIN item.tags tags WHERE item.user.id = ?1 and tags IN ?2")
-    List<Item> findByUserAndTags(Long userId, Set<String> tags);
+    List<Item> findByUserIdAndUrlHash(Long userId, Long urlHash);
 
-    Optional<Item> findByResolvedUrl(String resolvedUrl);
+    /**
+     * The user's item saved under the resolved URL, in any spelling of it, found through the
+     * {@code (user_id, url_hash)} index.
+     */
+    default Optional<Item> findByUserIdAndResolvedUrl(Long userId, String resolvedUrl) {
+        if (resolvedUrl == null) {
+            return Optional.empty();
+        }
+        String canonical = UrlNormalizer.canonicalize(resolvedUrl);
+        return findByUserIdAndUrlHash(userId, Item.urlHash(null, resolvedUrl)).stream()
+                .filter(item -> canonical.equals(UrlNormalizer.canonicalize(item.getResolvedUrl())))
+                .findFirst();
+    }
 }
\ No newline at end of file
@@ -0,0 +1,174 @@
+package ru.practicum.javalater.item.repository;
+
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Maps tag names to the integer ids stored in {@code item_tags}. Every name is stored once in
+ * {@code tag_names}; names and ids are cached in both directions once they are known to be committed, so a
+ * dictionary row added by a transaction that rolls back never reaches the cache.
+ */
+@Repository
+public class TagDictionary {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+
+    private final Map<String, Integer> idsByName = new ConcurrentHashMap<>();
+
+    private final Map<Integer, String> namesById = new ConcurrentHashMap<>();
+
+    private volatile Boolean postgres;
+
+    TagDictionary(JdbcTemplate jdbcTemplate, NamedParameterJdbcTemplate namedJdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedJdbcTemplate = namedJdbcTemplate;
+    }
+
+    /**
+     * Returns the id of the tag, adding it to the dictionary when it is new.
+     */
+    public int idOf(String name) {
+        return idsOf(List.of(name)).get(name);
+    }
+
+    /**
+     * Returns the ids of the tags, adding the new ones to the dictionary. New names are inserted in sorted order,
+     * so that concurrent writers wait for each other instead of deadlocking.
+     */
+    public Map<String, Integer> idsOf(Collection<String> names) {
+        Map<String, Integer> ids = findIds(names);
+        if (ids.size() < new TreeSet<>(names).size()) {
+            Set<String> missing = new TreeSet<>(names);
+            missing.removeAll(ids.keySet());
+            insert(missing);
+            ids.putAll(findIds(missing));
+        }
+        return ids;
+    }
+
+    /**
+     * Returns the ids of the tags that are in the dictionary; unknown names are left out.
+     */
+    public Map<String, Integer> findIds(Collection<String> names) {
+        Map<String, Integer> ids = new HashMap<>();
+        List<String> misses = new ArrayList<>();
+        for (String name : names) {
+            Integer id = idsByName.get(name);
+            if (id != null) {
+                ids.put(name, id);
+            } else {
+                misses.add(name);
+            }
+        }
+        if (!misses.isEmpty()) {
+            Map<Integer, String> loaded = new HashMap<>();
+            namedJdbcTemplate.query("SELECT id, name FROM tag_names WHERE name IN (:names)",
+                    new MapSqlParameterSource("names", misses),
+                    (ResultSet rs) -> {
+                        loaded.put(rs.getInt("id"), rs.getString("name"));
+                    });
+            loaded.forEach((id, name) -> ids.put(name, id));
+            remember(loaded);
+        }
+        return ids;
+    }
+
+    public String nameOf(int id) {
+        return namesOf(List.of(id)).get(id);
+    }
+
+    /**
+     * Returns the names of the tags, loading all the ids that are not cached in one statement.
+     */
+    public Map<Integer, String> namesOf(Collection<Integer> ids) {
+        Map<Integer, String> names = new HashMap<>();
+        List<Integer> misses = new ArrayList<>();
+        for (Integer id : ids) {
+            String name = namesById.get(id);
+            if (name != null) {
+                names.put(id, name);
+            } else {
+                misses.add(id);
+            }
+        }
+        if (!misses.isEmpty()) {
+            Map<Integer, String> loaded = new HashMap<>();
+            namedJdbcTemplate.query("SELECT id, name FROM tag_names WHERE id IN (:ids)",
+                    new MapSqlParameterSource("ids", misses),
+                    (ResultSet rs) -> {
+                        loaded.put(rs.getInt("id"), rs.getString("name"));
+                    });
+            names.putAll(loaded);
+            remember(loaded);
+        }
+        return names;
+    }
+
+    private void insert(Set<String> names) {
+        if (isPostgres()) {
+            List<Object[]> rows = new ArrayList<>();
+            names.forEach(name -> rows.add(new Object[]{name}));
+            jdbcTemplate.batchUpdate("INSERT INTO tag_names (name) VALUES (?) ON CONFLICT (name) DO NOTHING", rows);
+            return;
+        }
+        for (String name : names) {
+            try {
+                jdbcTemplate.update("INSERT INTO tag_names (name) VALUES (?)", name);
+            } catch (DuplicateKeyException e) {
+                // added by a concurrent writer
+            }
+        }
+    }
+
+    /**
+     * Caches the entries right away outside of a transaction, and only after the commit inside one.
+     */
+    private void remember(Map<Integer, String> entries) {
+        if (entries.isEmpty()) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    cache(entries);
+                }
+            });
+        } else {
+            cache(entries);
+        }
+    }
+
+    private void cache(Map<Integer, String> entries) {
+        entries.forEach((id, name) -> {
+            idsByName.put(name, id);
+            namesById.put(id, name);
+        });
+    }
+
+    private boolean isPostgres() {
+        if (postgres == null) {
+            postgres = jdbcTemplate.execute((Connection connection) ->
+                    "PostgreSQL".equals(connection.getMetaData().getDatabaseProductName()));
+        }
+        return postgres;
+    }
+}
@@ -0,0 +1,101 @@
+package ru.practicum.javalater.item.service;
+
+import ru.practicum.javalater.item.dto.FacetCount;
+import ru.practicum.javalater.item.dto.GetItemRequest;
+import ru.practicum.javalater.item.dto.ItemFacets;
+import ru.practicum.javalater.item.repository.TagDictionary;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Adds up the {@link ItemFacets} of one request, from grouped rows or item by item; the tag filter is left to
+ * whoever feeds it. An item counts towards its state when it passes the content type filter, towards its
+ * content type when it passes the state filter, and towards its tags and domain when it passes both.
+ */
+final class FacetCounter {
+
+    private final Boolean unread;
+
+    private final String mimeType;
+
+    private final Map<Boolean, Long> byState = new HashMap<>();
+
+    private final Map<String, Long> byMimeType = new HashMap<>();
+
+    private final Map<String, Long> byDomain = new HashMap<>();
+
+    private final Map<Integer, Long> byTag = new HashMap<>();
+
+    /**
+     * @param unread   the state filter, null for all states
+     * @param mimeType the content type filter, null for all types
+     */
+    FacetCounter(Boolean unread, String mimeType) {
+        this.unread = unread;
+        this.mimeType = mimeType;
+    }
+
+    /**
+     * Whether an item passes the state and content type filters, so that its tags are counted.
+     */
+    boolean matches(boolean itemUnread, String itemMimeType) {
+        return (unread == null || unread == itemUnread) && (mimeType == null || mimeType.equals(itemMimeType));
+    }
+
+    void add(boolean itemUnread, String itemMimeType, String domain, long count) {
+        boolean stateMatches = unread == null || unread == itemUnread;
+        boolean mimeTypeMatches = mimeType == null || mimeType.equals(itemMimeType);
+        if (mimeTypeMatches) {
+            byState.merge(itemUnread, count, Long::sum);
+        }
+        if (stateMatches && itemMimeType != null) {
+            byMimeType.merge(itemMimeType, count, Long::sum);
+        }
+        if (stateMatches && mimeTypeMatches && domain != null) {
+            byDomain.merge(domain, count, Long::sum);
+        }
+    }
+
+    void addTag(int tagId, long count) {
+        byTag.merge(tagId, count, Long::sum);
+    }
+
+    /**
+     * The counts, with the {@code limit} most frequent tags and domains; ties go to the smaller tag id and to
+     * the domain first in alphabetical order.
+     */
+    ItemFacets toFacets(TagDictionary tagDictionary, int limit) {
+        List<FacetCount> states = List.of(
+                new FacetCount("unread", byState.getOrDefault(true, 0L)),
+                new FacetCount("read", byState.getOrDefault(false, 0L)));
+        List<FacetCount> contentTypes = new ArrayList<>();
+        for (GetItemRequest.ContentType contentType : GetItemRequest.ContentType.values()) {
+            if (contentType != GetItemRequest.ContentType.ALL) {
+                contentTypes.add(new FacetCount(contentType.name().toLowerCase(Locale.ROOT),
+                        byMimeType.getOrDefault(ItemServiceImpl.mimeTypeOf(contentType), 0L)));
+            }
+        }
+        List<Map.Entry<Integer, Long>> topTags = mostFrequent(byTag, limit);
+        Map<Integer, String> names = topTags.isEmpty() ? Map.of()
+                : tagDictionary.namesOf(topTags.stream().map(Map.Entry::getKey).collect(Collectors.toList()));
+        List<FacetCount> tags = topTags.stream()
+                .map(entry -> new FacetCount(names.get(entry.getKey()), entry.getValue()))
+                .collect(Collectors.toList());
+        List<FacetCount> domains = mostFrequent(byDomain, limit).stream()
+                .map(entry -> new FacetCount(entry.getKey(), entry.getValue()))
+                .collect(Collectors.toList());
+        return new ItemFacets(states, contentTypes, tags, domains);
+    }
+
+    private static <K extends Comparable<K>> List<Map.Entry<K, Long>> mostFrequent(Map<K, Long> counts, int limit) {
+        return counts.entrySet().stream()
+                .sorted(Map.Entry.<K, Long>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()))
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,11 @@
+package ru.practicum.javalater.item.service;
+
+import ru.practicum.javalater.item.dto.BatchItemResult;
+import ru.practicum.javalater.item.dto.PostItemDto;
+
+import java.util.List;
+
+public interface ItemBatchService {
+
+    List<BatchItemResult> addNewItems(Long userId, List<PostItemDto> items);
+}
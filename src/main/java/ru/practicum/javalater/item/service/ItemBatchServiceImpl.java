@@ -0,0 +1,130 @@
+package ru.practicum.javalater.item.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import ru.practicum.javalater.item.dto.BatchItemResult;
+import ru.practicum.javalater.item.dto.PostItemDto;
+import ru.practicum.javalater.item.dto.ResolutionState;
+import ru.practicum.javalater.item.entity.Item;
+import ru.practicum.javalater.item.metadata.UrlMetadataRetriever;
+import ru.practicum.javalater.item.metadata.UrlNormalizer;
+import ru.practicum.javalater.item.repository.ItemJdbcRepository;
+import ru.practicum.javalater.user.repository.UserRepository;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Imports a list of links in one call: metadata is resolved with at most {@code items.batch.parallelism}
+ * fetches running at once, and the resolved items are written with JDBC batches in a single transaction.
+ */
+@Service
+@Slf4j
+public class ItemBatchServiceImpl implements ItemBatchService {
+
+    private final UserRepository userRepository;
+    private final UrlMetadataRetriever urlMetadataRetriever;
+    private final ItemJdbcRepository itemJdbcRepository;
+    private final ItemIndex itemIndex;
+    private final int parallelism;
+    private final int maxBatchSize;
+
+    public ItemBatchServiceImpl(UserRepository userRepository,
+                                UrlMetadataRetriever urlMetadataRetriever,
+                                ItemJdbcRepository itemJdbcRepository,
+                                ItemIndex itemIndex,
+                                @Value("${items.batch.parallelism:16}") int parallelism,
+                                @Value("${items.batch.max-size:1000}") int maxBatchSize) {
+        this.userRepository = userRepository;
+        this.urlMetadataRetriever = urlMetadataRetriever;
+        this.itemJdbcRepository = itemJdbcRepository;
+        this.itemIndex = itemIndex;
+        this.parallelism = parallelism;
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    @Override
+    public List<BatchItemResult> addNewItems(Long userId, List<PostItemDto> items) {
+        if (items.size() > maxBatchSize) {
+            throw new IllegalArgumentException("Нельзя добавить больше " + maxBatchSize + " ссылок за один запрос.");
+        }
+        userRepository.findById(userId)
+                .orElseThrow(() -> new NoSuchElementException("Пользователь с id '" + userId + "' не найден."));
+
+        List<CompletableFuture<UrlMetadataRetriever.UrlMetadata>> resolved = resolveAll(items);
+
+        BatchItemResult[] results = new BatchItemResult[items.size()];
+        Map<String, Item> toSave = new LinkedHashMap<>();
+        for (int i = 0; i < items.size(); i++) {
+            PostItemDto itemDto = items.get(i);
+            try {
+                UrlMetadataRetriever.UrlMetadata metadata = resolved.get(i).join();
+                Item item = toSave.computeIfAbsent(UrlNormalizer.canonicalize(metadata.getResolvedUrl()),
+                        canonicalUrl -> toItem(itemDto, metadata));
+                if (itemDto.getTags() != null) {
+                    item.getTags().addAll(itemDto.getTags());
+                }
+            } catch (CompletionException e) {
+                results[i] = BatchItemResult.failed(itemDto.getUrl(), e.getCause().getMessage());
+            }
+        }
+
+        Map<String, ItemJdbcRepository.SavedItem> saved = itemJdbcRepository.saveAll(userId, toSave.values());
+        itemIndex.evict(userId);
+        Map<String, Boolean> firstOccurrence = new LinkedHashMap<>();
+        for (int i = 0; i < items.size(); i++) {
+            if (results[i] != null) {
+                continue;
+            }
+            String canonicalUrl = UrlNormalizer.canonicalize(resolved.get(i).join().getResolvedUrl());
+            ItemJdbcRepository.SavedItem savedItem = saved.get(toSave.get(canonicalUrl).getResolvedUrl());
+            boolean created = savedItem.isCreated() && firstOccurrence.putIfAbsent(canonicalUrl, true) == null;
+            results[i] = new BatchItemResult(items.get(i).getUrl(),
+                    created ? BatchItemResult.Status.CREATED : BatchItemResult.Status.MERGED,
+                    savedItem.getId(), null);
+        }
+        log.info("Пользователь с id '{}' импортировал {} ссылок, сохранено {}.", userId, items.size(), saved.size());
+        return List.of(results);
+    }
+
+    private List<CompletableFuture<UrlMetadataRetriever.UrlMetadata>> resolveAll(List<PostItemDto> items) {
+        Semaphore permits = new Semaphore(parallelism);
+        List<CompletableFuture<UrlMetadataRetriever.UrlMetadata>> futures = new ArrayList<>(items.size());
+        for (PostItemDto itemDto : items) {
+            permits.acquireUninterruptibly();
+            CompletableFuture<UrlMetadataRetriever.UrlMetadata> future;
+            try {
+                future = urlMetadataRetriever.retrieveAsync(itemDto.getUrl());
+            } catch (RuntimeException e) {
+                future = CompletableFuture.failedFuture(e);
+            }
+            future.whenComplete((metadata, e) -> permits.release());
+            futures.add(future);
+        }
+        return futures;
+    }
+
+    private static Item toItem(PostItemDto itemDto, UrlMetadataRetriever.UrlMetadata metadata) {
+        Item item = new Item();
+        item.setUrl(itemDto.getUrl());
+        item.setTags(new HashSet<>());
+        item.setResolvedUrl(metadata.getResolvedUrl());
+        item.setHasImage(metadata.isHasImage());
+        item.setHasVideo(metadata.isHasVideo());
+        item.setTitle(metadata.getTitle());
+        item.setMimeType(metadata.getMimeType());
+        item.setDateResolved(metadata.getDateResolved());
+        item.setEtag(metadata.getEtag());
+        item.setLastModified(metadata.getLastModified());
+        item.setResolutionState(ResolutionState.RESOLVED);
+        return item;
+    }
+}
@@ -0,0 +1,65 @@
+package ru.practicum.javalater.item.service;
+
+import lombok.Value;
+import ru.practicum.javalater.exception.InvalidCursorException;
+import ru.practicum.javalater.item.dto.GetItemRequest;
+import ru.practicum.javalater.item.dto.ItemDto;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Position in an item list: the sort key and the id of the last item of a page. Clients get it as an opaque
+ * URL-safe string and send it back to continue after that item. A cursor is only valid for the sort mode it
+ * was issued for. It also records whether the {@link ItemIndex} issued it, because the index orders titles by
+ * {@link String#compareTo} while the database uses its collation, so a title cursor cannot move between them.
+ */
+@Value
+class ItemCursor {
+
+    private static final String INDEXED = "@index";
+
+    GetItemRequest.Sort sort;
+
+    Object key;
+
+    long id;
+
+    boolean indexed;
+
+    static ItemCursor after(GetItemRequest.Sort sort, ItemDto item, boolean indexed) {
+        return new ItemCursor(sort, sort == GetItemRequest.Sort.TITLE ? item.getTitle() : item.getDateResolved(),
+                item.getId(), indexed);
+    }
+
+    static ItemCursor decode(String cursor, GetItemRequest.Sort sort) {
+        String[] parts;
+        try {
+            parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split(":", 3);
+        } catch (IllegalArgumentException e) {
+            throw new InvalidCursorException("Некорректный курсор: " + cursor, e);
+        }
+        boolean indexed = parts[0].endsWith(INDEXED);
+        String sortName = indexed ? parts[0].substring(0, parts[0].length() - INDEXED.length()) : parts[0];
+        if (parts.length < 2 || !sortName.equals(sort.name())) {
+            throw new InvalidCursorException("Курсор не соответствует сортировке " + sort + ": " + cursor);
+        }
+        try {
+            long id = Long.parseLong(parts[1]);
+            if (parts.length == 2) {
+                return new ItemCursor(sort, null, id, indexed);
+            }
+            Object key = sort == GetItemRequest.Sort.TITLE ? parts[2] : Instant.parse(parts[2]);
+            return new ItemCursor(sort, key, id, indexed);
+        } catch (NumberFormatException | DateTimeParseException e) {
+            throw new InvalidCursorException("Некорректный курсор: " + cursor, e);
+        }
+    }
+
+    String encode() {
+        String value = sort.name() + (indexed ? INDEXED : "") + ":" + id + (key == null ? "" : ":" + key);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,345 @@
+package ru.practicum.javalater.item.service;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.GuavaCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.practicum.javalater.item.dto.GetItemRequest;
+import ru.practicum.javalater.item.dto.ItemDto;
+import ru.practicum.javalater.item.entity.Item;
+import ru.practicum.javalater.item.repository.ItemJdbcRepository;
+import ru.practicum.javalater.item.repository.TagDictionary;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * Optional in-process index of the items of recently active users, enabled with {@code items.index.enabled}.
+ * It answers {@link ItemServiceImpl#searchItems} with the ids of a page, so that only the rows of that page
+ * are read from the database, and counts {@link ItemServiceImpl#getFacets} without reading any. A user's items
+ * are loaded on the first request; {@link ItemServiceImpl} keeps them up to date on add, modify and delete, and
+ * other writers evict the user, who is then loaded again.
+ * Users idle for {@code idle-minutes} and the least recently used ones beyond {@code max-items} indexed items
+ * are dropped; users with more than {@code max-user-items} items are not indexed at all.
+ * <p>
+ * Writes on other application instances are not seen, so the index is only correct with a single instance.
+ * Titles are compared as Java strings, which matches the database order under the {@code C} collation.
+ */
+@Component
+@Slf4j
+public class ItemIndex {
+
+    private static final int STRIPES = 64;
+
+    private static final int LOAD_ATTEMPTS = 3;
+
+    private final ItemJdbcRepository itemJdbcRepository;
+
+    private final TagDictionary tagDictionary;
+
+    private final boolean enabled;
+
+    private final int maxUserItems;
+
+    private final Cache<Long, Indexed> users;
+
+    /**
+     * Generations of the users being loaded, bumped on every change of their items; a load that overlapped a
+     * change is not cached. Users that are not being loaded have no entry.
+     */
+    private final ConcurrentMap<Long, Generation> generations = new ConcurrentHashMap<>();
+
+    /**
+     * Make applying a change and caching a load of the same user mutually exclusive.
+     */
+    private final Object[] stripeLocks = new Object[STRIPES];
+
+    ItemIndex(ItemJdbcRepository itemJdbcRepository,
+              TagDictionary tagDictionary,
+              MeterRegistry meterRegistry,
+              @Value("${items.index.enabled:false}") boolean enabled,
+              @Value("${items.index.max-items:1000000}") long maxItems,
+              @Value("${items.index.max-user-items:50000}") int maxUserItems,
+              @Value("${items.index.idle-minutes:30}") long idleMinutes) {
+        this.itemJdbcRepository = itemJdbcRepository;
+        this.tagDictionary = tagDictionary;
+        this.enabled = enabled;
+        this.maxUserItems = maxUserItems;
+        for (int stripe = 0; stripe < STRIPES; stripe++) {
+            stripeLocks[stripe] = new Object();
+        }
+        this.users = CacheBuilder.newBuilder()
+                .expireAfterAccess(Duration.ofMinutes(idleMinutes))
+                .maximumWeight(maxItems)
+                .weigher((Long userId, Indexed indexed) -> indexed.weight)
+                .recordStats()
+                .build();
+        GuavaCacheMetrics.monitor(meterRegistry, users, "items.index");
+    }
+
+    /**
+     * Ids of the next {@code limit} items of the request, or empty when the request has to go to the database:
+     * the index is disabled, the user has too many items, the caller is inside a transaction whose own writes
+     * the index does not see, or the user's items kept changing through every attempt to load them.
+     */
+    Optional<List<Long>> findIds(GetItemRequest req, ItemCursor cursor, int limit) {
+        Indexed indexed = indexedFor(req.getUserId());
+        if (indexed == null) {
+            return Optional.empty();
+        }
+        List<Integer> tagIds = tagIdsOf(req);
+        indexed.lock.readLock().lock();
+        try {
+            return Optional.of(indexed.items.find(ItemServiceImpl.unreadFilter(req.getState()),
+                    ItemServiceImpl.mimeTypeFilter(req.getContentType()), tagIds, req.matchesAllTags(),
+                    req.getSort(), cursor, limit));
+        } finally {
+            indexed.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Counts the facets of the request's items into the counter in one pass over the user's index, or returns
+     * false when the request has to go to the database, for the same reasons as {@link #findIds}.
+     */
+    boolean countFacets(GetItemRequest req, FacetCounter counter) {
+        Indexed indexed = indexedFor(req.getUserId());
+        if (indexed == null) {
+            return false;
+        }
+        List<Integer> tagIds = tagIdsOf(req);
+        indexed.lock.readLock().lock();
+        try {
+            indexed.items.countFacets(tagIds, req.matchesAllTags(), counter);
+            return true;
+        } finally {
+            indexed.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Adds the item to the user's index or updates it there, once the current transaction commits. New tag names
+     * are added to the dictionary now, as the flush of the item would, so that every tag of the item is indexed.
+     */
+    void put(long userId, ItemDto item) {
+        if (!enabled) {
+            return;
+        }
+        int[] tagIds = item.getTags() == null ? new int[0]
+                : tagDictionary.idsOf(item.getTags()).values().stream().mapToInt(Integer::intValue).toArray();
+        UserItems.Entry entry = new UserItems.Entry(item.getId(), item.isUnread(), item.getMimeType(),
+                item.getDateResolved(), item.getTitle(), Item.domain(item.getUrl(), item.getResolvedUrl()), tagIds);
+        change(userId, indexed -> indexed.items.put(entry));
+    }
+
+    /**
+     * Removes the item from the user's index once the current transaction commits.
+     */
+    void remove(long userId, long itemId) {
+        if (enabled) {
+            change(userId, indexed -> indexed.items.remove(itemId));
+        }
+    }
+
+    /**
+     * Drops the user's index, for writers that change items without telling which.
+     */
+    public void evict(long userId) {
+        if (enabled) {
+            change(userId, null);
+        }
+    }
+
+    /**
+     * Drops the index of whoever owns the item, for writers that only know the item.
+     */
+    public void evictItem(long itemId) {
+        if (!enabled) {
+            return;
+        }
+        bumpAll();
+        afterCommit(() -> {
+            bumpAll();
+            users.asMap().entrySet().removeIf(entry -> {
+                Indexed indexed = entry.getValue();
+                indexed.lock.readLock().lock();
+                try {
+                    return indexed.items != null && indexed.items.contains(itemId);
+                } finally {
+                    indexed.lock.readLock().unlock();
+                }
+            });
+        });
+    }
+
+    /**
+     * Applies the change to a loaded index, or drops the index when {@code update} is null. The generation is
+     * bumped both now and after the commit, so that no load running in between is cached.
+     */
+    private void change(long userId, Consumer<Indexed> update) {
+        bump(userId);
+        afterCommit(() -> {
+            synchronized (stripeLocks[stripe(userId)]) {
+                bump(userId);
+                Indexed indexed = users.getIfPresent(userId);
+                if (indexed == null) {
+                    return;
+                }
+                if (update == null || indexed.items == null) {
+                    users.invalidate(userId);
+                    return;
+                }
+                indexed.lock.writeLock().lock();
+                try {
+                    update.accept(indexed);
+                } finally {
+                    indexed.lock.writeLock().unlock();
+                }
+                if (indexed.items.size() > maxUserItems) {
+                    users.invalidate(userId);
+                }
+            }
+        });
+    }
+
+    private void bump(long userId) {
+        Generation generation = generations.get(userId);
+        if (generation != null) {
+            generation.value.incrementAndGet();
+        }
+    }
+
+    /**
+     * Bumps every load in flight, whoever it is for, as the owner of the item is not known.
+     */
+    private void bumpAll() {
+        generations.forEach((userId, generation) -> {
+            synchronized (stripeLocks[stripe(userId)]) {
+                generation.value.incrementAndGet();
+            }
+        });
+    }
+
+    /**
+     * The user's loaded index, or null when the database has to answer.
+     */
+    private Indexed indexedFor(long userId) {
+        if (!enabled || TransactionSynchronizationManager.isActualTransactionActive()) {
+            return null;
+        }
+        Indexed indexed = users.getIfPresent(userId);
+        for (int attempt = 0; indexed == null && attempt < LOAD_ATTEMPTS; attempt++) {
+            indexed = load(userId);
+        }
+        return indexed == null || indexed.items == null ? null : indexed;
+    }
+
+    /**
+     * Ids of the request's tags, null without a tag filter. When all the tags are required and one is not in
+     * the dictionary, no item can match, and none of the ids are returned.
+     */
+    private List<Integer> tagIdsOf(GetItemRequest req) {
+        if (!req.hasTags()) {
+            return null;
+        }
+        Map<String, Integer> tagIds = tagDictionary.findIds(req.getTags());
+        if (req.matchesAllTags() && tagIds.size() < new HashSet<>(req.getTags()).size()) {
+            return List.of();
+        }
+        return new ArrayList<>(tagIds.values());
+    }
+
+    /**
+     * Loads and caches the user's items, or returns null when they changed during the load.
+     */
+    private Indexed load(long userId) {
+        Generation generation = generations.compute(userId, (id, current) -> {
+            Generation started = current == null ? new Generation() : current;
+            started.loads++;
+            return started;
+        });
+        try {
+            long value = generation.value.get();
+            List<ItemJdbcRepository.IndexedItem> rows = itemJdbcRepository.findIndexed(userId, maxUserItems + 1);
+            Indexed indexed;
+            if (rows.size() > maxUserItems) {
+                indexed = new Indexed(null, 1);
+            } else {
+                Map<Long, List<Integer>> tagIds = itemJdbcRepository.findTagIdsByUserId(userId);
+                List<UserItems.Entry> entries = new ArrayList<>(rows.size());
+                for (ItemJdbcRepository.IndexedItem row : rows) {
+                    entries.add(new UserItems.Entry(row.getId(), row.isUnread(), row.getMimeType(),
+                            row.getDateResolved(), row.getTitle(), row.getDomain(),
+                            tagIds.getOrDefault(row.getId(), List.of()).stream().mapToInt(Integer::intValue)
+                                    .toArray()));
+                }
+                indexed = new Indexed(new UserItems(entries), Math.max(1, entries.size()));
+            }
+            synchronized (stripeLocks[stripe(userId)]) {
+                if (generation.value.get() != value) {
+                    log.debug("Ссылки пользователя с id '{}' изменились во время индексации.", userId);
+                    return null;
+                }
+                users.put(userId, indexed);
+            }
+            return indexed;
+        } finally {
+            generations.computeIfPresent(userId, (id, current) -> --current.loads == 0 ? null : current);
+        }
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    private static int stripe(long userId) {
+        return (int) Math.floorMod(userId, (long) STRIPES);
+    }
+
+    /**
+     * Changes seen while a user is loaded; {@code loads} counts the loads in flight and is only changed inside
+     * {@link ConcurrentMap#compute}, so the entry is removed with the last of them.
+     */
+    private static class Generation {
+        private final AtomicLong value = new AtomicLong();
+        private int loads;
+    }
+
+    /**
+     * A user's entry in the cache; {@code items} is null for users with too many items to index.
+     */
+    private static class Indexed {
+        private final UserItems items;
+        private final int weight;
+        private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+        Indexed(UserItems items, int weight) {
+            this.items = items;
+            this.weight = weight;
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package ru.practicum.javalater.item.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import ru.practicum.javalater.item.dto.ResolutionState;
+import ru.practicum.javalater.item.entity.Item;
+import ru.practicum.javalater.item.metadata.UrlMetadataRetriever;
+import ru.practicum.javalater.item.repository.ItemJdbcRepository;
+import ru.practicum.javalater.item.repository.ItemRepository;
+
+import javax.transaction.Transactional;
+import java.util.Optional;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Completes items that were saved in the {@link ResolutionState#PENDING} state once their metadata
+ * has been retrieved. Every call runs in its own transaction, outside of the request that created the item.
+ * An item that resolves to a URL the user already has is merged into that item, tags and notes included.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ItemMetadataUpdater {
+
+    private final ItemRepository itemRepository;
+
+    private final ItemJdbcRepository itemJdbcRepository;
+
+    private final ItemIndex itemIndex;
+
+    @Transactional
+    public void applyMetadata(long itemId, UrlMetadataRetriever.UrlMetadata metadata) {
+        Optional<Item> optionalItem = itemRepository.findById(itemId);
+        if (optionalItem.isEmpty()) {
+            log.info("Ссылка с id '{}' удалена до получения метаданных.", itemId);
+            return;
+        }
+        Item item = optionalItem.get();
+        itemIndex.evict(item.getUser().getId());
+        Optional<Item> storedItem = itemRepository.findByUserIdAndResolvedUrl(item.getUser().getId(),
+                metadata.getResolvedUrl());
+        if (storedItem.isPresent() && !storedItem.get().getId().equals(itemId)) {
+            itemJdbcRepository.merge(storedItem.get().getId(), itemId);
+            log.info("Ссылка с id '{}' объединена с ранее сохраненной ссылкой с id '{}'.",
+                    itemId, storedItem.get().getId());
+            return;
+        }
+        item.setResolvedUrl(metadata.getResolvedUrl());
+        item.setHasImage(metadata.isHasImage());
+        item.setHasVideo(metadata.isHasVideo());
+        item.setTitle(metadata.getTitle());
+        item.setMimeType(metadata.getMimeType());
+        item.setDateResolved(metadata.getDateResolved());
+        item.setEtag(metadata.getEtag());
+        item.setLastModified(metadata.getLastModified());
+        item.setResolutionState(ResolutionState.RESOLVED);
+        itemRepository.save(item);
+    }
+
+    @Transactional
+    public void markFailed(long itemId, Throwable cause) {
+        Throwable reason = cause instanceof CompletionException && cause.getCause() != null ? cause.getCause() : cause;
+        log.warn("Не удалось получить метаданные для ссылки с id '{}': {}", itemId, reason.getMessage());
+        itemRepository.findById(itemId).ifPresent(item -> {
+            item.setResolutionState(ResolutionState.FAILED);
+            itemRepository.save(item);
+        });
+    }
+}
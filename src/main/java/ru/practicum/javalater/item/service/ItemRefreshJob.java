@@ -0,0 +1,217 @@
+package ru.practicum.javalater.item.service;
+
+import com.google.common.util.concurrent.RateLimiter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.practicum.javalater.item.dto.ResolutionState;
+import ru.practicum.javalater.item.exception.ItemRetrieverException;
+import ru.practicum.javalater.item.metadata.HostRequestScheduler;
+import ru.practicum.javalater.item.metadata.UrlMetadataRetriever;
+import ru.practicum.javalater.item.repository.ItemJdbcRepository;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Periodically re-checks items last checked, or resolved if they never were, more than
+ * {@code items.refresh.max-age-hours} ago; every finished check records its time, whatever it found. Items are
+ * walked by id with a cursor that survives between runs, and each run checks at most {@code max-items-per-run}
+ * items at no more than {@code rate-per-sec}, with at most {@code parallelism} of them in flight, so the job only
+ * ever takes a small share of the {@link HostRequestScheduler}, whose round-robin over hosts keeps other
+ * requests moving. Requests carry the stored ETag and Last-Modified values, so an unchanged page usually costs a
+ * 304 and a one-row update of the check time; the stored metadata and {@code dateResolved} are only rewritten
+ * when the title or the image and video flags changed. Links that fail with {@link ItemRetrieverException} are
+ * marked {@link ResolutionState#FAILED} and are checked again later.
+ * Items still {@link ResolutionState#PENDING} more than {@code pending-grace-minutes} after they were saved lost
+ * their resolution, for example to a restart, and are resolved again through the {@link ItemMetadataUpdater}.
+ */
+@Component
+@ConditionalOnProperty(name = "items.refresh.enabled", havingValue = "true", matchIfMissing = true)
+@Slf4j
+public class ItemRefreshJob {
+
+    private final ItemJdbcRepository itemJdbcRepository;
+    private final UrlMetadataRetriever urlMetadataRetriever;
+    private final ItemIndex itemIndex;
+    private final ItemMetadataUpdater itemMetadataUpdater;
+    private final Duration maxAge;
+    private final Duration pendingGrace;
+    private final int chunkSize;
+    private final int maxItemsPerRun;
+    private final int parallelism;
+    private final RateLimiter rateLimiter;
+    private final Counter notModified;
+    private final Counter unchanged;
+    private final Counter changed;
+    private final Counter failed;
+    private final Counter recovered;
+
+    private long cursor;
+
+    ItemRefreshJob(ItemJdbcRepository itemJdbcRepository,
+                   UrlMetadataRetriever urlMetadataRetriever,
+                   ItemIndex itemIndex,
+                   ItemMetadataUpdater itemMetadataUpdater,
+                   MeterRegistry meterRegistry,
+                   @Value("${items.refresh.max-age-hours:168}") long maxAgeHours,
+                   @Value("${items.refresh.pending-grace-minutes:30}") long pendingGraceMinutes,
+                   @Value("${items.refresh.chunk-size:100}") int chunkSize,
+                   @Value("${items.refresh.max-items-per-run:500}") int maxItemsPerRun,
+                   @Value("${items.refresh.parallelism:2}") int parallelism,
+                   @Value("${items.refresh.rate-per-sec:1.0}") double ratePerSecond) {
+        this.itemJdbcRepository = itemJdbcRepository;
+        this.urlMetadataRetriever = urlMetadataRetriever;
+        this.itemIndex = itemIndex;
+        this.itemMetadataUpdater = itemMetadataUpdater;
+        this.maxAge = Duration.ofHours(maxAgeHours);
+        this.pendingGrace = Duration.ofMinutes(pendingGraceMinutes);
+        this.chunkSize = chunkSize;
+        this.maxItemsPerRun = maxItemsPerRun;
+        this.parallelism = parallelism;
+        this.rateLimiter = RateLimiter.create(ratePerSecond);
+        this.notModified = outcome(meterRegistry, "not-modified");
+        this.unchanged = outcome(meterRegistry, "unchanged");
+        this.changed = outcome(meterRegistry, "changed");
+        this.failed = outcome(meterRegistry, "failed");
+        this.recovered = outcome(meterRegistry, "recovered");
+    }
+
+    private static Counter outcome(MeterRegistry meterRegistry, String outcome) {
+        return Counter.builder("items.refresh")
+                .description("Items re-checked by the refresh job")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Runs one budgeted pass and returns the number of items checked.
+     */
+    @Scheduled(fixedDelayString = "${items.refresh.interval-ms:600000}",
+            initialDelayString = "${items.refresh.initial-delay-ms:60000}")
+    public synchronized int refresh() {
+        Instant now = Instant.now();
+        Instant checkedBefore = now.minus(maxAge);
+        Instant pendingBefore = now.minus(pendingGrace);
+        Semaphore permits = new Semaphore(parallelism);
+        int checked = 0;
+        boolean wrapped = false;
+        while (checked < maxItemsPerRun) {
+            List<ItemJdbcRepository.StaleItem> page = itemJdbcRepository.findStale(checkedBefore, pendingBefore, cursor,
+                    Math.min(chunkSize, maxItemsPerRun - checked));
+            if (page.isEmpty()) {
+                if (wrapped || cursor == 0) {
+                    break;
+                }
+                cursor = 0;
+                wrapped = true;
+                continue;
+            }
+            for (ItemJdbcRepository.StaleItem item : page) {
+                rateLimiter.acquire();
+                permits.acquireUninterruptibly();
+                check(item).whenComplete((ignored, e) -> permits.release());
+                cursor = item.getId();
+                checked++;
+            }
+        }
+        permits.acquireUninterruptibly(parallelism);
+        if (checked > 0) {
+            log.info("Проверено ссылок на изменение метаданных: {}.", checked);
+        }
+        return checked;
+    }
+
+    private CompletableFuture<Void> check(ItemJdbcRepository.StaleItem item) {
+        if (item.getResolutionState() == ResolutionState.PENDING) {
+            return resolve(item);
+        }
+        String url = item.getResolvedUrl() != null ? item.getResolvedUrl() : item.getUrl();
+        CompletableFuture<Optional<UrlMetadataRetriever.UrlMetadata>> revalidated;
+        try {
+            revalidated = urlMetadataRetriever.revalidateAsync(url, item.getEtag(), item.getLastModified());
+        } catch (RuntimeException e) {
+            revalidated = CompletableFuture.failedFuture(e);
+        }
+        return revalidated.handle((metadata, e) -> {
+            try {
+                if (e != null) {
+                    onFailure(item, e instanceof CompletionException && e.getCause() != null ? e.getCause() : e);
+                } else if (metadata.isEmpty()) {
+                    notModified.increment();
+                    itemJdbcRepository.updateResolutionState(item.getId(), ResolutionState.RESOLVED, Instant.now());
+                } else {
+                    apply(item, metadata.get());
+                }
+            } catch (RuntimeException updateError) {
+                log.warn("Не удалось обновить метаданные ссылки с id '{}': {}", item.getId(),
+                        updateError.getMessage());
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Resolves an item whose first resolution was lost, the same way it would have been completed then.
+     */
+    private CompletableFuture<Void> resolve(ItemJdbcRepository.StaleItem item) {
+        CompletableFuture<UrlMetadataRetriever.UrlMetadata> retrieved;
+        try {
+            retrieved = urlMetadataRetriever.retrieveAsync(item.getUrl());
+        } catch (RuntimeException e) {
+            retrieved = CompletableFuture.failedFuture(e);
+        }
+        return retrieved.handle((metadata, e) -> {
+            try {
+                if (e == null) {
+                    recovered.increment();
+                    itemMetadataUpdater.applyMetadata(item.getId(), metadata);
+                } else {
+                    failed.increment();
+                    itemMetadataUpdater.markFailed(item.getId(), e);
+                }
+                itemJdbcRepository.updateCheckedAt(item.getId(), Instant.now());
+            } catch (RuntimeException updateError) {
+                log.warn("Не удалось сохранить метаданные ссылки с id '{}': {}", item.getId(),
+                        updateError.getMessage());
+            }
+            return null;
+        });
+    }
+
+    private void apply(ItemJdbcRepository.StaleItem item, UrlMetadataRetriever.UrlMetadata metadata) {
+        boolean contentChanged = !Objects.equals(item.getTitle(), metadata.getTitle())
+                || item.isHasImage() != metadata.isHasImage()
+                || item.isHasVideo() != metadata.isHasVideo();
+        if (contentChanged) {
+            changed.increment();
+            itemJdbcRepository.updateRefreshed(item.getId(), metadata);
+            itemIndex.evictItem(item.getId());
+            log.info("Метаданные ссылки с id '{}' изменились.", item.getId());
+            return;
+        }
+        unchanged.increment();
+        itemJdbcRepository.updateValidators(item.getId(), metadata.getEtag(), metadata.getLastModified(),
+                Instant.now());
+    }
+
+    private void onFailure(ItemJdbcRepository.StaleItem item, Throwable cause) {
+        failed.increment();
+        log.info("Ссылка с id '{}' недоступна: {}", item.getId(), cause.getMessage());
+        if (cause instanceof ItemRetrieverException) {
+            itemJdbcRepository.updateResolutionState(item.getId(), ResolutionState.FAILED, Instant.now());
+        } else {
+            itemJdbcRepository.updateCheckedAt(item.getId(), Instant.now());
+        }
+    }
+}
@@ -2,22 +2,27 @@ package ru.practicum.javalater.item.service;
 
 import ru.practicum.javalater.item.dto.GetItemRequest;
 import ru.practicum.javalater.item.dto.ItemDto;
+import ru.practicum.javalater.item.dto.ItemFacets;
+import ru.practicum.javalater.item.dto.ItemPage;
 import ru.practicum.javalater.item.dto.ModifyItemRequest;
 import ru.practicum.javalater.item.dto.PostItemDto;
 
-import java.util.List;
 import java.util.Set;
 
 public interface ItemService {
-    List<ItemDto> getItems(long userId);
+    ItemPage getItems(long userId, int limit, String cursor);
 
     ItemDto addNewItem(Long userId, PostItemDto itemDto);
 
+    ItemDto addNewItemAsync(Long userId, PostItemDto itemDto);
+
     void deleteItem(long userId, long itemId);
 
-    List<ItemDto> findByUserIdAndTags(long userId, Set<String> tags);
+    ItemPage findByUserIdAndTags(long userId, Set<String> tags, String tagMode, int limit, String cursor);
+
+    ItemPage searchItems(GetItemRequest req);
 
-    List<ItemDto> searchItems(GetItemRequest req);
+    ItemFacets getFacets(GetItemRequest req);
 
     ItemDto modifyItem(long userId, ModifyItemRequest request);
 }
@@ -1,26 +1,38 @@
 package ru.practicum.javalater.item.service;
 
-import com.google.common.collect.Lists;
 import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.core.types.dsl.ComparableExpression;
+import com.querydsl.core.types.dsl.Expressions;
+import com.querydsl.jpa.JPAExpressions;
+import com.querydsl.jpa.JPQLQuery;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
+import ru.practicum.javalater.exception.InvalidCursorException;
 import ru.practicum.javalater.item.dto.GetItemRequest;
 import ru.practicum.javalater.item.dto.ItemDto;
+import ru.practicum.javalater.item.dto.ItemFacets;
+import ru.practicum.javalater.item.dto.ItemPage;
 import ru.practicum.javalater.item.dto.ModifyItemRequest;
 import ru.practicum.javalater.item.dto.PostItemDto;
+import ru.practicum.javalater.item.dto.ResolutionState;
 import ru.practicum.javalater.item.entity.Item;
 import ru.practicum.javalater.item.entity.QItem;
+import ru.practicum.javalater.item.entity.QItemTag;
 import ru.practicum.javalater.item.exception.NotAuthorizedException;
 import ru.practicum.javalater.item.mapper.ItemMapper;
 import ru.practicum.javalater.item.metadata.UrlMetadataRetriever;
+import ru.practicum.javalater.item.repository.ItemJdbcRepository;
+import ru.practicum.javalater.item.repository.ItemQueryRepository;
 import ru.practicum.javalater.item.repository.ItemRepository;
+import ru.practicum.javalater.item.repository.TagDictionary;
 import ru.practicum.javalater.user.entity.User;
 import ru.practicum.javalater.user.repository.UserRepository;
 
 import javax.transaction.Transactional;
+import java.time.Instant;
 import java.util.*;
 
 @Service
@@ -29,32 +41,84 @@ import java.util.*;
 public class ItemServiceImpl implements ItemService {
 
     private final ItemRepository itemRepository;
+    private final ItemQueryRepository itemQueryRepository;
+    private final ItemJdbcRepository itemJdbcRepository;
+    private final TagDictionary tagDictionary;
     private final UserRepository userRepository;
     private final ItemMapper itemMapper;
     private final UrlMetadataRetriever urlMetadataRetriever;
+    private final ItemMetadataUpdater itemMetadataUpdater;
+    private final ItemIndex itemIndex;
 
     @Override
-    public List<ItemDto> getItems(long userId) {
+    public ItemPage getItems(long userId, int limit, String cursor) {
         log.info("Получение сохраненных ссылок пользователя с id '{}'", userId);
-        return itemMapper.toDtoList(itemRepository.findByUserId(userId));
+        return searchItems(GetItemRequest.of(userId, "all", "all", "newest", limit, null, cursor));
     }
 
+    /**
+     * Resolves the link and saves it with one atomic upsert keyed by the user and the resolved URL, so that
+     * concurrent saves of the same page end in a single item carrying the union of their tags. Not
+     * transactional: no connection is held while the page is fetched.
+     */
     @Override
-    @Transactional
     public ItemDto addNewItem(Long userId, PostItemDto itemDto) {
-        User user = findUser(userId);
+        findUser(userId);
         Item item = itemMapper.toModel(itemDto);
         UrlMetadataRetriever.UrlMetadata metadata = urlMetadataRetriever.retrieve(item.getUrl());
-        Optional<Item> optionalItem = itemRepository.findByResolvedUrl(metadata.getResolvedUrl());
-        if (optionalItem.isPresent()) {
-            Item storedItem = optionalItem.get();
-            storedItem.getTags().addAll(item.getTags());
-            return itemMapper.toDto(itemRepository.save(storedItem));
-        }
         setMetadataToItem(item, metadata);
+        ItemJdbcRepository.SavedItem saved = itemJdbcRepository.upsert(userId, item);
+        if (saved.isCreated()) {
+            log.info("Пользователь с id '{}' добавил ссылку: {}.", userId, item);
+        } else {
+            log.info("Пользователь с id '{}' повторно добавил ссылку с id '{}'.", userId, saved.getId());
+        }
+        ItemDto savedItem = itemQueryRepository.findPage(QItem.item.id.eq(saved.getId()), PageRequest.of(0, 1))
+                .get(0);
+        itemIndex.put(userId, savedItem);
+        return savedItem;
+    }
+
+    /**
+     * Saves the item in the {@link ResolutionState#PENDING} state and fills in its metadata once the
+     * retriever completes. Deliberately not transactional: the row must be committed before the
+     * completion stage looks it up, and no connection is held while the page is fetched.
+     */
+    @Override
+    public ItemDto addNewItemAsync(Long userId, PostItemDto itemDto) {
+        User user = findUser(userId);
+        Item item = itemMapper.toModel(itemDto);
         item.setUser(user);
-        log.info("Пользователь с id '{}' добавил ссылку: {}.", userId, item);
-        return itemMapper.toDto(itemRepository.save(item));
+        item.setResolutionState(ResolutionState.PENDING);
+        Item saved = itemRepository.save(item);
+        log.info("Пользователь с id '{}' добавил ссылку для фоновой обработки: {}.", userId, saved);
+        long itemId = saved.getId();
+        urlMetadataRetriever.retrieveAsync(saved.getUrl())
+                .handle((metadata, e) -> {
+                    try {
+                        if (e == null) {
+                            itemMetadataUpdater.applyMetadata(itemId, metadata);
+                        } else {
+                            itemMetadataUpdater.markFailed(itemId, e);
+                        }
+                    } catch (RuntimeException updateError) {
+                        log.warn("Не удалось сохранить метаданные ссылки с id '{}': {}", itemId,
+                                updateError.getMessage());
+                        markFailed(itemId, updateError);
+                    }
+                    return null;
+                });
+        ItemDto savedItem = itemMapper.toDto(saved);
+        itemIndex.put(userId, savedItem);
+        return savedItem;
+    }
+
+    private void markFailed(long itemId, Throwable cause) {
+        try {
+            itemMetadataUpdater.markFailed(itemId, cause);
+        } catch (RuntimeException e) {
+            log.warn("Ссылка с id '{}' остается в ожидании метаданных: {}", itemId, e.getMessage());
+        }
     }
 
     @Override
@@ -63,17 +127,88 @@ public class ItemServiceImpl implements ItemService {
         findAndCheckPermission(userId, itemId);
         log.info("Пользователь с id '{}' удаляет ссылку с id '{}", userId, itemId);
         itemRepository.deleteByUserIdAndId(userId, itemId);
+        itemIndex.remove(userId, itemId);
     }
 
     @Override
-    public List<ItemDto> findByUserIdAndTags(long userId, Set<String> tags) {
-        return itemMapper.toDtoList(itemRepository.findByUserAndTags(userId, tags));
+    public ItemPage findByUserIdAndTags(long userId, Set<String> tags, String tagMode, int limit, String cursor) {
+        return searchItems(GetItemRequest.of(userId, "all", "all", "newest", limit, new ArrayList<>(tags), tagMode,
+                cursor));
     }
 
+    /**
+     * Returns one page in the requested order, continuing after the cursor when there is one. Pages are read
+     * with a keyset condition on the sort key and the id instead of an offset, so a deep page costs the same
+     * as the first one. Items without a sort key come last in every order. When the {@link ItemIndex} holds the
+     * user's items, it picks the ids of the page and only those rows are read; a title cursor stays on the path
+     * that issued it, and one issued by the index is refused once the index no longer holds the user. The page
+     * is read through {@link ItemQueryRepository}, which loads the tags of all its items in one statement.
+     */
     @Override
-    public List<ItemDto> searchItems(GetItemRequest req) {
+    public ItemPage searchItems(GetItemRequest req) {
+
+        findUser(req.getUserId());
+        ItemCursor cursor = req.getCursor() == null ? null : ItemCursor.decode(req.getCursor(), req.getSort());
+        if (req.getLimit() < 1) {
+            throw new IllegalArgumentException("Размер страницы должен быть больше нуля: " + req.getLimit());
+        }
+        boolean titleCursor = cursor != null && cursor.getSort() == GetItemRequest.Sort.TITLE;
+        Optional<List<Long>> ids = titleCursor && !cursor.isIndexed()
+                ? Optional.empty() : itemIndex.findIds(req, cursor, req.getLimit() + 1);
+        if (titleCursor && cursor.isIndexed() && ids.isEmpty()) {
+            throw new InvalidCursorException("Курсор устарел, запросите список с начала: " + req.getCursor());
+        }
+        List<ItemDto> items = ids
+                .map(this::findByIds)
+                .orElseGet(() -> findPage(req, cursor));
+        String nextCursor = null;
+        if (items.size() > req.getLimit()) {
+            items = items.subList(0, req.getLimit());
+            nextCursor = ItemCursor.after(req.getSort(), items.get(items.size() - 1), ids.isPresent()).encode();
+        }
+        return new ItemPage(items, nextCursor);
+    }
 
+    /**
+     * Counts the items per state, content type, tag and domain for the request's filters; the sort and cursor
+     * are ignored and the limit caps the tag and domain counts. When the {@link ItemIndex} holds the user's
+     * items, they are counted there in one pass. Otherwise the database groups the user's items by state, mime
+     * type and domain in one statement, which all but the tag counts are added up from, and counts the tags of
+     * the matching items in another.
+     */
+    @Override
+    public ItemFacets getFacets(GetItemRequest req) {
         findUser(req.getUserId());
+        if (req.getLimit() < 1) {
+            throw new IllegalArgumentException("Число значений фасета должно быть больше нуля: " + req.getLimit());
+        }
+        FacetCounter counter = new FacetCounter(unreadFilter(req.getState()), mimeTypeFilter(req.getContentType()));
+        if (!itemIndex.countFacets(req, counter)) {
+            BooleanExpression condition = QItem.item.user.id.eq(req.getUserId());
+            if (req.hasTags()) {
+                condition = condition.and(makeTagCondition(req.getTags(), req.matchesAllTags()));
+            }
+            itemQueryRepository.countGroups(condition).forEach(group ->
+                    counter.add(group.isUnread(), group.getMimeType(), group.getDomain(), group.getCount()));
+            if (!req.getState().equals(GetItemRequest.State.ALL)) {
+                condition = condition.and(makeStateCondition(req.getState()));
+            }
+            if (!req.getContentType().equals(GetItemRequest.ContentType.ALL)) {
+                condition = condition.and(makeContentTypeCondition(req.getContentType()));
+            }
+            itemQueryRepository.countTags(condition).forEach(counter::addTag);
+        }
+        return counter.toFacets(tagDictionary, req.getLimit());
+    }
+
+    /**
+     * Reads the page after the cursor in the order of the sort key with nulls last, then id. While the cursor is
+     * on a non-null key, the rest of the non-null keys are read as the row value range
+     * {@code (key, id) > (value, id)}, a single range of the {@code (user_id, key, id)} index, and the items
+     * without a key follow in a statement of their own once those run out. A cursor already among the items
+     * without a key only continues in that tail.
+     */
+    private List<ItemDto> findPage(GetItemRequest req, ItemCursor cursor) {
         List<BooleanExpression> conditions = new ArrayList<>();
         BooleanExpression byUserId = QItem.item.user.id.eq(req.getUserId());
         conditions.add(byUserId);
@@ -87,7 +222,7 @@ public class ItemServiceImpl implements ItemService {
         }
 
         if (req.hasTags()) {
-            conditions.add(QItem.item.tags.any().in(req.getTags()));
+            conditions.add(makeTagCondition(req.getTags(), req.matchesAllTags()));
         }
 
         BooleanExpression finalCondition = conditions.stream()
@@ -95,10 +230,39 @@ public class ItemServiceImpl implements ItemService {
                 .get();
 
         Sort sort = makeOrderByClause(req.getSort());
-        PageRequest pageRequest = PageRequest.of(0, req.getLimit(), sort);
+        PageRequest pageRequest = PageRequest.of(0, req.getLimit() + 1, sort);
+        if (cursor == null) {
+            return itemQueryRepository.findPage(finalCondition, pageRequest);
+        }
+        ComparableExpression<?> key = sortKey(cursor.getSort());
+        boolean ascending = cursor.getSort() != GetItemRequest.Sort.OLDEST;
+        if (cursor.getKey() == null) {
+            BooleanExpression afterId = ascending ? QItem.item.id.gt(cursor.getId()) : QItem.item.id.lt(cursor.getId());
+            return itemQueryRepository.findPage(finalCondition.and(key.isNull()).and(afterId), pageRequest);
+        }
+        BooleanExpression afterKey = Expressions.booleanTemplate("({0}, {1}) " + (ascending ? ">" : "<")
+                + " ({2}, {3})", key, QItem.item.id, cursor.getKey(), cursor.getId());
+        return itemQueryRepository.findPage(finalCondition.and(afterKey), finalCondition.and(key.isNull()),
+                pageRequest);
+    }
 
-        Iterable<Item> items = itemRepository.findAll(finalCondition, pageRequest);
-        return itemMapper.toDtoList(Lists.newArrayList(items));
+    /**
+     * Reads the items in the order of the ids; items deleted since they were indexed are skipped.
+     */
+    private List<ItemDto> findByIds(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Map<Long, ItemDto> byId = new HashMap<>();
+        itemQueryRepository.findPage(QItem.item.id.in(ids), PageRequest.of(0, ids.size()))
+                .forEach(item -> byId.put(item.getId(), item));
+        List<ItemDto> items = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            if (byId.containsKey(id)) {
+                items.add(byId.get(id));
+            }
+        }
+        return items;
     }
 
     @Override
@@ -112,7 +276,9 @@ public class ItemServiceImpl implements ItemService {
             item.getTags().addAll(request.getTags());
         }
         Item saved = itemRepository.save(item);
-        return itemMapper.toDto(saved);
+        ItemDto savedItem = itemMapper.toDto(saved);
+        itemIndex.put(userId, savedItem);
+        return savedItem;
     }
 
     private Item findAndCheckPermission(long userId, long itemId) {
@@ -140,26 +306,73 @@ public class ItemServiceImpl implements ItemService {
     }
 
     private BooleanExpression makeContentTypeCondition(GetItemRequest.ContentType contentType) {
+        return QItem.item.mimeType.eq(mimeTypeOf(contentType));
+    }
+
+    /**
+     * The state filter as the value of {@code unread} items must have, null for all states.
+     */
+    static Boolean unreadFilter(GetItemRequest.State state) {
+        return state == GetItemRequest.State.ALL ? null : state == GetItemRequest.State.UNREAD;
+    }
+
+    /**
+     * The content type filter as the mime type items must have, null for all types.
+     */
+    static String mimeTypeFilter(GetItemRequest.ContentType contentType) {
+        return contentType == GetItemRequest.ContentType.ALL ? null : mimeTypeOf(contentType);
+    }
+
+    static String mimeTypeOf(GetItemRequest.ContentType contentType) {
         switch (contentType) {
             case ARTICLE:
-                return QItem.item.mimeType.eq("text");
+                return "text";
             case IMAGE:
-                return QItem.item.mimeType.eq("image");
+                return "image";
             case VIDEO:
-                return QItem.item.mimeType.eq("video");
+                return "video";
             default:
                 throw new UnsupportedOperationException("Неизвестный тип контента");
         }
     }
 
+    /**
+     * Items carrying any of the tags, or all of them, matched by tag id through the {@code (tag_id, item_id)}
+     * index. For all of them, the matching tag rows of each item are counted in one grouped subquery; the
+     * {@code item_tags} key makes them distinct. Tags that are not in the dictionary match nothing.
+     */
+    private BooleanExpression makeTagCondition(List<String> tags, boolean all) {
+        List<Integer> tagIds = new ArrayList<>(new TreeSet<>(tagDictionary.findIds(tags).values()));
+        JPQLQuery<Long> tagged = JPAExpressions.select(QItemTag.itemTag.itemId)
+                .from(QItemTag.itemTag)
+                .where(QItemTag.itemTag.tagId.in(tagIds));
+        if (all) {
+            tagged = tagged.groupBy(QItemTag.itemTag.itemId)
+                    .having(QItemTag.itemTag.tagId.count().eq((long) new HashSet<>(tags).size()));
+        }
+        return QItem.item.id.in(tagged);
+    }
+
     private Sort makeOrderByClause(GetItemRequest.Sort sort) {
         switch (sort) {
             case NEWEST:
-                return Sort.by(Sort.Direction.ASC, "dateResolved");
+                return Sort.by(Sort.Order.asc("dateResolved").nullsLast(), Sort.Order.asc("id"));
+            case OLDEST:
+                return Sort.by(Sort.Order.desc("dateResolved").nullsLast(), Sort.Order.desc("id"));
+            case TITLE:
+                return Sort.by(Sort.Order.asc("title").nullsLast(), Sort.Order.asc("id"));
+            default:
+                throw new UnsupportedOperationException("Неизвестный тип сортировки");
+        }
+    }
+
+    private static ComparableExpression<?> sortKey(GetItemRequest.Sort sort) {
+        switch (sort) {
+            case NEWEST:
             case OLDEST:
-                return Sort.by(Sort.Direction.DESC, "dateResolved");
+                return QItem.item.dateResolved;
             case TITLE:
-                return Sort.by(Sort.Direction.ASC, "title");
+                return QItem.item.title;
             default:
                 throw new UnsupportedOperationException("Неизвестный тип сортировки");
         }
@@ -178,5 +391,8 @@ public class ItemServiceImpl implements ItemService {
         item.setTitle(metadata.getTitle());
         item.setMimeType(metadata.getMimeType());
         item.setDateResolved(metadata.getDateResolved());
+        item.setEtag(metadata.getEtag());
+        item.setLastModified(metadata.getLastModified());
+        item.setResolutionState(ResolutionState.RESOLVED);
     }
 }
@@ -0,0 +1,78 @@
+package ru.practicum.javalater.item.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.practicum.javalater.item.entity.Item;
+import ru.practicum.javalater.item.metadata.UrlNormalizer;
+import ru.practicum.javalater.item.repository.ItemJdbcRepository;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * One-off pass over items saved before {@code url_hash} or {@code canonical_url} existed: their resolved URL is
+ * normalized, hashed and folded into its canonical form, and an item whose resolved URL the user already has in
+ * another spelling is merged into that item, tags and notes included. Items are walked by id in chunks of {@code items.url-hash-backfill.chunk-size};
+ * once a pass has run to the end, later runs return immediately.
+ */
+@Component
+@ConditionalOnProperty(name = "items.url-hash-backfill.enabled", havingValue = "true", matchIfMissing = true)
+@Slf4j
+public class ItemUrlHashBackfill {
+
+    private final ItemJdbcRepository itemJdbcRepository;
+    private final ItemIndex itemIndex;
+    private final int chunkSize;
+
+    private boolean done;
+
+    ItemUrlHashBackfill(ItemJdbcRepository itemJdbcRepository,
+                        ItemIndex itemIndex,
+                        @Value("${items.url-hash-backfill.chunk-size:500}") int chunkSize) {
+        this.itemJdbcRepository = itemJdbcRepository;
+        this.itemIndex = itemIndex;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Runs the pass and returns the number of merged duplicates.
+     */
+    @Scheduled(fixedDelayString = "${items.url-hash-backfill.interval-ms:3600000}",
+            initialDelayString = "${items.url-hash-backfill.initial-delay-ms:30000}")
+    public synchronized int backfill() {
+        if (done) {
+            return 0;
+        }
+        long cursor = 0;
+        int hashed = 0;
+        int merged = 0;
+        List<ItemJdbcRepository.UnhashedItem> page;
+        while (!(page = itemJdbcRepository.findUnhashed(cursor, chunkSize)).isEmpty()) {
+            for (ItemJdbcRepository.UnhashedItem item : page) {
+                cursor = item.getId();
+                String resolvedUrl = UrlNormalizer.normalize(item.getResolvedUrl());
+                Optional<Long> kept = resolvedUrl == null ? Optional.empty()
+                        : itemJdbcRepository.findDuplicate(item.getId(), item.getUserId(), resolvedUrl);
+                if (kept.isPresent()) {
+                    itemJdbcRepository.merge(kept.get(), item.getId());
+                    itemIndex.evictItem(kept.get());
+                    log.info("Ссылка с id '{}' объединена с ранее сохраненной ссылкой с id '{}'.",
+                            item.getId(), kept.get());
+                    merged++;
+                } else {
+                    itemJdbcRepository.updateUrlHash(item.getId(), resolvedUrl,
+                            Item.urlHash(item.getUrl(), resolvedUrl), Item.domain(item.getUrl(), resolvedUrl));
+                    hashed++;
+                }
+            }
+        }
+        done = true;
+        if (hashed + merged > 0) {
+            log.info("Заполнен хеш ссылок: {}, объединено дубликатов: {}.", hashed, merged);
+        }
+        return merged;
+    }
+}
@@ -0,0 +1,362 @@
+package ru.practicum.javalater.item.service;
+
+import lombok.Value;
+import ru.practicum.javalater.item.dto.GetItemRequest;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Columnar copy of the list columns of one user's items. Every item occupies a slot in the column arrays;
+ * filters are bitsets over the slots and each sort mode keeps the live slots in its order, so a request is
+ * answered by intersecting bitsets and walking one ordering from the cursor. Slots of deleted items are only
+ * marked dead and are reclaimed when more than half of them are. Not thread-safe: {@link ItemIndex} guards it.
+ */
+final class UserItems {
+
+    private static final int MIN_CAPACITY = 16;
+
+    private long[] ids;
+
+    private long[] dates;
+
+    private String[] titles;
+
+    private String[] domains;
+
+    private int[][] tagIds;
+
+    private int size;
+
+    private final BitSet live = new BitSet();
+
+    private final BitSet dated = new BitSet();
+
+    private final BitSet unread = new BitSet();
+
+    private final Map<String, BitSet> byMimeType = new HashMap<>();
+
+    private final Map<Integer, BitSet> byTag = new HashMap<>();
+
+    private final Map<Long, Integer> slots = new HashMap<>();
+
+    private final Map<GetItemRequest.Sort, int[]> orders = new EnumMap<>(GetItemRequest.Sort.class);
+
+    UserItems(Collection<Entry> entries) {
+        int capacity = Math.max(MIN_CAPACITY, entries.size());
+        ids = new long[capacity];
+        dates = new long[capacity];
+        titles = new String[capacity];
+        domains = new String[capacity];
+        tagIds = new int[capacity][];
+        entries.forEach(this::store);
+        sortAll();
+    }
+
+    int size() {
+        return slots.size();
+    }
+
+    boolean contains(long itemId) {
+        return slots.containsKey(itemId);
+    }
+
+    /**
+     * Ids of at most {@code limit} items matching the filters, in the order of the sort mode, after the cursor
+     * when there is one. {@code mimeType} and {@code tagIds} are not applied when null; items match when they
+     * carry any of the tags, or all of them with {@code allTags}. An empty {@code tagIds} matches nothing.
+     */
+    List<Long> find(Boolean unreadState, String mimeType, Collection<Integer> tagIds, boolean allTags,
+                    GetItemRequest.Sort sort, ItemCursor cursor, int limit) {
+        BitSet matches = (BitSet) live.clone();
+        if (unreadState != null) {
+            if (unreadState) {
+                matches.and(unread);
+            } else {
+                matches.andNot(unread);
+            }
+        }
+        if (mimeType != null) {
+            matches.and(byMimeType.getOrDefault(mimeType, new BitSet()));
+        }
+        if (tagIds != null) {
+            matches.and(tagged(tagIds, allTags));
+        }
+        List<Long> found = new ArrayList<>(Math.min(limit, matches.cardinality()));
+        if (matches.isEmpty()) {
+            return found;
+        }
+        int[] order = orders.get(sort);
+        int from = cursor == null ? 0 : firstAfter(order, sort, cursor);
+        for (int i = from; i < order.length && found.size() < limit; i++) {
+            if (matches.get(order[i])) {
+                found.add(ids[order[i]]);
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Feeds every item carrying the tags, matched as by {@link #find}, to the counter, with the tags of those
+     * that pass its filters.
+     */
+    void countFacets(Collection<Integer> tagIds, boolean allTags, FacetCounter counter) {
+        BitSet matches = (BitSet) live.clone();
+        if (tagIds != null) {
+            matches.and(tagged(tagIds, allTags));
+        }
+        for (int slot = matches.nextSetBit(0); slot >= 0; slot = matches.nextSetBit(slot + 1)) {
+            boolean slotUnread = unread.get(slot);
+            String mimeType = mimeTypeOf(slot);
+            counter.add(slotUnread, mimeType, domains[slot], 1);
+            if (counter.matches(slotUnread, mimeType)) {
+                for (int tagId : this.tagIds[slot]) {
+                    counter.addTag(tagId, 1);
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds the item or replaces the indexed copy of it.
+     */
+    void put(Entry entry) {
+        Integer slot = slots.get(entry.getId());
+        if (slot == null) {
+            int added = store(entry);
+            orders.replaceAll((sort, order) -> insert(order, sort, added));
+            return;
+        }
+        orders.replaceAll((sort, order) -> remove(order, sort, slot));
+        clear(slot);
+        write(slot, entry);
+        orders.replaceAll((sort, order) -> insert(order, sort, slot));
+    }
+
+    void remove(long itemId) {
+        Integer slot = slots.remove(itemId);
+        if (slot == null) {
+            return;
+        }
+        orders.replaceAll((sort, order) -> remove(order, sort, slot));
+        clear(slot);
+        live.clear(slot);
+        if (size - slots.size() > slots.size() && size > MIN_CAPACITY) {
+            compact();
+        }
+    }
+
+    private int store(Entry entry) {
+        if (size == ids.length) {
+            int capacity = size * 2;
+            ids = Arrays.copyOf(ids, capacity);
+            dates = Arrays.copyOf(dates, capacity);
+            titles = Arrays.copyOf(titles, capacity);
+            domains = Arrays.copyOf(domains, capacity);
+            tagIds = Arrays.copyOf(tagIds, capacity);
+        }
+        int slot = size++;
+        slots.put(entry.getId(), slot);
+        live.set(slot);
+        write(slot, entry);
+        return slot;
+    }
+
+    private void write(int slot, Entry entry) {
+        ids[slot] = entry.getId();
+        if (entry.getDateResolved() != null) {
+            dates[slot] = nanos(entry.getDateResolved());
+            dated.set(slot);
+        }
+        titles[slot] = entry.getTitle();
+        domains[slot] = entry.getDomain();
+        unread.set(slot, entry.isUnread());
+        if (entry.getMimeType() != null) {
+            byMimeType.computeIfAbsent(entry.getMimeType(), mimeType -> new BitSet()).set(slot);
+        }
+        tagIds[slot] = entry.getTagIds();
+        for (int tagId : entry.getTagIds()) {
+            byTag.computeIfAbsent(tagId, id -> new BitSet()).set(slot);
+        }
+    }
+
+    private void clear(int slot) {
+        dated.clear(slot);
+        dates[slot] = 0;
+        titles[slot] = null;
+        domains[slot] = null;
+        unread.clear(slot);
+        byMimeType.values().forEach(bits -> bits.clear(slot));
+        for (int tagId : tagIds[slot]) {
+            BitSet bits = byTag.get(tagId);
+            bits.clear(slot);
+            if (bits.isEmpty()) {
+                byTag.remove(tagId);
+            }
+        }
+        tagIds[slot] = null;
+    }
+
+    private void compact() {
+        List<Entry> entries = new ArrayList<>(slots.size());
+        for (int slot = live.nextSetBit(0); slot >= 0; slot = live.nextSetBit(slot + 1)) {
+            entries.add(new Entry(ids[slot], unread.get(slot), mimeTypeOf(slot),
+                    dated.get(slot) ? instant(dates[slot]) : null, titles[slot], domains[slot], tagIds[slot]));
+        }
+        UserItems compacted = new UserItems(entries);
+        ids = compacted.ids;
+        dates = compacted.dates;
+        titles = compacted.titles;
+        domains = compacted.domains;
+        tagIds = compacted.tagIds;
+        size = compacted.size;
+        copy(compacted.live, live);
+        copy(compacted.dated, dated);
+        copy(compacted.unread, unread);
+        byMimeType.clear();
+        byMimeType.putAll(compacted.byMimeType);
+        byTag.clear();
+        byTag.putAll(compacted.byTag);
+        slots.clear();
+        slots.putAll(compacted.slots);
+        orders.clear();
+        orders.putAll(compacted.orders);
+    }
+
+    /**
+     * Slots carrying any of the tags, or all of them with {@code allTags}; none for no tags.
+     */
+    private BitSet tagged(Collection<Integer> tagIds, boolean allTags) {
+        BitSet tagged = new BitSet();
+        if (allTags && !tagIds.isEmpty()) {
+            tagged.or(live);
+            tagIds.forEach(tagId -> tagged.and(byTag.getOrDefault(tagId, new BitSet())));
+        } else {
+            tagIds.forEach(tagId -> tagged.or(byTag.getOrDefault(tagId, new BitSet())));
+        }
+        return tagged;
+    }
+
+    private String mimeTypeOf(int slot) {
+        for (Map.Entry<String, BitSet> entry : byMimeType.entrySet()) {
+            if (entry.getValue().get(slot)) {
+                return entry.getKey();
+            }
+        }
+        return null;
+    }
+
+    private void sortAll() {
+        for (GetItemRequest.Sort sort : GetItemRequest.Sort.values()) {
+            Integer[] sorted = new Integer[slots.size()];
+            int i = 0;
+            for (int slot = live.nextSetBit(0); slot >= 0; slot = live.nextSetBit(slot + 1)) {
+                sorted[i++] = slot;
+            }
+            Arrays.sort(sorted, (a, b) -> compare(sort, key(sort, a), ids[a], key(sort, b), ids[b]));
+            orders.put(sort, Arrays.stream(sorted).mapToInt(Integer::intValue).toArray());
+        }
+    }
+
+    private int[] insert(int[] order, GetItemRequest.Sort sort, int slot) {
+        int at = position(order, sort, key(sort, slot), ids[slot]);
+        int[] inserted = new int[order.length + 1];
+        System.arraycopy(order, 0, inserted, 0, at);
+        inserted[at] = slot;
+        System.arraycopy(order, at, inserted, at + 1, order.length - at);
+        return inserted;
+    }
+
+    private int[] remove(int[] order, GetItemRequest.Sort sort, int slot) {
+        int at = position(order, sort, key(sort, slot), ids[slot]) - 1;
+        int[] removed = new int[order.length - 1];
+        System.arraycopy(order, 0, removed, 0, at);
+        System.arraycopy(order, at + 1, removed, at, order.length - at - 1);
+        return removed;
+    }
+
+    private int firstAfter(int[] order, GetItemRequest.Sort sort, ItemCursor cursor) {
+        Comparable<?> key = cursor.getKey() instanceof Instant ? (Comparable<?>) nanos((Instant) cursor.getKey())
+                : (Comparable<?>) cursor.getKey();
+        return position(order, sort, key, cursor.getId());
+    }
+
+    /**
+     * Index of the first slot of the ordering that comes after {@code (key, id)}.
+     */
+    private int position(int[] order, GetItemRequest.Sort sort, Comparable<?> key, long id) {
+        int low = 0;
+        int high = order.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (compare(sort, key(sort, order[middle]), ids[order[middle]], key, id) <= 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private Comparable<?> key(GetItemRequest.Sort sort, int slot) {
+        if (sort == GetItemRequest.Sort.TITLE) {
+            return titles[slot];
+        }
+        return dated.get(slot) ? dates[slot] : null;
+    }
+
+    /**
+     * The order of {@code ItemServiceImpl}'s queries: the key with nulls last, then the id, both descending
+     * for {@link GetItemRequest.Sort#OLDEST}.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static int compare(GetItemRequest.Sort sort, Comparable left, long leftId, Comparable right,
+                               long rightId) {
+        boolean ascending = sort != GetItemRequest.Sort.OLDEST;
+        if (left == null || right == null) {
+            if (left != right) {
+                return left == null ? 1 : -1;
+            }
+        } else {
+            int byKey = left.compareTo(right);
+            if (byKey != 0) {
+                return ascending ? byKey : -byKey;
+            }
+        }
+        return ascending ? Long.compare(leftId, rightId) : Long.compare(rightId, leftId);
+    }
+
+    private static void copy(BitSet from, BitSet to) {
+        to.clear();
+        to.or(from);
+    }
+
+    private static long nanos(Instant instant) {
+        return instant.getEpochSecond() * 1_000_000_000L + instant.getNano();
+    }
+
+    private static Instant instant(long nanos) {
+        return Instant.ofEpochSecond(Math.floorDiv(nanos, 1_000_000_000L), Math.floorMod(nanos, 1_000_000_000L));
+    }
+
+    /**
+     * The indexed columns of one item.
+     */
+    @Value
+    static class Entry {
+        long id;
+        boolean unread;
+        String mimeType;
+        Instant dateResolved;
+        String title;
+        String domain;
+        int[] tagIds;
+    }
+}
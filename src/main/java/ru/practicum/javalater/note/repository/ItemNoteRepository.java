@@ -11,8 +11,9 @@ import java.util.List;
 public interface ItemNoteRepository extends JpaRepository<ItemNote, Long> {
     List<ItemNote> findAllByItemUserIdAndItemUrlContaining(Long userId, String url);
 
-    @Query("SELECT note FROM ItemNote AS note JOIN note.item AS item WHERE item.user.id = ?1 and ?2 MEMBER OF item.tags")
-    List<ItemNote> findAllByItemUserIdAndItemTag(Long userId, String tag);
+    @Query("SELECT note FROM ItemNote AS note JOIN note.item AS item WHERE item.user.id = ?1 "
+            + "and item.id IN (SELECT itemTag.itemId FROM ItemTag AS itemTag WHERE itemTag.tagId = ?2)")
+    List<ItemNote> findAllByItemUserIdAndItemTagId(Long userId, Integer tagId);
 
     Page<ItemNote> findAllByItemUserId(Long userId, Pageable page);
 }
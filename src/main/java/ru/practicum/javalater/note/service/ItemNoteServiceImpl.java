@@ -6,6 +6,7 @@ import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import ru.practicum.javalater.item.entity.Item;
 import ru.practicum.javalater.item.repository.ItemRepository;
+import ru.practicum.javalater.item.repository.TagDictionary;
 import ru.practicum.javalater.note.dto.ItemNoteDto;
 import ru.practicum.javalater.note.entity.ItemNote;
 import ru.practicum.javalater.note.mapper.ItemNoteMapper;
@@ -26,6 +27,8 @@ public class ItemNoteServiceImpl implements ItemNoteService {
 
     private final ItemRepository itemRepository;
 
+    private final TagDictionary tagDictionary;
+
     @Override
     @Transactional
     public ItemNoteDto addNewItemNote(long userId, ItemNoteDto itemNoteDto) {
@@ -47,7 +50,9 @@ public class ItemNoteServiceImpl implements ItemNoteService {
 
     @Override
     public List<ItemNoteDto> searchNotesByTag(long userId, String tag) {
-        List<ItemNote> notes = itemNoteRepository.findAllByItemUserIdAndItemTag(userId, tag);
+        Integer tagId = tagDictionary.findIds(List.of(tag)).get(tag);
+        List<ItemNote> notes = tagId == null ? List.of()
+                : itemNoteRepository.findAllByItemUserIdAndItemTagId(userId, tagId);
         log.info("Пользователь с id '{}' ищет заметки с тэгом '{}'.", userId, tag);
         return itemNoteMapper.toDtoList(notes);
     }
@@ -0,0 +1,3 @@
+-- when ItemRefreshJob last finished a check of the item, whatever it found; items it has not checked yet count
+-- from when they were resolved, or from when they were saved if they never were
+ALTER TABLE items ADD COLUMN IF NOT EXISTS last_checked_at TIMESTAMP;
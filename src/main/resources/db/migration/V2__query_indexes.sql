@@ -0,0 +1,21 @@
+-- item lists: keyset pages per user in date and title order
+CREATE INDEX IF NOT EXISTS idx_items_user_date_resolved ON items (user_id, date_resolved, id);
+
+CREATE INDEX IF NOT EXISTS idx_items_user_title ON items (user_id, title, id);
+
+-- batch import and duplicate detection by url
+CREATE INDEX IF NOT EXISTS idx_items_user_resolved_url ON items (user_id, resolved_url);
+
+CREATE INDEX IF NOT EXISTS idx_items_user_url ON items (user_id, url);
+
+CREATE INDEX IF NOT EXISTS idx_items_resolved_url ON items (resolved_url);
+
+-- pending items of a batch, walked by id
+CREATE INDEX IF NOT EXISTS idx_items_user_resolution_state ON items (user_id, resolution_state, id);
+
+-- tag filters, and the tags of a page loaded by item id
+CREATE INDEX IF NOT EXISTS idx_tags_name_item ON tags (name, item_id);
+
+CREATE INDEX IF NOT EXISTS idx_tags_item_name ON tags (item_id, name);
+
+CREATE INDEX IF NOT EXISTS idx_item_notes_item ON item_notes (item_id);
@@ -0,0 +1,7 @@
+-- dedupe key: hash of the canonical resolved url, filled in for existing rows by ItemUrlHashBackfill
+ALTER TABLE items ADD COLUMN IF NOT EXISTS url_hash BIGINT;
+
+CREATE INDEX IF NOT EXISTS idx_items_user_url_hash ON items (user_id, url_hash);
+
+-- resolved urls are now looked up through the hash
+DROP INDEX IF EXISTS idx_items_resolved_url;
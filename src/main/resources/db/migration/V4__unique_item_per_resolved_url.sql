@@ -0,0 +1,25 @@
+-- items saved twice under the same resolved url before the key was enforced are merged into the oldest one
+UPDATE item_notes SET item_id = (SELECT MIN(k.id) FROM items d JOIN items k
+        ON k.user_id = d.user_id AND k.resolved_url = d.resolved_url WHERE d.id = item_notes.item_id)
+WHERE item_id IN (SELECT d.id FROM items d WHERE EXISTS (SELECT 1 FROM items k
+        WHERE k.user_id = d.user_id AND k.resolved_url = d.resolved_url AND k.id < d.id));
+
+UPDATE tags SET item_id = (SELECT MIN(k.id) FROM items d JOIN items k
+        ON k.user_id = d.user_id AND k.resolved_url = d.resolved_url WHERE d.id = tags.item_id)
+WHERE item_id IN (SELECT d.id FROM items d WHERE EXISTS (SELECT 1 FROM items k
+        WHERE k.user_id = d.user_id AND k.resolved_url = d.resolved_url AND k.id < d.id));
+
+DELETE FROM items WHERE EXISTS (SELECT 1 FROM items k
+        WHERE k.user_id = items.user_id AND k.resolved_url = items.resolved_url AND k.id < items.id);
+
+DELETE FROM tags WHERE EXISTS (SELECT 1 FROM tags k WHERE k.item_id = tags.item_id AND k.name = tags.name
+        AND k.id < tags.id);
+
+-- conflict targets of the ingest upsert
+DROP INDEX IF EXISTS idx_items_user_resolved_url;
+
+CREATE UNIQUE INDEX IF NOT EXISTS uq_items_user_resolved_url ON items (user_id, resolved_url);
+
+DROP INDEX IF EXISTS idx_tags_item_name;
+
+CREATE UNIQUE INDEX IF NOT EXISTS uq_tags_item_name ON tags (item_id, name);
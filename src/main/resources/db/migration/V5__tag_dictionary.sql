@@ -0,0 +1,14 @@
+-- every tag name is stored once; items link to tags by id
+CREATE TABLE IF NOT EXISTS tag_names ( id INTEGER GENERATED ALWAYS AS IDENTITY PRIMARY KEY, name VARCHAR(50) NOT NULL, CONSTRAINT uq_tag_names_name UNIQUE (name) );
+
+CREATE TABLE IF NOT EXISTS item_tags ( item_id BIGINT NOT NULL, tag_id INTEGER NOT NULL, PRIMARY KEY (item_id, tag_id), CONSTRAINT fk_item_tags_to_items FOREIGN KEY(item_id) REFERENCES items(id), CONSTRAINT fk_item_tags_to_tag_names FOREIGN KEY(tag_id) REFERENCES tag_names(id) );
+
+INSERT INTO tag_names (name) SELECT DISTINCT name FROM tags WHERE name IS NOT NULL;
+
+INSERT INTO item_tags (item_id, tag_id) SELECT DISTINCT t.item_id, n.id FROM tags t JOIN tag_names n ON n.name = t.name
+WHERE t.item_id IS NOT NULL;
+
+DROP TABLE tags;
+
+-- tag filters: the items carrying a tag
+CREATE INDEX IF NOT EXISTS idx_item_tags_tag_item ON item_tags (tag_id, item_id);
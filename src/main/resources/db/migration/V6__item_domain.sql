@@ -0,0 +1,25 @@
+-- host of the resolved url, or of the saved url while the item is not resolved, for the domain facet;
+-- lower-cased and without a leading www., as UrlNormalizer.domain does
+ALTER TABLE items ADD COLUMN IF NOT EXISTS domain VARCHAR(255);
+
+UPDATE items SET domain = SUBSTRING(COALESCE(resolved_url, url) FROM POSITION('://' IN COALESCE(resolved_url, url)) + 3)
+WHERE POSITION('://' IN COALESCE(resolved_url, url)) > 0;
+
+UPDATE items SET domain = SUBSTRING(domain FROM 1 FOR POSITION('/' IN domain) - 1) WHERE POSITION('/' IN domain) > 0;
+
+UPDATE items SET domain = SUBSTRING(domain FROM 1 FOR POSITION('?' IN domain) - 1) WHERE POSITION('?' IN domain) > 0;
+
+UPDATE items SET domain = SUBSTRING(domain FROM 1 FOR POSITION('#' IN domain) - 1) WHERE POSITION('#' IN domain) > 0;
+
+UPDATE items SET domain = SUBSTRING(domain FROM POSITION('@' IN domain) + 1) WHERE POSITION('@' IN domain) > 0;
+
+UPDATE items SET domain = SUBSTRING(domain FROM 1 FOR POSITION(':' IN domain) - 1) WHERE POSITION(':' IN domain) > 0;
+
+UPDATE items SET domain = LOWER(domain) WHERE domain IS NOT NULL;
+
+UPDATE items SET domain = SUBSTRING(domain FROM 5) WHERE domain LIKE 'www.%';
+
+UPDATE items SET domain = NULL WHERE domain = '';
+
+-- facet counts: the user's items grouped by state, mime type and domain without reading the table
+CREATE INDEX IF NOT EXISTS idx_items_user_facets ON items (user_id, unread, mime_type, domain);
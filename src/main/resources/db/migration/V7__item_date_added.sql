@@ -0,0 +1,2 @@
+-- when the item was saved; items still PENDING long after it are picked up again by ItemRefreshJob
+ALTER TABLE items ADD COLUMN IF NOT EXISTS date_added TIMESTAMP DEFAULT CURRENT_TIMESTAMP;
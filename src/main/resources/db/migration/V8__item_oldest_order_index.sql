@@ -0,0 +1,3 @@
+-- item lists in oldest order sort date_resolved DESC NULLS LAST, id DESC; a backward scan of
+-- idx_items_user_date_resolved yields DESC NULLS FIRST, so that order needs an index of its own
+CREATE INDEX IF NOT EXISTS idx_items_user_date_resolved_desc ON items (user_id, date_resolved DESC NULLS LAST, id DESC);
@@ -0,0 +1,11 @@
+-- conflict target of the ingest upsert: the canonical resolved url, in which spellings of one page agree;
+-- existing rows start with their resolved url, which was unique per user, and ItemUrlHashBackfill folds
+-- those with a trailing slash, merging the items that turn out to be one
+ALTER TABLE items ADD COLUMN IF NOT EXISTS canonical_url VARCHAR(1000);
+
+UPDATE items SET canonical_url = resolved_url WHERE canonical_url IS NULL;
+
+CREATE UNIQUE INDEX IF NOT EXISTS uq_items_user_canonical_url ON items (user_id, canonical_url);
+
+-- resolved urls are looked up through the hash, and spellings of one page no longer need to be unique
+DROP INDEX IF EXISTS uq_items_user_resolved_url;
@@ -0,0 +1,267 @@
+package ru.practicum.javalater;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.BeforeEach;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SimpleDriverDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.test.context.TestPropertySource;
+import ru.practicum.javalater.item.dto.GetItemRequest;
+import ru.practicum.javalater.item.dto.ItemPage;
+import ru.practicum.javalater.item.mapper.ItemMapperImpl;
+import ru.practicum.javalater.item.metadata.UrlMetadataRetriever;
+import ru.practicum.javalater.item.metadata.UrlNormalizer;
+import ru.practicum.javalater.item.repository.ItemJdbcRepository;
+import ru.practicum.javalater.item.repository.ItemQueryRepository;
+import ru.practicum.javalater.item.repository.TagDictionary;
+import ru.practicum.javalater.item.service.ItemIndex;
+import ru.practicum.javalater.item.service.ItemMetadataUpdater;
+import ru.practicum.javalater.item.service.ItemService;
+import ru.practicum.javalater.item.service.ItemServiceImpl;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.anyOf;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.hasItems;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+
+@DataJpaTest
+@Import({ItemServiceImpl.class, ItemMapperImpl.class, ItemQueryRepository.class, ItemJdbcRepository.class,
+        TagDictionary.class, ItemIndex.class, SimpleMeterRegistry.class})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@TestPropertySource(properties = {
+        // nulls sort as in PostgreSQL, above any value, so the migrations build the indexes it would build
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.url=jdbc:h2:mem:schema-index;DEFAULT_NULL_ORDERING=HIGH",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+                + "ru.practicum.javalater.SchemaIndexTest$RecordedStatements"})
+class SchemaIndexTest {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private ItemService itemService;
+
+    @MockBean
+    private UrlMetadataRetriever urlMetadataRetriever;
+
+    @MockBean
+    private ItemMetadataUpdater itemMetadataUpdater;
+
+    private long userId;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.update("INSERT INTO users (first_name, last_name) VALUES ('Index', 'User')");
+        userId = jdbcTemplate.queryForObject("SELECT MAX(id) FROM users", Long.class);
+        for (int i = 0; i < 20; i++) {
+            jdbcTemplate.update("INSERT INTO items (user_id, url, resolved_url, title, date_resolved, unread) "
+                    + "VALUES (?, ?, ?, ?, CURRENT_TIMESTAMP, TRUE)", userId, "https://example.com/" + i,
+                    "https://example.com/" + i, "Item " + i);
+        }
+        for (int i = 20; i < 25; i++) {
+            jdbcTemplate.update("INSERT INTO items (user_id, url, unread, resolution_state) "
+                    + "VALUES (?, ?, TRUE, 'PENDING')", userId, "https://example.com/" + i);
+        }
+    }
+
+    @Test
+    void migrationsAreRecorded() {
+        Integer applied = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM \"flyway_schema_history\" WHERE \"success\" = TRUE AND \"version\" IS NOT NULL",
+                Integer.class);
+
+        assertThat(applied, is(10));
+    }
+
+    @Test
+    void itemListsUseTheUserSortIndexes() {
+        assertListsUse("newest", "IDX_ITEMS_USER_DATE_RESOLVED");
+        assertListsUse("oldest", "IDX_ITEMS_USER_DATE_RESOLVED_DESC");
+        assertListsUse("title", "IDX_ITEMS_USER_TITLE");
+    }
+
+    /**
+     * Walks the list page by page, through the row value range and into the items without a sort key, and
+     * explains every item statement the service sends. H2 chooses among the user_id indexes by cost and sorts
+     * the range itself, so the order of each statement is also checked against the index definition, matched
+     * the way PostgreSQL matches it: forwards or backwards, with nulls last in ascending order by default.
+     */
+    private void assertListsUse(String sort, String index) {
+        List<String> statements = new ArrayList<>();
+        String cursor = null;
+        do {
+            RecordedStatements.clear();
+            ItemPage page = itemService.searchItems(GetItemRequest.of(userId, "all", "all", sort, 8, null, cursor));
+            statements.addAll(RecordedStatements.itemPages());
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+
+        assertThat(statements.stream().anyMatch(sql -> sql.matches(".*\\) ?[<>] ?\\(.*")), is(true));
+        assertThat(statements.stream().anyMatch(sql -> sql.contains("is null")), is(true));
+        List<String> indexOrder = jdbcTemplate.query("SELECT column_name, ordering_specification, null_ordering "
+                        + "FROM information_schema.index_columns WHERE index_name = ? ORDER BY ordinal_position",
+                (rs, rowNum) -> orderOf(rs.getString(1), rs.getString(2), rs.getString(3)), index);
+        for (String sql : statements) {
+            assertThat(sql, plan(sql), containsString("USER_ID = ?1"));
+            assertThat(sql, plan(sql), not(containsString("ITEMS.tableScan")));
+            List<String> statementOrder = new ArrayList<>(List.of("USER_ID ASC NULLS LAST"));
+            String orderBy = sql.substring(sql.indexOf(" order by ") + " order by ".length(), sql.indexOf(" limit "));
+            for (String term : orderBy.split(",")) {
+                String[] words = term.trim().toUpperCase(Locale.ROOT).split("\\s+");
+                statementOrder.add(orderOf(words[0].substring(words[0].indexOf('.') + 1),
+                        words.length > 1 ? words[1] : "ASC", words.length > 3 ? words[3] : null));
+            }
+            List<String> backwards = statementOrder.stream()
+                    .map(term -> term.replace("ASC", "<").replace("DESC", "ASC").replace("<", "DESC")
+                            .replace("LAST", "<").replace("FIRST", "LAST").replace("<", "FIRST"))
+                    .collect(Collectors.toList());
+            backwards.set(0, statementOrder.get(0));
+            assertThat(sql, indexOrder, anyOf(is(statementOrder), is(backwards)));
+        }
+    }
+
+    private static String orderOf(String column, String direction, String nulls) {
+        return column + " " + direction + " NULLS " + (nulls != null ? nulls : "ASC".equals(direction) ? "LAST" : "FIRST");
+    }
+
+    @Test
+    void urlLookupsUseTheUrlIndexes() {
+        assertThat(plan("SELECT id, resolved_url FROM items WHERE user_id = 1 AND url_hash IN (42, 43)"),
+                containsString("IDX_ITEMS_USER_URL_HASH"));
+        assertThat(plan("SELECT id, resolved_url FROM items WHERE user_id = 1 "
+                        + "AND canonical_url = 'https://example.com/1'"),
+                containsString("UQ_ITEMS_USER_CANONICAL_URL"));
+        assertThat(plan("SELECT id, url FROM items WHERE user_id = 1 AND url IN ('https://example.com/1')"),
+                containsString("IDX_ITEMS_USER_URL"));
+    }
+
+    @Test
+    void facetCountsReadOnlyTheFacetIndex() {
+        assertThat(plan("SELECT unread, mime_type, domain, COUNT(*) FROM items WHERE user_id = 1 "
+                        + "GROUP BY unread, mime_type, domain"),
+                containsString("IDX_ITEMS_USER_FACETS"));
+    }
+
+    @Test
+    void domainMigrationAgreesWithTheNormalizer() {
+        jdbcTemplate.update("UPDATE items SET resolved_url = 'https://user@WWW.Example.org:8443/a?b#c' "
+                + "WHERE url = 'https://example.com/1'");
+        jdbcTemplate.update("UPDATE items SET resolved_url = 'https://example.net?q=1' "
+                + "WHERE url = 'https://example.com/2'");
+        jdbcTemplate.update("UPDATE items SET resolved_url = NULL, url = 'not a url' "
+                + "WHERE url = 'https://example.com/3'");
+
+        // the migration only adds what is missing, so it can run again over the rows above
+        new ResourceDatabasePopulator(new ClassPathResource("db/migration/V6__item_domain.sql")).execute(dataSource);
+
+        List<Map<String, Object>> rows = jdbcTemplate.queryForList("SELECT url, resolved_url, domain FROM items");
+        for (Map<String, Object> row : rows) {
+            String url = (String) (row.get("resolved_url") != null ? row.get("resolved_url") : row.get("url"));
+            assertThat(url, (String) row.get("domain"), is(UrlNormalizer.domain(url)));
+        }
+        assertThat(jdbcTemplate.queryForList("SELECT DISTINCT domain FROM items WHERE domain IS NOT NULL",
+                String.class), containsInAnyOrder("example.com", "example.org", "example.net"));
+    }
+
+    @Test
+    void databaseCreatedByTheOldSchemaScriptIsMigratedInPlace() {
+        SimpleDriverDataSource legacy = new SimpleDriverDataSource(new org.h2.Driver(),
+                "jdbc:h2:mem:legacy-schema;DB_CLOSE_DELAY=-1", "sa", "");
+        JdbcTemplate legacyJdbc = new JdbcTemplate(legacy);
+        legacyJdbc.execute("CREATE TABLE users ( id BIGINT GENERATED ALWAYS AS IDENTITY PRIMARY KEY, "
+                + "email varchar(320), first_name varchar(100), last_name varchar(100), "
+                + "registration_date timestamp, state varchar(50) )");
+        legacyJdbc.execute("CREATE TABLE items ( id BIGINT GENERATED ALWAYS AS IDENTITY PRIMARY KEY, "
+                + "user_id BIGINT, url VARCHAR(1000), resolved_url VARCHAR(1000), mime_type VARCHAR(255), "
+                + "title VARCHAR(1000), has_image BOOLEAN, has_video BOOLEAN, date_resolved TIMESTAMP, "
+                + "unread BOOLEAN, CONSTRAINT fk_items_to_users FOREIGN KEY(user_id) REFERENCES users(id), "
+                + "UNIQUE(id, url) )");
+        legacyJdbc.execute("CREATE TABLE tags ( id BIGINT GENERATED ALWAYS AS IDENTITY PRIMARY KEY, "
+                + "item_id BIGINT, name VARCHAR(50), "
+                + "CONSTRAINT fk_tags_to_items FOREIGN KEY(item_id) REFERENCES items(id) )");
+        legacyJdbc.execute("CREATE TABLE item_notes ( id BIGINT GENERATED ALWAYS AS IDENTITY PRIMARY KEY, "
+                + "text VARCHAR(2000), item_id BIGINT, date_of_note TIMESTAMP, "
+                + "CONSTRAINT fk_item_notes_to_items FOREIGN KEY(item_id) REFERENCES items(id) )");
+
+        Flyway.configure().dataSource(legacy).baselineOnMigrate(true).baselineVersion("0").load().migrate();
+
+        assertThat(legacyJdbc.queryForList("SELECT column_name FROM information_schema.columns "
+                        + "WHERE table_name = 'ITEMS'", String.class),
+                hasItems("RESOLUTION_STATE", "ETAG", "LAST_MODIFIED", "URL_HASH", "DOMAIN", "DATE_ADDED",
+                        "CANONICAL_URL", "LAST_CHECKED_AT"));
+        legacyJdbc.execute("DROP ALL OBJECTS");
+    }
+
+    @Test
+    void tagAndNoteJoinsUseTheirIndexes() {
+        assertThat(plan("SELECT i.id FROM items i WHERE i.user_id = 1 "
+                        + "AND i.id IN (SELECT t.item_id FROM item_tags t WHERE t.tag_id IN (1, 2))"),
+                containsString("IDX_ITEM_TAGS_TAG_ITEM"));
+        assertThat(plan("SELECT item_id, tag_id FROM item_tags WHERE item_id IN (1, 2, 3)"),
+                containsString("PRIMARY_KEY"));
+        assertThat(plan("SELECT id, name FROM tag_names WHERE name IN ('a', 'b')"),
+                containsString("UQ_TAG_NAMES_NAME"));
+        // H2 indexes foreign keys by itself and may pick its own copy; Postgres only has the migration's index
+        assertThat(plan("SELECT n.id FROM item_notes n JOIN items i ON n.item_id = i.id WHERE i.user_id = 1"),
+                not(containsString("ITEM_NOTES.tableScan")));
+        assertThat(jdbcTemplate.queryForList("SELECT index_name FROM information_schema.indexes "
+                + "WHERE table_name = 'ITEM_NOTES'", String.class), hasItem("IDX_ITEM_NOTES_ITEM"));
+    }
+
+    private String plan(String sql) {
+        return jdbcTemplate.queryForObject("EXPLAIN " + sql, String.class);
+    }
+
+    /**
+     * Records the SQL Hibernate sends, so that the plans checked are those of the statements the code builds.
+     */
+    public static class RecordedStatements implements StatementInspector {
+
+        private static final List<String> STATEMENTS = Collections.synchronizedList(new ArrayList<>());
+
+        @Override
+        public String inspect(String sql) {
+            STATEMENTS.add(sql);
+            return sql;
+        }
+
+        static void clear() {
+            STATEMENTS.clear();
+        }
+
+        static List<String> itemPages() {
+            synchronized (STATEMENTS) {
+                return STATEMENTS.stream()
+                        .filter(sql -> sql.startsWith("select") && sql.contains(" from items ")
+                                && sql.contains(" order by "))
+                        .collect(Collectors.toList());
+            }
+        }
+    }
+}
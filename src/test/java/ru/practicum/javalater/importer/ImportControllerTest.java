@@ -0,0 +1,85 @@
+package ru.practicum.javalater.importer;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.SneakyThrows;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.web.servlet.MockMvc;
+import ru.practicum.javalater.importer.dto.ImportFormat;
+import ru.practicum.javalater.importer.dto.ImportJobDto;
+import ru.practicum.javalater.importer.dto.ImportState;
+import ru.practicum.javalater.importer.service.BookmarkImportService;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.eq;
+import static org.mockito.Mockito.isNull;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@WebMvcTest(controllers = ImportController.class)
+class ImportControllerTest {
+
+    @Autowired
+    ObjectMapper mapper;
+
+    @Autowired
+    MockMvc mvc;
+
+    @MockBean
+    BookmarkImportService bookmarkImportService;
+
+    @Test
+    @SneakyThrows
+    public void startImport_shouldReturnStatusAccepted() {
+        long userId = 1;
+        ImportJobDto job = ImportJobDto.builder()
+                .id(7L)
+                .userId(userId)
+                .format(ImportFormat.NETSCAPE_HTML)
+                .state(ImportState.QUEUED)
+                .build();
+        MockMultipartFile file = new MockMultipartFile("file", "bookmarks.html", "text/html", "<DL></DL>".getBytes());
+        when(bookmarkImportService.startImport(eq(userId), any(), isNull())).thenReturn(job);
+
+        String result = mvc.perform(multipart("/imports")
+                        .file(file)
+                        .header("X-Later-User-Id", userId))
+                .andExpect(status().isAccepted())
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+
+        assertThat(result, is(mapper.writeValueAsString(job)));
+    }
+
+    @Test
+    @SneakyThrows
+    public void getImport_shouldReturnProgress() {
+        long userId = 1;
+        ImportJobDto job = ImportJobDto.builder()
+                .id(7L)
+                .userId(userId)
+                .state(ImportState.RESOLVING)
+                .parsed(50_000)
+                .inserted(48_000)
+                .resolved(1_200)
+                .build();
+        when(bookmarkImportService.getImport(userId, 7)).thenReturn(job);
+
+        String result = mvc.perform(get("/imports/7")
+                        .header("X-Later-User-Id", userId))
+                .andExpect(status().isOk())
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+
+        assertThat(result, is(mapper.writeValueAsString(job)));
+    }
+}
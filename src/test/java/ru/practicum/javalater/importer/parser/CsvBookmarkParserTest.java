@@ -0,0 +1,41 @@
+package ru.practicum.javalater.importer.parser;
+
+import lombok.SneakyThrows;
+import org.junit.jupiter.api.Test;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class CsvBookmarkParserTest {
+
+    @Test
+    @SneakyThrows
+    void parse_shouldReadQuotedFieldsTagsAndFolders() {
+        String csv = "Title,URL,Folder,Tags\r\n"
+                + "\"Hello, \"\"world\"\"\",https://example.com/a,Dev/Java,perf|jvm\r\n"
+                + "\"Multi\nline\",https://example.com/b,,\n"
+                + ",,,\n"
+                + "Last,https://example.com/c";
+        List<Bookmark> bookmarks = new ArrayList<>();
+
+        new CsvBookmarkParser().parse(new StringReader(csv), bookmarks::add);
+
+        assertThat(bookmarks, contains(
+                new Bookmark("https://example.com/a", "Hello, \"world\"", Set.of("Dev", "Java", "perf", "jvm")),
+                new Bookmark("https://example.com/b", "Multi\nline", Set.of()),
+                new Bookmark("https://example.com/c", "Last", Set.of())));
+    }
+
+    @Test
+    void parse_whenNoUrlColumn_shouldThrowIllegalArgumentException() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new CsvBookmarkParser().parse(new StringReader("title,tags\nx,y\n"), bookmark -> {
+                }));
+    }
+}
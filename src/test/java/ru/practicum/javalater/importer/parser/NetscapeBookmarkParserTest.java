@@ -0,0 +1,79 @@
+package ru.practicum.javalater.importer.parser;
+
+import lombok.SneakyThrows;
+import org.junit.jupiter.api.Test;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+
+class NetscapeBookmarkParserTest {
+
+    private static final String EXPORT = "<!DOCTYPE NETSCAPE-Bookmark-file-1>\n"
+            + "<!-- This is an automatically generated file.\n     It will be read and overwritten. -->\n"
+            + "<META HTTP-EQUIV=\"Content-Type\" CONTENT=\"text/html; charset=UTF-8\">\n"
+            + "<TITLE>Bookmarks</TITLE>\n"
+            + "<H1>Bookmarks</H1>\n"
+            + "<DL><p>\n"
+            + "    <DT><H3 ADD_DATE=\"1\" PERSONAL_TOOLBAR_FOLDER=\"true\">Bookmarks bar</H3>\n"
+            + "    <DL><p>\n"
+            + "        <DT><H3>Java &amp; JVM</H3>\n"
+            + "        <DL><p>\n"
+            + "            <DT><A HREF=\"https://example.com/a?x=1&amp;y=2\" ICON=\"data:image/png;base64,AAAA\""
+            + " TAGS=\"jvm,perf\">Article  A</A>\n"
+            + "            <DD>A description\n"
+            + "        </DL><p>\n"
+            + "        <DT><A HREF=https://example.com/b>B</A>\n"
+            + "    </DL><p>\n"
+            + "    <DT><H3>Reading</H3>\n"
+            + "    <DL><p>\n"
+            + "        <DT><A HREF=\"https://example.com/c\"></A>\n"
+            + "    </DL><p>\n"
+            + "    <DT><A HREF=\"https://example.com/d\">Top level</A>\n"
+            + "</DL><p>\n";
+
+    @Test
+    @SneakyThrows
+    void parse_shouldMapFoldersToTags() {
+        List<Bookmark> bookmarks = new ArrayList<>();
+
+        new NetscapeBookmarkParser().parse(new StringReader(EXPORT), bookmarks::add);
+
+        assertThat(bookmarks, contains(
+                new Bookmark("https://example.com/a?x=1&y=2", "Article A", Set.of("Java & JVM", "jvm", "perf")),
+                new Bookmark("https://example.com/b", "B", Set.of()),
+                new Bookmark("https://example.com/c", null, Set.of("Reading")),
+                new Bookmark("https://example.com/d", "Top level", Set.of())));
+    }
+
+    @Test
+    @SneakyThrows
+    void parse_shouldSkipLargeIconsAndCutLongTags() {
+        String folder = "f".repeat(80);
+        String export = "<DL><p><DT><H3>" + folder + "</H3><DL><p>"
+                + "<DT><A HREF=\"https://example.com/\" ICON=\"data:" + "A".repeat(1 << 20) + "\">x</A>"
+                + "</DL><p></DL><p>";
+        List<Bookmark> bookmarks = new ArrayList<>();
+
+        new NetscapeBookmarkParser().parse(new StringReader(export), bookmarks::add);
+
+        assertThat(bookmarks.size(), is(1));
+        assertThat(bookmarks.get(0).getTags(), contains("f".repeat(BookmarkParser.MAX_TAG_LENGTH)));
+    }
+
+    @Test
+    @SneakyThrows
+    void parse_whenNoLinks_shouldReturnNothing() {
+        List<Bookmark> bookmarks = new ArrayList<>();
+
+        new NetscapeBookmarkParser().parse(new StringReader("<H1>Bookmarks</H1><DL><p></DL>"), bookmarks::add);
+
+        assertThat(bookmarks, is(empty()));
+    }
+}
@@ -0,0 +1,196 @@
+package ru.practicum.javalater.importer.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.mock.web.MockMultipartFile;
+import ru.practicum.javalater.importer.dto.ImportJobDto;
+import ru.practicum.javalater.importer.dto.ImportState;
+import ru.practicum.javalater.item.entity.Item;
+import ru.practicum.javalater.item.exception.ItemRetrieverException;
+import ru.practicum.javalater.item.metadata.UrlMetadataRetriever;
+import ru.practicum.javalater.item.metadata.UrlMetadataRetrieverImpl;
+import ru.practicum.javalater.item.repository.ItemJdbcRepository;
+import ru.practicum.javalater.item.service.ItemIndex;
+import ru.practicum.javalater.item.service.ItemMetadataUpdater;
+import ru.practicum.javalater.user.entity.User;
+import ru.practicum.javalater.user.repository.UserRepository;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.anyInt;
+import static org.mockito.Mockito.anyLong;
+import static org.mockito.Mockito.eq;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class BookmarkImportServiceImplTest {
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private ItemJdbcRepository itemJdbcRepository;
+
+    @Mock
+    private UrlMetadataRetriever urlMetadataRetriever;
+
+    @Mock
+    private ItemMetadataUpdater itemMetadataUpdater;
+
+    @Mock
+    private ItemIndex itemIndex;
+
+    private BookmarkImportServiceImpl importService;
+
+    @BeforeEach
+    void setUp() {
+        importService = new BookmarkImportServiceImpl(userRepository, itemJdbcRepository, urlMetadataRetriever,
+                itemMetadataUpdater, itemIndex, 2, 2, 1, 1);
+    }
+
+    @AfterEach
+    void tearDown() {
+        importService.shutdown();
+    }
+
+    @Test
+    void startImport_shouldWriteChunksAndResolveInsertedItems() throws Exception {
+        long userId = 1;
+        when(userRepository.findById(userId)).thenReturn(Optional.of(new User()));
+        List<List<String>> chunks = new ArrayList<>();
+        AtomicLong ids = new AtomicLong(10);
+        when(itemJdbcRepository.savePending(eq(userId), any())).thenAnswer(invocation -> {
+            Collection<Item> items = invocation.getArgument(1);
+            List<String> urls = new ArrayList<>();
+            Map<String, ItemJdbcRepository.SavedItem> saved = new LinkedHashMap<>();
+            for (Item item : items) {
+                urls.add(item.getUrl());
+                boolean existing = item.getUrl().endsWith("/old");
+                long id = existing ? 1 : ids.incrementAndGet();
+                saved.put(item.getUrl(), new ItemJdbcRepository.SavedItem(id, !existing));
+            }
+            chunks.add(urls);
+            return saved;
+        });
+        List<ItemJdbcRepository.PendingItem> pending = List.of(
+                new ItemJdbcRepository.PendingItem(11, "https://a.com/"),
+                new ItemJdbcRepository.PendingItem(12, "https://b.com/"),
+                new ItemJdbcRepository.PendingItem(13, "https://c.com/"));
+        when(itemJdbcRepository.findPending(eq(userId), anyLong(), eq(13L), anyInt()))
+                .thenReturn(pending)
+                .thenReturn(List.of());
+        UrlMetadataRetriever.UrlMetadata metadata = UrlMetadataRetrieverImpl.UrlMetadataImpl.builder()
+                .resolvedUrl("https://a.com/")
+                .dateResolved(Instant.now())
+                .build();
+        when(urlMetadataRetriever.retrieveAsync(any()))
+                .thenReturn(CompletableFuture.completedFuture(metadata))
+                .thenReturn(CompletableFuture.failedFuture(new ItemRetrieverException("boom")))
+                .thenReturn(CompletableFuture.completedFuture(metadata));
+        String csv = "url,tags\n"
+                + "https://A.com,x\n"
+                + "https://a.com/#top,y\n"
+                + "ftp://files.com/,\n"
+                + "https://b.com/,\n"
+                + "https://c.com/old,\n"
+                + "https://c.com/,\n";
+
+        ImportJobDto started = importService.startImport(userId,
+                new MockMultipartFile("file", "export.csv", "text/csv", csv.getBytes(StandardCharsets.UTF_8)), null);
+        ImportJobDto finished = awaitFinished(userId, started.getId());
+
+        assertThat(finished.getState(), is(ImportState.DONE));
+        assertThat(finished.getParsed(), is(6L));
+        assertThat(finished.getSkipped(), is(1L));
+        assertThat(finished.getDuplicates(), is(2L));
+        assertThat(finished.getInserted(), is(3L));
+        assertThat(finished.getResolved(), is(2L));
+        assertThat(finished.getResolutionFailed(), is(1L));
+        assertThat(chunks, contains(
+                List.of("https://a.com/", "https://b.com/"),
+                List.of("https://c.com/old", "https://c.com/")));
+        verify(itemMetadataUpdater).applyMetadata(11, metadata);
+        verify(itemMetadataUpdater).markFailed(eq(12L), any());
+    }
+
+    @Test
+    void startImport_whenWritingFailsPartway_shouldStillResolveInsertedItems() throws Exception {
+        long userId = 1;
+        when(userRepository.findById(userId)).thenReturn(Optional.of(new User()));
+        when(itemJdbcRepository.savePending(eq(userId), any()))
+                .thenReturn(Map.of("https://a.com/", new ItemJdbcRepository.SavedItem(11, true),
+                        "https://b.com/", new ItemJdbcRepository.SavedItem(12, true)))
+                .thenThrow(new IllegalStateException("connection lost"));
+        when(itemJdbcRepository.findPending(eq(userId), anyLong(), eq(12L), anyInt()))
+                .thenReturn(List.of(new ItemJdbcRepository.PendingItem(11, "https://a.com/"),
+                        new ItemJdbcRepository.PendingItem(12, "https://b.com/")))
+                .thenReturn(List.of());
+        UrlMetadataRetriever.UrlMetadata metadata = UrlMetadataRetrieverImpl.UrlMetadataImpl.builder()
+                .resolvedUrl("https://a.com/")
+                .dateResolved(Instant.now())
+                .build();
+        when(urlMetadataRetriever.retrieveAsync(any()))
+                .thenReturn(CompletableFuture.completedFuture(metadata));
+        String csv = "url\nhttps://a.com/\nhttps://b.com/\nhttps://c.com/\nhttps://d.com/\n";
+
+        ImportJobDto started = importService.startImport(userId,
+                new MockMultipartFile("file", "export.csv", "text/csv", csv.getBytes(StandardCharsets.UTF_8)), null);
+        ImportJobDto finished = awaitFinished(userId, started.getId());
+
+        assertThat(finished.getState(), is(ImportState.FAILED));
+        assertThat(finished.getError(), is("connection lost"));
+        assertThat(finished.getInserted(), is(2L));
+        assertThat(finished.getResolved(), is(2L));
+        verify(itemMetadataUpdater).applyMetadata(11, metadata);
+        verify(itemMetadataUpdater).applyMetadata(12, metadata);
+    }
+
+    @Test
+    void startImport_whenFormatIsUnknown_shouldThrowIllegalArgumentException() {
+        when(userRepository.findById(1L)).thenReturn(Optional.of(new User()));
+
+        assertThrows(IllegalArgumentException.class, () -> importService.startImport(1,
+                new MockMultipartFile("file", "export.txt", "text/plain", new byte[0]), null));
+    }
+
+    @Test
+    void getImport_whenImportBelongsToOtherUser_shouldThrowNoSuchElementException() throws Exception {
+        when(userRepository.findById(1L)).thenReturn(Optional.of(new User()));
+        ImportJobDto started = importService.startImport(1,
+                new MockMultipartFile("file", "export.html", "text/html", new byte[0]), null);
+
+        assertThrows(NoSuchElementException.class, () -> importService.getImport(2, started.getId()));
+        assertThat(awaitFinished(1, started.getId()).getState(), is(ImportState.DONE));
+    }
+
+    private ImportJobDto awaitFinished(long userId, long importId) throws InterruptedException {
+        for (int i = 0; i < 500; i++) {
+            ImportJobDto job = importService.getImport(userId, importId);
+            if (job.getState() == ImportState.DONE || job.getState() == ImportState.FAILED) {
+                return job;
+            }
+            Thread.sleep(10);
+        }
+        throw new AssertionError("Импорт не завершился");
+    }
+}
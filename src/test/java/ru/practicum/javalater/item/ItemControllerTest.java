@@ -12,10 +12,17 @@ import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.util.LinkedMultiValueMap;
 import org.springframework.util.MultiValueMap;
+import ru.practicum.javalater.exception.InvalidCursorException;
+import ru.practicum.javalater.item.dto.BatchItemResult;
+import ru.practicum.javalater.item.dto.FacetCount;
 import ru.practicum.javalater.item.dto.GetItemRequest;
 import ru.practicum.javalater.item.dto.ItemDto;
+import ru.practicum.javalater.item.dto.ItemFacets;
+import ru.practicum.javalater.item.dto.ItemPage;
 import ru.practicum.javalater.item.dto.ModifyItemRequest;
 import ru.practicum.javalater.item.dto.PostItemDto;
+import ru.practicum.javalater.item.dto.ResolutionState;
+import ru.practicum.javalater.item.service.ItemBatchService;
 import ru.practicum.javalater.item.service.ItemService;
 
 import java.util.ArrayList;
@@ -27,6 +34,7 @@ import static org.hamcrest.Matchers.is;
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @WebMvcTest(controllers = ItemController.class)
@@ -41,6 +49,9 @@ class ItemControllerTest {
     @MockBean
     ItemService itemService;
 
+    @MockBean
+    ItemBatchService itemBatchService;
+
     @Captor
     ArgumentCaptor<GetItemRequest> getItemRequestArgumentCaptor;
 
@@ -66,6 +77,50 @@ class ItemControllerTest {
         verify(itemService, times(1)).addNewItem(userId, postItemDto);
     }
 
+    @Test
+    @SneakyThrows
+    public void addBatch_shouldReturnResultPerUrl() {
+        long userId = 1;
+        PostItemDto first = new PostItemDto("http://a.com", Set.of("news"));
+        PostItemDto second = new PostItemDto("http://broken.com", null);
+        List<BatchItemResult> results = List.of(
+                new BatchItemResult("http://a.com", BatchItemResult.Status.CREATED, 1L, null),
+                BatchItemResult.failed("http://broken.com", "Cannot retrieve data from the URL: http://broken.com"));
+        when(itemBatchService.addNewItems(userId, List.of(first, second))).thenReturn(results);
+
+        String result = mvc.perform(post("/items/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(mapper.writeValueAsString(List.of(first, second)))
+                        .header("X-Later-User-Id", userId))
+                .andExpect(status().isOk())
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+
+        assertThat(result, is(mapper.writeValueAsString(results)));
+    }
+
+    @Test
+    @SneakyThrows
+    public void addAsync_shouldReturnStatusAccepted() {
+        long userId = 1;
+        PostItemDto postItemDto = new PostItemDto();
+        ItemDto itemDto = new ItemDto();
+        itemDto.setResolutionState(ResolutionState.PENDING);
+        when(itemService.addNewItemAsync(userId, postItemDto)).thenReturn(itemDto);
+
+        mvc.perform(post("/items")
+                        .param("async", "true")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(mapper.writeValueAsString(postItemDto))
+                        .header("X-Later-User-Id", userId))
+                .andExpect(status().isAccepted())
+                .andExpect(content().string(mapper.writeValueAsString(itemDto)));
+
+        verify(itemService, times(1)).addNewItemAsync(userId, postItemDto);
+        verify(itemService, never()).addNewItem(anyLong(), any());
+    }
+
     @Test
     @SneakyThrows
     public void delete_ShouldReturnStatusOk() {
@@ -93,7 +148,7 @@ class ItemControllerTest {
         MultiValueMap<String, String> params = new LinkedMultiValueMap<>();
         params.put("tags", tags);
         when(itemService.searchItems(any()))
-                .thenReturn(List.of(itemDto));
+                .thenReturn(new ItemPage(List.of(itemDto), null));
 
         mvc.perform(get("/items")
                         .header("X-Later-User-Id", userId)
@@ -123,7 +178,7 @@ class ItemControllerTest {
         GetItemRequest getItemRequest = GetItemRequest.of(userId, state, contentType, sort, limit, null);
         ItemDto itemDto = new ItemDto();
         when(itemService.searchItems(any()))
-                .thenReturn(List.of(itemDto));
+                .thenReturn(new ItemPage(List.of(itemDto), null));
 
         mvc.perform(get("/items")
                         .header("X-Later-User-Id", userId))
@@ -137,6 +192,38 @@ class ItemControllerTest {
         assertThat(getItemRequest, is(captorValue));
     }
 
+    @Test
+    @SneakyThrows
+    public void get_passesCursorAndReturnsNextCursorHeader() {
+        long userId = 1;
+        ItemDto itemDto = new ItemDto();
+        when(itemService.searchItems(any()))
+                .thenReturn(new ItemPage(List.of(itemDto), "next"));
+
+        mvc.perform(get("/items")
+                        .header("X-Later-User-Id", userId)
+                        .param("cursor", "current"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(ItemController.NEXT_CURSOR_HEADER, "next"))
+                .andExpect(content().string(mapper.writeValueAsString(List.of(itemDto))));
+
+        verify(itemService).searchItems(getItemRequestArgumentCaptor.capture());
+        assertThat(getItemRequestArgumentCaptor.getValue().getCursor(), is("current"));
+    }
+
+    @Test
+    @SneakyThrows
+    public void get_withStaleCursor_shouldReturnStatus400() {
+        long userId = 1;
+        when(itemService.searchItems(any()))
+                .thenThrow(new InvalidCursorException("Курсор устарел, запросите список с начала: current"));
+
+        mvc.perform(get("/items")
+                        .header("X-Later-User-Id", userId)
+                        .param("cursor", "current"))
+                .andExpect(status().isBadRequest());
+    }
+
     @Test
     @SneakyThrows
     public void findByUserIdAndTags_shouldReturnStatus200() {
@@ -145,8 +232,8 @@ class ItemControllerTest {
         ItemDto itemDto = new ItemDto();
         MultiValueMap<String, String> params = new LinkedMultiValueMap<>();
         params.put("tags", new ArrayList<>(tags));
-        when(itemService.findByUserIdAndTags(userid, tags))
-                .thenReturn(List.of(itemDto));
+        when(itemService.findByUserIdAndTags(userid, tags, "any", 100, null))
+                .thenReturn(new ItemPage(List.of(itemDto), null));
 
         mvc.perform(get("/items/find")
                         .header("X-Later-User-Id", userid)
@@ -155,7 +242,48 @@ class ItemControllerTest {
                 .andExpect(content().contentType(MediaType.APPLICATION_JSON))
                 .andExpect(content().string(mapper.writeValueAsString(List.of(itemDto))));
 
-        verify(itemService, times(1)).findByUserIdAndTags(userid, tags);
+        verify(itemService, times(1)).findByUserIdAndTags(userid, tags, "any", 100, null);
+    }
+
+    @Test
+    @SneakyThrows
+    public void get_passesTagMode() {
+        long userId = 1;
+        when(itemService.searchItems(any()))
+                .thenReturn(new ItemPage(List.of(), null));
+
+        mvc.perform(get("/items")
+                        .header("X-Later-User-Id", userId)
+                        .param("tags", "tag1", "tag2")
+                        .param("tagMode", "all"))
+                .andExpect(status().isOk());
+
+        verify(itemService).searchItems(getItemRequestArgumentCaptor.capture());
+        assertThat(getItemRequestArgumentCaptor.getValue().getTagMode(), is(GetItemRequest.TagMode.ALL));
+    }
+
+    @Test
+    @SneakyThrows
+    public void getFacets_shouldReturnStatus200() {
+        long userId = 1;
+        ItemFacets facets = new ItemFacets(List.of(new FacetCount("unread", 2), new FacetCount("read", 1)),
+                List.of(new FacetCount("article", 3)), List.of(new FacetCount("java", 2)),
+                List.of(new FacetCount("example.com", 3)));
+        when(itemService.getFacets(any()))
+                .thenReturn(facets);
+
+        mvc.perform(get("/items/facets")
+                        .header("X-Later-User-Id", userId)
+                        .param("state", "all")
+                        .param("tags", "java")
+                        .param("tagMode", "all"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                .andExpect(content().string(mapper.writeValueAsString(facets)));
+
+        verify(itemService).getFacets(getItemRequestArgumentCaptor.capture());
+        GetItemRequest request = getItemRequestArgumentCaptor.getValue();
+        assertThat(request, is(GetItemRequest.of(userId, "all", "all", "newest", 10, List.of("java"), "all", null)));
     }
 
     @Test
@@ -0,0 +1,203 @@
+package ru.practicum.javalater.item;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.practicum.javalater.item.dto.ResolutionState;
+import ru.practicum.javalater.item.entity.Item;
+import ru.practicum.javalater.item.repository.ItemJdbcRepository;
+import ru.practicum.javalater.user.entity.User;
+import ru.practicum.javalater.user.repository.UserRepository;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+/**
+ * Runs the PostgreSQL-only statements of {@link ItemJdbcRepository}: the upsert with its {@code xmax = 0}
+ * check, and the {@code ON CONFLICT DO NOTHING} inserts of items and tags. The saves commit one by one, as
+ * they do in the application, so the test cleans up after itself instead of rolling back.
+ */
+@SpringBootTest(
+        properties = "db.name=test",
+        webEnvironment = SpringBootTest.WebEnvironment.NONE
+)
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+class ItemJdbcRepositoryIntegrationTest {
+
+    private static final int SAVES = 16;
+
+    private final ItemJdbcRepository itemJdbcRepository;
+
+    private final UserRepository userRepository;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private long userId;
+
+    @BeforeEach
+    void setUp() {
+        assertThat(jdbcTemplate.execute((ConnectionCallback<String>) connection ->
+                connection.getMetaData().getDatabaseProductName()), is("PostgreSQL"));
+        userId = userRepository.save(User.builder().firstName("Upsert").lastName("Postgres").build()).getId();
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("DELETE FROM item_tags WHERE item_id IN (SELECT id FROM items WHERE user_id = ?)",
+                userId);
+        jdbcTemplate.update("DELETE FROM items WHERE user_id = ?", userId);
+        jdbcTemplate.update("DELETE FROM users WHERE id = ?", userId);
+    }
+
+    @Test
+    void upsert_createsTheItemOnceAndMergesTagsIntoIt() {
+        ItemJdbcRepository.SavedItem first = itemJdbcRepository.upsert(userId,
+                resolved("https://example.com/upsert", Set.of("first", "common")));
+        ItemJdbcRepository.SavedItem second = itemJdbcRepository.upsert(userId,
+                resolved("https://example.com/upsert", Set.of("second", "common")));
+
+        assertThat(first.isCreated(), is(true));
+        assertThat(second.isCreated(), is(false));
+        assertThat(second.getId(), is(first.getId()));
+        assertThat(tagsOf(first.getId()), containsInAnyOrder("first", "second", "common"));
+        assertThat(itemCount(), is(1));
+    }
+
+    @Test
+    void upsert_mergesSlashSpellingsOfOneUrl() {
+        ItemJdbcRepository.SavedItem first = itemJdbcRepository.upsert(userId,
+                resolved("https://example.com/docs", Set.of("first")));
+        ItemJdbcRepository.SavedItem second = itemJdbcRepository.upsert(userId,
+                resolved("https://example.com/docs/", Set.of("second")));
+        Map<String, ItemJdbcRepository.SavedItem> batch = itemJdbcRepository.saveAll(userId,
+                List.of(resolved("https://example.com/docs/", Set.of("third"))));
+
+        assertThat(second.isCreated(), is(false));
+        assertThat(second.getId(), is(first.getId()));
+        assertThat(batch.get("https://example.com/docs/"), is(new ItemJdbcRepository.SavedItem(first.getId(), false)));
+        assertThat(tagsOf(first.getId()), containsInAnyOrder("first", "second", "third"));
+        assertThat(itemCount(), is(1));
+    }
+
+    @Test
+    void upsert_concurrentSavesOfOneUrlReportOneCreated() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(SAVES);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<ItemJdbcRepository.SavedItem>> saves = new ArrayList<>();
+        try {
+            for (int i = 0; i < SAVES; i++) {
+                Item item = resolved("https://example.com/concurrent", Set.of("tag" + i));
+                saves.add(executor.submit(() -> {
+                    start.await();
+                    return itemJdbcRepository.upsert(userId, item);
+                }));
+            }
+            start.countDown();
+            List<ItemJdbcRepository.SavedItem> saved = new ArrayList<>();
+            for (Future<ItemJdbcRepository.SavedItem> future : saves) {
+                saved.add(future.get());
+            }
+
+            assertThat(saved.stream().filter(ItemJdbcRepository.SavedItem::isCreated).count(), is(1L));
+            assertThat(saved.stream().map(ItemJdbcRepository.SavedItem::getId).collect(Collectors.toSet()),
+                    hasSize(1));
+            assertThat(tagsOf(saved.get(0).getId()), hasSize(SAVES));
+            assertThat(itemCount(), is(1));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void saveAll_concurrentBatchesInsertEachUrlOnce() throws Exception {
+        List<String> urls = List.of("https://example.com/a", "https://example.com/b", "https://example.com/c");
+        ExecutorService executor = Executors.newFixedThreadPool(SAVES);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Map<String, ItemJdbcRepository.SavedItem>>> batches = new ArrayList<>();
+        try {
+            for (int i = 0; i < SAVES; i++) {
+                List<Item> batch = new ArrayList<>();
+                for (String url : urls) {
+                    batch.add(resolved(url, Set.of("tag" + i, "common")));
+                }
+                batches.add(executor.submit(() -> {
+                    start.await();
+                    return itemJdbcRepository.saveAll(userId, batch);
+                }));
+            }
+            start.countDown();
+            List<ItemJdbcRepository.SavedItem> saved = new ArrayList<>();
+            for (Future<Map<String, ItemJdbcRepository.SavedItem>> future : batches) {
+                saved.addAll(future.get().values());
+            }
+
+            assertThat(saved.stream().filter(ItemJdbcRepository.SavedItem::isCreated).count(),
+                    is((long) urls.size()));
+            assertThat(saved.stream().map(ItemJdbcRepository.SavedItem::getId).collect(Collectors.toSet()),
+                    hasSize(urls.size()));
+            assertThat(itemCount(), is(urls.size()));
+            assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM item_tags t JOIN items i "
+                    + "ON i.id = t.item_id WHERE i.user_id = ?", Integer.class, userId), is((SAVES + 1) * urls.size()));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void savePending_mergesUrlsTheUserAlreadyHas() {
+        Item pending = new Item();
+        pending.setUrl("https://example.com/pending");
+        pending.setTags(new HashSet<>(Set.of("later")));
+        pending.setUnread(true);
+        pending.setResolutionState(ResolutionState.PENDING);
+
+        ItemJdbcRepository.SavedItem first = itemJdbcRepository.savePending(userId, List.of(pending))
+                .get("https://example.com/pending");
+        pending.setTags(new HashSet<>(Set.of("later", "again")));
+        ItemJdbcRepository.SavedItem second = itemJdbcRepository.savePending(userId, List.of(pending))
+                .get("https://example.com/pending");
+
+        assertThat(first.isCreated(), is(true));
+        assertThat(second.isCreated(), is(false));
+        assertThat(second.getId(), is(first.getId()));
+        assertThat(tagsOf(first.getId()), containsInAnyOrder("later", "again"));
+    }
+
+    private Item resolved(String url, Set<String> tags) {
+        Item item = new Item();
+        item.setUrl(url);
+        item.setResolvedUrl(url);
+        item.setMimeType("text");
+        item.setDateResolved(Instant.now());
+        item.setTags(new HashSet<>(tags));
+        item.setUnread(true);
+        item.setResolutionState(ResolutionState.RESOLVED);
+        return item;
+    }
+
+    private List<String> tagsOf(long itemId) {
+        return jdbcTemplate.queryForList("SELECT n.name FROM item_tags t JOIN tag_names n ON n.id = t.tag_id "
+                + "WHERE t.item_id = ?", String.class, itemId);
+    }
+
+    private int itemCount() {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM items WHERE user_id = ?", Integer.class, userId);
+    }
+}
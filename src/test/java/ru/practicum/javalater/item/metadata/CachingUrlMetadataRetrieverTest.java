@@ -0,0 +1,121 @@
+package ru.practicum.javalater.item.metadata;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import ru.practicum.javalater.item.exception.ItemRetrieverException;
+import ru.practicum.javalater.item.exception.TransientRetrieverException;
+
+import java.util.concurrent.CompletableFuture;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class CachingUrlMetadataRetrieverTest {
+
+    @Mock
+    private UrlMetadataRetriever delegate;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private CachingUrlMetadataRetriever retriever;
+
+    private final UrlMetadataRetriever.UrlMetadata metadata = UrlMetadataRetrieverImpl.UrlMetadataImpl.builder()
+            .normalUrl("https://Example.com/page#top")
+            .resolvedUrl("https://example.com/article")
+            .title("title")
+            .mimeType("text")
+            .build();
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        retriever = new CachingUrlMetadataRetriever(delegate, meterRegistry, 60, 1_000_000, 60, 100, 100);
+    }
+
+    @Test
+    void retrieve_SameNormalizedUrlHitsCache() {
+        when(delegate.retrieveAsync("https://Example.com/page#top"))
+                .thenReturn(CompletableFuture.completedFuture(metadata));
+
+        retriever.retrieve("https://Example.com/page#top");
+        UrlMetadataRetriever.UrlMetadata result = retriever.retrieve("https://example.com/page");
+
+        assertThat(result, is(metadata));
+        verify(delegate, times(1)).retrieveAsync("https://Example.com/page#top");
+        verifyNoMoreInteractions(delegate);
+        assertThat(meterRegistry.get("cache.gets").tag("cache", "url.metadata").tag("result", "hit")
+                .functionCounter().count(), is(1.0));
+    }
+
+    @Test
+    void retrieve_ResolvedUrlHitsCache() {
+        when(delegate.retrieveAsync("https://Example.com/page#top"))
+                .thenReturn(CompletableFuture.completedFuture(metadata));
+
+        retriever.retrieve("https://Example.com/page#top");
+        UrlMetadataRetriever.UrlMetadata result = retriever.retrieve("https://example.com/article");
+
+        assertThat(result, is(metadata));
+        verifyNoMoreInteractions(delegate);
+    }
+
+    @Test
+    void retrieve_FailureIsCachedForNegativeTtl() {
+        ItemRetrieverException exception = new ItemRetrieverException("error");
+        when(delegate.retrieveAsync("https://example.com/missing"))
+                .thenReturn(CompletableFuture.failedFuture(exception));
+
+        assertThrows(ItemRetrieverException.class, () -> retriever.retrieve("https://example.com/missing"));
+        ItemRetrieverException e = assertThrows(ItemRetrieverException.class,
+                () -> retriever.retrieve("https://example.com/missing"));
+
+        assertThat(e, is(exception));
+        verify(delegate, times(1)).retrieveAsync("https://example.com/missing");
+    }
+
+    @Test
+    void retrieve_TransientFailureIsNotCached() {
+        when(delegate.retrieveAsync("https://example.com/down"))
+                .thenReturn(CompletableFuture.failedFuture(new TransientRetrieverException("503")));
+
+        assertThrows(TransientRetrieverException.class, () -> retriever.retrieve("https://example.com/down"));
+        assertThrows(TransientRetrieverException.class, () -> retriever.retrieve("https://example.com/down"));
+
+        verify(delegate, times(2)).retrieveAsync("https://example.com/down");
+    }
+
+    @Test
+    void retrieveAsync_StoresResultForLaterCalls() {
+        when(delegate.retrieveAsync("https://example.com/page"))
+                .thenReturn(CompletableFuture.completedFuture(metadata));
+
+        retriever.retrieveAsync("https://example.com/page").join();
+        UrlMetadataRetriever.UrlMetadata result = retriever.retrieve("https://example.com/page");
+
+        assertThat(result, is(metadata));
+        verify(delegate, times(1)).retrieveAsync("https://example.com/page");
+        verifyNoMoreInteractions(delegate);
+    }
+
+    @Test
+    void retrieve_ZeroWeightDisablesCaching() {
+        retriever = new CachingUrlMetadataRetriever(delegate, meterRegistry, 60, 0, 60, 100, 100);
+        when(delegate.retrieveAsync("https://example.com/page"))
+                .thenReturn(CompletableFuture.completedFuture(metadata));
+
+        retriever.retrieve("https://example.com/page");
+        retriever.retrieve("https://example.com/page");
+
+        verify(delegate, times(2)).retrieveAsync("https://example.com/page");
+    }
+}
@@ -0,0 +1,202 @@
+package ru.practicum.javalater.item.metadata;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.SneakyThrows;
+import org.junit.jupiter.api.Test;
+import ru.practicum.javalater.item.exception.ItemRetrieverException;
+import ru.practicum.javalater.item.exception.MalformedContentException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class DecompressingSubscriberTest {
+
+    private static final String PAGE = "<html><head><title>Compressed</title></head><body><img src=a.png>"
+            + "<video src=v.mp4></video>";
+
+    @Test
+    @SneakyThrows
+    void retrieve_DecodesGzipAndCountsBothSizes() {
+        byte[] page = (PAGE + "<p>filler</p>".repeat(1000) + "</body></html>").getBytes(StandardCharsets.UTF_8);
+        byte[] gzipped = gzip(page);
+        AtomicReference<String> acceptEncoding = new AtomicReference<>();
+        try (StubHttpServer server = new StubHttpServer().handle("/article", exchange -> {
+            acceptEncoding.set(exchange.getRequestHeaders().getFirst("Accept-Encoding"));
+            exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+            StubHttpServer.respond(exchange, "text/html; charset=UTF-8", gzipped, 0);
+        })) {
+            SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+            UrlMetadataRetriever retriever = new UrlMetadataRetrieverImpl(5, 1 << 20, true, false,
+                    new HostRequestScheduler(meterRegistry, 64, 4, 0, 1000),
+                    new HostCircuitBreaker(meterRegistry, 5, 30_000, 10_000, 600_000),
+                    new RetrieverMetrics(meterRegistry, 1000, 10),
+                new RetrievalPolicy(meterRegistry, 30_000, 0, false, 200),
+                new UrlMediaClassifier(meterRegistry, false, false, 10_000, 20, 50));
+
+            UrlMetadataRetriever.UrlMetadata metadata = retriever.retrieve(server.url("/article"));
+
+            assertThat(metadata.getTitle(), is("Compressed"));
+            assertThat(metadata.isHasVideo(), is(true));
+            assertThat(acceptEncoding.get(), is("gzip, deflate"));
+            assertThat(meterRegistry.get("url.metadata.body.compressed.bytes").tag("encoding", "gzip")
+                    .counter().count(), is((double) gzipped.length));
+            assertThat(meterRegistry.get("url.metadata.body.decompressed.bytes").tag("encoding", "gzip")
+                    .counter().count(), is((double) page.length));
+        }
+    }
+
+    @Test
+    @SneakyThrows
+    void stopsInflatingOnceTheHtmlPrefixIsComplete() {
+        byte[] page = (PAGE + "<p>filler</p>".repeat(2_000_000)).getBytes(StandardCharsets.UTF_8);
+        byte[] gzipped = gzip(page);
+        try (StubHttpServer server = new StubHttpServer().handle("/large", exchange -> {
+            exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+            StubHttpServer.respond(exchange, "text/html", gzipped, 0);
+        })) {
+            SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+            RetrieverMetrics metrics = new RetrieverMetrics(meterRegistry, 1000, 10);
+            HttpResponse<String> response = HttpClient.newHttpClient().send(
+                    HttpRequest.newBuilder(URI.create(server.url("/large"))).build(),
+                    responseInfo -> DecompressingSubscriber.wrap(responseInfo,
+                            HtmlPrefixSubscriber.handler(1 << 20).apply(responseInfo), 1 << 20, metrics));
+
+            assertThat(response.body().startsWith(PAGE), is(true));
+            assertThat(meterRegistry.get("url.metadata.body.compressed.bytes").counter().count(),
+                    lessThan(gzipped.length / 2.0));
+            assertThat(meterRegistry.get("url.metadata.body.decompressed.bytes").counter().count(),
+                    lessThan((double) (1 << 17)));
+        }
+    }
+
+    @Test
+    @SneakyThrows
+    void decodesZlibAndRawDeflateFedOneByteAtATime() {
+        String text = "<html><head><title>Small</title></head><body><p>" + "text ".repeat(100) + "</p></body></html>";
+        byte[] page = text.getBytes(StandardCharsets.UTF_8);
+
+        assertThat(feedByteByByte("deflate", deflate(page, false)), is(text));
+        assertThat(feedByteByByte("deflate", deflate(page, true)), is(text));
+        assertThat(feedByteByByte("x-gzip", gzip(page)), is(text));
+    }
+
+    @Test
+    @SneakyThrows
+    void malformedBodyIsAContentErrorThatIsNotRetried() {
+        byte[] corrupt = gzip(PAGE.getBytes(StandardCharsets.UTF_8));
+        // a deflate block of the reserved type 3 right after the gzip header
+        corrupt[10] = (byte) 0xff;
+        try (StubHttpServer server = new StubHttpServer().handle("/corrupt", exchange -> {
+            exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+            StubHttpServer.respond(exchange, "text/html", corrupt, 0);
+        })) {
+            SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+            HostCircuitBreaker breaker = new HostCircuitBreaker(meterRegistry, 1, 30_000, 10_000, 600_000);
+            UrlMetadataRetriever retriever = new UrlMetadataRetrieverImpl(5, 1 << 20, true, false,
+                    new HostRequestScheduler(meterRegistry, 64, 4, 0, 1000), breaker,
+                    new RetrieverMetrics(meterRegistry, 1000, 10),
+                    new RetrievalPolicy(meterRegistry, 30_000, 2, false, 200),
+                    new UrlMediaClassifier(meterRegistry, false, false, 10_000, 20, 50));
+
+            assertThrows(MalformedContentException.class, () -> retriever.retrieve(server.url("/corrupt")));
+
+            assertThat(server.requestCount("GET", "/corrupt"), is(1));
+            assertThat(breaker.state(HostRequestScheduler.hostKey(URI.create(server.url("/corrupt")))),
+                    is(HostCircuitBreaker.State.CLOSED));
+        }
+    }
+
+    @Test
+    void failsOnUnsupportedEncoding() {
+        HttpResponse.BodySubscriber<String> subscriber = DecompressingSubscriber.wrap(responseInfo("br"),
+                new HtmlPrefixSubscriber(StandardCharsets.UTF_8, 1 << 20), 1 << 20,
+                new RetrieverMetrics(new SimpleMeterRegistry(), 1000, 10));
+        subscriber.onSubscribe(new NoopSubscription());
+
+        Exception e = assertThrows(Exception.class,
+                () -> subscriber.getBody().toCompletableFuture().get(1, TimeUnit.SECONDS));
+
+        assertThat(e.getCause() instanceof ItemRetrieverException, is(true));
+    }
+
+    @SneakyThrows
+    private static String feedByteByByte(String encoding, byte[] body) {
+        HttpResponse.BodySubscriber<String> subscriber = DecompressingSubscriber.wrap(responseInfo(encoding),
+                new HtmlPrefixSubscriber(StandardCharsets.UTF_8, 1 << 20), 1 << 20,
+                new RetrieverMetrics(new SimpleMeterRegistry(), 1000, 10));
+        subscriber.onSubscribe(new NoopSubscription());
+        for (byte b : body) {
+            subscriber.onNext(List.of(ByteBuffer.wrap(new byte[]{b})));
+        }
+        subscriber.onComplete();
+        return subscriber.getBody().toCompletableFuture().get(1, TimeUnit.SECONDS);
+    }
+
+    private static HttpResponse.ResponseInfo responseInfo(String encoding) {
+        HttpHeaders headers = HttpHeaders.of(Map.of("Content-Encoding", List.of(encoding)), (name, value) -> true);
+        return new HttpResponse.ResponseInfo() {
+            @Override
+            public int statusCode() {
+                return 200;
+            }
+
+            @Override
+            public HttpHeaders headers() {
+                return headers;
+            }
+
+            @Override
+            public HttpClient.Version version() {
+                return HttpClient.Version.HTTP_1_1;
+            }
+        };
+    }
+
+    @SneakyThrows
+    private static byte[] gzip(byte[] bytes) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (OutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(bytes);
+        }
+        return out.toByteArray();
+    }
+
+    @SneakyThrows
+    private static byte[] deflate(byte[] bytes, boolean raw) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (OutputStream deflate = new DeflaterOutputStream(out, new Deflater(Deflater.DEFAULT_COMPRESSION, raw))) {
+            deflate.write(bytes);
+        }
+        return out.toByteArray();
+    }
+
+    private static class NoopSubscription implements Flow.Subscription {
+        @Override
+        public void request(long n) {
+        }
+
+        @Override
+        public void cancel() {
+        }
+    }
+}
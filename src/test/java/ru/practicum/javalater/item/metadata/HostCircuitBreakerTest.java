@@ -0,0 +1,82 @@
+package ru.practicum.javalater.item.metadata;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.SneakyThrows;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+class HostCircuitBreakerTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void opensAfterConsecutiveFailuresOnly() {
+        HostCircuitBreaker breaker = new HostCircuitBreaker(meterRegistry, 3, 60_000, 10_000, 600_000);
+
+        breaker.onFailure("example.com");
+        breaker.onFailure("example.com");
+        breaker.onSuccess("example.com");
+        breaker.onFailure("example.com");
+        breaker.onFailure("example.com");
+        assertThat(breaker.state("example.com"), is(HostCircuitBreaker.State.CLOSED));
+
+        breaker.onFailure("example.com");
+
+        assertThat(breaker.state("example.com"), is(HostCircuitBreaker.State.OPEN));
+        assertThat(breaker.tryAcquire("example.com"), is(false));
+        assertThat(breaker.tryAcquire("other.com"), is(true));
+        assertThat(breaker.trippedHosts(), is(Map.of("example.com", HostCircuitBreaker.State.OPEN)));
+    }
+
+    @Test
+    @SneakyThrows
+    void halfOpenLetsOneProbeThrough() {
+        HostCircuitBreaker breaker = new HostCircuitBreaker(meterRegistry, 1, 20, 10_000, 600_000);
+        breaker.onFailure("example.com");
+        Thread.sleep(30);
+
+        assertThat(breaker.tryAcquire("example.com"), is(true));
+        assertThat(breaker.state("example.com"), is(HostCircuitBreaker.State.HALF_OPEN));
+        assertThat(breaker.tryAcquire("example.com"), is(false));
+
+        breaker.onFailure("example.com");
+        assertThat(breaker.state("example.com"), is(HostCircuitBreaker.State.OPEN));
+        Thread.sleep(30);
+        assertThat(breaker.tryAcquire("example.com"), is(true));
+        breaker.onSuccess("example.com");
+
+        assertThat(breaker.state("example.com"), is(HostCircuitBreaker.State.CLOSED));
+        assertThat(breaker.tryAcquire("example.com"), is(true));
+        assertThat(meterRegistry.get("url.metadata.breaker.transitions").tag("state", "open").counter().count(),
+                is(2.0));
+        assertThat(meterRegistry.get("url.metadata.breaker.transitions").tag("state", "closed").counter().count(),
+                is(1.0));
+    }
+
+    @Test
+    void releasedProbeCanBeRetried() {
+        HostCircuitBreaker breaker = new HostCircuitBreaker(meterRegistry, 1, 0, 10_000, 600_000);
+        breaker.onFailure("example.com");
+
+        assertThat(breaker.tryAcquire("example.com"), is(true));
+        breaker.release("example.com");
+
+        assertThat(breaker.tryAcquire("example.com"), is(true));
+    }
+
+    @Test
+    void trackedHostsAreBounded() {
+        HostCircuitBreaker breaker = new HostCircuitBreaker(meterRegistry, 1, 60_000, 1, 600_000);
+        breaker.onFailure("example.com");
+
+        breaker.onFailure("other.com");
+
+        assertThat(breaker.state("example.com"), is(HostCircuitBreaker.State.CLOSED));
+        assertThat(breaker.state("other.com"), is(HostCircuitBreaker.State.OPEN));
+        assertThat(breaker.trippedHosts(), is(Map.of("other.com", HostCircuitBreaker.State.OPEN)));
+    }
+}
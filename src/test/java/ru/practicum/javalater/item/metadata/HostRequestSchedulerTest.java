@@ -0,0 +1,120 @@
+package ru.practicum.javalater.item.metadata;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.SneakyThrows;
+import org.junit.jupiter.api.Test;
+import ru.practicum.javalater.item.exception.ItemRetrieverException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class HostRequestSchedulerTest {
+
+    private static final byte[] PAGE = "<html><head><title>t</title></head></html>".getBytes(StandardCharsets.UTF_8);
+
+    @Test
+    @SneakyThrows
+    void capsHoldAndHostsAreServedFairly() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        HostRequestScheduler scheduler = new HostRequestScheduler(meterRegistry, 3, 2, 0, 1000);
+        UrlMetadataRetriever retriever = new UrlMetadataRetrieverImpl(5, 1 << 20, true, false, scheduler,
+                new HostCircuitBreaker(meterRegistry, 5, 30_000, 10_000, 600_000),
+                new RetrieverMetrics(meterRegistry, 1000, 10),
+                new RetrievalPolicy(meterRegistry, 30_000, 0, false, 200),
+                new UrlMediaClassifier(meterRegistry, false, false, 10_000, 20, 50));
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        ConcurrencyProbe busyHost = new ConcurrencyProbe(running, maxRunning);
+        ConcurrencyProbe quietHost = new ConcurrencyProbe(running, maxRunning);
+        List<String> completions = Collections.synchronizedList(new ArrayList<>());
+
+        try (StubHttpServer busy = new StubHttpServer().handle("/", busyHost::handle);
+             StubHttpServer quiet = new StubHttpServer().handle("/", quietHost::handle)) {
+            List<CompletableFuture<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                futures.add(retriever.retrieveAsync(busy.url("/busy/" + i))
+                        .thenRun(() -> completions.add("busy")));
+            }
+            assertThat(meterRegistry.get("url.metadata.scheduler.queued").gauge().value(), greaterThanOrEqualTo(1.0));
+            for (int i = 0; i < 4; i++) {
+                futures.add(retriever.retrieveAsync(quiet.url("/quiet/" + i))
+                        .thenRun(() -> completions.add("quiet")));
+            }
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get(30, TimeUnit.SECONDS);
+        }
+
+        assertThat(busyHost.max.get(), lessThanOrEqualTo(2));
+        assertThat(quietHost.max.get(), lessThanOrEqualTo(2));
+        assertThat(maxRunning.get(), lessThanOrEqualTo(3));
+        assertThat(completions.lastIndexOf("quiet"), lessThan(14));
+        assertThat(meterRegistry.get("url.metadata.scheduler.in-flight").gauge().value(), is(0.0));
+        assertThat(meterRegistry.get("url.metadata.scheduler.queued").gauge().value(), is(0.0));
+    }
+
+    @Test
+    @SneakyThrows
+    void startsAgainstOneHostAreSpacedByMinDelay() {
+        HostRequestScheduler scheduler = new HostRequestScheduler(new SimpleMeterRegistry(), 10, 10, 100, 1000);
+        List<Long> starts = Collections.synchronizedList(new ArrayList<>());
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+
+        for (int i = 0; i < 4; i++) {
+            futures.add(scheduler.submit("example.com", () -> {
+                starts.add(System.nanoTime());
+                return CompletableFuture.completedFuture(null);
+            }));
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get(5, TimeUnit.SECONDS);
+
+        for (int i = 1; i < starts.size(); i++) {
+            assertThat(TimeUnit.NANOSECONDS.toMillis(starts.get(i) - starts.get(i - 1)), greaterThanOrEqualTo(90L));
+        }
+    }
+
+    @Test
+    void rejectsWhenQueueIsFull() {
+        HostRequestScheduler scheduler = new HostRequestScheduler(new SimpleMeterRegistry(), 1, 1, 0, 1);
+        scheduler.submit("example.com", CompletableFuture::new);
+        scheduler.submit("example.com", CompletableFuture::new);
+
+        CompletableFuture<Object> rejected = scheduler.submit("example.com", CompletableFuture::new);
+
+        assertThat(assertThrows(Exception.class, rejected::join).getCause(), instanceOf(ItemRetrieverException.class));
+    }
+
+    private static class ConcurrencyProbe {
+        private final AtomicInteger globalRunning;
+        private final AtomicInteger globalMax;
+        private final AtomicInteger running = new AtomicInteger();
+        private final AtomicInteger max = new AtomicInteger();
+
+        ConcurrencyProbe(AtomicInteger globalRunning, AtomicInteger globalMax) {
+            this.globalRunning = globalRunning;
+            this.globalMax = globalMax;
+        }
+
+        void handle(com.sun.net.httpserver.HttpExchange exchange) throws java.io.IOException {
+            max.accumulateAndGet(running.incrementAndGet(), Math::max);
+            globalMax.accumulateAndGet(globalRunning.incrementAndGet(), Math::max);
+            try {
+                StubHttpServer.respond(exchange, "text/html", PAGE, 50);
+            } finally {
+                running.decrementAndGet();
+                globalRunning.decrementAndGet();
+            }
+        }
+    }
+}
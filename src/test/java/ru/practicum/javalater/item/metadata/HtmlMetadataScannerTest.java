@@ -0,0 +1,97 @@
+package ru.practicum.javalater.item.metadata;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+
+class HtmlMetadataScannerTest {
+
+    private static final List<String> CORPUS = List.of(
+            "<!DOCTYPE html><html><head><meta charset=\"utf-8\"><title>Simple page</title></head>"
+                    + "<body><p>text</p><img src=\"a.png\"><video src=\"v.mp4\"></video></body></html>",
+            "<html><head><TITLE>\n  Upper   case\ttitle </TITLE></head><BODY><IMG SRC=x><VIDEO></VIDEO></BODY></html>",
+            "<html><head><title>Fish &amp; Chips &mdash; &#8470;1</title></head><body></body></html>",
+            "<html><head><meta property=\"og:title\" content=\"Open &quot;Graph&quot; title\"></head><body></body>",
+            "<html><head><title>  </title><meta property='OG:TITLE' content='Fallback'></head></html>",
+            "<html><head><title>Real</title><meta property=og:title content=Ignored></head></html>",
+            "<html><head><!-- <title>Commented</title> <img> --><title>After comment</title></head>"
+                    + "<body><!-- <video> --></body></html>",
+            "<html><head><script>var s = '<img src=x>'; document.write('<title>no</title>');</script>"
+                    + "<style>video { color: red } /* <video> */</style><title>Scripted</title></head><body></body>",
+            "<html><head><title>Head</title></head><body><title>Body title</title><img></body></html>",
+            "<html><body><title>Only in body</title></body></html>",
+            "<p>Text first</p><title>Late</title>",
+            "Plain text before <title>Not a head title</title>",
+            "<html><head></head>\n<title>After head</title><body></body></html>",
+            "<html><head><noscript><img src=pixel></noscript><title>After noscript</title></head></html>",
+            "<html><head><noscript><link rel=stylesheet></noscript><title>Noscript link</title></head></html>",
+            "<html><head><noscript><title>Inert</title>pixel</noscript><title>Noscript text</title></head>",
+            "<html><head></head><noscript><title>Body noscript</title></noscript></html>",
+            "<html><head><title>Attrs</title></head><body><a href=\"x\" title=\"<img>\">link</a>"
+                    + "<div data-x='<video>'></div></body></html>",
+            "<html><head><title>Textarea</title></head><body><textarea><img><video></textarea></body></html>",
+            "<html><head><title>Iframe</title></head><body><iframe><img></iframe><xmp><video></xmp></body></html>",
+            "<html><head><title>Unterminated title",
+            "<html><head><title>Cut</title></head><body><img src=\"trunc",
+            "<html><head><title>Unterminated comment</title></head><body><!-- <img>",
+            "<html><head><title>Imagery</title></head><body><imgx><videos><img/></body></html>",
+            "<html><head><title>Picture</title></head><body><picture><source srcset=a><img></picture></body></html>",
+            "<html><head><title>Svg</title></head><body><svg><title>icon</title><path d=\"M0\"/></svg></body></html>",
+            "<html><head><title>Less than</title></head><body>1 < 2 <3 <img></body></html>",
+            "<html><head><title>Bogus</title><?xml version=\"1.0\"?></head><body></ p><video></body></html>",
+            "<html><head><base href=/><link rel=icon><meta name=x><title>Many head tags</title></head></html>",
+            "<html><head><title>Self</title></head><body><img/><video/></body></html>",
+            "\uFEFF<html><head><title>Bom</title></head></html>",
+            "<html><head><title>Two</title><title>Titles</title></head></html>",
+            "<html><head><title>Equals at the end</title></head><body><img src= ",
+            "<html><head><script><!-- document.write('<script>x</script>'); --></script><title>Old</title></head>",
+            "<html><head><title>Image tag</title></head><body><image src=x></body></html>",
+            "<html><head><title>Cdata</title></head><body><![CDATA[<img>]]></body></html>",
+            "<html><head><template><img></template><title>Template</title></head></html>",
+            "<html><frameset><frame src=a></frameset></html>",
+            "<div <img src=x>>broken</div>",
+            "<html><head>&#32;<title>Char ref in head</title></head></html>",
+            "",
+            "<");
+
+    @Test
+    void scannerMatchesJsoupOnCorpusAndEveryPrefix() {
+        for (String html : CORPUS) {
+            for (int length = 0; length <= html.length(); length++) {
+                String prefix = html.substring(0, length);
+                UrlMetadataRetrieverImpl.UrlMetadataImpl scanned = HtmlMetadataScanner.scan(prefix);
+                if (scanned != null) {
+                    assertThat(prefix, scanned, is(UrlMetadataRetrieverImpl.parseWithJsoup(prefix)));
+                }
+            }
+        }
+    }
+
+    @Test
+    void scannerHandlesOrdinaryPagesWithoutFallback() {
+        for (String html : CORPUS.subList(0, 33)) {
+            assertThat(html, HtmlMetadataScanner.scan(html), notNullValue());
+        }
+    }
+
+    @Test
+    void scannerFallsBackOnRulesItDoesNotModel() {
+        for (String html : CORPUS.subList(33, 40)) {
+            assertThat(html, HtmlMetadataScanner.scan(html), nullValue());
+        }
+    }
+
+    @Test
+    void scannerReadsTitleAndOgTitleFallback() {
+        assertThat(HtmlMetadataScanner.scan(CORPUS.get(2)).getTitle(), is("Fish & Chips — №1"));
+        assertThat(HtmlMetadataScanner.scan(CORPUS.get(4)).getTitle(), is("Fallback"));
+        assertThat(HtmlMetadataScanner.scan(CORPUS.get(8)).getTitle(), is("Head"));
+        assertThat(HtmlMetadataScanner.scan(CORPUS.get(0)).isHasVideo(), is(true));
+        assertThat(HtmlMetadataScanner.scan(CORPUS.get(18)).isHasImage(), is(false));
+    }
+}
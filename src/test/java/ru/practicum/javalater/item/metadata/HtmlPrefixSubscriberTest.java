@@ -0,0 +1,80 @@
+package ru.practicum.javalater.item.metadata;
+
+import lombok.SneakyThrows;
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+
+class HtmlPrefixSubscriberTest {
+
+    private static final String HEAD = "<html><head><title>Large page</title></head><body>"
+            + "<img src=a.png><video src=v.mp4></video>";
+
+    @Test
+    @SneakyThrows
+    void stopsReadingOnceAllSignalsAreFound() {
+        String page = HEAD + "<p>filler</p>".repeat(300_000) + "</body></html>";
+        try (StubHttpServer server = new StubHttpServer().html("/large", page, 0)) {
+            HttpResponse<String> response = HttpClient.newHttpClient().send(
+                    HttpRequest.newBuilder(URI.create(server.url("/large"))).build(),
+                    HtmlPrefixSubscriber.handler(1 << 20));
+
+            assertThat(response.body().startsWith(HEAD), is(true));
+            assertThat(response.body().length(), lessThan(1 << 17));
+        }
+    }
+
+    @Test
+    @SneakyThrows
+    void stopsReadingAtByteCap() {
+        String page = "<html><head><title>No video</title></head><body>" + "<p>filler</p>".repeat(300_000);
+        try (StubHttpServer server = new StubHttpServer().html("/large", page, 0)) {
+            HttpResponse<String> response = HttpClient.newHttpClient().send(
+                    HttpRequest.newBuilder(URI.create(server.url("/large"))).build(),
+                    HtmlPrefixSubscriber.handler(100_000));
+
+            assertThat(response.body().length(), is(100_000));
+        }
+    }
+
+    @Test
+    void findsMarkersSplitAcrossChunks() {
+        HtmlPrefixSubscriber subscriber = new HtmlPrefixSubscriber(StandardCharsets.UTF_8, 1 << 20);
+        AtomicBoolean cancelled = new AtomicBoolean();
+        subscriber.onSubscribe(new Flow.Subscription() {
+            @Override
+            public void request(long n) {
+            }
+
+            @Override
+            public void cancel() {
+                cancelled.set(true);
+            }
+        });
+
+        subscriber.onNext(List.of(buffer("<TITLE>t</TI")));
+        subscriber.onNext(List.of(buffer("TLE><IM")));
+        subscriber.onNext(List.of(buffer("G src=a><VID")));
+        assertThat(cancelled.get(), is(false));
+        subscriber.onNext(List.of(buffer("EO>")));
+
+        assertThat(cancelled.get(), is(true));
+        assertThat(subscriber.getBody().toCompletableFuture().join(), is("<TITLE>t</TITLE><IMG src=a><VIDEO>"));
+    }
+
+    private static ByteBuffer buffer(String s) {
+        return ByteBuffer.wrap(s.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,134 @@
+package ru.practicum.javalater.item.metadata;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.SneakyThrows;
+import org.junit.jupiter.api.Test;
+import ru.practicum.javalater.item.exception.ItemRetrieverException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class InFlightRequestCoalescerTest {
+
+    @Test
+    @SneakyThrows
+    void parallelCallersForSameUrl_ShareOneUpstreamRequest() {
+        int callers = 16;
+        try (StubHttpServer server = new StubHttpServer()
+                .html("/viral", "<html><head><title>Viral</title></head><body><img src=a.png></body></html>", 500)) {
+            UrlMetadataRetriever retriever = new CachingUrlMetadataRetriever(
+                    new UrlMetadataRetrieverImpl(5, 1 << 20, true, false, scheduler(), breaker(), metrics(),
+                            policy(), classifier()),
+                    new SimpleMeterRegistry(), 60, 0, 0, 100, 100);
+            CyclicBarrier barrier = new CyclicBarrier(callers);
+            ExecutorService executor = Executors.newFixedThreadPool(callers);
+            List<Future<UrlMetadataRetriever.UrlMetadata>> results = new ArrayList<>();
+            for (int i = 0; i < callers; i++) {
+                results.add(executor.submit(() -> {
+                    barrier.await();
+                    return retriever.retrieve(server.url("/viral"));
+                }));
+            }
+
+            UrlMetadataRetriever.UrlMetadata first = results.get(0).get(10, TimeUnit.SECONDS);
+            for (Future<UrlMetadataRetriever.UrlMetadata> result : results) {
+                assertThat(result.get(10, TimeUnit.SECONDS), is(first));
+            }
+            executor.shutdown();
+
+            assertThat(first.getTitle(), is("Viral"));
+            assertThat(server.requestCount("HEAD", "/viral") + server.requestCount("GET", "/viral"), is(1));
+        }
+    }
+
+    @Test
+    void concurrentCallers_ReceiveSameFailure() {
+        InFlightRequestCoalescer<String> coalescer = new InFlightRequestCoalescer<>(10);
+        CompletableFuture<String> upstream = new CompletableFuture<>();
+        AtomicInteger calls = new AtomicInteger();
+
+        CompletableFuture<String> first = coalescer.execute("key", () -> {
+            calls.incrementAndGet();
+            return upstream;
+        });
+        CompletableFuture<String> second = coalescer.execute("key", () -> {
+            calls.incrementAndGet();
+            return upstream;
+        });
+        ItemRetrieverException exception = new ItemRetrieverException("error");
+        upstream.completeExceptionally(exception);
+
+        assertThat(calls.get(), is(1));
+        assertThat(assertThrows(Exception.class, first::join).getCause(), is(exception));
+        assertThat(assertThrows(Exception.class, second::join).getCause(), is(exception));
+    }
+
+    @Test
+    void completedEntries_AreRemoved() {
+        InFlightRequestCoalescer<String> coalescer = new InFlightRequestCoalescer<>(10);
+        CompletableFuture<String> upstream = new CompletableFuture<>();
+
+        CompletableFuture<String> result = coalescer.execute("key", () -> upstream);
+        assertThat(coalescer.size(), is(1));
+        upstream.complete("value");
+
+        assertThat(result.join(), is("value"));
+        assertThat(coalescer.size(), is(0));
+    }
+
+    @Test
+    void fullCoalescer_BypassesNewKeys() {
+        InFlightRequestCoalescer<String> coalescer = new InFlightRequestCoalescer<>(1);
+        coalescer.execute("first", CompletableFuture::new);
+
+        CompletableFuture<String> result = coalescer.execute("second",
+                () -> CompletableFuture.completedFuture("value"));
+
+        assertThat(result.join(), is("value"));
+        assertThat(coalescer.size(), is(1));
+    }
+
+    @Test
+    void throwingCall_FailsPromiseAndRemovesEntry() {
+        InFlightRequestCoalescer<String> coalescer = new InFlightRequestCoalescer<>(10);
+
+        CompletableFuture<String> result = coalescer.execute("key", () -> {
+            throw new ItemRetrieverException("error");
+        });
+
+        assertThat(assertThrows(Exception.class, result::join).getCause(), instanceOf(ItemRetrieverException.class));
+        assertThat(coalescer.size(), is(0));
+    }
+
+    private static HostRequestScheduler scheduler() {
+        return new HostRequestScheduler(new SimpleMeterRegistry(), 64, 4, 0, 1000);
+    }
+
+    private static HostCircuitBreaker breaker() {
+        return new HostCircuitBreaker(new SimpleMeterRegistry(), 5, 30_000, 10_000, 600_000);
+    }
+
+    private static RetrieverMetrics metrics() {
+        return new RetrieverMetrics(new SimpleMeterRegistry(), 1000, 10);
+    }
+
+    private static RetrievalPolicy policy() {
+        return new RetrievalPolicy(new SimpleMeterRegistry(), 30_000, 0, false, 200);
+    }
+
+    private static UrlMediaClassifier classifier() {
+        return new UrlMediaClassifier(new SimpleMeterRegistry(), false, false, 10_000, 20, 50);
+    }
+}
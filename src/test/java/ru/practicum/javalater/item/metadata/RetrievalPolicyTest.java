@@ -0,0 +1,147 @@
+package ru.practicum.javalater.item.metadata;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.SneakyThrows;
+import org.junit.jupiter.api.Test;
+import ru.practicum.javalater.item.exception.ItemRetrieverException;
+import ru.practicum.javalater.item.exception.TransientRetrieverException;
+
+import java.net.http.HttpTimeoutException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.not;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class RetrievalPolicyTest {
+
+    @Test
+    @SneakyThrows
+    void hedgedAttemptWinsOverASlowFirstAttempt() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        RetrievalPolicy policy = new RetrievalPolicy(meterRegistry, 5_000, 0, true, 50);
+        AtomicInteger attempts = new AtomicInteger();
+        long startedAt = System.nanoTime();
+
+        String result = policy.<String>run(retrieval -> attempts.incrementAndGet() == 1
+                ? new CompletableFuture<>() : CompletableFuture.completedFuture("hedge"), "http://slow")
+                .get(5, TimeUnit.SECONDS);
+
+        assertThat(result, is("hedge"));
+        assertThat(attempts.get(), is(2));
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt), lessThan(1_000L));
+        assertThat(meterRegistry.get("url.metadata.hedges").counter().count(), is(1.0));
+        assertThat(meterRegistry.get("url.metadata.hedges.won").counter().count(), is(1.0));
+    }
+
+    @Test
+    @SneakyThrows
+    void losingAttemptIsCancelledAndItsExchangesAborted() {
+        RetrievalPolicy policy = new RetrievalPolicy(new SimpleMeterRegistry(), 5_000, 0, true, 50);
+        AtomicInteger attempts = new AtomicInteger();
+        CompletableFuture<String> slow = new CompletableFuture<>();
+        CountDownLatch aborted = new CountDownLatch(1);
+        AtomicReference<String> hedgeThread = new AtomicReference<>();
+
+        String result = policy.<String>run(retrieval -> {
+            if (attempts.incrementAndGet() == 1) {
+                retrieval.onAbort(aborted::countDown);
+                return slow;
+            }
+            hedgeThread.set(Thread.currentThread().getName());
+            return CompletableFuture.completedFuture("hedge");
+        }, "http://slow").get(5, TimeUnit.SECONDS);
+
+        assertThat(result, is("hedge"));
+        assertThrows(CancellationException.class, () -> slow.get(5, TimeUnit.SECONDS));
+        assertThat(aborted.await(5, TimeUnit.SECONDS), is(true));
+        assertThat(hedgeThread.get(), not("retrieval-deadlines"));
+    }
+
+    @Test
+    @SneakyThrows
+    void noHedgeWhenTheFirstAttemptIsFastOrHedgingIsOff() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        RetrievalPolicy hedging = new RetrievalPolicy(meterRegistry, 5_000, 0, true, 50);
+        RetrievalPolicy plain = new RetrievalPolicy(new SimpleMeterRegistry(), 5_000, 0, false, 50);
+        AtomicInteger attempts = new AtomicInteger();
+
+        hedging.<String>run(retrieval -> {
+            attempts.incrementAndGet();
+            return CompletableFuture.supplyAsync(() -> "fast");
+        }, "http://fast").get(5, TimeUnit.SECONDS);
+        CompletableFuture<String> slow = plain.run(retrieval -> {
+            attempts.incrementAndGet();
+            return new CompletableFuture<>();
+        }, "http://slow");
+        Thread.sleep(200);
+
+        assertThat(slow.isDone(), is(false));
+        assertThat(attempts.get(), is(2));
+        assertThat(meterRegistry.get("url.metadata.hedges").counter().count(), is(0.0));
+    }
+
+    @Test
+    @SneakyThrows
+    void transientFailuresAreRetriedUpToTheLimit() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        RetrievalPolicy policy = new RetrievalPolicy(meterRegistry, 5_000, 2, false, 50);
+        AtomicInteger attempts = new AtomicInteger();
+        AtomicInteger permanent = new AtomicInteger();
+
+        String result = policy.<String>run(retrieval -> attempts.incrementAndGet() < 3
+                ? CompletableFuture.failedFuture(new TransientRetrieverException("503"))
+                : CompletableFuture.completedFuture("third"), "http://flaky").get(5, TimeUnit.SECONDS);
+        ExecutionException e = assertThrows(ExecutionException.class, () -> policy.<String>run(retrieval -> {
+            permanent.incrementAndGet();
+            return CompletableFuture.failedFuture(new ItemRetrieverException("404"));
+        }, "http://missing").get(5, TimeUnit.SECONDS));
+
+        assertThat(result, is("third"));
+        assertThat(attempts.get(), is(3));
+        assertThat(permanent.get(), is(1));
+        assertThat(e.getCause(), instanceOf(ItemRetrieverException.class));
+        assertThat(meterRegistry.get("url.metadata.retries").counter().count(), is(2.0));
+    }
+
+    @Test
+    @SneakyThrows
+    void failsAtTheDeadlineAndDoesNotRetryPastIt() {
+        RetrievalPolicy policy = new RetrievalPolicy(new SimpleMeterRegistry(), 100, 3, false, 50);
+        AtomicInteger attempts = new AtomicInteger();
+        CompletableFuture<String> late = new CompletableFuture<>();
+
+        CompletableFuture<String> result = policy.run(retrieval -> {
+            attempts.incrementAndGet();
+            return late;
+        }, "http://late");
+        ExecutionException e = assertThrows(ExecutionException.class, () -> result.get(5, TimeUnit.SECONDS));
+        late.completeExceptionally(new TransientRetrieverException("timed out"));
+        Thread.sleep(100);
+
+        assertThat(e.getCause(), instanceOf(TransientRetrieverException.class));
+        assertThat(e.getCause().getCause(), instanceOf(HttpTimeoutException.class));
+        assertThat(attempts.get(), is(1));
+    }
+
+    @Test
+    @SneakyThrows
+    void callbacksOfAnExpiredRetrievalDoNotRunOnTheTimerThread() {
+        RetrievalPolicy policy = new RetrievalPolicy(new SimpleMeterRegistry(), 50, 0, false, 50);
+        CompletableFuture<String> callbackThread = new CompletableFuture<>();
+
+        policy.<String>run(retrieval -> new CompletableFuture<>(), "http://late")
+                .whenComplete((value, e) -> callbackThread.complete(Thread.currentThread().getName()));
+
+        assertThat(callbackThread.get(5, TimeUnit.SECONDS), not("retrieval-deadlines"));
+    }
+}
@@ -0,0 +1,61 @@
+package ru.practicum.javalater.item.metadata;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import ru.practicum.javalater.item.exception.ItemRetrieverException;
+import ru.practicum.javalater.item.exception.TransientRetrieverException;
+import ru.practicum.javalater.item.exception.UnsupportedContentTypeException;
+
+import java.io.IOException;
+import java.net.http.HttpTimeoutException;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+class RetrieverMetricsTest {
+
+    @Test
+    void outcomeClassifiesFailures() {
+        assertThat(RetrieverMetrics.outcome(null), is(RetrieverMetrics.SUCCESS));
+        assertThat(RetrieverMetrics.outcome(new CompletionException(new UnsupportedContentTypeException("json"))),
+                is(RetrieverMetrics.UNSUPPORTED));
+        assertThat(RetrieverMetrics.outcome(new ItemRetrieverException("403", 403)), is(RetrieverMetrics.HTTP_ERROR));
+        assertThat(RetrieverMetrics.outcome(new TransientRetrieverException("503", 503)),
+                is(RetrieverMetrics.HTTP_ERROR));
+        assertThat(RetrieverMetrics.outcome(new TransientRetrieverException("timed out",
+                new HttpTimeoutException("request timed out"))), is(RetrieverMetrics.TIMEOUT));
+        assertThat(RetrieverMetrics.outcome(new IOException("reset")), is(RetrieverMetrics.ERROR));
+    }
+
+    @Test
+    void familyGroupsMediaTypes() {
+        assertThat(RetrieverMetrics.family("text"), is("text"));
+        assertThat(RetrieverMetrics.family("application"), is("other"));
+        assertThat(RetrieverMetrics.family((String) null), is(RetrieverMetrics.UNKNOWN));
+    }
+
+    @Test
+    void slowestHostsAreOrderedByMeanAndLimited() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        RetrieverMetrics metrics = new RetrieverMetrics(meterRegistry, 100, 2);
+
+        metrics.recordRetrieval("fast.com", "text", RetrieverMetrics.SUCCESS, TimeUnit.MILLISECONDS.toNanos(10));
+        metrics.recordRetrieval("slow.com", "text", RetrieverMetrics.SUCCESS, TimeUnit.MILLISECONDS.toNanos(900));
+        metrics.recordRetrieval("slow.com", "text", RetrieverMetrics.SUCCESS, TimeUnit.MILLISECONDS.toNanos(100));
+        metrics.recordRetrieval("medium.com", "text", RetrieverMetrics.TIMEOUT, TimeUnit.MILLISECONDS.toNanos(300));
+
+        List<RetrieverMetrics.HostLatencySnapshot> slowest = metrics.slowestHosts();
+
+        assertThat(slowest.stream().map(RetrieverMetrics.HostLatencySnapshot::getHost).collect(Collectors.toList()),
+                is(List.of("slow.com", "medium.com")));
+        assertThat(slowest.get(0).getCount(), is(2L));
+        assertThat(slowest.get(0).getMeanMillis(), is(500.0));
+        assertThat(slowest.get(0).getMaxMillis(), is(900.0));
+        assertThat(meterRegistry.get("url.metadata.phase").tag("phase", "total").tag("outcome", "success")
+                .timer().count(), is(3L));
+    }
+}
@@ -0,0 +1,77 @@
+package ru.practicum.javalater.item.metadata;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Local HTTP server for retriever tests. Counts requests per method and path.
+ */
+class StubHttpServer implements AutoCloseable {
+
+    private final HttpServer server;
+
+    private final Map<String, AtomicInteger> requests = new ConcurrentHashMap<>();
+
+    StubHttpServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+    }
+
+    StubHttpServer html(String path, String body, long delayMillis) {
+        return handle(path, exchange -> respond(exchange, "text/html; charset=UTF-8",
+                body.getBytes(StandardCharsets.UTF_8), delayMillis));
+    }
+
+    StubHttpServer handle(String path, HttpHandler handler) {
+        server.createContext(path, exchange -> {
+            requests.computeIfAbsent(exchange.getRequestMethod() + " " + path, k -> new AtomicInteger())
+                    .incrementAndGet();
+            handler.handle(exchange);
+        });
+        return this;
+    }
+
+    String url(String path) {
+        return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort() + path;
+    }
+
+    int requestCount(String method, String path) {
+        AtomicInteger count = requests.get(method + " " + path);
+        return count == null ? 0 : count.get();
+    }
+
+    static void respond(HttpExchange exchange, String contentType, byte[] body, long delayMillis) throws IOException {
+        try {
+            Thread.sleep(delayMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        exchange.getResponseHeaders().add("Content-Type", contentType);
+        if ("HEAD".equals(exchange.getRequestMethod())) {
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+            return;
+        }
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+}
@@ -0,0 +1,94 @@
+package ru.practicum.javalater.item.metadata;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+class UrlMediaClassifierTest {
+
+    @Test
+    void guessesFromExtensionAndMediaHosts() {
+        assertThat(UrlMediaClassifier.guess(URI.create("https://cdn.example/x.JPG?w=200")), is("image"));
+        assertThat(UrlMediaClassifier.guess(URI.create("https://cdn.example/a/b/clip.webm")), is("video"));
+        assertThat(UrlMediaClassifier.guess(URI.create("https://pbs.twimg.com/media/Fx1abc")), is("image"));
+        assertThat(UrlMediaClassifier.guess(URI.create("https://i.imgur.com/abc.gifv")), nullValue());
+        assertThat(UrlMediaClassifier.guess(URI.create("https://example.com/article.html")), nullValue());
+        assertThat(UrlMediaClassifier.guess(URI.create("https://example.com/photo.jpg/")), nullValue());
+    }
+
+    @Test
+    void guessStopsOnceTheHostContradictsIt() {
+        UrlMediaClassifier classifier = classifier(new SimpleMeterRegistry(), 3);
+        URI viewer = URI.create("https://viewer.example/photo.jpg");
+
+        assertThat(classifier.classify(viewer), is("image"));
+
+        classifier.learn(viewer, "text");
+
+        assertThat(classifier.classify(viewer), nullValue());
+        assertThat(classifier.classify(URI.create("https://cdn.example/photo.jpg")), is("image"));
+    }
+
+    @Test
+    void learnsHostsThatOnlyServeOneMediaFamily() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        UrlMediaClassifier classifier = classifier(meterRegistry, 3);
+        URI next = URI.create("https://media.example/v/4");
+        for (int i = 0; i < 2; i++) {
+            classifier.learn(URI.create("https://media.example/v/" + i), "video");
+        }
+
+        assertThat(classifier.classify(next), nullValue());
+
+        classifier.learn(URI.create("https://media.example/v/3"), "video");
+
+        assertThat(classifier.classify(next), is("video"));
+        assertThat(meterRegistry.get("url.metadata.classifier").tag("result", "hit").counter().count(), is(1.0));
+        assertThat(meterRegistry.get("url.metadata.classifier").tag("result", "miss").counter().count(), is(1.0));
+        assertThat(meterRegistry.get("url.metadata.classifier.hit.ratio").gauge().value(), is(0.5));
+
+        classifier.learn(URI.create("https://media.example/v/5"), "text");
+
+        assertThat(classifier.classify(next), nullValue());
+        assertThat(meterRegistry.get("url.metadata.classifier.mismatches").counter().count(), is(1.0));
+    }
+
+    @Test
+    void hostHistoryOnlyAppliesToPathsWithoutAnExtension() {
+        UrlMediaClassifier classifier = classifier(new SimpleMeterRegistry(), 3);
+        for (int i = 0; i < 3; i++) {
+            classifier.learn(URI.create("https://media.example/p/" + i), "image");
+        }
+
+        assertThat(classifier.classify(URI.create("https://media.example/p/9")), is("image"));
+        assertThat(classifier.classify(URI.create("https://media.example/article.html")), nullValue());
+        assertThat(classifier.classify(URI.create("https://media.example/index.php?p=9")), nullValue());
+    }
+
+    @Test
+    void samplesClassifiedUrlsForVerificationWhenVerifyIsOff() {
+        UrlMediaClassifier classifier = new UrlMediaClassifier(new SimpleMeterRegistry(), true, false, 100, 3, 3);
+
+        assertThat(classifier.verifies(), is(false));
+        assertThat(classifier.verifies(), is(false));
+        assertThat(classifier.verifies(), is(true));
+        assertThat(classifier.verifies(), is(false));
+    }
+
+    @Test
+    void classifiesNothingWhenDisabled() {
+        UrlMediaClassifier classifier = new UrlMediaClassifier(new SimpleMeterRegistry(), false, true, 100, 3, 50);
+
+        assertThat(classifier.classify(URI.create("https://cdn.example/x.png")), nullValue());
+        assertThat(classifier.verifies(), is(false));
+    }
+
+    private static UrlMediaClassifier classifier(SimpleMeterRegistry meterRegistry, int minHistory) {
+        return new UrlMediaClassifier(meterRegistry, true, false, 100, minHistory, 50);
+    }
+}
@@ -0,0 +1,317 @@
+package ru.practicum.javalater.item.metadata;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.SneakyThrows;
+import org.junit.jupiter.api.Test;
+import ru.practicum.javalater.item.exception.ItemRetrieverException;
+import ru.practicum.javalater.item.exception.TransientRetrieverException;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class UrlMetadataRetrieverImplTest {
+
+    private static final String PAGE = "<html><head><title>Article</title></head><body><img src=a.png></body></html>";
+
+    @Test
+    @SneakyThrows
+    void retrieve_TextWithSingleGet() {
+        try (StubHttpServer server = new StubHttpServer().html("/article", PAGE, 0)) {
+            UrlMetadataRetriever retriever = new UrlMetadataRetrieverImpl(5, 1 << 20, true, false, scheduler(),
+                    breaker(), metrics(), policy(), classifier());
+
+            UrlMetadataRetriever.UrlMetadata metadata = retriever.retrieve(server.url("/article"));
+
+            assertThat(metadata.getTitle(), is("Article"));
+            assertThat(metadata.isHasImage(), is(true));
+            assertThat(metadata.isHasVideo(), is(false));
+            assertThat(metadata.getMimeType(), is("text"));
+            assertThat(metadata.getResolvedUrl(), is(server.url("/article")));
+            assertThat(server.requestCount("GET", "/article"), is(1));
+            assertThat(server.requestCount("HEAD", "/article"), is(0));
+        }
+    }
+
+    @Test
+    @SneakyThrows
+    void retrieve_KeepsTheTrailingSlashOfThePath() {
+        try (StubHttpServer server = new StubHttpServer().html("/docs/", PAGE, 0)) {
+            UrlMetadataRetriever retriever = new UrlMetadataRetrieverImpl(5, 1 << 20, true, false, scheduler(),
+                    breaker(), metrics(), policy(), classifier());
+
+            UrlMetadataRetriever.UrlMetadata metadata = retriever.retrieve(server.url("/docs/?utm_source=feed#top"));
+
+            assertThat(metadata.getTitle(), is("Article"));
+            assertThat(metadata.getResolvedUrl(), is(server.url("/docs/")));
+            assertThat(server.requestCount("GET", "/docs/"), is(1));
+        }
+    }
+
+    @Test
+    @SneakyThrows
+    void retrieve_TextWithHtmlScanner() {
+        try (StubHttpServer server = new StubHttpServer().html("/article", PAGE, 0)) {
+            UrlMetadataRetriever retriever = new UrlMetadataRetrieverImpl(5, 1 << 20, true, true, scheduler(),
+                    breaker(), metrics(), policy(), classifier());
+
+            UrlMetadataRetriever.UrlMetadata metadata = retriever.retrieve(server.url("/article"));
+
+            assertThat(metadata.getTitle(), is("Article"));
+            assertThat(metadata.isHasImage(), is(true));
+            assertThat(metadata.isHasVideo(), is(false));
+        }
+    }
+
+    @Test
+    @SneakyThrows
+    void retrieve_ImageWithoutReadingBody() {
+        byte[] image = new byte[4 << 20];
+        try (StubHttpServer server = new StubHttpServer().handle("/photo.png",
+                exchange -> StubHttpServer.respond(exchange, "image/png", image, 0))) {
+            UrlMetadataRetriever retriever = new UrlMetadataRetrieverImpl(5, 1 << 20, true, false, scheduler(),
+                    breaker(), metrics(), policy(), classifier());
+
+            UrlMetadataRetriever.UrlMetadata metadata = retriever.retrieve(server.url("/photo.png"));
+
+            assertThat(metadata.getTitle(), is("photo.png"));
+            assertThat(metadata.isHasImage(), is(true));
+            assertThat(metadata.getMimeType(), is("image"));
+            assertThat(server.requestCount("GET", "/photo.png"), is(1));
+            assertThat(server.requestCount("HEAD", "/photo.png"), is(0));
+        }
+    }
+
+    @Test
+    @SneakyThrows
+    void retrieve_ClassifiedMediaWithoutWaitingForTheNetwork() {
+        try (StubHttpServer server = new StubHttpServer().handle("/photo.png",
+                exchange -> StubHttpServer.respond(exchange, "image/png", new byte[16], 500))) {
+            UrlMetadataRetriever retriever = new UrlMetadataRetrieverImpl(5, 1 << 20, true, false, scheduler(),
+                    breaker(), metrics(), policy(), new UrlMediaClassifier(new SimpleMeterRegistry(), true, true,
+                    10_000, 20, 50));
+
+            CompletableFuture<UrlMetadataRetriever.UrlMetadata> future = retriever.retrieveAsync(
+                    server.url("/photo.png"));
+
+            assertThat(future.isDone(), is(true));
+            assertThat(future.get().getTitle(), is("photo.png"));
+            assertThat(future.get().isHasImage(), is(true));
+            assertThat(future.get().getMimeType(), is("image"));
+            assertThat(future.get().getResolvedUrl(), is(server.url("/photo.png")));
+            long waitUntil = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (server.requestCount("GET", "/photo.png") == 0 && System.nanoTime() < waitUntil) {
+                Thread.sleep(10);
+            }
+            assertThat(server.requestCount("GET", "/photo.png"), is(1));
+        }
+    }
+
+    @Test
+    @SneakyThrows
+    void retrieve_FallsBackToHeadWhenGetIsNotAllowed() {
+        try (StubHttpServer server = new StubHttpServer().handle("/clip.mp4", exchange -> {
+            if ("GET".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                exchange.close();
+            } else {
+                StubHttpServer.respond(exchange, "video/mp4", new byte[0], 0);
+            }
+        })) {
+            UrlMetadataRetriever retriever = new UrlMetadataRetrieverImpl(5, 1 << 20, true, false, scheduler(),
+                    breaker(), metrics(), policy(), classifier());
+
+            UrlMetadataRetriever.UrlMetadata metadata = retriever.retrieve(server.url("/clip.mp4"));
+
+            assertThat(metadata.isHasVideo(), is(true));
+            assertThat(metadata.getMimeType(), is("video"));
+            assertThat(server.requestCount("HEAD", "/clip.mp4"), is(1));
+        }
+    }
+
+    @Test
+    @SneakyThrows
+    void retrieve_HeadThenGetWhenSingleRequestIsOff() {
+        try (StubHttpServer server = new StubHttpServer().html("/article", PAGE, 0)) {
+            UrlMetadataRetriever retriever = new UrlMetadataRetrieverImpl(5, 1 << 20, false, false, scheduler(),
+                    breaker(), metrics(), policy(), classifier());
+
+            UrlMetadataRetriever.UrlMetadata metadata = retriever.retrieve(server.url("/article"));
+
+            assertThat(metadata.getTitle(), is("Article"));
+            assertThat(server.requestCount("HEAD", "/article"), is(1));
+            assertThat(server.requestCount("GET", "/article"), is(1));
+        }
+    }
+
+    @Test
+    @SneakyThrows
+    void retrieve_UnsupportedContentType() {
+        try (StubHttpServer server = new StubHttpServer().handle("/data", exchange -> StubHttpServer.respond(
+                exchange, "application/json", "{}".getBytes(StandardCharsets.UTF_8), 0))) {
+            UrlMetadataRetriever retriever = new UrlMetadataRetrieverImpl(5, 1 << 20, true, false, scheduler(),
+                    breaker(), metrics(), policy(), classifier());
+
+            ItemRetrieverException e = assertThrows(ItemRetrieverException.class,
+                    () -> retriever.retrieve(server.url("/data")));
+
+            assertThat(e.getMessage(), is("The content type [application/json] at the specified URL is not supported."));
+        }
+    }
+
+    @Test
+    @SneakyThrows
+    void retrieve_ErrorStatus() {
+        try (StubHttpServer server = new StubHttpServer().handle("/secret", exchange -> {
+            exchange.sendResponseHeaders(403, -1);
+            exchange.close();
+        })) {
+            UrlMetadataRetriever retriever = new UrlMetadataRetrieverImpl(5, 1 << 20, true, false, scheduler(),
+                    breaker(), metrics(), policy(), classifier());
+
+            ItemRetrieverException e = assertThrows(ItemRetrieverException.class,
+                    () -> retriever.retrieve(server.url("/secret")));
+
+            assertThat(e.getMessage(), is("There is no access to the resource at the specified URL: "
+                    + server.url("/secret")));
+            assertThat(e.getStatus(), is(403));
+        }
+    }
+
+    @Test
+    @SneakyThrows
+    void retrieve_RecordsPhaseTimingsAndBodyBytes() {
+        try (StubHttpServer server = new StubHttpServer().html("/article", PAGE, 0)) {
+            SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+            UrlMetadataRetriever retriever = new UrlMetadataRetrieverImpl(5, 1 << 20, true, false, scheduler(),
+                    breaker(), new RetrieverMetrics(meterRegistry, 1000, 10), policy(), classifier());
+
+            retriever.retrieve(server.url("/article"));
+
+            for (String phase : new String[]{"queue", "connect", "body", "parse", "total"}) {
+                String family = "queue".equals(phase) ? RetrieverMetrics.UNKNOWN : "text";
+                assertThat(phase, meterRegistry.get("url.metadata.phase").tag("phase", phase)
+                        .tag("content.type", family).tag("outcome", "success").timer().count(), is(1L));
+            }
+            assertThat(meterRegistry.get("url.metadata.body.bytes").tag("content.type", "text").counter().count(),
+                    is((double) PAGE.length()));
+        }
+    }
+
+    @Test
+    @SneakyThrows
+    void revalidate_NotModifiedWhenValidatorsMatch() {
+        try (StubHttpServer server = new StubHttpServer().handle("/article", exchange -> {
+            if ("\"v1\"".equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                exchange.sendResponseHeaders(304, -1);
+                exchange.close();
+                return;
+            }
+            exchange.getResponseHeaders().add("ETag", "\"v2\"");
+            exchange.getResponseHeaders().add("Last-Modified", "Wed, 21 Oct 2026 07:28:00 GMT");
+            StubHttpServer.respond(exchange, "text/html", PAGE.getBytes(StandardCharsets.UTF_8), 0);
+        })) {
+            UrlMetadataRetriever retriever = new UrlMetadataRetrieverImpl(5, 1 << 20, true, false, scheduler(),
+                    breaker(), metrics(), policy(), classifier());
+
+            Optional<UrlMetadataRetriever.UrlMetadata> notModified = retriever
+                    .revalidateAsync(server.url("/article"), "\"v1\"", null).get(5, TimeUnit.SECONDS);
+            Optional<UrlMetadataRetriever.UrlMetadata> modified = retriever
+                    .revalidateAsync(server.url("/article"), "\"v0\"", null).get(5, TimeUnit.SECONDS);
+
+            assertThat(notModified.isPresent(), is(false));
+            assertThat(modified.get().getTitle(), is("Article"));
+            assertThat(modified.get().getEtag(), is("\"v2\""));
+            assertThat(modified.get().getLastModified(), is("Wed, 21 Oct 2026 07:28:00 GMT"));
+            assertThat(server.requestCount("GET", "/article"), is(2));
+        }
+    }
+
+    @Test
+    @SneakyThrows
+    void retrieve_FailsFastWhileHostBreakerIsOpen() {
+        try (StubHttpServer server = new StubHttpServer().handle("/down", exchange -> {
+            exchange.sendResponseHeaders(503, -1);
+            exchange.close();
+        })) {
+            SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+            HostCircuitBreaker breaker = new HostCircuitBreaker(meterRegistry, 2, 60_000, 10_000, 600_000);
+            UrlMetadataRetriever retriever = new UrlMetadataRetrieverImpl(5, 1 << 20, true, false, scheduler(), breaker,
+                    metrics(), policy(), classifier());
+
+            for (int i = 0; i < 2; i++) {
+                assertThrows(TransientRetrieverException.class, () -> retriever.retrieve(server.url("/down")));
+            }
+            TransientRetrieverException e = assertThrows(TransientRetrieverException.class,
+                    () -> retriever.retrieve(server.url("/down")));
+
+            assertThat(e.getMessage().startsWith("The host 127.0.0.1:"), is(true));
+            assertThat(server.requestCount("GET", "/down"), is(2));
+            assertThat(meterRegistry.get("url.metadata.breaker.hosts").tag("state", "open").gauge().value(), is(1.0));
+        }
+    }
+
+    @Test
+    @SneakyThrows
+    void retrieve_GivesUpOnASlowDripBodyAtTheDeadline() {
+        CountDownLatch disconnected = new CountDownLatch(1);
+        try (StubHttpServer server = new StubHttpServer().handle("/drip", exchange -> {
+            exchange.getResponseHeaders().add("Content-Type", "text/html");
+            exchange.sendResponseHeaders(200, 0);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write("<html><head>".getBytes(StandardCharsets.UTF_8));
+                for (int i = 0; i < 100; i++) {
+                    out.flush();
+                    Thread.sleep(50);
+                    out.write(' ');
+                }
+            } catch (IOException | InterruptedException e) {
+                // the client gave up
+                disconnected.countDown();
+            }
+        })) {
+            UrlMetadataRetriever retriever = new UrlMetadataRetrieverImpl(5, 1 << 20, true, false, scheduler(),
+                    breaker(), metrics(), new RetrievalPolicy(new SimpleMeterRegistry(), 300, 1, false, 200),
+                    classifier());
+            long startedAt = System.nanoTime();
+
+            TransientRetrieverException e = assertThrows(TransientRetrieverException.class,
+                    () -> retriever.retrieve(server.url("/drip")));
+
+            assertThat(e.getCause() instanceof HttpTimeoutException, is(true));
+            assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt), lessThan(2_000L));
+            assertThat(server.requestCount("GET", "/drip"), is(1));
+            assertThat(disconnected.await(2, TimeUnit.SECONDS), is(true));
+        }
+    }
+
+    private static HostRequestScheduler scheduler() {
+        return new HostRequestScheduler(new SimpleMeterRegistry(), 64, 4, 0, 1000);
+    }
+
+    private static HostCircuitBreaker breaker() {
+        return new HostCircuitBreaker(new SimpleMeterRegistry(), 5, 30_000, 10_000, 600_000);
+    }
+
+    private static RetrieverMetrics metrics() {
+        return new RetrieverMetrics(new SimpleMeterRegistry(), 1000, 10);
+    }
+
+    private static RetrievalPolicy policy() {
+        return new RetrievalPolicy(new SimpleMeterRegistry(), 30_000, 0, false, 200);
+    }
+
+    private static UrlMediaClassifier classifier() {
+        return new UrlMediaClassifier(new SimpleMeterRegistry(), false, false, 10_000, 20, 50);
+    }
+}
@@ -0,0 +1,50 @@
+package ru.practicum.javalater.item.metadata;
+
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+
+class UrlNormalizerTest {
+
+    @Test
+    void canonicalFormDropsWhatDoesNotChangeThePage() {
+        assertThat(UrlNormalizer.canonicalize(" HTTPS://Example.COM:443/a/b/?utm_source=x&id=7&UTM_Medium=y#top "),
+                is("https://example.com/a/b?id=7"));
+        assertThat(UrlNormalizer.canonicalize("http://example.com:80"), is("http://example.com/"));
+        assertThat(UrlNormalizer.canonicalize("http://example.com:8080/x/../y/"), is("http://example.com:8080/y"));
+        assertThat(UrlNormalizer.canonicalize("https://example.com/?utm_campaign=z"), is("https://example.com/"));
+        assertThat(UrlNormalizer.canonicalize("https://User@Example.com/Path?Q=1"),
+                is("https://User@example.com/Path?Q=1"));
+        assertThat(UrlNormalizer.canonicalize("not a url"), is("not a url"));
+    }
+
+    @Test
+    void normalFormKeepsThePathAsItIs() {
+        assertThat(UrlNormalizer.normalize(" HTTPS://Example.COM:443/docs/?utm_source=x&id=7#top "),
+                is("https://example.com/docs/?id=7"));
+        assertThat(UrlNormalizer.normalize("https://example.com/docs"), is("https://example.com/docs"));
+        assertThat(UrlNormalizer.normalize("http://example.com:80"), is("http://example.com/"));
+        assertThat(UrlNormalizer.canonicalize(UrlNormalizer.normalize("https://example.com/docs/")),
+                is("https://example.com/docs"));
+    }
+
+    @Test
+    void spellingsOfOneUrlShareTheHash() {
+        Long hash = UrlNormalizer.hash("https://example.com/article");
+
+        assertThat(UrlNormalizer.hash("https://EXAMPLE.com:443/article/?utm_source=feed#comments"), is(hash));
+        assertThat(UrlNormalizer.hash("https://example.com/article?page=2"), not(hash));
+        assertThat(UrlNormalizer.hash(null) == null, is(true));
+    }
+
+    @Test
+    void domainIsTheLowerCasedHostWithoutWww() {
+        assertThat(UrlNormalizer.domain("https://WWW.Example.com:8080/a?b=1"), is("example.com"));
+        assertThat(UrlNormalizer.domain("https://user@news.example.org/"), is("news.example.org"));
+        assertThat(UrlNormalizer.domain("https://wwwexample.com/"), is("wwwexample.com"));
+        assertThat(UrlNormalizer.domain("not a url") == null, is(true));
+        assertThat(UrlNormalizer.domain(null) == null, is(true));
+    }
+}
@@ -0,0 +1,88 @@
+package ru.practicum.javalater.item.repository;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import ru.practicum.javalater.item.entity.Item;
+
+import javax.sql.DataSource;
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.Set;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * The PostgreSQL upsert cannot run on H2, so its statement is checked against a mocked connection.
+ */
+@ExtendWith(MockitoExtension.class)
+class ItemJdbcRepositoryTest {
+
+    @Mock
+    private DataSource dataSource;
+
+    @Mock
+    private Connection connection;
+
+    @Mock
+    private DatabaseMetaData metaData;
+
+    @Mock
+    private PreparedStatement statement;
+
+    @Mock
+    private ResultSet resultSet;
+
+    @Mock
+    private Array tagIds;
+
+    @Mock
+    private TagDictionary tagDictionary;
+
+    @Test
+    void postgresUpsertBindsEveryParameterOfItsStatement() throws SQLException {
+        when(dataSource.getConnection()).thenReturn(connection);
+        when(connection.getMetaData()).thenReturn(metaData);
+        when(metaData.getDatabaseProductName()).thenReturn("PostgreSQL");
+        when(connection.prepareStatement(ItemJdbcRepository.UPSERT_ITEM_WITH_TAGS)).thenReturn(statement);
+        when(connection.createArrayOf(eq("integer"), any())).thenReturn(tagIds);
+        when(statement.executeQuery()).thenReturn(resultSet);
+        when(resultSet.next()).thenReturn(true);
+        when(resultSet.getLong("id")).thenReturn(7L);
+        when(resultSet.getBoolean("created")).thenReturn(true);
+        when(tagDictionary.idsOf(Set.of("java"))).thenReturn(Map.of("java", 3));
+        ItemJdbcRepository repository = new ItemJdbcRepository(new JdbcTemplate(dataSource),
+                new NamedParameterJdbcTemplate(dataSource), tagDictionary);
+        Item item = Item.builder()
+                .url("https://www.example.com/a")
+                .resolvedUrl("https://www.example.com/a")
+                .unread(true)
+                .tags(Set.of("java"))
+                .build();
+
+        ItemJdbcRepository.SavedItem saved = repository.upsert(1, item);
+
+        assertThat(saved, is(new ItemJdbcRepository.SavedItem(7, true)));
+        assertThat(ItemJdbcRepository.UPSERT_ITEM_WITH_TAGS.chars().filter(c -> c == '?').count(), is(16L));
+        verify(statement).setString(14, "example.com");
+        verify(statement).setString(15, "https://www.example.com/a");
+        verify(statement).setArray(16, tagIds);
+        verify(statement, never()).setArray(eq(15), any());
+        verify(statement, never()).setObject(eq(16), any(), anyInt());
+    }
+}
@@ -0,0 +1,60 @@
+package ru.practicum.javalater.item.repository;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.practicum.javalater.item.dto.ResolutionState;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+
+@JdbcTest
+@Import({ItemJdbcRepository.class, TagDictionary.class})
+class ItemStaleLookupTest {
+
+    private static final Instant NOW = Instant.now();
+
+    private static final Instant LAST_WEEK = NOW.minus(Duration.ofDays(7));
+
+    @Autowired
+    private ItemJdbcRepository itemJdbcRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void itemsCountFromTheirLastCheckWhateverItFound() {
+        jdbcTemplate.update("INSERT INTO users (first_name, last_name) VALUES ('Stale', 'Items')");
+        long userId = jdbcTemplate.queryForObject("SELECT MAX(id) FROM users", Long.class);
+        long neverChecked = item(userId, ResolutionState.RESOLVED, LAST_WEEK);
+        long notModified = item(userId, ResolutionState.RESOLVED, LAST_WEEK);
+        long unchanged = item(userId, ResolutionState.RESOLVED, LAST_WEEK);
+        long unreachable = item(userId, ResolutionState.FAILED, LAST_WEEK);
+        long neverResolved = item(userId, ResolutionState.FAILED, null);
+        itemJdbcRepository.updateResolutionState(notModified, ResolutionState.RESOLVED, NOW);
+        itemJdbcRepository.updateValidators(unchanged, "\"e\"", null, NOW);
+        itemJdbcRepository.updateCheckedAt(unreachable, NOW);
+
+        List<Long> stale = itemJdbcRepository.findStale(NOW.minus(Duration.ofDays(1)), NOW, 0, 10).stream()
+                .map(ItemJdbcRepository.StaleItem::getId)
+                .collect(Collectors.toList());
+
+        assertThat(stale, contains(neverChecked, neverResolved));
+    }
+
+    private long item(long userId, ResolutionState state, Instant dateResolved) {
+        jdbcTemplate.update("INSERT INTO items (user_id, url, resolved_url, unread, resolution_state, date_resolved, "
+                        + "date_added) VALUES (?, ?, ?, TRUE, ?, ?, ?)",
+                userId, "https://example.com/" + System.nanoTime(), null, state.name(),
+                dateResolved == null ? null : Timestamp.from(dateResolved), Timestamp.from(LAST_WEEK));
+        return jdbcTemplate.queryForObject("SELECT MAX(id) FROM items", Long.class);
+    }
+}
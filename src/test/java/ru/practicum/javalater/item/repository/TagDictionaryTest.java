@@ -0,0 +1,54 @@
+package ru.practicum.javalater.item.repository;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.transaction.TestTransaction;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+@JdbcTest
+@Import(TagDictionary.class)
+class TagDictionaryTest {
+
+    @Autowired
+    private TagDictionary tagDictionary;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void storesEveryNameOnceAndMapsItBothWays() {
+        Map<String, Integer> ids = tagDictionary.idsOf(List.of("news", "later", "news"));
+
+        assertThat(ids.size(), is(2));
+        assertThat(tagDictionary.idsOf(List.of("later", "java")).get("later"), is(ids.get("later")));
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM tag_names", Integer.class), is(3));
+        assertThat(tagDictionary.nameOf(ids.get("news")), is("news"));
+        assertThat(tagDictionary.namesOf(ids.values()), is(Map.of(ids.get("news"), "news",
+                ids.get("later"), "later")));
+    }
+
+    @Test
+    void findingIdsDoesNotAddUnknownNames() {
+        int news = tagDictionary.idOf("news");
+
+        assertThat(tagDictionary.findIds(List.of("news", "unknown")), is(Map.of("news", news)));
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM tag_names", Integer.class), is(1));
+    }
+
+    @Test
+    void namesOfRolledBackTransactionsAreNotCached() {
+        tagDictionary.idOf("discarded");
+        TestTransaction.flagForRollback();
+        TestTransaction.end();
+
+        assertThat(tagDictionary.findIds(List.of("discarded")), is(Map.of()));
+    }
+}
@@ -0,0 +1,183 @@
+package ru.practicum.javalater.item.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import ru.practicum.javalater.item.dto.BatchItemResult;
+import ru.practicum.javalater.item.dto.PostItemDto;
+import ru.practicum.javalater.item.entity.Item;
+import ru.practicum.javalater.item.exception.ItemRetrieverException;
+import ru.practicum.javalater.item.metadata.UrlMetadataRetriever;
+import ru.practicum.javalater.item.metadata.UrlMetadataRetrieverImpl;
+import ru.practicum.javalater.item.repository.ItemJdbcRepository;
+import ru.practicum.javalater.user.entity.User;
+import ru.practicum.javalater.user.repository.UserRepository;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.anyLong;
+import static org.mockito.Mockito.anyString;
+import static org.mockito.Mockito.eq;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ItemBatchServiceImplTest {
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private UrlMetadataRetriever urlMetadataRetriever;
+
+    @Mock
+    private ItemJdbcRepository itemJdbcRepository;
+
+    @Mock
+    private ItemIndex itemIndex;
+
+    @Captor
+    private ArgumentCaptor<Collection<Item>> itemsCaptor;
+
+    private ItemBatchServiceImpl itemBatchService;
+
+    @BeforeEach
+    void setUp() {
+        itemBatchService = new ItemBatchServiceImpl(userRepository, urlMetadataRetriever, itemJdbcRepository, itemIndex,
+                2, 5);
+    }
+
+    @Test
+    void addNewItems_shouldReportCreatedMergedAndFailedPerUrl() {
+        long userId = 1;
+        when(userRepository.findById(userId)).thenReturn(Optional.of(new User()));
+        when(urlMetadataRetriever.retrieveAsync("http://a.com"))
+                .thenReturn(CompletableFuture.completedFuture(metadata("http://a.com/")));
+        when(urlMetadataRetriever.retrieveAsync("http://A.com/"))
+                .thenReturn(CompletableFuture.completedFuture(metadata("http://a.com/")));
+        when(urlMetadataRetriever.retrieveAsync("http://broken.com"))
+                .thenReturn(CompletableFuture.failedFuture(new ItemRetrieverException("boom")));
+        when(itemJdbcRepository.saveAll(eq(userId), itemsCaptor.capture()))
+                .thenReturn(Map.of("http://a.com/", new ItemJdbcRepository.SavedItem(7, true)));
+
+        List<BatchItemResult> results = itemBatchService.addNewItems(userId, List.of(
+                postItem("http://a.com", "news"),
+                postItem("http://broken.com"),
+                postItem("http://A.com/", "java")));
+
+        assertThat(results, contains(
+                new BatchItemResult("http://a.com", BatchItemResult.Status.CREATED, 7L, null),
+                BatchItemResult.failed("http://broken.com", "boom"),
+                new BatchItemResult("http://A.com/", BatchItemResult.Status.MERGED, 7L, null)));
+        assertThat(itemsCaptor.getValue().size(), is(1));
+        assertThat(itemsCaptor.getValue().iterator().next().getTags(), containsInAnyOrder("news", "java"));
+    }
+
+    @Test
+    void addNewItems_shouldSaveSlashSpellingsOfOneUrlAsOneItem() {
+        long userId = 1;
+        when(userRepository.findById(userId)).thenReturn(Optional.of(new User()));
+        when(urlMetadataRetriever.retrieveAsync("http://a.com/docs"))
+                .thenReturn(CompletableFuture.completedFuture(metadata("http://a.com/docs")));
+        when(urlMetadataRetriever.retrieveAsync("http://a.com/docs/"))
+                .thenReturn(CompletableFuture.completedFuture(metadata("http://a.com/docs/")));
+        when(itemJdbcRepository.saveAll(eq(userId), itemsCaptor.capture()))
+                .thenReturn(Map.of("http://a.com/docs", new ItemJdbcRepository.SavedItem(7, true)));
+
+        List<BatchItemResult> results = itemBatchService.addNewItems(userId, List.of(
+                postItem("http://a.com/docs", "news"),
+                postItem("http://a.com/docs/", "java")));
+
+        assertThat(results, contains(
+                new BatchItemResult("http://a.com/docs", BatchItemResult.Status.CREATED, 7L, null),
+                new BatchItemResult("http://a.com/docs/", BatchItemResult.Status.MERGED, 7L, null)));
+        assertThat(itemsCaptor.getValue().size(), is(1));
+        assertThat(itemsCaptor.getValue().iterator().next().getTags(), containsInAnyOrder("news", "java"));
+    }
+
+    @Test
+    void addNewItems_shouldKeepParallelismBounded() {
+        long userId = 1;
+        when(userRepository.findById(userId)).thenReturn(Optional.of(new User()));
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        List<CompletableFuture<UrlMetadataRetriever.UrlMetadata>> pending = new ArrayList<>();
+        when(urlMetadataRetriever.retrieveAsync(anyString())).thenAnswer(invocation -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            CompletableFuture<UrlMetadataRetriever.UrlMetadata> future = new CompletableFuture<>();
+            pending.add(future);
+            String url = invocation.getArgument(0);
+            new Thread(() -> {
+                running.decrementAndGet();
+                future.complete(metadata(url));
+            }).start();
+            return future;
+        });
+        when(itemJdbcRepository.saveAll(eq(userId), itemsCaptor.capture())).thenReturn(Map.of(
+                "http://1.com", new ItemJdbcRepository.SavedItem(1, true),
+                "http://2.com", new ItemJdbcRepository.SavedItem(2, true),
+                "http://3.com", new ItemJdbcRepository.SavedItem(3, true),
+                "http://4.com", new ItemJdbcRepository.SavedItem(4, false)));
+
+        List<BatchItemResult> results = itemBatchService.addNewItems(userId, List.of(
+                postItem("http://1.com"), postItem("http://2.com"), postItem("http://3.com"), postItem("http://4.com")));
+
+        assertThat(maxRunning.get(), lessThanOrEqualTo(2));
+        assertThat(pending.size(), is(4));
+        assertThat(results.get(3).getStatus(), is(BatchItemResult.Status.MERGED));
+    }
+
+    @Test
+    void addNewItems_whenBatchIsTooLarge_shouldThrowIllegalArgumentException() {
+        List<PostItemDto> items = Collections.nCopies(6, postItem("http://a.com"));
+
+        assertThrows(IllegalArgumentException.class, () -> itemBatchService.addNewItems(1L, items));
+        verifyNoInteractions(urlMetadataRetriever, itemJdbcRepository);
+    }
+
+    @Test
+    void addNewItems_whenUserNotFound_shouldThrowNoSuchElementException() {
+        when(userRepository.findById(anyLong())).thenReturn(Optional.empty());
+
+        assertThrows(NoSuchElementException.class,
+                () -> itemBatchService.addNewItems(1L, List.of(postItem("http://a.com"))));
+        verifyNoInteractions(urlMetadataRetriever, itemJdbcRepository);
+    }
+
+    private static PostItemDto postItem(String url, String... tags) {
+        PostItemDto postItemDto = new PostItemDto();
+        postItemDto.setUrl(url);
+        postItemDto.setTags(Set.of(tags));
+        return postItemDto;
+    }
+
+    private static UrlMetadataRetriever.UrlMetadata metadata(String resolvedUrl) {
+        return UrlMetadataRetrieverImpl.UrlMetadataImpl.builder()
+                .normalUrl(resolvedUrl)
+                .resolvedUrl(resolvedUrl)
+                .mimeType("text")
+                .title("title")
+                .dateResolved(Instant.now())
+                .build();
+    }
+}
@@ -0,0 +1,307 @@
+package ru.practicum.javalater.item.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.javalater.exception.InvalidCursorException;
+import ru.practicum.javalater.item.dto.GetItemRequest;
+import ru.practicum.javalater.item.dto.ItemDto;
+import ru.practicum.javalater.item.dto.ItemPage;
+import ru.practicum.javalater.item.dto.ModifyItemRequest;
+import ru.practicum.javalater.item.dto.PostItemDto;
+import ru.practicum.javalater.item.entity.Item;
+import ru.practicum.javalater.item.mapper.ItemMapper;
+import ru.practicum.javalater.item.mapper.ItemMapperImpl;
+import ru.practicum.javalater.item.metadata.UrlMetadataRetriever;
+import ru.practicum.javalater.item.metadata.UrlMetadataRetrieverImpl;
+import ru.practicum.javalater.item.repository.ItemJdbcRepository;
+import ru.practicum.javalater.item.repository.ItemQueryRepository;
+import ru.practicum.javalater.item.repository.ItemRepository;
+import ru.practicum.javalater.item.repository.TagDictionary;
+import ru.practicum.javalater.user.entity.User;
+import ru.practicum.javalater.user.repository.UserRepository;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@DataJpaTest
+@Import({ItemServiceImpl.class, ItemMapperImpl.class, ItemQueryRepository.class, ItemJdbcRepository.class,
+        TagDictionary.class, ItemIndex.class, SimpleMeterRegistry.class})
+@TestPropertySource(properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "items.index.enabled=true"})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ItemIndexTest {
+
+    private static final String[] MIME_TYPES = {"text", "image", "video", null};
+
+    private static final String[] TITLES = {"beta", "alpha", null, "gamma", "Alpha", "beta"};
+
+    @Autowired
+    private ItemService itemService;
+
+    @Autowired
+    private ItemRepository itemRepository;
+
+    @Autowired
+    private ItemQueryRepository itemQueryRepository;
+
+    @SpyBean
+    private ItemJdbcRepository itemJdbcRepository;
+
+    @Autowired
+    private TagDictionary tagDictionary;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ItemMapper itemMapper;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @MockBean
+    private UrlMetadataRetriever urlMetadataRetriever;
+
+    @MockBean
+    private ItemMetadataUpdater itemMetadataUpdater;
+
+    private ItemService sqlOnly;
+
+    private long userId;
+
+    private final List<Long> itemIds = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        sqlOnly = new ItemServiceImpl(itemRepository, itemQueryRepository, itemJdbcRepository, tagDictionary,
+                userRepository, itemMapper, urlMetadataRetriever, itemMetadataUpdater,
+                new ItemIndex(itemJdbcRepository, tagDictionary, new SimpleMeterRegistry(), false, 1, 1, 1));
+        User user = userRepository.save(User.builder().firstName("Indexed").lastName("Reader").build());
+        userId = user.getId();
+        Instant base = Instant.parse("2026-01-01T00:00:00.123456Z");
+        for (int i = 0; i < 30; i++) {
+            Set<String> tags = new HashSet<>();
+            if (i % 2 == 0) {
+                tags.add("even");
+            }
+            if (i % 3 == 0) {
+                tags.add("third");
+            }
+            String site = i % 4 == 0 ? "www.example.com" : "site" + i % 3 + ".org";
+            itemIds.add(itemRepository.save(Item.builder()
+                    .user(user)
+                    .url("https://" + site + "/" + i)
+                    .resolvedUrl("https://" + site + "/" + i)
+                    .mimeType(MIME_TYPES[i % MIME_TYPES.length])
+                    .title(TITLES[i % TITLES.length])
+                    .dateResolved(i % 7 == 6 ? null : base.plusSeconds(i % 4))
+                    .unread(i % 5 != 0)
+                    .tags(tags)
+                    .build()).getId());
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("DELETE FROM item_tags");
+        jdbcTemplate.update("DELETE FROM items");
+        jdbcTemplate.update("DELETE FROM users");
+    }
+
+    @Test
+    void pagesMatchTheDatabaseForEveryFilterAndSort() {
+        assertSameAsDatabase();
+        assertSameFacetsAsDatabase();
+        verify(itemJdbcRepository, times(1)).findIndexed(userId, 50001);
+    }
+
+    @Test
+    void staysConsistentThroughAddModifyAndDelete() {
+        assertSameAsDatabase();
+
+        // the tags are loaded lazily, which a request gets from the open session in view
+        transactionTemplate.executeWithoutResult(status -> {
+            itemService.modifyItem(userId, new ModifyItemRequest(itemIds.get(0), false, List.of("third", "new"),
+                    true));
+            itemService.modifyItem(userId, new ModifyItemRequest(itemIds.get(1), true, List.of(), false));
+        });
+        itemService.deleteItem(userId, itemIds.get(2));
+        when(urlMetadataRetriever.retrieve("https://example.com/added"))
+                .thenReturn(UrlMetadataRetrieverImpl.UrlMetadataImpl.builder()
+                        .resolvedUrl("https://example.com/added")
+                        .mimeType("video")
+                        .title("Added")
+                        .dateResolved(Instant.parse("2026-01-01T00:00:01.5Z"))
+                        .build());
+        itemService.addNewItem(userId, new PostItemDto("https://example.com/added", Set.of("even", "new")));
+
+        assertSameAsDatabase();
+        assertSameFacetsAsDatabase();
+        verify(itemJdbcRepository, times(1)).findIndexed(userId, 50001);
+    }
+
+    @Test
+    void titleCursorsStayOnThePathThatIssuedThem() {
+        GetItemRequest byTitle = GetItemRequest.of(userId, "all", "all", "title", 5, null);
+        ItemPage fromDatabase = sqlOnly.searchItems(byTitle);
+        byTitle.setCursor(fromDatabase.getNextCursor());
+
+        ItemPage next = itemService.searchItems(byTitle);
+
+        assertThat(ids(next.getItems()), is(ids(sqlOnly.searchItems(byTitle).getItems())));
+        verify(itemJdbcRepository, never()).findIndexed(anyLong(), anyInt());
+
+        byTitle.setCursor(null);
+        byTitle.setCursor(itemService.searchItems(byTitle).getNextCursor());
+
+        assertThrows(InvalidCursorException.class, () -> sqlOnly.searchItems(byTitle));
+        assertThat(ids(itemService.searchItems(byTitle).getItems()), is(ids(next.getItems())));
+    }
+
+    @Test
+    void evictedUsersAreLoadedAgain() {
+        ItemIndex itemIndex = new ItemIndex(itemJdbcRepository, tagDictionary, new SimpleMeterRegistry(), true,
+                1000, 1000, 1);
+        GetItemRequest byTitle = GetItemRequest.of(userId, "all", "all", "title", 100, null);
+        List<Long> before = itemIndex.findIds(byTitle, null, 100).orElseThrow();
+        jdbcTemplate.update("UPDATE items SET title = 'zeta' WHERE id = ?", itemIds.get(1));
+
+        List<Long> stale = itemIndex.findIds(byTitle, null, 100).orElseThrow();
+        itemIndex.evict(userId);
+        List<Long> reloaded = itemIndex.findIds(byTitle, null, 100).orElseThrow();
+
+        assertThat(stale, is(before));
+        assertThat(reloaded, is(ids(walk(sqlOnly, byTitle))));
+        assertThat(reloaded.equals(before), is(false));
+        verify(itemJdbcRepository, times(2)).findIndexed(userId, 1001);
+    }
+
+    @Test
+    void changesOfOtherUsersDoNotStopALoad() {
+        ItemIndex itemIndex = new ItemIndex(itemJdbcRepository, tagDictionary, new SimpleMeterRegistry(), true,
+                1000, 1000, 1);
+        doAnswer(invocation -> {
+            // a user whose id falls into the same lock stripe
+            itemIndex.evict(userId + 64);
+            return invocation.callRealMethod();
+        }).when(itemJdbcRepository).findIndexed(userId, 1001);
+
+        assertThat(itemIndex.findIds(GetItemRequest.of(userId, "all", "all", "newest", 10, null), null, 10)
+                .isPresent(), is(true));
+        verify(itemJdbcRepository, times(1)).findIndexed(userId, 1001);
+    }
+
+    @Test
+    void loadsOverlappingAChangeAreRetried() {
+        ItemIndex itemIndex = new ItemIndex(itemJdbcRepository, tagDictionary, new SimpleMeterRegistry(), true,
+                1000, 1000, 1);
+        AtomicInteger loads = new AtomicInteger();
+        doAnswer(invocation -> {
+            if (loads.incrementAndGet() == 1) {
+                itemIndex.evictItem(itemIds.get(0));
+            }
+            return invocation.callRealMethod();
+        }).when(itemJdbcRepository).findIndexed(userId, 1001);
+
+        assertThat(itemIndex.findIds(GetItemRequest.of(userId, "all", "all", "newest", 10, null), null, 10)
+                .isPresent(), is(true));
+        assertThat(itemIndex.findIds(GetItemRequest.of(userId, "all", "all", "newest", 10, null), null, 10)
+                .isPresent(), is(true));
+        verify(itemJdbcRepository, times(2)).findIndexed(userId, 1001);
+    }
+
+    @Test
+    void usersWithTooManyItemsAreLeftToTheDatabase() {
+        ItemIndex itemIndex = new ItemIndex(itemJdbcRepository, tagDictionary, new SimpleMeterRegistry(), true,
+                1000, 10, 1);
+
+        assertThat(itemIndex.findIds(GetItemRequest.of(userId, "all", "all", "newest", 10, null), null, 10)
+                .isPresent(), is(false));
+        assertThat(itemIndex.findIds(GetItemRequest.of(userId, "all", "all", "newest", 10, null), null, 10)
+                .isPresent(), is(false));
+        verify(itemJdbcRepository, times(1)).findIndexed(userId, 11);
+        verify(itemJdbcRepository, times(0)).findTagIdsByUserId(anyLong());
+    }
+
+    private void assertSameAsDatabase() {
+        for (String sort : new String[]{"newest", "oldest", "title"}) {
+            for (String state : new String[]{"all", "unread", "read"}) {
+                for (String contentType : new String[]{"all", "article", "video"}) {
+                    for (List<String> tags : Arrays.asList(null, List.of("even"), List.of("third", "new"),
+                            List.of("even", "third"), List.of("even", "unknown"))) {
+                        for (String tagMode : new String[]{"any", "all"}) {
+                            GetItemRequest request = GetItemRequest.of(userId, state, contentType, sort, 4, tags,
+                                    tagMode, null);
+                            assertThat(request.toString(), walk(itemService, request), is(walk(sqlOnly, request)));
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private void assertSameFacetsAsDatabase() {
+        for (String state : new String[]{"all", "unread", "read"}) {
+            for (String contentType : new String[]{"all", "article", "video"}) {
+                for (List<String> tags : Arrays.asList(null, List.of("even"), List.of("even", "third"),
+                        List.of("even", "unknown"))) {
+                    for (String tagMode : new String[]{"any", "all"}) {
+                        GetItemRequest request = GetItemRequest.of(userId, state, contentType, "newest", 2, tags,
+                                tagMode, null);
+                        assertThat(request.toString(), itemService.getFacets(request),
+                                is(sqlOnly.getFacets(request)));
+                    }
+                }
+            }
+        }
+    }
+
+    private static List<Long> ids(List<ItemDto> items) {
+        return items.stream().map(ItemDto::getId).collect(Collectors.toList());
+    }
+
+    private static List<ItemDto> walk(ItemService service, GetItemRequest request) {
+        List<ItemDto> items = new ArrayList<>();
+        String cursor = null;
+        do {
+            request.setCursor(cursor);
+            ItemPage page = service.searchItems(request);
+            items.addAll(page.getItems());
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+        return items.stream().peek(item -> item.setTags(new HashSet<>(item.getTags()))).collect(Collectors.toList());
+    }
+}
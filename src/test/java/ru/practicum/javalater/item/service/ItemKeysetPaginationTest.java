@@ -0,0 +1,135 @@
+package ru.practicum.javalater.item.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.TestPropertySource;
+import ru.practicum.javalater.item.dto.GetItemRequest;
+import ru.practicum.javalater.item.dto.ItemDto;
+import ru.practicum.javalater.item.dto.ItemPage;
+import ru.practicum.javalater.item.entity.Item;
+import ru.practicum.javalater.item.mapper.ItemMapperImpl;
+import ru.practicum.javalater.item.metadata.UrlMetadataRetriever;
+import ru.practicum.javalater.item.repository.ItemJdbcRepository;
+import ru.practicum.javalater.item.repository.ItemQueryRepository;
+import ru.practicum.javalater.item.repository.TagDictionary;
+import ru.practicum.javalater.item.repository.ItemRepository;
+import ru.practicum.javalater.user.entity.User;
+import ru.practicum.javalater.user.repository.UserRepository;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@DataJpaTest
+@Import({ItemServiceImpl.class, ItemMapperImpl.class, ItemQueryRepository.class, ItemJdbcRepository.class,
+        TagDictionary.class, ItemIndex.class, SimpleMeterRegistry.class})
+@TestPropertySource(properties = "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect")
+class ItemKeysetPaginationTest {
+
+    private static final String[] TITLES = {"beta", "alpha", null, "gamma", "alpha", "beta", null, "delta"};
+
+    @Autowired
+    private ItemService itemService;
+
+    @Autowired
+    private ItemRepository itemRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @MockBean
+    private UrlMetadataRetriever urlMetadataRetriever;
+
+    @MockBean
+    private ItemMetadataUpdater itemMetadataUpdater;
+
+    private long userId;
+
+    private final List<Item> saved = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        userId = userRepository.save(User.builder().firstName("Page").lastName("Walker").build()).getId();
+        User other = userRepository.save(User.builder().firstName("Other").lastName("User").build());
+        Instant base = Instant.parse("2026-01-01T00:00:00.123456Z");
+        for (int i = 0; i < 23; i++) {
+            Instant dateResolved = i % 5 == 4 ? null : base.plusSeconds(i % 3);
+            saved.add(itemRepository.save(item(userId, i, TITLES[i % TITLES.length], dateResolved)));
+            itemRepository.save(item(other.getId(), i, "other", base));
+        }
+    }
+
+    @Test
+    void cursorsWalkEverySortModeInOrderWithoutGapsOrRepeats() {
+        Comparator<Item> byId = Comparator.comparing(Item::getId);
+        Comparator<Item> byDate = Comparator.comparing(Item::getDateResolved,
+                Comparator.nullsLast(Comparator.naturalOrder()));
+        Comparator<Item> byTitle = Comparator.comparing(Item::getTitle,
+                Comparator.nullsLast(Comparator.naturalOrder()));
+
+        assertThat(walk("newest", 4), is(expected(byDate.thenComparing(byId))));
+        assertThat(walk("oldest", 4), is(expected(Comparator.comparing(Item::getDateResolved,
+                Comparator.nullsLast(Comparator.<Instant>reverseOrder())).thenComparing(byId.reversed()))));
+        assertThat(walk("title", 4), is(expected(byTitle.thenComparing(byId))));
+        assertThat(walk("title", 1), is(expected(byTitle.thenComparing(byId))));
+        assertThat(walk("newest", 100), is(expected(byDate.thenComparing(byId))));
+    }
+
+    @Test
+    void lastPageHasNoCursorAndForeignCursorIsRejected() {
+        ItemPage first = itemService.searchItems(GetItemRequest.of(userId, "all", "all", "title", 20, null));
+        ItemPage last = itemService.searchItems(GetItemRequest.of(userId, "all", "all", "title", 20, null,
+                first.getNextCursor()));
+
+        assertThat(first.getItems().size(), is(20));
+        assertThat(last.getItems().size(), is(3));
+        assertThat(last.getNextCursor() == null, is(true));
+        assertThrows(IllegalArgumentException.class, () -> itemService.searchItems(
+                GetItemRequest.of(userId, "all", "all", "newest", 20, null, first.getNextCursor())));
+        assertThrows(IllegalArgumentException.class, () -> itemService.searchItems(
+                GetItemRequest.of(userId, "all", "all", "newest", 20, null, "not a cursor")));
+    }
+
+    private List<Long> walk(String sort, int limit) {
+        List<Long> ids = new ArrayList<>();
+        String cursor = null;
+        do {
+            ItemPage page = itemService.searchItems(GetItemRequest.of(userId, "all", "all", sort, limit, null,
+                    cursor));
+            page.getItems().stream().map(ItemDto::getId).forEach(ids::add);
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+        return ids;
+    }
+
+    private List<Long> expected(Comparator<Item> order) {
+        return saved.stream()
+                .sorted(order)
+                .map(Item::getId)
+                .collect(Collectors.toList());
+    }
+
+    private static Item item(long userId, int i, String title, Instant dateResolved) {
+        return Item.builder()
+                .user(User.builder().id(userId).build())
+                .url("https://example.com/" + i)
+                .title(title)
+                .dateResolved(dateResolved)
+                .unread(true)
+                .tags(new HashSet<>(Set.of("tag")))
+                .build();
+    }
+}
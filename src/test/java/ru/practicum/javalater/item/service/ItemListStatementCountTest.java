@@ -0,0 +1,147 @@
+package ru.practicum.javalater.item.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.TestPropertySource;
+import ru.practicum.javalater.item.dto.FacetCount;
+import ru.practicum.javalater.item.dto.GetItemRequest;
+import ru.practicum.javalater.item.dto.ItemDto;
+import ru.practicum.javalater.item.dto.ItemFacets;
+import ru.practicum.javalater.item.dto.ItemPage;
+import ru.practicum.javalater.item.entity.Item;
+import ru.practicum.javalater.item.mapper.ItemMapperImpl;
+import ru.practicum.javalater.item.metadata.UrlMetadataRetriever;
+import ru.practicum.javalater.item.repository.ItemJdbcRepository;
+import ru.practicum.javalater.item.repository.ItemQueryRepository;
+import ru.practicum.javalater.item.repository.TagDictionary;
+import ru.practicum.javalater.user.entity.User;
+
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+@DataJpaTest
+@Import({ItemServiceImpl.class, ItemMapperImpl.class, ItemQueryRepository.class, ItemJdbcRepository.class,
+        TagDictionary.class, ItemIndex.class, SimpleMeterRegistry.class})
+@TestPropertySource(properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.properties.hibernate.generate_statistics=true"})
+class ItemListStatementCountTest {
+
+    @Autowired
+    private ItemService itemService;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @MockBean
+    private UrlMetadataRetriever urlMetadataRetriever;
+
+    @MockBean
+    private ItemMetadataUpdater itemMetadataUpdater;
+
+    private long userId;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        User user = entityManager.persist(User.builder().firstName("Many").lastName("Tags").build());
+        userId = user.getId();
+        for (int i = 0; i < 50; i++) {
+            entityManager.persist(Item.builder()
+                    .user(user)
+                    .url("https://example.com/" + i)
+                    .title("Item " + i)
+                    .dateResolved(Instant.parse("2026-01-01T00:00:00Z").plusSeconds(i))
+                    .unread(true)
+                    .tags(new HashSet<>(Set.of("tag" + i % 3, "common")))
+                    .build());
+        }
+        entityManager.flush();
+        entityManager.clear();
+        statistics = entityManager.getEntityManager().getEntityManagerFactory()
+                .unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    void pageOfItemsWithTagsTakesThreeStatementsWhateverItsSize() {
+        for (int limit : new int[]{5, 40}) {
+            entityManager.clear();
+            statistics.clear();
+
+            ItemPage page = itemService.searchItems(GetItemRequest.of(userId, "all", "all", "newest", limit,
+                    List.of("common")));
+
+            assertThat(page.getItems().size(), is(limit));
+            assertThat(page.getItems().get(0).getTags(), is(Set.of("tag0", "common")));
+            // the user lookup, the item columns and the tags of the page
+            assertThat(statistics.getPrepareStatementCount(), is(3L));
+        }
+    }
+
+    @Test
+    void otherListEndpointsUseTheSameReadPath() {
+        ItemPage byTags = itemService.findByUserIdAndTags(userId, Set.of("tag1"), "any", 100, null);
+        long afterTags = statistics.getPrepareStatementCount();
+        entityManager.clear();
+        ItemPage all = itemService.getItems(userId, 100, null);
+
+        assertThat(byTags.getItems().size(), is(17));
+        assertThat(byTags.getItems().stream().allMatch(item -> item.getTags().contains("tag1")), is(true));
+        assertThat(all.getItems().stream().map(ItemDto::getTitle).findFirst().orElse(null), is("Item 0"));
+        assertThat(afterTags, is(3L));
+        assertThat(statistics.getPrepareStatementCount() - afterTags, is(3L));
+    }
+
+    @Test
+    void allTagsMatchOnlyItemsCarryingEveryTag() {
+        ItemPage page = itemService.findByUserIdAndTags(userId, Set.of("tag1", "common"), "all", 10, null);
+        ItemPage rest = itemService.findByUserIdAndTags(userId, Set.of("tag1", "common"), "all", 10,
+                page.getNextCursor());
+        ItemPage none = itemService.findByUserIdAndTags(userId, Set.of("tag1", "tag2"), "all", 10, null);
+        ItemPage unknown = itemService.findByUserIdAndTags(userId, Set.of("tag1", "unknown"), "all", 10, null);
+
+        assertThat(page.getItems().size(), is(10));
+        assertThat(rest.getItems().size(), is(7));
+        assertThat(rest.getNextCursor(), is((String) null));
+        assertThat(page.getItems().stream().allMatch(item -> item.getTags().contains("tag1")), is(true));
+        assertThat(none.getItems().size(), is(0));
+        assertThat(unknown.getItems().size(), is(0));
+    }
+
+    @Test
+    void facetsTakeTwoGroupedStatements() {
+        ItemFacets facets = itemService.getFacets(GetItemRequest.of(userId, "all", "all", "newest", 2,
+                List.of("tag1")));
+
+        assertThat(facets.getStates(), is(List.of(new FacetCount("unread", 17), new FacetCount("read", 0))));
+        assertThat(facets.getContentTypes(), is(List.of(new FacetCount("article", 0), new FacetCount("image", 0),
+                new FacetCount("video", 0))));
+        assertThat(facets.getTags(), is(List.of(new FacetCount("common", 17), new FacetCount("tag1", 17))));
+        assertThat(facets.getDomains(), is(List.of(new FacetCount("example.com", 17))));
+        // the user lookup, the grouped items and the grouped tags
+        assertThat(statistics.getPrepareStatementCount(), is(3L));
+    }
+
+    @Test
+    void unknownTagMatchesNothing() {
+        ItemPage page = itemService.searchItems(GetItemRequest.of(userId, "all", "all", "newest", 10,
+                List.of("unknown")));
+
+        assertThat(page.getItems().size(), is(0));
+    }
+}
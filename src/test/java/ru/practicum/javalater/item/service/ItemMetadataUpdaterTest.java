@@ -0,0 +1,74 @@
+package ru.practicum.javalater.item.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import ru.practicum.javalater.item.entity.Item;
+import ru.practicum.javalater.item.metadata.UrlMetadataRetrieverImpl;
+import ru.practicum.javalater.item.repository.ItemJdbcRepository;
+import ru.practicum.javalater.item.repository.TagDictionary;
+
+import java.time.Instant;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.is;
+
+@DataJpaTest
+@Import({ItemMetadataUpdater.class, ItemJdbcRepository.class, TagDictionary.class, ItemIndex.class,
+        SimpleMeterRegistry.class})
+@TestPropertySource(properties = "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect")
+class ItemMetadataUpdaterTest {
+
+    @Autowired
+    private ItemMetadataUpdater updater;
+
+    @Autowired
+    private TagDictionary tagDictionary;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void pendingItemResolvingToAStoredUrlIsMergedWithItsTagsAndNotes() {
+        long userId = user();
+        long stored = item(userId, "https://example.com/a", "https://example.com/a");
+        long pending = item(userId, "https://short.link/a", null);
+        tag(stored, "news");
+        tag(pending, "later");
+        jdbcTemplate.update("INSERT INTO item_notes (text, item_id) VALUES ('note', ?)", pending);
+
+        updater.applyMetadata(pending, UrlMetadataRetrieverImpl.UrlMetadataImpl.builder()
+                .normalUrl("https://short.link/a")
+                .resolvedUrl("https://example.com/a")
+                .mimeType("text")
+                .title("A")
+                .dateResolved(Instant.now())
+                .build());
+
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM items WHERE id = ?", Integer.class, pending),
+                is(0));
+        assertThat(jdbcTemplate.queryForList("SELECT n.name FROM item_tags t JOIN tag_names n ON n.id = t.tag_id "
+                + "WHERE t.item_id = ?", String.class, stored), containsInAnyOrder("news", "later"));
+        assertThat(jdbcTemplate.queryForObject("SELECT item_id FROM item_notes", Long.class), is(stored));
+    }
+
+    private long user() {
+        jdbcTemplate.update("INSERT INTO users (first_name, last_name) VALUES ('Owner', 'Updater')");
+        return jdbcTemplate.queryForObject("SELECT MAX(id) FROM users", Long.class);
+    }
+
+    private long item(long userId, String url, String resolvedUrl) {
+        jdbcTemplate.update("INSERT INTO items (user_id, url, resolved_url, url_hash, unread) "
+                + "VALUES (?, ?, ?, ?, TRUE)", userId, url, resolvedUrl, Item.urlHash(url, resolvedUrl));
+        return jdbcTemplate.queryForObject("SELECT MAX(id) FROM items", Long.class);
+    }
+
+    private void tag(long itemId, String name) {
+        jdbcTemplate.update("INSERT INTO item_tags (item_id, tag_id) VALUES (?, ?)", itemId, tagDictionary.idOf(name));
+    }
+}
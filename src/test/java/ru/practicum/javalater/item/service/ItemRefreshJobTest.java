@@ -0,0 +1,173 @@
+package ru.practicum.javalater.item.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import ru.practicum.javalater.item.dto.ResolutionState;
+import ru.practicum.javalater.item.exception.ItemRetrieverException;
+import ru.practicum.javalater.item.metadata.UrlMetadataRetriever;
+import ru.practicum.javalater.item.metadata.UrlMetadataRetrieverImpl;
+import ru.practicum.javalater.item.repository.ItemJdbcRepository;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.anyInt;
+import static org.mockito.Mockito.anyLong;
+import static org.mockito.Mockito.eq;
+import static org.mockito.Mockito.isNull;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ItemRefreshJobTest {
+
+    @Mock
+    private ItemJdbcRepository itemJdbcRepository;
+
+    @Mock
+    private UrlMetadataRetriever urlMetadataRetriever;
+
+    @Mock
+    private ItemIndex itemIndex;
+
+    @Mock
+    private ItemMetadataUpdater itemMetadataUpdater;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private ItemRefreshJob refreshJob;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        refreshJob = new ItemRefreshJob(itemJdbcRepository, urlMetadataRetriever, itemIndex,
+                itemMetadataUpdater, meterRegistry, 24, 30, 10, 3, 2, 1000);
+    }
+
+    @Test
+    void refresh_shouldRecordEveryCheckAndRewriteOnlyWhatChanged() {
+        ItemJdbcRepository.StaleItem notModified = staleItem(1, "\"a\"", ResolutionState.RESOLVED);
+        ItemJdbcRepository.StaleItem changed = staleItem(2, "\"b\"", ResolutionState.RESOLVED);
+        ItemJdbcRepository.StaleItem unchangedWithNewEtag = staleItem(3, "\"c\"", ResolutionState.RESOLVED);
+        when(itemJdbcRepository.findStale(any(), any(), eq(0L), eq(3))).thenReturn(
+                List.of(notModified, changed, unchangedWithNewEtag));
+        UrlMetadataRetriever.UrlMetadata changedMetadata = metadata("New title", "\"b2\"");
+        UrlMetadataRetriever.UrlMetadata sameMetadata = metadata("Title", "\"c2\"");
+        when(urlMetadataRetriever.revalidateAsync("https://example.com/1", "\"a\"", null))
+                .thenReturn(CompletableFuture.completedFuture(Optional.empty()));
+        when(urlMetadataRetriever.revalidateAsync("https://example.com/2", "\"b\"", null))
+                .thenReturn(CompletableFuture.completedFuture(Optional.of(changedMetadata)));
+        when(urlMetadataRetriever.revalidateAsync("https://example.com/3", "\"c\"", null))
+                .thenReturn(CompletableFuture.completedFuture(Optional.of(sameMetadata)));
+
+        int checked = refreshJob.refresh();
+
+        assertThat(checked, is(3));
+        verify(itemJdbcRepository).updateRefreshed(2, changedMetadata);
+        verify(itemJdbcRepository).updateValidators(eq(3L), eq("\"c2\""), isNull(), any());
+        verify(itemJdbcRepository).updateResolutionState(eq(1L), eq(ResolutionState.RESOLVED), any());
+        verify(itemJdbcRepository, never()).updateValidators(eq(1L), any(), any(), any());
+        verify(itemJdbcRepository, never()).updateResolutionState(eq(2L), any(), any());
+        verify(itemJdbcRepository, never()).updateResolutionState(eq(3L), any(), any());
+        assertThat(meterRegistry.get("items.refresh").tag("outcome", "not-modified").counter().count(), is(1.0));
+        assertThat(meterRegistry.get("items.refresh").tag("outcome", "changed").counter().count(), is(1.0));
+    }
+
+    @Test
+    void refresh_shouldMarkDeadLinksAndRestoreRecoveredOnes() {
+        ItemJdbcRepository.StaleItem dead = staleItem(1, null, ResolutionState.RESOLVED);
+        ItemJdbcRepository.StaleItem recovered = staleItem(2, "\"b\"", ResolutionState.FAILED);
+        when(itemJdbcRepository.findStale(any(), any(), anyLong(), anyInt()))
+                .thenReturn(List.of(dead, recovered))
+                .thenReturn(List.of());
+        when(urlMetadataRetriever.revalidateAsync("https://example.com/1", null, null))
+                .thenReturn(CompletableFuture.failedFuture(new ItemRetrieverException("404")));
+        when(urlMetadataRetriever.revalidateAsync("https://example.com/2", "\"b\"", null))
+                .thenReturn(CompletableFuture.completedFuture(Optional.empty()));
+
+        refreshJob.refresh();
+
+        verify(itemJdbcRepository).updateResolutionState(eq(1L), eq(ResolutionState.FAILED), any());
+        verify(itemJdbcRepository).updateResolutionState(eq(2L), eq(ResolutionState.RESOLVED), any());
+    }
+
+    @Test
+    void refresh_shouldContinueFromCursorAndWrapAround() {
+        when(itemJdbcRepository.findStale(any(), any(), eq(3L), anyInt())).thenReturn(List.of());
+        when(itemJdbcRepository.findStale(any(), any(), eq(1L), anyInt())).thenReturn(List.of());
+        when(itemJdbcRepository.findStale(any(), any(), eq(0L), anyInt()))
+                .thenReturn(List.of(staleItem(1, null, ResolutionState.RESOLVED),
+                        staleItem(2, null, ResolutionState.RESOLVED), staleItem(3, null, ResolutionState.RESOLVED)))
+                .thenReturn(List.of(staleItem(1, null, ResolutionState.RESOLVED)));
+        when(urlMetadataRetriever.revalidateAsync(any(), any(), any()))
+                .thenReturn(CompletableFuture.completedFuture(Optional.empty()));
+
+        assertThat(refreshJob.refresh(), is(3));
+        assertThat(refreshJob.refresh(), is(1));
+    }
+
+    @Test
+    void refresh_shouldResolvePendingItemsLeftBehind() {
+        ItemJdbcRepository.StaleItem resolvable = staleItem(1, null, ResolutionState.PENDING);
+        ItemJdbcRepository.StaleItem dead = staleItem(2, null, ResolutionState.PENDING);
+        when(itemJdbcRepository.findStale(any(), any(), anyLong(), anyInt()))
+                .thenReturn(List.of(resolvable, dead))
+                .thenReturn(List.of());
+        UrlMetadataRetriever.UrlMetadata metadata = metadata("Title", null);
+        ItemRetrieverException exception = new ItemRetrieverException("404");
+        when(urlMetadataRetriever.retrieveAsync("https://example.com/1"))
+                .thenReturn(CompletableFuture.completedFuture(metadata));
+        when(urlMetadataRetriever.retrieveAsync("https://example.com/2"))
+                .thenReturn(CompletableFuture.failedFuture(exception));
+
+        refreshJob.refresh();
+
+        verify(itemMetadataUpdater).applyMetadata(1, metadata);
+        verify(itemMetadataUpdater).markFailed(eq(2L), any());
+        verify(itemJdbcRepository).updateCheckedAt(eq(1L), any());
+        verify(itemJdbcRepository).updateCheckedAt(eq(2L), any());
+        verify(urlMetadataRetriever, never()).revalidateAsync(any(), any(), any());
+        assertThat(meterRegistry.get("items.refresh").tag("outcome", "recovered").counter().count(), is(1.0));
+    }
+
+    @Test
+    void refresh_shouldNotStopWhileItsOwnRequestsAreWaiting() {
+        when(itemJdbcRepository.findStale(any(), any(), anyLong(), anyInt()))
+                .thenReturn(List.of(staleItem(1, null, ResolutionState.RESOLVED),
+                        staleItem(2, null, ResolutionState.RESOLVED), staleItem(3, null, ResolutionState.RESOLVED)))
+                .thenReturn(List.of());
+        Executor later = CompletableFuture.delayedExecutor(50, TimeUnit.MILLISECONDS);
+        when(urlMetadataRetriever.revalidateAsync(any(), any(), any()))
+                .thenAnswer(invocation -> CompletableFuture.supplyAsync(Optional::empty, later));
+
+        assertThat(refreshJob.refresh(), is(3));
+        verify(itemJdbcRepository).updateResolutionState(eq(1L), eq(ResolutionState.RESOLVED), any());
+        verify(itemJdbcRepository).updateResolutionState(eq(2L), eq(ResolutionState.RESOLVED), any());
+        verify(itemJdbcRepository).updateResolutionState(eq(3L), eq(ResolutionState.RESOLVED), any());
+    }
+
+    private static ItemJdbcRepository.StaleItem staleItem(long id, String etag, ResolutionState state) {
+        return new ItemJdbcRepository.StaleItem(id, "https://example.com/" + id, "https://example.com/" + id,
+                "Title", false, false, etag, null, state);
+    }
+
+    private static UrlMetadataRetriever.UrlMetadata metadata(String title, String etag) {
+        return UrlMetadataRetrieverImpl.UrlMetadataImpl.builder()
+                .title(title)
+                .etag(etag)
+                .dateResolved(Instant.now())
+                .build();
+    }
+}
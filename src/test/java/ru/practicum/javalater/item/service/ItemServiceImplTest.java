@@ -3,6 +3,7 @@ package ru.practicum.javalater.item.service;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.jpa.JPAExpressions;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
@@ -11,43 +12,57 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.springframework.data.domain.Page;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Sort;
+import ru.practicum.javalater.item.dto.FacetCount;
 import ru.practicum.javalater.item.dto.GetItemRequest;
 import ru.practicum.javalater.item.dto.ItemDto;
+import ru.practicum.javalater.item.dto.ItemFacets;
+import ru.practicum.javalater.item.dto.ItemPage;
 import ru.practicum.javalater.item.dto.ModifyItemRequest;
 import ru.practicum.javalater.item.dto.PostItemDto;
+import ru.practicum.javalater.item.dto.ResolutionState;
 import ru.practicum.javalater.item.entity.Item;
+import ru.practicum.javalater.item.entity.QItem;
+import ru.practicum.javalater.item.exception.ItemRetrieverException;
 import ru.practicum.javalater.item.exception.NotAuthorizedException;
 import ru.practicum.javalater.item.mapper.ItemMapper;
 import ru.practicum.javalater.item.metadata.UrlMetadataRetriever;
 import ru.practicum.javalater.item.metadata.UrlMetadataRetrieverImpl;
+import ru.practicum.javalater.item.repository.ItemJdbcRepository;
+import ru.practicum.javalater.item.repository.ItemQueryRepository;
 import ru.practicum.javalater.item.repository.ItemRepository;
+import ru.practicum.javalater.item.repository.TagDictionary;
 import ru.practicum.javalater.user.entity.User;
 import ru.practicum.javalater.user.repository.UserRepository;
 
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.containsInAnyOrder;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.Mockito.any;
-import static org.mockito.Mockito.anyList;
 import static org.mockito.Mockito.anyLong;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.eq;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static ru.practicum.javalater.item.entity.QItem.item;
+import static ru.practicum.javalater.item.entity.QItemTag.itemTag;
 
 @ExtendWith(MockitoExtension.class)
 class ItemServiceImplTest {
@@ -55,6 +70,15 @@ class ItemServiceImplTest {
     @Mock
     private ItemRepository itemRepository;
 
+    @Mock
+    private ItemQueryRepository itemQueryRepository;
+
+    @Mock
+    private ItemJdbcRepository itemJdbcRepository;
+
+    @Mock
+    private TagDictionary tagDictionary;
+
     @Mock
     private UserRepository userRepository;
 
@@ -64,6 +88,12 @@ class ItemServiceImplTest {
     @Mock
     private UrlMetadataRetriever urlMetadataRetriever;
 
+    @Mock
+    private ItemMetadataUpdater itemMetadataUpdater;
+
+    @Mock
+    private ItemIndex itemIndex;
+
     @InjectMocks
     private ItemServiceImpl itemService;
 
@@ -76,24 +106,24 @@ class ItemServiceImplTest {
     @Test
     void getItems_ReturnListOfItem() {
         ItemDto itemDto = new ItemDto();
-        Item item = new Item();
         long userId = 1;
-        when(itemRepository.findByUserId(userId))
-                .thenReturn(List.of(item));
-        when(itemMapper.toDtoList(List.of(item)))
-                .thenReturn(List.of(itemDto));
+        PageRequest pageRequest = PageRequest.of(0, 11,
+                Sort.by(Sort.Order.asc("dateResolved").nullsLast(), Sort.Order.asc("id")));
+        when(userRepository.findById(userId))
+                .thenReturn(Optional.of(new User()));
+        when(itemQueryRepository.findPage(eq(item.user.id.eq(userId)), eq(pageRequest)))
+                .thenReturn(new ArrayList<>(List.of(itemDto)));
 
-        List<ItemDto> items = itemService.getItems(userId);
+        ItemPage page = itemService.getItems(userId, 10, null);
 
-        assertThat(items.size(), is(1));
-        assertThat(items, is(List.of(itemDto)));
-        verify(itemRepository, times(1)).findByUserId(userId);
-        verify(itemMapper, times(1)).toDtoList(List.of(item));
+        assertThat(page.getItems(), is(List.of(itemDto)));
+        assertThat(page.getNextCursor(), nullValue());
     }
 
     @Test
-    void addNewItem_WithDifferentResolvedUrl() {
+    void addNewItem_UpsertsResolvedItem() {
         long userId = 1;
+        long itemId = 7;
         String url = "url";
         String resolvedUrl = "resolved url";
         Set<String> tags = Set.of("tag1", "tag2");
@@ -103,7 +133,6 @@ class ItemServiceImplTest {
                 .tags(tags)
                 .build();
         ItemDto itemDto = new ItemDto();
-        User user = new User();
         UrlMetadataRetriever.UrlMetadata metadata = UrlMetadataRetrieverImpl.UrlMetadataImpl
                 .builder()
                 .title("title")
@@ -114,95 +143,163 @@ class ItemServiceImplTest {
                 .mimeType("text")
                 .build();
         when(userRepository.findById(userId))
-                .thenReturn(Optional.of(user));
+                .thenReturn(Optional.of(new User()));
         when(itemMapper.toModel(postItemDto))
                 .thenReturn(item);
         when(urlMetadataRetriever.retrieve(url))
                 .thenReturn(metadata);
-        when(itemRepository.findByResolvedUrl(resolvedUrl))
-                .thenReturn(Optional.empty());
-        when(itemRepository.save(any()))
-                .thenReturn(item);
-        when(itemMapper.toDto(item))
-                .thenReturn(itemDto);
+        when(itemJdbcRepository.upsert(eq(userId), any()))
+                .thenReturn(new ItemJdbcRepository.SavedItem(itemId, true));
+        when(itemQueryRepository.findPage(QItem.item.id.eq(itemId), PageRequest.of(0, 1)))
+                .thenReturn(new ArrayList<>(List.of(itemDto)));
 
-        itemService.addNewItem(userId, postItemDto);
+        ItemDto result = itemService.addNewItem(userId, postItemDto);
 
-        verify(itemRepository).save(itemArgumentCaptor.capture());
+        assertThat(result, is(itemDto));
+        verify(itemJdbcRepository).upsert(eq(userId), itemArgumentCaptor.capture());
         Item captorValue = itemArgumentCaptor.getValue();
-
         assertThat(captorValue.getResolvedUrl(), is(resolvedUrl));
         assertThat(captorValue.getTags(), is(tags));
         assertThat(captorValue.getHasImage(), is(metadata.isHasImage()));
         assertThat(captorValue.getHasVideo(), is(metadata.isHasVideo()));
         assertThat(captorValue.getMimeType(), is(metadata.getMimeType()));
         assertThat(captorValue.getTitle(), is(metadata.getTitle()));
-        assertThat(captorValue.getUser(), is(user));
-        verify(itemMapper, times(1)).toModel(postItemDto);
-        verify(urlMetadataRetriever, times(1)).retrieve(url);
-        verify(itemRepository, times(1)).findByResolvedUrl(resolvedUrl);
-        verify(itemRepository, times(1)).save(any());
-        verify(itemMapper, times(1)).toDto(item);
+        assertThat(captorValue.getResolutionState(), is(ResolutionState.RESOLVED));
+        verify(itemRepository, never()).save(any());
+    }
+
+    @Test
+    void addNewItem_ReturnsExistingItemWhenResolvedUrlIsTaken() {
+        long userId = 1;
+        long itemId = 3;
+        PostItemDto postItemDto = new PostItemDto("url", Sets.newHashSet("tag3"));
+        Item item = Item.builder()
+                .url("url")
+                .tags(Sets.newHashSet("tag3"))
+                .build();
+        ItemDto stored = new ItemDto();
+        stored.setTags(Set.of("tag1", "tag3"));
+        when(userRepository.findById(userId))
+                .thenReturn(Optional.of(new User()));
+        when(itemMapper.toModel(postItemDto))
+                .thenReturn(item);
+        when(urlMetadataRetriever.retrieve("url"))
+                .thenReturn(UrlMetadataRetrieverImpl.UrlMetadataImpl.builder().resolvedUrl("resolved url").build());
+        when(itemJdbcRepository.upsert(userId, item))
+                .thenReturn(new ItemJdbcRepository.SavedItem(itemId, false));
+        when(itemQueryRepository.findPage(QItem.item.id.eq(itemId), PageRequest.of(0, 1)))
+                .thenReturn(new ArrayList<>(List.of(stored)));
+
+        ItemDto result = itemService.addNewItem(userId, postItemDto);
+
+        assertThat(result.getTags(), is(Set.of("tag1", "tag3")));
     }
 
     @Test
-    void addNewItem_WithSameResolvedUrl() {
+    void addNewItemAsync_SavesPendingItemAndAppliesMetadata() {
         long userId = 1;
+        long itemId = 5;
         String url = "url";
-        String resolvedUrl = "resolved url";
-        Set<String> tags = Sets.newHashSet("tag1", "tag2");
-        Set<String> newTags = Sets.newHashSet("tag1", "tag2", "tag3");
+        Set<String> tags = Sets.newHashSet("tag1");
         PostItemDto postItemDto = new PostItemDto(url, tags);
         Item item = Item.builder()
                 .url(url)
-                .tags(newTags)
+                .tags(tags)
                 .build();
-        Item itemToReturn = Item.builder()
+        Item saved = Item.builder()
+                .id(itemId)
                 .url(url)
-                .resolvedUrl(resolvedUrl)
                 .tags(tags)
                 .build();
         ItemDto itemDto = new ItemDto();
         User user = new User();
         UrlMetadataRetriever.UrlMetadata metadata = UrlMetadataRetrieverImpl.UrlMetadataImpl
                 .builder()
-                .title("title")
-                .hasImage(true)
-                .hasVideo(true)
-                .resolvedUrl(resolvedUrl)
-                .dateResolved(Instant.now())
-                .mimeType("text")
+                .resolvedUrl("resolved url")
                 .build();
         when(userRepository.findById(userId))
                 .thenReturn(Optional.of(user));
         when(itemMapper.toModel(postItemDto))
                 .thenReturn(item);
-        when(urlMetadataRetriever.retrieve(url))
-                .thenReturn(metadata);
-        when(itemRepository.findByResolvedUrl(resolvedUrl))
-                .thenReturn(Optional.of(itemToReturn));
         when(itemRepository.save(any()))
-                .thenReturn(item);
-        when(itemMapper.toDto(item))
+                .thenReturn(saved);
+        when(urlMetadataRetriever.retrieveAsync(url))
+                .thenReturn(CompletableFuture.completedFuture(metadata));
+        when(itemMapper.toDto(saved))
                 .thenReturn(itemDto);
 
-        itemService.addNewItem(userId, postItemDto);
+        ItemDto result = itemService.addNewItemAsync(userId, postItemDto);
 
+        assertThat(result, is(itemDto));
         verify(itemRepository).save(itemArgumentCaptor.capture());
         Item captorValue = itemArgumentCaptor.getValue();
+        assertThat(captorValue.getResolutionState(), is(ResolutionState.PENDING));
+        assertThat(captorValue.getUser(), is(user));
+        verify(urlMetadataRetriever, never()).retrieve(any());
+        verify(itemMetadataUpdater, times(1)).applyMetadata(itemId, metadata);
+        verify(itemMetadataUpdater, never()).markFailed(anyLong(), any());
+    }
 
-        assertThat(captorValue.getResolvedUrl(), is(resolvedUrl));
-        assertThat(captorValue.getTags(), is(newTags));
-        assertThat(captorValue.getHasImage(), is(item.getHasImage()));
-        assertThat(captorValue.getHasVideo(), is(item.getHasVideo()));
-        assertThat(captorValue.getMimeType(), is(item.getMimeType()));
-        assertThat(captorValue.getTitle(), is(item.getTitle()));
-        assertThat(captorValue.getUser(), is(item.getUser()));
-        verify(itemMapper, times(1)).toModel(postItemDto);
-        verify(urlMetadataRetriever, times(1)).retrieve(url);
-        verify(itemRepository, times(1)).findByResolvedUrl(resolvedUrl);
-        verify(itemRepository, times(1)).save(any());
-        verify(itemMapper, times(1)).toDto(item);
+    @Test
+    void addNewItemAsync_MarksItemFailedWhenRetrieverFails() {
+        long userId = 1;
+        long itemId = 5;
+        String url = "url";
+        PostItemDto postItemDto = new PostItemDto(url, Sets.newHashSet("tag1"));
+        Item item = Item.builder()
+                .url(url)
+                .build();
+        Item saved = Item.builder()
+                .id(itemId)
+                .url(url)
+                .build();
+        ItemRetrieverException exception = new ItemRetrieverException("error");
+        when(userRepository.findById(userId))
+                .thenReturn(Optional.of(new User()));
+        when(itemMapper.toModel(postItemDto))
+                .thenReturn(item);
+        when(itemRepository.save(any()))
+                .thenReturn(saved);
+        when(urlMetadataRetriever.retrieveAsync(url))
+                .thenReturn(CompletableFuture.failedFuture(exception));
+
+        itemService.addNewItemAsync(userId, postItemDto);
+
+        verify(itemMetadataUpdater, times(1)).markFailed(eq(itemId), any());
+        verify(itemMetadataUpdater, never()).applyMetadata(anyLong(), any());
+    }
+
+    @Test
+    void addNewItemAsync_MarksItemFailedWhenMetadataCannotBeSaved() {
+        long userId = 1;
+        long itemId = 5;
+        String url = "url";
+        PostItemDto postItemDto = new PostItemDto(url, Sets.newHashSet("tag1"));
+        Item item = Item.builder()
+                .url(url)
+                .build();
+        Item saved = Item.builder()
+                .id(itemId)
+                .url(url)
+                .build();
+        UrlMetadataRetriever.UrlMetadata metadata = UrlMetadataRetrieverImpl.UrlMetadataImpl
+                .builder()
+                .resolvedUrl("resolved url")
+                .build();
+        DataIntegrityViolationException exception = new DataIntegrityViolationException("uq_items_user_resolved_url");
+        when(userRepository.findById(userId))
+                .thenReturn(Optional.of(new User()));
+        when(itemMapper.toModel(postItemDto))
+                .thenReturn(item);
+        when(itemRepository.save(any()))
+                .thenReturn(saved);
+        when(urlMetadataRetriever.retrieveAsync(url))
+                .thenReturn(CompletableFuture.completedFuture(metadata));
+        doThrow(exception).when(itemMetadataUpdater).applyMetadata(itemId, metadata);
+
+        itemService.addNewItemAsync(userId, postItemDto);
+
+        verify(itemMetadataUpdater, times(1)).markFailed(itemId, exception);
     }
 
     @Test
@@ -224,7 +321,7 @@ class ItemServiceImplTest {
         assertThat(e.getMessage(), is("Пользователь с id '" + userId + "' не найден."));
         verify(itemMapper, never()).toModel((ItemDto) any());
         verify(urlMetadataRetriever, never()).retrieve(any());
-        verify(itemRepository, never()).save(any());
+        verify(itemJdbcRepository, never()).upsert(anyLong(), any());
         verify(itemMapper, never()).toDto(any());
     }
 
@@ -300,18 +397,86 @@ class ItemServiceImplTest {
     void findByUserIdAndTags_ReturnItems() {
         long userId = 1;
         Set<String> tags = Sets.newHashSet("tag1", "tag2");
-        Item item = new Item();
         ItemDto itemDto = new ItemDto();
-        when(itemRepository.findByUserAndTags(userId, tags))
-                .thenReturn(List.of(item));
-        when(itemMapper.toDtoList(List.of(item)))
-                .thenReturn(List.of(itemDto));
+        BooleanExpression condition = item.user.id.eq(userId)
+                .and(taggedWith(1, 2));
+        PageRequest pageRequest = PageRequest.of(0, 101,
+                Sort.by(Sort.Order.asc("dateResolved").nullsLast(), Sort.Order.asc("id")));
+        when(userRepository.findById(userId))
+                .thenReturn(Optional.of(new User()));
+        when(tagDictionary.findIds(new ArrayList<>(tags)))
+                .thenReturn(Map.of("tag1", 1, "tag2", 2));
+        when(itemQueryRepository.findPage(eq(condition), eq(pageRequest)))
+                .thenReturn(new ArrayList<>(List.of(itemDto)));
+
+        ItemPage page = itemService.findByUserIdAndTags(userId, tags, "any", 100, null);
+
+        assertThat(page.getItems(), is(List.of(itemDto)));
+    }
+
+    @Test
+    void findByUserIdAndTags_AllTagsGroupsByItem() {
+        long userId = 1;
+        Set<String> tags = Sets.newHashSet("tag1", "tag2");
+        BooleanExpression condition = item.user.id.eq(userId)
+                .and(item.id.in(JPAExpressions.select(itemTag.itemId)
+                        .from(itemTag)
+                        .where(itemTag.tagId.in(List.of(1, 2)))
+                        .groupBy(itemTag.itemId)
+                        .having(itemTag.tagId.count().eq(2L))));
+        PageRequest pageRequest = PageRequest.of(0, 101,
+                Sort.by(Sort.Order.asc("dateResolved").nullsLast(), Sort.Order.asc("id")));
+        when(userRepository.findById(userId))
+                .thenReturn(Optional.of(new User()));
+        when(tagDictionary.findIds(new ArrayList<>(tags)))
+                .thenReturn(Map.of("tag1", 1, "tag2", 2));
+        when(itemQueryRepository.findPage(any(), eq(pageRequest)))
+                .thenReturn(new ArrayList<>());
 
-        List<ItemDto> items = itemService.findByUserIdAndTags(userId, tags);
+        itemService.findByUserIdAndTags(userId, tags, "all", 100, null);
 
-        assertThat(items, is(List.of(itemDto)));
-        verify(itemRepository, times(1)).findByUserAndTags(userId, tags);
-        verify(itemMapper, times(1)).toDtoList(List.of(item));
+        verify(itemQueryRepository, times(1))
+                .findPage(booleanExpressionArgumentCaptor.capture(), eq(pageRequest));
+        assertThat(booleanExpressionArgumentCaptor.getValue(), is(condition));
+    }
+
+    @Test
+    void getFacets_AddsUpGroupedCountsWithoutTheirOwnFilter() {
+        long userId = 1;
+        GetItemRequest request = GetItemRequest.of(userId, "unread", "article", "newest", 2, null);
+        when(userRepository.findById(userId))
+                .thenReturn(Optional.of(new User()));
+        when(itemQueryRepository.countGroups(item.user.id.eq(userId)))
+                .thenReturn(List.of(
+                        new ItemQueryRepository.FacetGroup(true, "text", "a.com", 3),
+                        new ItemQueryRepository.FacetGroup(false, "text", "a.com", 2),
+                        new ItemQueryRepository.FacetGroup(true, "video", "b.org", 4),
+                        new ItemQueryRepository.FacetGroup(true, "text", "b.org", 1),
+                        new ItemQueryRepository.FacetGroup(true, null, null, 5)));
+        when(itemQueryRepository.countTags(item.user.id.eq(userId)
+                .and(item.unread.isTrue())
+                .and(item.mimeType.eq("text"))))
+                .thenReturn(Map.of(7, 4L, 8, 1L, 9, 4L));
+        when(tagDictionary.namesOf(List.of(7, 9)))
+                .thenReturn(Map.of(7, "java", 9, "sql"));
+
+        ItemFacets facets = itemService.getFacets(request);
+
+        assertThat(facets.getStates(), is(List.of(new FacetCount("unread", 4), new FacetCount("read", 2))));
+        assertThat(facets.getContentTypes(), is(List.of(new FacetCount("article", 4), new FacetCount("image", 0),
+                new FacetCount("video", 4))));
+        assertThat(facets.getTags(), is(List.of(new FacetCount("java", 4), new FacetCount("sql", 4))));
+        assertThat(facets.getDomains(), is(List.of(new FacetCount("a.com", 3), new FacetCount("b.org", 1))));
+    }
+
+    @Test
+    void getFacets_NonPositiveLimitIsRejected() {
+        when(userRepository.findById(1L))
+                .thenReturn(Optional.of(new User()));
+
+        assertThrows(IllegalArgumentException.class,
+                () -> itemService.getFacets(GetItemRequest.of(1, "all", "all", "newest", 0, null)));
+        verify(itemQueryRepository, never()).countGroups(any());
     }
 
     @Test
@@ -333,21 +498,20 @@ class ItemServiceImplTest {
         BooleanExpression condition = item.user.id.eq(userId)
                 .and(item.unread.isFalse())
                 .and(item.mimeType.eq("image"))
-                .and(item.tags.any().in(tags));
-        Sort sortBy = Sort.by(Sort.Direction.ASC, "dateResolved");
-        PageRequest pageRequest = PageRequest.of(0, limit, sortBy);
-        Page<Item> findAll = Page.empty();
+                .and(taggedWith(1, 2));
+        Sort sortBy = Sort.by(Sort.Order.asc("dateResolved").nullsLast(), Sort.Order.asc("id"));
+        PageRequest pageRequest = PageRequest.of(0, limit + 1, sortBy);
         when(userRepository.findById(userId))
                 .thenReturn(Optional.of(new User()));
-        when(itemRepository.findAll(eq(condition), eq(pageRequest)))
-                .thenReturn((findAll));
-        when(itemMapper.toDtoList(Lists.newArrayList(findAll)))
-                .thenReturn(anyList());
+        when(tagDictionary.findIds(tags))
+                .thenReturn(Map.of("tag2", 2, "tag1", 1));
+        when(itemQueryRepository.findPage(eq(condition), eq(pageRequest)))
+                .thenReturn(new ArrayList<>());
 
         itemService.searchItems(getItemRequest);
 
-        verify(itemRepository, times(1))
-                .findAll(booleanExpressionArgumentCaptor.capture(), eq(pageRequest));
+        verify(itemQueryRepository, times(1))
+                .findPage(booleanExpressionArgumentCaptor.capture(), eq(pageRequest));
         BooleanExpression captorValue = booleanExpressionArgumentCaptor.getValue();
         assertThat(captorValue, is(condition));
     }
@@ -371,21 +535,20 @@ class ItemServiceImplTest {
         BooleanExpression condition = item.user.id.eq(userId)
                 .and(item.unread.isTrue())
                 .and(item.mimeType.eq("video"))
-                .and(item.tags.any().in(tags));
-        Sort sortBy = Sort.by(Sort.Direction.DESC, "dateResolved");
-        PageRequest pageRequest = PageRequest.of(0, limit, sortBy);
-        Page<Item> findAll = Page.empty();
+                .and(taggedWith(1, 2));
+        Sort sortBy = Sort.by(Sort.Order.desc("dateResolved").nullsLast(), Sort.Order.desc("id"));
+        PageRequest pageRequest = PageRequest.of(0, limit + 1, sortBy);
         when(userRepository.findById(userId))
                 .thenReturn(Optional.of(new User()));
-        when(itemRepository.findAll(eq(condition), eq(pageRequest)))
-                .thenReturn((findAll));
-        when(itemMapper.toDtoList(Lists.newArrayList(findAll)))
-                .thenReturn(anyList());
+        when(tagDictionary.findIds(tags))
+                .thenReturn(Map.of("tag2", 2, "tag1", 1));
+        when(itemQueryRepository.findPage(eq(condition), eq(pageRequest)))
+                .thenReturn(new ArrayList<>());
 
         itemService.searchItems(getItemRequest);
 
-        verify(itemRepository, times(1))
-                .findAll(booleanExpressionArgumentCaptor.capture(), eq(pageRequest));
+        verify(itemQueryRepository, times(1))
+                .findPage(booleanExpressionArgumentCaptor.capture(), eq(pageRequest));
         BooleanExpression captorValue = booleanExpressionArgumentCaptor.getValue();
         assertThat(captorValue, is(condition));
     }
@@ -409,21 +572,20 @@ class ItemServiceImplTest {
         BooleanExpression condition = item.user.id.eq(userId)
                 .and(item.unread.isTrue())
                 .and(item.mimeType.eq("text"))
-                .and(item.tags.any().in(tags));
-        Sort sortBy = Sort.by(Sort.Direction.ASC, "title");
-        PageRequest pageRequest = PageRequest.of(0, limit, sortBy);
-        Page<Item> findAll = Page.empty();
+                .and(taggedWith(1, 2));
+        Sort sortBy = Sort.by(Sort.Order.asc("title").nullsLast(), Sort.Order.asc("id"));
+        PageRequest pageRequest = PageRequest.of(0, limit + 1, sortBy);
         when(userRepository.findById(userId))
                 .thenReturn(Optional.of(new User()));
-        when(itemRepository.findAll(eq(condition), eq(pageRequest)))
-                .thenReturn((findAll));
-        when(itemMapper.toDtoList(Lists.newArrayList(findAll)))
-                .thenReturn(anyList());
+        when(tagDictionary.findIds(tags))
+                .thenReturn(Map.of("tag2", 2, "tag1", 1));
+        when(itemQueryRepository.findPage(eq(condition), eq(pageRequest)))
+                .thenReturn(new ArrayList<>());
 
         itemService.searchItems(getItemRequest);
 
-        verify(itemRepository, times(1))
-                .findAll(booleanExpressionArgumentCaptor.capture(), eq(pageRequest));
+        verify(itemQueryRepository, times(1))
+                .findPage(booleanExpressionArgumentCaptor.capture(), eq(pageRequest));
         BooleanExpression captorValue = booleanExpressionArgumentCaptor.getValue();
         assertThat(captorValue, is(condition));
     }
@@ -443,20 +605,17 @@ class ItemServiceImplTest {
                 .limit(limit)
                 .build();
         BooleanExpression condition = item.user.id.eq(userId);
-        Sort sortBy = Sort.by(Sort.Direction.ASC, "title");
-        PageRequest pageRequest = PageRequest.of(0, limit, sortBy);
-        Page<Item> findAll = Page.empty();
+        Sort sortBy = Sort.by(Sort.Order.asc("title").nullsLast(), Sort.Order.asc("id"));
+        PageRequest pageRequest = PageRequest.of(0, limit + 1, sortBy);
         when(userRepository.findById(userId))
                 .thenReturn(Optional.of(new User()));
-        when(itemRepository.findAll(eq(condition), eq(pageRequest)))
-                .thenReturn((findAll));
-        when(itemMapper.toDtoList(Lists.newArrayList(findAll)))
-                .thenReturn(anyList());
+        when(itemQueryRepository.findPage(eq(condition), eq(pageRequest)))
+                .thenReturn(new ArrayList<>());
 
         itemService.searchItems(getItemRequest);
 
-        verify(itemRepository, times(1))
-                .findAll(booleanExpressionArgumentCaptor.capture(), eq(pageRequest));
+        verify(itemQueryRepository, times(1))
+                .findPage(booleanExpressionArgumentCaptor.capture(), eq(pageRequest));
         BooleanExpression captorValue = booleanExpressionArgumentCaptor.getValue();
         assertThat(captorValue, is(condition));
     }
@@ -478,20 +637,17 @@ class ItemServiceImplTest {
                 .tags(tags)
                 .build();
         BooleanExpression condition = item.user.id.eq(userId);
-        Sort sortBy = Sort.by(Sort.Direction.ASC, "title");
-        PageRequest pageRequest = PageRequest.of(0, limit, sortBy);
-        Page<Item> findAll = Page.empty();
+        Sort sortBy = Sort.by(Sort.Order.asc("title").nullsLast(), Sort.Order.asc("id"));
+        PageRequest pageRequest = PageRequest.of(0, limit + 1, sortBy);
         when(userRepository.findById(userId))
                 .thenReturn(Optional.of(new User()));
-        when(itemRepository.findAll(eq(condition), eq(pageRequest)))
-                .thenReturn((findAll));
-        when(itemMapper.toDtoList(Lists.newArrayList(findAll)))
-                .thenReturn(anyList());
+        when(itemQueryRepository.findPage(eq(condition), eq(pageRequest)))
+                .thenReturn(new ArrayList<>());
 
         itemService.searchItems(getItemRequest);
 
-        verify(itemRepository, times(1))
-                .findAll(booleanExpressionArgumentCaptor.capture(), eq(pageRequest));
+        verify(itemQueryRepository, times(1))
+                .findPage(booleanExpressionArgumentCaptor.capture(), eq(pageRequest));
         BooleanExpression captorValue = booleanExpressionArgumentCaptor.getValue();
         assertThat(captorValue, is(condition));
     }
@@ -506,9 +662,8 @@ class ItemServiceImplTest {
         NoSuchElementException e = assertThrows(NoSuchElementException.class,
                 () -> itemService.searchItems(getItemRequest));
         assertThat(e.getMessage(), is("Пользователь с id '" + userId + "' не найден."));
-        verify(itemRepository, never()).findAll(Mockito.any(BooleanExpression.class),
+        verify(itemQueryRepository, never()).findPage(Mockito.any(BooleanExpression.class),
                 Mockito.any(PageRequest.class));
-        verify(itemMapper, never()).toDtoList(anyList());
     }
 
     @Test
@@ -653,4 +808,10 @@ class ItemServiceImplTest {
         verify(itemMapper, never()).toDto(Mockito.any(Item.class));
         verify(itemRepository, never()).save(Mockito.any(Item.class));
     }
-}
\ No newline at end of file
+
+    private static BooleanExpression taggedWith(Integer... tagIds) {
+        return item.id.in(JPAExpressions.select(itemTag.itemId)
+                .from(itemTag)
+                .where(itemTag.tagId.in(List.of(tagIds))));
+    }
+}
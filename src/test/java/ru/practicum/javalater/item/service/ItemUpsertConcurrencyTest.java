@@ -0,0 +1,286 @@
+package ru.practicum.javalater.item.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import ru.practicum.javalater.item.dto.BatchItemResult;
+import ru.practicum.javalater.item.dto.ItemDto;
+import ru.practicum.javalater.item.dto.PostItemDto;
+import ru.practicum.javalater.item.dto.ResolutionState;
+import ru.practicum.javalater.item.entity.Item;
+import ru.practicum.javalater.item.mapper.ItemMapperImpl;
+import ru.practicum.javalater.item.metadata.UrlMetadataRetriever;
+import ru.practicum.javalater.item.metadata.UrlMetadataRetrieverImpl;
+import ru.practicum.javalater.item.repository.ItemJdbcRepository;
+import ru.practicum.javalater.item.repository.ItemQueryRepository;
+import ru.practicum.javalater.item.repository.TagDictionary;
+import ru.practicum.javalater.user.entity.User;
+import ru.practicum.javalater.user.repository.UserRepository;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Mockito.when;
+
+@DataJpaTest
+@Import({ItemServiceImpl.class, ItemBatchServiceImpl.class, ItemMapperImpl.class, ItemQueryRepository.class,
+        ItemJdbcRepository.class, TagDictionary.class, ItemIndex.class, SimpleMeterRegistry.class})
+@TestPropertySource(properties = "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ItemUpsertConcurrencyTest {
+
+    private static final int SAVES = 32;
+
+    @Autowired
+    private ItemService itemService;
+
+    @Autowired
+    private ItemBatchService itemBatchService;
+
+    @Autowired
+    private ItemJdbcRepository itemJdbcRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @MockBean
+    private UrlMetadataRetriever urlMetadataRetriever;
+
+    @MockBean
+    private ItemMetadataUpdater itemMetadataUpdater;
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("DELETE FROM item_tags");
+        jdbcTemplate.update("DELETE FROM items");
+        jdbcTemplate.update("DELETE FROM users");
+    }
+
+    @Test
+    void concurrentSavesOfOneUrlLeaveOneItemWithAllTags() throws Exception {
+        long userId = userRepository.save(User.builder().firstName("Many").lastName("Saves").build()).getId();
+        when(urlMetadataRetriever.retrieve("https://example.com/article"))
+                .thenReturn(UrlMetadataRetrieverImpl.UrlMetadataImpl.builder()
+                        .resolvedUrl("https://example.com/article")
+                        .mimeType("text")
+                        .title("Article")
+                        .dateResolved(Instant.now())
+                        .build());
+        ExecutorService executor = Executors.newFixedThreadPool(SAVES);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<ItemDto>> saved = new ArrayList<>();
+        try {
+            for (int i = 0; i < SAVES; i++) {
+                PostItemDto itemDto = new PostItemDto("https://example.com/article", Set.of("tag" + i, "common"));
+                saved.add(executor.submit(() -> {
+                    start.await();
+                    return itemService.addNewItem(userId, itemDto);
+                }));
+            }
+            start.countDown();
+            Set<Long> ids = new HashSet<>();
+            for (Future<ItemDto> future : saved) {
+                ids.add(future.get().getId());
+            }
+
+            Set<String> expectedTags = new HashSet<>(Set.of("common"));
+            for (int i = 0; i < SAVES; i++) {
+                expectedTags.add("tag" + i);
+            }
+            assertThat(ids.size(), is(1));
+            assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM items WHERE user_id = ?", Integer.class,
+                    userId), is(1));
+            assertThat(jdbcTemplate.queryForList("SELECT n.name FROM item_tags t JOIN tag_names n ON n.id = t.tag_id "
+                    + "WHERE t.item_id = ?", String.class, ids.iterator().next()).stream().collect(Collectors.toSet()),
+                    is(expectedTags));
+            assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM item_tags", Integer.class), is(SAVES + 1));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void concurrentBatchesOfOneUrlListReportEachUrlCreatedOnce() throws Exception {
+        long userId = userRepository.save(User.builder().firstName("Many").lastName("Batches").build()).getId();
+        List<String> urls = List.of("https://example.com/a", "https://example.com/b", "https://example.com/c");
+        for (String url : urls) {
+            when(urlMetadataRetriever.retrieveAsync(url))
+                    .thenAnswer(invocation -> CompletableFuture.completedFuture(
+                            UrlMetadataRetrieverImpl.UrlMetadataImpl.builder()
+                                    .resolvedUrl(url)
+                                    .mimeType("text")
+                                    .dateResolved(Instant.now())
+                                    .build()));
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(SAVES);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<List<BatchItemResult>>> imports = new ArrayList<>();
+        try {
+            for (int i = 0; i < SAVES; i++) {
+                List<PostItemDto> batch = new ArrayList<>();
+                for (String url : urls) {
+                    batch.add(new PostItemDto(url, Set.of("tag" + i, "common")));
+                }
+                imports.add(executor.submit(() -> {
+                    start.await();
+                    return itemBatchService.addNewItems(userId, batch);
+                }));
+            }
+            start.countDown();
+            List<BatchItemResult> results = new ArrayList<>();
+            for (Future<List<BatchItemResult>> future : imports) {
+                results.addAll(future.get());
+            }
+
+            assertThat(results.stream().filter(result -> result.getStatus() == BatchItemResult.Status.CREATED)
+                    .count(), is((long) urls.size()));
+            assertThat(results.stream().filter(result -> result.getStatus() == BatchItemResult.Status.MERGED)
+                    .count(), is((long) (SAVES - 1) * urls.size()));
+            assertThat(results.stream().map(BatchItemResult::getItemId).collect(Collectors.toSet()).size(),
+                    is(urls.size()));
+            assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM items WHERE user_id = ?", Integer.class,
+                    userId), is(urls.size()));
+            assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM item_tags", Integer.class),
+                    is((SAVES + 1) * urls.size()));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void slashSpellingsOfOneUrlAreSavedAsOneItem() {
+        long userId = userRepository.save(User.builder().firstName("Two").lastName("Slashes").build()).getId();
+        resolvesTo("https://example.com/docs");
+        resolvesTo("https://example.com/docs/");
+
+        ItemDto first = itemService.addNewItem(userId, new PostItemDto("https://example.com/docs", Set.of("first")));
+        ItemDto second = itemService.addNewItem(userId,
+                new PostItemDto("https://example.com/docs/", Set.of("second")));
+
+        assertThat(second.getId(), is(first.getId()));
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM items WHERE user_id = ?", Integer.class,
+                userId), is(1));
+        assertThat(jdbcTemplate.queryForList("SELECT n.name FROM item_tags t JOIN tag_names n ON n.id = t.tag_id "
+                + "WHERE t.item_id = ?", String.class, first.getId()), containsInAnyOrder("first", "second"));
+    }
+
+    @Test
+    void spellingsOfOneUrlAreSavedAsOneItem() {
+        long userId = userRepository.save(User.builder().firstName("Many").lastName("Spellings").build()).getId();
+        List<String> spellings = List.of("https://example.com/docs/?utm_source=feed", "https://EXAMPLE.com/docs",
+                "https://example.com:443/docs/#intro", "HTTPS://example.com/docs?utm_medium=mail");
+        spellings.forEach(this::resolvesTo);
+
+        Set<Long> ids = new HashSet<>();
+        for (String url : spellings) {
+            ids.add(itemService.addNewItem(userId, new PostItemDto(url, Set.of())).getId());
+        }
+
+        assertThat(ids.size(), is(1));
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM items WHERE user_id = ?", Integer.class,
+                userId), is(1));
+        assertThat(jdbcTemplate.queryForObject("SELECT canonical_url FROM items WHERE user_id = ?", String.class,
+                userId), is("https://example.com/docs"));
+    }
+
+    @Test
+    void batchesWithSlashSpellingsOfOneUrlSaveOneItem() {
+        long userId = userRepository.save(User.builder().firstName("Two").lastName("Batches").build()).getId();
+        for (String url : List.of("https://example.com/docs", "https://example.com/docs/")) {
+            when(urlMetadataRetriever.retrieveAsync(url))
+                    .thenAnswer(invocation -> CompletableFuture.completedFuture(metadata(url)));
+        }
+
+        List<BatchItemResult> first = itemBatchService.addNewItems(userId, List.of(
+                new PostItemDto("https://example.com/docs", Set.of("first")),
+                new PostItemDto("https://example.com/docs/", Set.of("second"))));
+        List<BatchItemResult> second = itemBatchService.addNewItems(userId, List.of(
+                new PostItemDto("https://example.com/docs/", Set.of("third"))));
+
+        assertThat(first.get(0).getStatus(), is(BatchItemResult.Status.CREATED));
+        assertThat(first.get(1).getStatus(), is(BatchItemResult.Status.MERGED));
+        assertThat(second.get(0).getStatus(), is(BatchItemResult.Status.MERGED));
+        assertThat(first.get(1).getItemId(), is(first.get(0).getItemId()));
+        assertThat(second.get(0).getItemId(), is(first.get(0).getItemId()));
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM items WHERE user_id = ?", Integer.class,
+                userId), is(1));
+    }
+
+    @Test
+    void findIdsByResolvedUrlsAnswersEverySpellingOfAnItem() {
+        long userId = userRepository.save(User.builder().firstName("Many").lastName("Spellings").build()).getId();
+        resolvesTo("https://example.com/docs");
+        long id = itemService.addNewItem(userId, new PostItemDto("https://example.com/docs", Set.of())).getId();
+
+        Map<String, Long> ids = itemJdbcRepository.findIdsByResolvedUrls(userId, List.of(
+                "https://example.com/docs", "https://example.com/docs/", "https://EXAMPLE.com:443/docs/"));
+
+        assertThat(ids, is(Map.of("https://example.com/docs", id, "https://example.com/docs/", id,
+                "https://EXAMPLE.com:443/docs/", id)));
+    }
+
+    @Test
+    void savePendingMergesSpellingsOfUrlsTheUserAlreadyHas() {
+        long userId = userRepository.save(User.builder().firstName("Import").lastName("Spellings").build()).getId();
+        resolvesTo("https://example.com/docs");
+        long resolved = itemService.addNewItem(userId, new PostItemDto("https://example.com/docs", Set.of())).getId();
+        long pending = itemJdbcRepository.savePending(userId, List.of(pending("https://example.com/later")))
+                .get("https://example.com/later").getId();
+
+        Map<String, ItemJdbcRepository.SavedItem> saved = itemJdbcRepository.savePending(userId, List.of(
+                pending("https://EXAMPLE.com/docs/?utm_source=feed"),
+                pending("https://example.com:443/later/"),
+                pending("https://example.com/new")));
+
+        assertThat(saved.get("https://EXAMPLE.com/docs/?utm_source=feed"),
+                is(new ItemJdbcRepository.SavedItem(resolved, false)));
+        assertThat(saved.get("https://example.com:443/later/"), is(new ItemJdbcRepository.SavedItem(pending, false)));
+        assertThat(saved.get("https://example.com/new").isCreated(), is(true));
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM items WHERE user_id = ?", Integer.class,
+                userId), is(3));
+    }
+
+    private static Item pending(String url) {
+        Item item = new Item();
+        item.setUrl(url);
+        item.setUnread(true);
+        item.setResolutionState(ResolutionState.PENDING);
+        return item;
+    }
+
+    private void resolvesTo(String url) {
+        when(urlMetadataRetriever.retrieve(url)).thenReturn(metadata(url));
+    }
+
+    private static UrlMetadataRetriever.UrlMetadata metadata(String resolvedUrl) {
+        return UrlMetadataRetrieverImpl.UrlMetadataImpl.builder()
+                .resolvedUrl(resolvedUrl)
+                .mimeType("text")
+                .dateResolved(Instant.now())
+                .build();
+    }
+}
@@ -0,0 +1,86 @@
+package ru.practicum.javalater.item.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.practicum.javalater.item.entity.Item;
+import ru.practicum.javalater.item.repository.ItemJdbcRepository;
+import ru.practicum.javalater.item.repository.TagDictionary;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.is;
+
+@JdbcTest
+@Import({ItemJdbcRepository.class, ItemUrlHashBackfill.class, TagDictionary.class, ItemIndex.class,
+        SimpleMeterRegistry.class})
+class ItemUrlHashBackfillTest {
+
+    @Autowired
+    private ItemUrlHashBackfill backfill;
+
+    @Autowired
+    private ItemJdbcRepository itemJdbcRepository;
+
+    @Autowired
+    private TagDictionary tagDictionary;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void mergesSpellingsOfOneUrlPerUserAndHashesTheRest() {
+        long owner = user("Owner");
+        long other = user("Other");
+        long kept = item(owner, "https://example.com/a?utm_source=feed", "https://Example.com/a/");
+        long duplicate = item(owner, "https://example.com/a#top", "https://example.com:443/a?utm_medium=x");
+        long othersCopy = item(other, "https://example.com/a", "https://example.com/a");
+        long pending = item(owner, "https://example.com/b", null);
+        tag(kept, "news");
+        tag(duplicate, "news");
+        tag(duplicate, "later");
+        jdbcTemplate.update("INSERT INTO item_notes (text, item_id) VALUES ('note', ?)", duplicate);
+
+        int merged = backfill.backfill();
+
+        assertThat(merged, is(1));
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM items WHERE id = ?", Integer.class, duplicate),
+                is(0));
+        assertThat(jdbcTemplate.queryForList("SELECT n.name FROM item_tags t JOIN tag_names n ON n.id = t.tag_id "
+                + "WHERE t.item_id = ?", String.class, kept), containsInAnyOrder("news", "later"));
+        assertThat(jdbcTemplate.queryForObject("SELECT item_id FROM item_notes", Long.class), is(kept));
+        Map<String, Object> keptRow = jdbcTemplate.queryForMap("SELECT * FROM items WHERE id = ?", kept);
+        assertThat(keptRow.get("RESOLVED_URL"), is("https://example.com/a/"));
+        assertThat(keptRow.get("URL"), is("https://example.com/a?utm_source=feed"));
+        assertThat(keptRow.get("URL_HASH"), is(Item.urlHash(null, "https://example.com/a")));
+        assertThat(keptRow.get("CANONICAL_URL"), is("https://example.com/a"));
+        assertThat(jdbcTemplate.queryForObject("SELECT url_hash FROM items WHERE id = ?", Long.class, othersCopy),
+                is(Item.urlHash(null, "https://example.com/a")));
+        assertThat(jdbcTemplate.queryForObject("SELECT url_hash FROM items WHERE id = ?", Long.class, pending),
+                is(Item.urlHash("https://example.com/b", null)));
+        assertThat(itemJdbcRepository.findIdsByResolvedUrls(owner, List.of("https://example.com/a")),
+                is(Map.of("https://example.com/a", kept)));
+        assertThat(backfill.backfill(), is(0));
+    }
+
+    private long user(String name) {
+        jdbcTemplate.update("INSERT INTO users (first_name, last_name) VALUES (?, 'Backfill')", name);
+        return jdbcTemplate.queryForObject("SELECT MAX(id) FROM users", Long.class);
+    }
+
+    private long item(long userId, String url, String resolvedUrl) {
+        jdbcTemplate.update("INSERT INTO items (user_id, url, resolved_url, unread) VALUES (?, ?, ?, TRUE)",
+                userId, url, resolvedUrl);
+        return jdbcTemplate.queryForObject("SELECT MAX(id) FROM items", Long.class);
+    }
+
+    private void tag(long itemId, String name) {
+        jdbcTemplate.update("INSERT INTO item_tags (item_id, tag_id) VALUES (?, ?)", itemId, tagDictionary.idOf(name));
+    }
+}
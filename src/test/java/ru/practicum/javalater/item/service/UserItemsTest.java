@@ -0,0 +1,208 @@
+package ru.practicum.javalater.item.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.practicum.javalater.item.dto.GetItemRequest;
+import ru.practicum.javalater.item.dto.ItemFacets;
+import ru.practicum.javalater.item.repository.TagDictionary;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class UserItemsTest {
+
+    private static final String[] MIME_TYPES = {"text", "image", "video", null};
+
+    private static final String[] DOMAINS = {"example.com", "example.org", null};
+
+    private static final Instant START = Instant.parse("2026-01-01T00:00:00Z");
+
+    private final Random random = new Random(42);
+
+    private final TagDictionary tagDictionary = mock(TagDictionary.class);
+
+    @BeforeEach
+    void setUp() {
+        when(tagDictionary.namesOf(any())).thenAnswer(invocation -> {
+            Collection<Integer> ids = invocation.getArgument(0);
+            return ids.stream().collect(Collectors.toMap(id -> id, id -> "tag" + id));
+        });
+    }
+
+    @Test
+    void answersLikeAScanOfAllItemsThroughAddsUpdatesAndDeletes() {
+        Map<Long, UserItems.Entry> expected = new LinkedHashMap<>();
+        for (long id = 1; id <= 200; id++) {
+            expected.put(id, randomEntry(id));
+        }
+        UserItems items = new UserItems(expected.values());
+        assertSameAnswers(items, expected);
+
+        long nextId = 201;
+        for (int step = 0; step < 300; step++) {
+            int action = random.nextInt(3);
+            if (action == 0) {
+                UserItems.Entry entry = randomEntry(nextId++);
+                expected.put(entry.getId(), entry);
+                items.put(entry);
+            } else if (action == 1 && !expected.isEmpty()) {
+                long id = randomId(expected);
+                UserItems.Entry entry = randomEntry(id);
+                expected.put(id, entry);
+                items.put(entry);
+            } else if (!expected.isEmpty()) {
+                long id = randomId(expected);
+                expected.remove(id);
+                items.remove(id);
+            }
+            if (step % 25 == 0) {
+                assertSameAnswers(items, expected);
+            }
+        }
+        assertSameAnswers(items, expected);
+        assertThat(items.size(), is(expected.size()));
+    }
+
+    @Test
+    void survivesDeletingMostItems() {
+        Map<Long, UserItems.Entry> expected = new LinkedHashMap<>();
+        for (long id = 1; id <= 100; id++) {
+            expected.put(id, randomEntry(id));
+        }
+        UserItems items = new UserItems(expected.values());
+        for (long id = 1; id <= 90; id++) {
+            expected.remove(id);
+            items.remove(id);
+        }
+
+        assertSameAnswers(items, expected);
+        assertThat(items.contains(5), is(false));
+        assertThat(items.contains(95), is(true));
+    }
+
+    private void assertSameAnswers(UserItems items, Map<Long, UserItems.Entry> expected) {
+        for (GetItemRequest.Sort sort : GetItemRequest.Sort.values()) {
+            for (Boolean unread : new Boolean[]{null, true, false}) {
+                for (String mimeType : new String[]{null, "text", "video"}) {
+                    for (List<Integer> tagIds : Arrays.asList(null, List.of(1), List.of(2, 3), List.<Integer>of())) {
+                        for (boolean allTags : new boolean[]{false, true}) {
+                            assertThat(facets(items, unread, mimeType, tagIds, allTags),
+                                    is(facets(expected, unread, mimeType, tagIds, allTags)));
+                            List<Long> all = scan(expected, unread, mimeType, tagIds, allTags, sort, null);
+                            assertThat(items.find(unread, mimeType, tagIds, allTags, sort, null, 1000), is(all));
+                            assertThat(items.find(unread, mimeType, tagIds, allTags, sort, null, 3),
+                                    is(all.subList(0, Math.min(3, all.size()))));
+                            for (int i = 0; i < all.size(); i += 7) {
+                                ItemCursor cursor = cursorAt(expected.get(all.get(i)), sort);
+                                assertThat(items.find(unread, mimeType, tagIds, allTags, sort, cursor, 1000),
+                                        is(scan(expected, unread, mimeType, tagIds, allTags, sort, cursor)));
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * The reference: filters every item and sorts them the way the SQL queries do.
+     */
+    private static List<Long> scan(Map<Long, UserItems.Entry> entries, Boolean unread, String mimeType,
+                                   List<Integer> tagIds, boolean allTags, GetItemRequest.Sort sort,
+                                   ItemCursor cursor) {
+        List<UserItems.Entry> sorted = entries.values().stream()
+                .filter(entry -> unread == null || entry.isUnread() == unread)
+                .filter(entry -> mimeType == null || mimeType.equals(entry.getMimeType()))
+                .filter(entry -> tagIds == null || hasTags(entry, tagIds, allTags))
+                .sorted(order(sort))
+                .collect(Collectors.toList());
+        List<Long> ids = new ArrayList<>();
+        boolean after = cursor == null;
+        for (UserItems.Entry entry : sorted) {
+            if (after) {
+                ids.add(entry.getId());
+            } else if (entry.getId() == cursor.getId()) {
+                after = true;
+            }
+        }
+        return ids;
+    }
+
+    private ItemFacets facets(UserItems items, Boolean unread, String mimeType, List<Integer> tagIds,
+                              boolean allTags) {
+        FacetCounter counter = new FacetCounter(unread, mimeType);
+        items.countFacets(tagIds, allTags, counter);
+        return counter.toFacets(tagDictionary, 3);
+    }
+
+    /**
+     * The reference facets: every item carrying the tags, fed to the counter one by one.
+     */
+    private ItemFacets facets(Map<Long, UserItems.Entry> entries, Boolean unread, String mimeType,
+                              List<Integer> tagIds, boolean allTags) {
+        FacetCounter counter = new FacetCounter(unread, mimeType);
+        for (long id : scan(entries, null, null, tagIds, allTags, GetItemRequest.Sort.NEWEST, null)) {
+            UserItems.Entry entry = entries.get(id);
+            counter.add(entry.isUnread(), entry.getMimeType(), entry.getDomain(), 1);
+            if (counter.matches(entry.isUnread(), entry.getMimeType())) {
+                Arrays.stream(entry.getTagIds()).forEach(tagId -> counter.addTag(tagId, 1));
+            }
+        }
+        return counter.toFacets(tagDictionary, 3);
+    }
+
+    private static boolean hasTags(UserItems.Entry entry, List<Integer> tagIds, boolean allTags) {
+        List<Integer> carried = Arrays.stream(entry.getTagIds()).boxed().collect(Collectors.toList());
+        return allTags && !tagIds.isEmpty() ? carried.containsAll(tagIds) : tagIds.stream().anyMatch(carried::contains);
+    }
+
+    private static Comparator<UserItems.Entry> order(GetItemRequest.Sort sort) {
+        switch (sort) {
+            case NEWEST:
+                return Comparator.comparing(UserItems.Entry::getDateResolved,
+                                Comparator.nullsLast(Comparator.<Instant>naturalOrder()))
+                        .thenComparing(UserItems.Entry::getId);
+            case OLDEST:
+                return Comparator.comparing(UserItems.Entry::getDateResolved,
+                                Comparator.nullsLast(Comparator.<Instant>reverseOrder()))
+                        .thenComparing(UserItems.Entry::getId, Comparator.reverseOrder());
+            default:
+                return Comparator.comparing(UserItems.Entry::getTitle,
+                                Comparator.nullsLast(Comparator.<String>naturalOrder()))
+                        .thenComparing(UserItems.Entry::getId);
+        }
+    }
+
+    private static ItemCursor cursorAt(UserItems.Entry entry, GetItemRequest.Sort sort) {
+        return new ItemCursor(sort, sort == GetItemRequest.Sort.TITLE ? entry.getTitle() : entry.getDateResolved(),
+                entry.getId(), true);
+    }
+
+    private UserItems.Entry randomEntry(long id) {
+        Instant date = random.nextInt(10) == 0 ? null : START.plusSeconds(random.nextInt(50)).plusNanos(1000);
+        String title = random.nextInt(10) == 0 ? null : "Title " + random.nextInt(40);
+        int[] tagIds = IntStream.rangeClosed(1, 4).filter(tagId -> random.nextInt(3) == 0).toArray();
+        return new UserItems.Entry(id, random.nextBoolean(), MIME_TYPES[random.nextInt(MIME_TYPES.length)], date,
+                title, DOMAINS[random.nextInt(DOMAINS.length)], tagIds);
+    }
+
+    private long randomId(Map<Long, UserItems.Entry> entries) {
+        List<Long> ids = new ArrayList<>(entries.keySet());
+        return ids.get(random.nextInt(ids.size()));
+    }
+}